@@ -0,0 +1,126 @@
+package com.otterhub.music;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 音频容器转封装
+ * 将 B站 DASH 分片 MP4（.m4s）中的音频轨逐帧拷贝到标准 MP4 容器（.m4a），不重新编码。
+ * 转封装后的文件带完整 moov 索引，拖动进度更快、时长准确，也能正常写入标签。
+ */
+final class AudioRemuxer {
+
+    interface ProgressListener {
+        /** @param progress 0..1 */
+        void onProgress(float progress);
+    }
+
+    /** 读取样本的缓冲区默认大小，轨道声明了更大的 max-input-size 时按需扩容 */
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_INTERVAL_US = 5_000_000;
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+    /**
+     * 转封装单个文件；先写入临时文件，成功后再重命名为 output
+     * 同一个实例复用样本缓冲区，不可并发调用
+     */
+    void remux(File input, File output, ProgressListener listener) throws IOException {
+        File temp = new File(output.getPath() + ".tmp");
+        MediaExtractor extractor = new MediaExtractor();
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+        try {
+            extractor.setDataSource(input.getAbsolutePath());
+            int trackIndex = findAudioTrack(extractor);
+            if (trackIndex < 0) throw new IOException("No audio track in " + input.getName());
+
+            MediaFormat format = extractor.getTrackFormat(trackIndex);
+            extractor.selectTrack(trackIndex);
+            ensureBufferCapacity(format);
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+
+            muxer = new MediaMuxer(temp.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            int outTrack = muxer.addTrack(format);
+            muxer.start();
+            muxerStarted = true;
+
+            long lastReportUs = 0;
+            while (true) {
+                buffer.clear();
+                int size = extractor.readSampleData(buffer, 0);
+                if (size < 0) break;
+
+                long timeUs = extractor.getSampleTime();
+                int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                        ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+                info.set(0, size, timeUs, flags);
+                muxer.writeSampleData(outTrack, buffer, info);
+
+                if (listener != null && durationUs > 0 && timeUs - lastReportUs >= PROGRESS_INTERVAL_US) {
+                    lastReportUs = timeUs;
+                    listener.onProgress(Math.min(1f, (float) timeUs / durationUs));
+                }
+                if (!extractor.advance()) break;
+            }
+
+            muxer.stop();
+            muxerStarted = false;
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } catch (RuntimeException e) {
+            temp.delete();
+            throw new IOException("Remux failed: " + e.getMessage(), e);
+        } finally {
+            extractor.release();
+            if (muxer != null) {
+                try {
+                    if (muxerStarted) muxer.stop();
+                } catch (RuntimeException ignored) {
+                }
+                muxer.release();
+            }
+        }
+
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Cannot write " + output.getName());
+        }
+        if (listener != null) listener.onProgress(1f);
+    }
+
+    private int findAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) return i;
+        }
+        return -1;
+    }
+
+    private void ensureBufferCapacity(MediaFormat format) {
+        if (!format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) return;
+        int maxInput = format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE);
+        if (maxInput > buffer.capacity()) buffer = ByteBuffer.allocateDirect(maxInput);
+    }
+
+    /** 为 .m4s 生成同目录下不冲突的 .m4a 输出路径 */
+    static File outputFor(File input) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        File dir = input.getParentFile();
+        File output = new File(dir, base + ".m4a");
+        for (int i = 1; output.exists(); i++) {
+            output = new File(dir, base + " (" + i + ").m4a");
+        }
+        return output;
+    }
+}
@@ -0,0 +1,68 @@
+package com.otterhub.music;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.os.BatteryManager;
+
+/**
+ * 后台重计算任务的放行条件
+ * 正在播放音乐或电量低且未充电时暂停，条件解除后自动继续，避免与播放争抢 CPU 或耗电。
+ */
+final class BackgroundWorkGate {
+
+    interface CancelSignal {
+        boolean isCancelled();
+    }
+
+    /** 未充电时低于该电量百分比暂停 */
+    private static final int LOW_BATTERY_PERCENT = 20;
+    private static final long POLL_INTERVAL_MS = 3000;
+    /** 状态查询结果的缓存时长，避免每个解码块都查询系统服务 */
+    private static final long CHECK_CACHE_MS = 1000;
+
+    private final Context context;
+    private final AudioManager audioManager;
+    private volatile long checkedAt;
+    private volatile boolean blocked;
+
+    BackgroundWorkGate(Context context) {
+        this.context = context.getApplicationContext();
+        this.audioManager = (AudioManager) this.context.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    /**
+     * 条件不满足时阻塞等待
+     * @return false 表示等待期间被取消
+     */
+    boolean awaitAllowed(CancelSignal signal) throws InterruptedException {
+        while (!signal.isCancelled()) {
+            if (!isBlocked()) return true;
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return false;
+    }
+
+    boolean isBlocked() {
+        long now = System.currentTimeMillis();
+        if (now - checkedAt < CHECK_CACHE_MS) return blocked;
+        blocked = isPlaying() || isLowBattery();
+        checkedAt = now;
+        return blocked;
+    }
+
+    private boolean isPlaying() {
+        return audioManager != null && audioManager.isMusicActive();
+    }
+
+    private boolean isLowBattery() {
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) return false;
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+        return !charging && level >= 0 && scale > 0 && level * 100 / scale < LOW_BATTERY_PERCENT;
+    }
+}
@@ -1,12 +1,25 @@
 package com.otterhub.music;
 
+import android.content.Context;
+import android.net.Uri;
+
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.BindException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * B站音频代理插件
@@ -15,61 +28,152 @@ import java.io.IOException;
 @CapacitorPlugin(name = "BilibiliProxy")
 public class BilibiliProxyPlugin extends Plugin {
 
-    private static BilibiliProxyServer proxyServer;
     private static final Object lock = new Object();
+    /** 服务器启动结果；完成即代表已绑定端口、可以接受连接 */
+    private static CompletableFuture<BilibiliProxyServer> serverFuture;
+    private static final ExecutorService startExecutor = Executors.newSingleThreadExecutor();
+    private static volatile ProxyStats.Listener streamListener;
+    /** 代理流与下载任务共用的带宽调度器 */
+    private static final ProxyBandwidthScheduler scheduler = new ProxyBandwidthScheduler();
+    private static final int DEFAULT_DOWNLOAD_CONNECTIONS = 4;
+    /** 上次绑定的端口，重启时优先沿用，已交给播放器的本地地址不会失效 */
+    private static int lastPort = -1;
+    /** 本地曲目的打开方式，由 LocalMusicPlugin 设置，服务器重启后沿用 */
+    private static LocalChannelPool.Opener localOpener;
 
-    @PluginMethod
-    public void startServer(PluginCall call) {
+    private final ExecutorService downloadExecutor = Executors.newFixedThreadPool(3);
+    private final Map<String, SegmentedDownloader> downloads = new ConcurrentHashMap<>();
+
+    @Override
+    public void load() {
+        streamListener = this::emitStreamFinished;
+    }
+
+    /**
+     * 确保代理服务器已启动，启动在后台线程进行，不阻塞调用方
+     * 依次尝试上次的端口、默认端口与系统分配的临时端口
+     */
+    static CompletableFuture<BilibiliProxyServer> ensureServer(Context context) {
         synchronized (lock) {
-            if (proxyServer != null && proxyServer.isAlive()) {
-                // 服务器已在运行
-                JSObject result = new JSObject();
-                result.put("success", true);
-                result.put("port", proxyServer.getListeningPort());
-                call.resolve(result);
-                return;
+            if (serverFuture != null) {
+                BilibiliProxyServer running = serverFuture.getNow(null);
+                boolean failed = serverFuture.isCompletedExceptionally();
+                if (!serverFuture.isDone() || (!failed && running != null && running.isAlive())) {
+                    return serverFuture;
+                }
             }
 
-            try {
-                proxyServer = new BilibiliProxyServer();
-                proxyServer.start();
-
-                // 等待服务器启动
-                int retries = 0;
-                while (!proxyServer.isAlive() && retries < 50) {
-                    Thread.sleep(100);
-                    retries++;
+            // 流缓存需跨重启保留且含固定曲目，放在不会被系统清理的 filesDir
+            File cacheDir = new File(context.getFilesDir(), "proxy-stream-cache");
+            File legacyDir = new File(context.getCacheDir(), "bilibili-proxy");
+            CompletableFuture<BilibiliProxyServer> future = new CompletableFuture<>();
+            serverFuture = future;
+            startExecutor.execute(() -> {
+                try {
+                    deleteLegacyCache(legacyDir);
+                    future.complete(startServerOnFreePort(cacheDir));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
                 }
+            });
+            return future;
+        }
+    }
 
-                if (proxyServer.isAlive()) {
-                    JSObject result = new JSObject();
-                    result.put("success", true);
-                    result.put("port", proxyServer.getListeningPort());
-                    call.resolve(result);
-                } else {
-                    call.reject("Server failed to start");
-                }
-            } catch (IOException e) {
-                call.reject("Failed to start server: " + e.getMessage());
-            } catch (InterruptedException e) {
-                call.reject("Server start interrupted");
+    private static BilibiliProxyServer startServerOnFreePort(File cacheDir) throws IOException {
+        int preferred;
+        LocalChannelPool.Opener opener;
+        synchronized (lock) {
+            preferred = lastPort;
+            opener = localOpener;
+        }
+        BilibiliProxyServer server = null;
+        for (int port : new int[]{preferred, BilibiliProxyServer.DEFAULT_PORT}) {
+            if (port <= 0 || server != null) continue;
+            BilibiliProxyServer candidate = new BilibiliProxyServer(port, cacheDir);
+            try {
+                candidate.start();
+                server = candidate;
+            } catch (BindException e) {
+                // 端口被占用，尝试下一个
             }
         }
+        if (server == null) {
+            server = new BilibiliProxyServer(0, cacheDir);
+            server.start();
+        }
+        synchronized (lock) {
+            lastPort = server.getListeningPort();
+        }
+        if (opener != null) server.setLocalOpener(opener);
+        server.setScheduler(scheduler);
+        server.getStats().setListener(stream -> {
+            ProxyStats.Listener listener = streamListener;
+            if (listener != null) listener.onStreamFinished(stream);
+        });
+        return server;
     }
 
-    @PluginMethod
-    public void stopServer(PluginCall call) {
+    /** 旧版会话级缓存目录，内容在新版本中不再使用 */
+    private static void deleteLegacyCache(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    /** 设置本地曲目的打开方式，对运行中与之后启动的服务器都生效 */
+    static void setLocalOpener(LocalChannelPool.Opener opener) {
+        BilibiliProxyServer server;
+        synchronized (lock) {
+            localOpener = opener;
+            server = serverFuture != null ? serverFuture.getNow(null) : null;
+        }
+        if (server != null) server.setLocalOpener(opener);
+    }
+
+    /** 已启动完成的服务器，未启动或启动中返回 null */
+    static BilibiliProxyServer runningServer() {
         synchronized (lock) {
-            if (proxyServer != null) {
-                proxyServer.stop();
-                proxyServer = null;
+            if (serverFuture == null || !serverFuture.isDone() || serverFuture.isCompletedExceptionally()) return null;
+            BilibiliProxyServer server = serverFuture.getNow(null);
+            return server != null && server.isAlive() ? server : null;
+        }
+    }
+
+    @PluginMethod
+    public void startServer(PluginCall call) {
+        ensureServer(getContext()).whenComplete((server, error) -> {
+            if (error != null) {
+                call.reject("Failed to start server: " + rootMessage(error));
+                return;
             }
             JSObject result = new JSObject();
             result.put("success", true);
+            result.put("port", server.getListeningPort());
             call.resolve(result);
+        });
+    }
+
+    @PluginMethod
+    public void stopServer(PluginCall call) {
+        CompletableFuture<BilibiliProxyServer> future;
+        synchronized (lock) {
+            future = serverFuture;
+            serverFuture = null;
         }
+        if (future != null) {
+            // 启动中的服务器在就绪后立即停止
+            future.thenAccept(BilibiliProxyServer::stop);
+        }
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
     }
 
+    /**
+     * 获取代理URL；服务器未启动时先在后台启动，就绪后再返回
+     */
     @PluginMethod
     public void getProxyUrl(PluginCall call) {
         String audioUrl = call.getString("audioUrl");
@@ -80,13 +184,13 @@ public class BilibiliProxyPlugin extends Plugin {
             return;
         }
 
-        synchronized (lock) {
-            if (proxyServer == null || !proxyServer.isAlive()) {
-                call.reject("Proxy server not running");
+        ensureServer(getContext()).whenComplete((server, error) -> {
+            if (error != null) {
+                call.reject("Proxy server not running: " + rootMessage(error));
                 return;
             }
 
-            String proxyUrl = proxyServer.getProxyUrl(audioUrl, bvid);
+            String proxyUrl = server.getProxyUrl(audioUrl, bvid);
             if (proxyUrl != null) {
                 JSObject result = new JSObject();
                 result.put("success", true);
@@ -95,19 +199,254 @@ public class BilibiliProxyPlugin extends Plugin {
             } else {
                 call.reject("Failed to generate proxy URL");
             }
-        }
+        });
     }
 
     @PluginMethod
     public void isRunning(PluginCall call) {
-        synchronized (lock) {
-            boolean running = proxyServer != null && proxyServer.isAlive();
-            JSObject result = new JSObject();
-            result.put("running", running);
-            if (running) {
-                result.put("port", proxyServer.getListeningPort());
-            }
+        BilibiliProxyServer server = runningServer();
+        JSObject result = new JSObject();
+        result.put("running", server != null);
+        if (server != null) {
+            result.put("port", server.getListeningPort());
+        }
+        call.resolve(result);
+    }
+
+    /**
+     * 上报当前播放状态与已缓冲秒数，供带宽调度判断播放流是否缺数据
+     */
+    @PluginMethod
+    public void reportPlaybackBuffer(PluginCall call) {
+        Double bufferedSeconds = call.getDouble("bufferedSeconds");
+        if (bufferedSeconds == null) {
+            call.reject("Missing bufferedSeconds parameter");
+            return;
+        }
+        scheduler.reportPlayback(Boolean.TRUE.equals(call.getBoolean("playing", true)), bufferedSeconds);
+        call.resolve(new JSObject().put("level", scheduler.getLevel().name().toLowerCase(Locale.ROOT)));
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage();
+    }
+
+    /**
+     * 固定 bvid 的缓存，不再被淘汰；尚未缓存的在下次完整播放后受保护
+     */
+    @PluginMethod
+    public void pinStream(PluginCall call) {
+        withCache(call, (server, cache, bvid) -> {
+            boolean cached = cache.pin(bvid);
+            call.resolve(new JSObject().put("success", true).put("cached", cached));
+        });
+    }
+
+    @PluginMethod
+    public void unpinStream(PluginCall call) {
+        withCache(call, (server, cache, bvid) -> {
+            cache.unpin(bvid);
+            call.resolve(new JSObject().put("success", true));
+        });
+    }
+
+    /**
+     * 上游不可达时的离线播放地址；该 bvid 没有完整缓存时 success 为 false
+     */
+    @PluginMethod
+    public void getCachedStreamUrl(PluginCall call) {
+        withCache(call, (server, cache, bvid) -> {
+            ProxyStreamCache.Entry entry = cache.latest(bvid);
+            String url = entry != null ? server.getCachedUrl(bvid) : null;
+            JSObject result = new JSObject().put("success", url != null);
+            if (url != null) result.put("url", url).put("contentType", entry.contentType);
             call.resolve(result);
+        });
+    }
+
+    /**
+     * 流缓存占用：总字节数、固定部分字节数、未固定部分的上限与已固定的 bvid
+     */
+    @PluginMethod
+    public void getCacheSize(PluginCall call) {
+        ensureServer(getContext()).whenComplete((server, error) -> {
+            ProxyStreamCache cache = error == null ? server.getCache() : null;
+            if (cache == null) {
+                call.reject("Stream cache unavailable");
+                return;
+            }
+            JSArray pinned = new JSArray();
+            for (String bvid : cache.getPinned()) pinned.put(bvid);
+            call.resolve(new JSObject()
+                    .put("totalBytes", cache.getTotalBytes())
+                    .put("pinnedBytes", cache.getPinnedBytes())
+                    .put("maxBytes", cache.getMaxBytes())
+                    .put("entries", cache.size())
+                    .put("pinned", pinned));
+        });
+    }
+
+    private interface CacheAction {
+        void run(BilibiliProxyServer server, ProxyStreamCache cache, String bvid);
+    }
+
+    /** 读取 bvid 参数，服务器就绪后在其流缓存上执行操作 */
+    private void withCache(PluginCall call, CacheAction action) {
+        String bvid = call.getString("bvid");
+        if (bvid == null) {
+            call.reject("Missing bvid parameter");
+            return;
+        }
+        ensureServer(getContext()).whenComplete((server, error) -> {
+            ProxyStreamCache cache = error == null ? server.getCache() : null;
+            if (cache == null) {
+                call.reject("Stream cache unavailable");
+                return;
+            }
+            action.run(server, cache, bvid);
+        });
+    }
+
+    /**
+     * 分段并行下载B站音频到本地文件，完成后 resolve；期间推送 downloadProgress 事件
+     * 同一目标路径再次下载时从上次中断处续传
+     */
+    @PluginMethod
+    public void downloadFile(PluginCall call) {
+        String audioUrl = call.getString("audioUrl");
+        String bvid = call.getString("bvid");
+        String path = call.getString("path");
+
+        if (audioUrl == null || bvid == null || path == null) {
+            call.reject("Missing audioUrl, bvid or path parameter");
+            return;
+        }
+
+        String filePath = path.startsWith("file://") ? Uri.parse(path).getPath() : path;
+        if (filePath == null) {
+            call.reject("Invalid path: " + path);
+            return;
+        }
+        String downloadId = call.getString("downloadId", filePath);
+        int connections = call.getInt("connections", DEFAULT_DOWNLOAD_CONNECTIONS);
+
+        SegmentedDownloader downloader = new SegmentedDownloader(audioUrl, bvid, new File(filePath), connections);
+        downloader.setScheduler(scheduler);
+        if (downloads.putIfAbsent(downloadId, downloader) != null) {
+            call.reject("Download already in progress: " + downloadId);
+            return;
         }
+
+        downloadExecutor.execute(() -> {
+            try {
+                long bytes = downloader.run((downloaded, total) -> notifyListeners("downloadProgress", new JSObject()
+                        .put("downloadId", downloadId)
+                        .put("bytes", downloaded)
+                        .put("contentLength", total)));
+                call.resolve(new JSObject()
+                        .put("success", true)
+                        .put("downloadId", downloadId)
+                        .put("path", filePath)
+                        .put("bytes", bytes)
+                        .put("resumed", downloader.isResumed()));
+            } catch (IOException e) {
+                call.reject("Download failed: " + e.getMessage());
+            } finally {
+                downloads.remove(downloadId);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void cancelDownload(PluginCall call) {
+        String downloadId = call.getString("downloadId");
+        SegmentedDownloader downloader = downloadId != null ? downloads.get(downloadId) : null;
+        if (downloader != null) downloader.cancel();
+        call.resolve(new JSObject().put("success", downloader != null));
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        for (SegmentedDownloader downloader : downloads.values()) downloader.cancel();
+        downloadExecutor.shutdownNow();
+        super.handleOnDestroy();
+    }
+
+    /**
+     * 获取代理统计：聚合指标、进行中的流与最近结束的流
+     */
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        BilibiliProxyServer proxyServer = runningServer();
+        if (proxyServer == null) {
+            call.resolve(new JSObject().put("running", false));
+            return;
+        }
+
+        ProxyStats stats = proxyServer.getStats();
+        JSObject codes = new JSObject();
+        for (Map.Entry<Integer, Long> e : stats.getResponseCodes().entrySet()) {
+            codes.put(String.valueOf(e.getKey()), e.getValue());
+        }
+        JSArray activeStreams = new JSArray();
+        for (ProxyStats.Stream s : stats.getActiveStreamList()) activeStreams.put(streamToJs(s));
+        JSArray recentStreams = new JSArray();
+        for (ProxyStats.Stream s : stats.getRecentStreams()) recentStreams.put(streamToJs(s));
+
+        JSObject result = new JSObject()
+                .put("running", proxyServer.isAlive())
+                .put("activeConnections", proxyServer.getActiveWorkerCount())
+                .put("queuedRequests", proxyServer.getQueuedRequestCount())
+                .put("activeStreams", stats.getActiveStreams())
+                .put("totalStreams", stats.getTotalStreams())
+                .put("abortedStreams", stats.getAbortedStreams())
+                .put("bytesFromUpstream", stats.getBytesFromUpstream())
+                .put("bytesFromCache", stats.getBytesFromCache())
+                .put("cacheBytes", proxyServer.getCacheBytes())
+                .put("avgConnectMs", stats.getAvgConnectMs())
+                .put("avgTtfbMs", stats.getAvgTtfbMs())
+                .put("responseCodes", codes)
+                .put("scheduler", schedulerToJs())
+                .put("active", activeStreams)
+                .put("recent", recentStreams);
+        if (Boolean.TRUE.equals(call.getBoolean("reset", false))) stats.reset();
+        call.resolve(result);
+    }
+
+    /** 每条流结束时推送 proxyStream 事件，无监听者时跳过 */
+    private void emitStreamFinished(ProxyStats.Stream stream) {
+        if (hasListeners("proxyStream")) {
+            notifyListeners("proxyStream", streamToJs(stream));
+        }
+    }
+
+    private static JSObject schedulerToJs() {
+        JSObject active = new JSObject();
+        for (ProxyBandwidthScheduler.Priority p : ProxyBandwidthScheduler.Priority.values()) {
+            active.put(p.key(), scheduler.getActiveCount(p));
+        }
+        return new JSObject()
+                .put("level", scheduler.getLevel().name().toLowerCase(Locale.ROOT))
+                .put("bufferedSeconds", scheduler.getBufferedSeconds())
+                .put("throttledMs", scheduler.getThrottledMs())
+                .put("active", active);
+    }
+
+    private JSObject streamToJs(ProxyStats.Stream stream) {
+        return new JSObject()
+                .put("id", stream.id)
+                .put("bvid", stream.bvid)
+                .put("range", stream.range)
+                .put("source", stream.getSource() == ProxyStats.Source.CACHE ? "cache" : "upstream")
+                .put("startedAt", stream.startedAt)
+                .put("connectMs", stream.getConnectMs())
+                .put("ttfbMs", stream.getTtfbMs())
+                .put("bytes", stream.getBytes())
+                .put("durationMs", stream.getDurationMs())
+                .put("bytesPerSec", stream.getBytesPerSecond())
+                .put("responseCode", stream.getResponseCode())
+                .put("aborted", stream.isAborted())
+                .put("finished", stream.isFinished());
     }
 }
@@ -1,83 +1,222 @@
 package com.otterhub.music;
 
-import fi.iki.elonen.NanoHTTPD;
-import fi.iki.elonen.NanoHTTPD.IHTTPSession;
-import fi.iki.elonen.NanoHTTPD.Response;
-import fi.iki.elonen.NanoHTTPD.Response.Status;
-
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * 本地HTTP代理服务器，用于B站音频流式播放
  * 将带Referer等header的B站请求转换为本地可播放的URL
  */
-public class BilibiliProxyServer extends NanoHTTPD {
+public class BilibiliProxyServer extends LocalHttpServer {
 
-    private static final int DEFAULT_PORT = 8765;
+    static final int DEFAULT_PORT = 8765;
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+    private static final long CACHE_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String FILES_PATH = "/files";
+    private static final String LOCAL_PATH = "/local";
+    /** 同时保持打开的本地曲目通道数与空闲关闭时间 */
+    private static final int LOCAL_MAX_OPEN = 4;
+    private static final long LOCAL_IDLE_MS = 30_000;
+    /** 本地曲目令牌的签名密钥，进程内固定，服务器重启后旧地址仍可校验 */
+    private static final byte[] LOCAL_TOKEN_KEY = new byte[32];
+    private static final int LOCAL_SIGNATURE_BYTES = 16;
+
+    static {
+        new SecureRandom().nextBytes(LOCAL_TOKEN_KEY);
+    }
+
+    private static final class PublishedFile {
+        final File file;
+        final String contentType;
+
+        PublishedFile(File file, String contentType) {
+            this.file = file;
+            this.contentType = contentType;
+        }
+    }
+
+    private static final class PublishedLocal {
+        final String localPath;
+        final String contentType;
+
+        PublishedLocal(String localPath, String contentType) {
+            this.localPath = localPath;
+            this.contentType = contentType;
+        }
+    }
+
+    private final ProxyStreamCache cache;
+    private final ProxyStats stats = new ProxyStats();
+    /** 令牌 -> 已发布文件；name -> 当前令牌，同名重新发布时旧令牌失效 */
+    private final Map<String, PublishedFile> publishedFiles = new ConcurrentHashMap<>();
+    private final Map<String, String> publishedTokens = new ConcurrentHashMap<>();
+    private volatile LocalChannelPool localChannels;
+    private volatile ProxyBandwidthScheduler scheduler = new ProxyBandwidthScheduler();
 
     public BilibiliProxyServer() {
-        super(DEFAULT_PORT);
+        this(DEFAULT_PORT, null);
     }
 
     public BilibiliProxyServer(int port) {
+        this(port, null);
+    }
+
+    public BilibiliProxyServer(File cacheDir) {
+        this(DEFAULT_PORT, cacheDir);
+    }
+
+    /**
+     * @param cacheDir 流缓存目录，为 null 时不缓存
+     */
+    public BilibiliProxyServer(int port, File cacheDir) {
         super(port);
+        this.cache = cacheDir != null ? new ProxyStreamCache(cacheDir, CACHE_MAX_BYTES) : null;
     }
 
     @Override
-    public Response serve(IHTTPSession session) {
-        String uri = session.getUri();
-        Map<String, String> params = session.getParms();
-
-        // 只处理/proxy路径
-        if (!"/proxy".equals(uri)) {
-            return newFixedLengthResponse(Status.NOT_FOUND, "text/plain", "Not Found");
+    protected void serve(Request request, Response response) throws IOException {
+        if (FILES_PATH.equals(request.uri)) {
+            servePublishedFile(request, response);
+            return;
+        }
+        if (LOCAL_PATH.equals(request.uri)) {
+            serveLocal(request, response);
+            return;
+        }
+        // 其余只处理/proxy路径
+        if (!"/proxy".equals(request.uri)) {
+            response.sendText(404, "Not Found");
+            return;
         }
 
-        String audioUrl = params.get("url");
-        String bvid = params.get("bvid");
+        String audioUrl = request.params.get("url");
+        String bvid = request.params.get("bvid");
+        String rangeHeader = request.getHeader("range");
 
+        // 只带 bvid 的离线地址：直接返回该 bvid 已缓存的流
+        if (audioUrl == null && bvid != null && cache != null) {
+            ProxyStreamCache.Entry offline = cache.latest(bvid);
+            if (offline != null) {
+                serveCached(offline, bvid, rangeHeader, request, response);
+                return;
+            }
+        }
         if (audioUrl == null || bvid == null) {
-            return newFixedLengthResponse(Status.BAD_REQUEST, "text/plain", "Missing url or bvid parameter");
+            response.sendText(400, "Missing url or bvid parameter");
+            return;
+        }
+
+        if (cache != null) {
+            ProxyStreamCache.Entry cached = cache.get(ProxyStreamCache.keyFor(audioUrl, bvid));
+            if (cached != null) {
+                serveCached(cached, bvid, rangeHeader, request, response);
+                return;
+            }
+        }
+
+        ProxyStats.Stream stream = stats.begin(bvid, rangeHeader, ProxyStats.Source.UPSTREAM);
+        boolean completed = false;
+        ProxyStreamCache.Entry fallback = null;
+        try (ProxyBandwidthScheduler.Ticket ticket = scheduler.open(ProxyBandwidthScheduler.Priority.PLAYING)) {
+            proxyBilibiliAudio(audioUrl, bvid, request, response, stream, ticket);
+            completed = true;
+        } catch (IOException e) {
+            if (response.isCommitted()) throw e;
+            // 上游不可达时回退到该 bvid 已缓存的流（可能是其他音质）
+            fallback = cache != null ? cache.latest(bvid) : null;
+            if (fallback == null) {
+                stream.setResponseCode(500);
+                response.setKeepAlive(false);
+                response.sendText(500, "Proxy error: " + e.getMessage());
+            }
+        } finally {
+            stream.end(completed);
         }
+        if (fallback != null) serveCached(fallback, bvid, rangeHeader, request, response);
+    }
 
+    private void serveCached(ProxyStreamCache.Entry entry, String bvid, String rangeHeader, Request request,
+                             Response response) throws IOException {
+        ProxyStats.Stream stream = stats.begin(bvid, rangeHeader, ProxyStats.Source.CACHE);
+        boolean completed = false;
         try {
-            return proxyBilibiliAudio(audioUrl, bvid, session);
-        } catch (Exception e) {
-            return newFixedLengthResponse(Status.INTERNAL_ERROR, "text/plain", "Proxy error: " + e.getMessage());
+            sendFile(entry.file, entry.length, entry.contentType, request, response, stream);
+            completed = true;
+        } finally {
+            stream.end(completed);
         }
     }
 
-    private Response proxyBilibiliAudio(String audioUrl, String bvid, IHTTPSession session) throws IOException {
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        if (cache != null) cache.flush();
+        LocalChannelPool pool = localChannels;
+        if (pool != null) pool.close();
+    }
+
+    public ProxyStats getStats() {
+        return stats;
+    }
+
+    public ProxyBandwidthScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /** 与下载任务共用同一个调度器，使下载同样让位于播放 */
+    public void setScheduler(ProxyBandwidthScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /** 已缓存的音频总字节数 */
+    public long getCacheBytes() {
+        return cache != null ? cache.getTotalBytes() : 0;
+    }
+
+    /** 流缓存，构造时未指定缓存目录则为 null */
+    public ProxyStreamCache getCache() {
+        return cache;
+    }
+
+    private void proxyBilibiliAudio(String audioUrl, String bvid, Request request, Response response,
+                                    ProxyStats.Stream stream, ProxyBandwidthScheduler.Ticket ticket) throws IOException {
         URL url = new URL(audioUrl);
-        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
 
+        ProxyStreamCache.Writer cacheWriter = null;
+        boolean completed = false;
         try {
             // 设置请求方法
-            String method = session.getMethod().name();
-            connection.setRequestMethod(method);
+            connection.setRequestMethod(request.method);
 
             // 透传Range请求头
-            Map<String, String> headers = session.getHeaders();
-            String rangeHeader = headers.get("range");
+            String rangeHeader = request.getHeader("range");
             if (rangeHeader != null) {
                 connection.setRequestProperty("Range", rangeHeader);
             }
 
             // 设置B站必需的header
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            connection.setRequestProperty("Referer", "https://www.bilibili.com/video/" + bvid);
-            connection.setRequestProperty("Origin", "https://www.bilibili.com");
+            applyBilibiliHeaders(connection, bvid);
 
             // 透传其他相关header
             String[] headersToPass = {"Accept", "Accept-Encoding", "Accept-Language", "Connection"};
             for (String h : headersToPass) {
-                String val = headers.get(h.toLowerCase());
+                String val = request.getHeader(h);
                 if (val != null) {
                     connection.setRequestProperty(h, val);
                 }
@@ -89,48 +228,16 @@ public class BilibiliProxyServer extends NanoHTTPD {
             connection.setDoOutput(false);
 
             connection.connect();
+            stream.markConnected();
 
             int responseCode = connection.getResponseCode();
+            stream.setResponseCode(responseCode);
             String contentType = connection.getContentType();
             long contentLength = connection.getContentLengthLong();
 
-            InputStream inputStream;
-            if (responseCode >= 200 && responseCode < 300) {
-                inputStream = connection.getInputStream();
-            } else {
-                inputStream = connection.getErrorStream();
-            }
-
-            // 包装 InputStream：当流关闭时断开连接
-            final InputStream stream = inputStream;
-            InputStream wrappedStream = new InputStream() {
-                @Override
-                public int read() throws IOException { return stream.read(); }
-                @Override
-                public int read(byte[] b, int off, int len) throws IOException { return stream.read(b, off, len); }
-                @Override
-                public void close() throws IOException {
-                    try { stream.close(); } finally { connection.disconnect(); }
-                }
-                @Override
-                public int available() throws IOException { return stream.available(); }
-            };
-
-            Response response;
-            if (contentLength > 0) {
-                response = newFixedLengthResponse(
-                    Status.lookup(responseCode),
-                    contentType,
-                    wrappedStream,
-                    contentLength
-                );
-            } else {
-                response = newChunkedResponse(
-                    Status.lookup(responseCode),
-                    contentType,
-                    wrappedStream
-                );
-            }
+            InputStream inputStream = responseCode >= 200 && responseCode < 300
+                    ? connection.getInputStream()
+                    : connection.getErrorStream();
 
             // 透传关键响应头到客户端
             String[] headersToPassBack = {"Content-Range", "Accept-Ranges", "ETag", "Last-Modified", "Cache-Control"};
@@ -140,25 +247,289 @@ public class BilibiliProxyServer extends NanoHTTPD {
                     response.addHeader(h, val);
                 }
             }
+            addCorsHeaders(response);
 
-            // 添加CORS头
-            response.addHeader("Access-Control-Allow-Origin", "*");
-            response.addHeader("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges");
+            if (inputStream == null) {
+                response.sendHeaders(responseCode, contentType, 0);
+                completed = true;
+                return;
+            }
 
-            return response;
-        } catch (Exception e) {
+            if (cache != null && !request.isHead()) {
+                long total = resolveCacheableLength(responseCode, contentLength, connection.getHeaderField("Content-Range"));
+                if (total > 0) {
+                    cacheWriter = cache.openWriter(ProxyStreamCache.keyFor(audioUrl, bvid), bvid, contentType, total);
+                }
+            }
+
+            response.sendHeaders(responseCode, contentType, contentLength > 0 ? contentLength : -1);
+
+            try (InputStream body = inputStream) {
+                byte[] buffer = ioBuffer();
+                int read;
+                while ((read = body.read(buffer, 0, buffer.length)) >= 0) {
+                    if (read == 0) continue;
+                    ticket.acquire(read);
+                    response.write(buffer, 0, read);
+                    stream.addBytes(read);
+                    if (cacheWriter != null) cacheWriter.write(buffer, 0, read);
+                }
+            }
+            completed = true;
+        } finally {
+            if (cacheWriter != null) cacheWriter.close(completed);
             connection.disconnect();
-            throw e;
         }
     }
 
+    /**
+     * 仅当响应覆盖整个资源时才旁路缓存：200，或从 0 开始到末尾的 206
+     * @return 资源总长度，不可缓存时返回 -1
+     */
+    private long resolveCacheableLength(int responseCode, long contentLength, String contentRange) {
+        if (contentLength <= 0) return -1;
+        if (responseCode == 200) return contentLength;
+        if (responseCode != 206 || contentRange == null) return -1;
+
+        // Content-Range: bytes 0-12345/12346
+        String value = contentRange.trim();
+        if (!value.startsWith("bytes ")) return -1;
+        int dash = value.indexOf('-');
+        int slash = value.indexOf('/');
+        if (dash < 0 || slash < dash) return -1;
+        try {
+            long start = Long.parseLong(value.substring(6, dash).trim());
+            long end = Long.parseLong(value.substring(dash + 1, slash).trim());
+            long total = Long.parseLong(value.substring(slash + 1).trim());
+            return start == 0 && end == total - 1 && contentLength == total ? total : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 发布本地文件，供 WebView 直接 fetch，绕开插件桥的 JSON 序列化
+     * @param name 发布名，同名再次发布时旧链接失效
+     * @return 形如 http://127.0.0.1:port/files?token=... 的地址
+     */
+    public String publishFile(String name, File file, String contentType) {
+        String token = UUID.randomUUID().toString().replace("-", "");
+        publishedFiles.put(token, new PublishedFile(file, contentType));
+        String previous = publishedTokens.put(name, token);
+        if (previous != null) publishedFiles.remove(previous);
+        return "http://127.0.0.1:" + getListeningPort() + FILES_PATH + "?token=" + token;
+    }
+
+    private void servePublishedFile(Request request, Response response) throws IOException {
+        String token = request.params.get("token");
+        PublishedFile published = token != null ? publishedFiles.get(token) : null;
+        if (published == null || !published.file.isFile()) {
+            addCorsHeaders(response);
+            response.sendText(404, "Not Found");
+            return;
+        }
+        response.addHeader("Cache-Control", "no-store");
+        sendFile(published.file, published.file.length(), published.contentType, request, response, null);
+    }
+
+    /**
+     * 设置本地曲目的打开方式（普通文件或 content URI），之后才能发布本地曲目
+     */
+    public synchronized void setLocalOpener(LocalChannelPool.Opener opener) {
+        LocalChannelPool previous = localChannels;
+        localChannels = new LocalChannelPool(opener, LOCAL_MAX_OPEN, LOCAL_IDLE_MS);
+        if (previous != null) previous.close();
+    }
+
+    /**
+     * 发布本地曲目供播放器按 Range 读取
+     * 令牌自带路径与类型并以进程内密钥签名，服务器不保存发布记录；同一曲目始终是同一地址，
+     * 服务器在同一端口重启后旧地址仍然有效。
+     * @return 形如 http://127.0.0.1:port/local?token=... 的地址，未设置打开方式时为 null
+     */
+    public String publishLocal(String localPath, String contentType) {
+        if (localChannels == null) return null;
+        byte[] payload = ((contentType != null ? contentType : "") + "\n" + localPath).getBytes(StandardCharsets.UTF_8);
+        String token = toHex(payload) + toHex(sign(payload));
+        return "http://127.0.0.1:" + getListeningPort() + LOCAL_PATH + "?token=" + token;
+    }
+
+    /** 校验令牌签名并取回曲目，无效时返回 null */
+    private static PublishedLocal parseLocalToken(String token) {
+        int signatureLength = LOCAL_SIGNATURE_BYTES * 2;
+        if (token == null || token.length() <= signatureLength || token.length() % 2 != 0) return null;
+        byte[] payload = fromHex(token.substring(0, token.length() - signatureLength));
+        byte[] signature = fromHex(token.substring(token.length() - signatureLength));
+        if (payload == null || signature == null || !MessageDigest.isEqual(signature, sign(payload))) return null;
+        String value = new String(payload, StandardCharsets.UTF_8);
+        int newline = value.indexOf('\n');
+        if (newline < 0) return null;
+        String contentType = value.substring(0, newline);
+        return new PublishedLocal(value.substring(newline + 1), contentType.isEmpty() ? null : contentType);
+    }
+
+    private static byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(LOCAL_TOKEN_KEY, "HmacSHA256"));
+            byte[] digest = mac.doFinal(payload);
+            byte[] truncated = new byte[LOCAL_SIGNATURE_BYTES];
+            System.arraycopy(digest, 0, truncated, 0, truncated.length);
+            return truncated;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) sb.append(String.format("%02x", b & 0xFF));
+        return sb.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) return null;
+            data[i] = (byte) (high << 4 | low);
+        }
+        return data;
+    }
+
+    /** 本地文件被改写或删除后调用，关闭复用中的旧通道 */
+    public void invalidateLocal(String localPath) {
+        LocalChannelPool pool = localChannels;
+        if (pool != null) pool.invalidate(localPath);
+    }
+
+    private void serveLocal(Request request, Response response) throws IOException {
+        PublishedLocal published = parseLocalToken(request.params.get("token"));
+        LocalChannelPool pool = localChannels;
+        if (published == null || pool == null) {
+            addCorsHeaders(response);
+            response.sendText(404, "Not Found");
+            return;
+        }
+        LocalChannelPool.Lease lease;
+        try {
+            lease = pool.acquire(published.localPath);
+        } catch (IOException e) {
+            addCorsHeaders(response);
+            response.sendText(404, "Not Found");
+            return;
+        }
+        try {
+            FileChannel channel = lease.channel();
+            sendChannel(channel, channel.size(), published.contentType, request, response, null);
+        } finally {
+            lease.close();
+        }
+    }
+
+    /**
+     * 返回文件完整内容或 Range 区间
+     * @param stream 统计记录，不需要统计时为 null
+     */
+    private void sendFile(File file, long total, String contentType, Request request, Response response,
+                          ProxyStats.Stream stream) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            sendChannel(channel, total, contentType, request, response, stream);
+        }
+    }
+
+    /** 正文通过 transferTo 零拷贝写出；HEAD 请求只发送响应头 */
+    private void sendChannel(FileChannel channel, long total, String contentType, Request request,
+                             Response response, ProxyStats.Stream stream) throws IOException {
+        response.addHeader("Accept-Ranges", "bytes");
+        addCorsHeaders(response);
+
+        String rangeHeader = request.getHeader("range");
+        if (rangeHeader == null) {
+            if (stream != null) stream.setResponseCode(200);
+            response.sendHeaders(200, contentType, total);
+            if (stream != null) stream.markFirstByte();
+            response.transferFrom(channel, 0, total);
+            if (stream != null) stream.addBytes(total);
+            return;
+        }
+
+        long[] range = parseRange(rangeHeader, total);
+        if (range == null) {
+            if (stream != null) stream.setResponseCode(416);
+            response.addHeader("Content-Range", "bytes */" + total);
+            response.sendHeaders(416, "text/plain", 0);
+            return;
+        }
+        long length = range[1] - range[0] + 1;
+        response.addHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + total);
+        if (stream != null) stream.setResponseCode(206);
+        response.sendHeaders(206, contentType, length);
+        if (stream != null) stream.markFirstByte();
+        response.transferFrom(channel, range[0], length);
+        if (stream != null) stream.addBytes(length);
+    }
+
+    /**
+     * 解析单区间 Range 头（bytes=a-b / bytes=a- / bytes=-n）
+     * @return [start, end]（闭区间），无法满足时返回 null
+     */
+    static long[] parseRange(String header, long total) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) return null;
+        value = value.substring(6).trim();
+        int dash = value.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String startPart = value.substring(0, dash).trim();
+            String endPart = value.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (startPart.isEmpty()) {
+                long suffix = Long.parseLong(endPart);
+                if (suffix <= 0) return null;
+                start = Math.max(0, total - suffix);
+                end = total - 1;
+            } else {
+                start = Long.parseLong(startPart);
+                end = endPart.isEmpty() ? total - 1 : Math.min(Long.parseLong(endPart), total - 1);
+            }
+            if (start < 0 || start >= total || end < start) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** 设置B站 CDN 必需的 User-Agent / Referer / Origin */
+    static void applyBilibiliHeaders(HttpURLConnection connection, String bvid) {
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setRequestProperty("Referer", "https://www.bilibili.com/video/" + bvid);
+        connection.setRequestProperty("Origin", "https://www.bilibili.com");
+    }
+
+    private void addCorsHeaders(Response response) {
+        response.addHeader("Access-Control-Allow-Origin", "*");
+        response.addHeader("Access-Control-Expose-Headers", "Content-Length, Content-Range, Accept-Ranges");
+    }
+
+    /**
+     * 只带 bvid 的离线播放地址，返回该 bvid 已缓存的流；没有缓存时返回 null
+     */
+    public String getCachedUrl(String bvid) {
+        if (cache == null || !cache.isCached(bvid)) return null;
+        return "http://127.0.0.1:" + getListeningPort() + "/proxy?bvid=" + bvid;
+    }
+
     /**
      * 获取本地代理URL
      */
     public String getProxyUrl(String audioUrl, String bvid) {
         try {
             String encodedUrl = java.net.URLEncoder.encode(audioUrl, "UTF-8");
-            return "http://localhost:" + getListeningPort() + "/proxy?url=" + encodedUrl + "&bvid=" + bvid;
+            return "http://127.0.0.1:" + getListeningPort() + "/proxy?url=" + encodedUrl + "&bvid=" + bvid;
         } catch (Exception e) {
             return null;
         }
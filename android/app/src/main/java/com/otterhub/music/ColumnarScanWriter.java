@@ -0,0 +1,167 @@
+package com.otterhub.music;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 扫描结果的列式二进制编码，WebView 侧可直接映射为 TypedArray
+ * 所有字符串去重后存入一张字符串表，各列只存下标；数值列按类型连续存放并保持自然对齐。小端序布局：
+ * <pre>
+ * 头部 24 字节: magic "OTSC" | version u32 | rows u32 | strings u32 | stringBytes u32 | 保留 u32
+ * f64[rows] × 3: duration, fileSize, modifiedTime
+ * f32[rows] × 2: loudnessLufs, peak（未分析为 NaN）
+ * i32[rows] × 5: id, name, artist, album, localPath 的字符串下标（null 为 -1）
+ * i32[rows]: 内嵌标签标志位，见 TAG_*
+ * u32[strings + 1]: UTF-8 字节偏移
+ * u8[stringBytes]: 字符串数据
+ * </pre>
+ * 前端解码见 src/plugins/local-music/columnar.ts，两边格式需同步修改。不依赖 Android，可在 JVM 上测试。
+ */
+final class ColumnarScanWriter {
+
+    static final int MAGIC = 0x4353544F; // "OTSC"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 24;
+    private static final int STRING_COLUMNS = 5;
+
+    static final int TAG_COVER_KNOWN = 1;
+    static final int TAG_HAS_COVER = 2;
+    static final int TAG_LYRICS_KNOWN = 4;
+    static final int TAG_HAS_LYRICS = 8;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<byte[]> strings = new ArrayList<>();
+    private int stringBytes;
+
+    private int rows;
+    private double[] durations = new double[256];
+    private double[] fileSizes = new double[256];
+    private double[] modifiedTimes = new double[256];
+    private float[] loudness = new float[256];
+    private float[] peaks = new float[256];
+    private int[] stringRefs = new int[256 * STRING_COLUMNS];
+    private int[] tagFlags = new int[256];
+
+    /** 探测结果对应的标志位，未探测为 0 */
+    static int tagFlags(TagProbe.Result tags) {
+        if (tags == null) return 0;
+        int flags = TAG_LYRICS_KNOWN | (tags.lyricsLength > 0 ? TAG_HAS_LYRICS : 0);
+        if (tags.coverLength != TagProbe.UNKNOWN) flags |= TAG_COVER_KNOWN | (tags.coverLength > 0 ? TAG_HAS_COVER : 0);
+        return flags;
+    }
+
+    void add(String id, String name, String artist, String album, String localPath,
+             long duration, long fileSize, long modifiedTime, float loudnessLufs, float peak, int tagFlags) {
+        if (rows == durations.length) grow();
+        durations[rows] = duration;
+        fileSizes[rows] = fileSize;
+        modifiedTimes[rows] = modifiedTime;
+        loudness[rows] = loudnessLufs;
+        peaks[rows] = peak;
+        this.tagFlags[rows] = tagFlags;
+        int base = rows * STRING_COLUMNS;
+        stringRefs[base] = intern(id);
+        stringRefs[base + 1] = intern(name);
+        stringRefs[base + 2] = intern(artist);
+        stringRefs[base + 3] = intern(album);
+        stringRefs[base + 4] = intern(localPath);
+        rows++;
+    }
+
+    int size() {
+        return rows;
+    }
+
+    /** 编码后的总字节数 */
+    int byteLength() {
+        return HEADER_BYTES + rows * (3 * 8 + 2 * 4 + STRING_COLUMNS * 4 + 4) + (strings.size() + 1) * 4 + stringBytes;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(byteLength()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(strings.size()).putInt(stringBytes).putInt(0);
+        buffer.asDoubleBuffer().put(durations, 0, rows);
+        buffer.position(buffer.position() + rows * 8);
+        buffer.asDoubleBuffer().put(fileSizes, 0, rows);
+        buffer.position(buffer.position() + rows * 8);
+        buffer.asDoubleBuffer().put(modifiedTimes, 0, rows);
+        buffer.position(buffer.position() + rows * 8);
+        buffer.asFloatBuffer().put(loudness, 0, rows);
+        buffer.position(buffer.position() + rows * 4);
+        buffer.asFloatBuffer().put(peaks, 0, rows);
+        buffer.position(buffer.position() + rows * 4);
+        // 行内交错存放，写出时转为按列连续
+        for (int column = 0; column < STRING_COLUMNS; column++) {
+            for (int row = 0; row < rows; row++) buffer.putInt(stringRefs[row * STRING_COLUMNS + column]);
+        }
+        for (int row = 0; row < rows; row++) buffer.putInt(tagFlags[row]);
+        int offset = 0;
+        for (byte[] value : strings) {
+            buffer.putInt(offset);
+            offset += value.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] value : strings) buffer.put(value);
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * 从编码结果中读回 localPath 列，供原生侧按快照恢复曲目集合
+     * @throws IOException 不是当前版本的编码或数据不完整
+     */
+    static List<String> readLocalPaths(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.length < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported columnar scan data");
+        }
+        int rows = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        int stringBytes = buffer.getInt(16);
+        int refs = HEADER_BYTES + rows * (3 * 8 + 2 * 4) + (STRING_COLUMNS - 1) * rows * 4;
+        int offsets = HEADER_BYTES + rows * (3 * 8 + 2 * 4 + STRING_COLUMNS * 4 + 4);
+        int strings = offsets + (stringCount + 1) * 4;
+        if (rows < 0 || stringCount < 0 || stringBytes < 0 || (long) strings + stringBytes > data.length) {
+            throw new IOException("Truncated columnar scan data");
+        }
+        List<String> paths = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            int ref = buffer.getInt(refs + row * 4);
+            if (ref < 0 || ref >= stringCount) continue;
+            int start = buffer.getInt(offsets + ref * 4);
+            int end = buffer.getInt(offsets + ref * 4 + 4);
+            paths.add(new String(data, strings + start, end - start, StandardCharsets.UTF_8));
+        }
+        return paths;
+    }
+
+    private int intern(String value) {
+        if (value == null) return -1;
+        Integer existing = stringIds.get(value);
+        if (existing != null) return existing;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int index = strings.size();
+        strings.add(bytes);
+        stringBytes += bytes.length;
+        stringIds.put(value, index);
+        return index;
+    }
+
+    private void grow() {
+        int capacity = durations.length * 2;
+        durations = Arrays.copyOf(durations, capacity);
+        fileSizes = Arrays.copyOf(fileSizes, capacity);
+        modifiedTimes = Arrays.copyOf(modifiedTimes, capacity);
+        loudness = Arrays.copyOf(loudness, capacity);
+        peaks = Arrays.copyOf(peaks, capacity);
+        stringRefs = Arrays.copyOf(stringRefs, capacity * STRING_COLUMNS);
+        tagFlags = Arrays.copyOf(tagFlags, capacity);
+    }
+}
@@ -0,0 +1,93 @@
+package com.otterhub.music;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两次启动之间维护扫描索引与曲库快照的周期任务
+ * 只在充电且电量充足时运行。快照来自快速扫描时按 MediaStore 重新生成快照；来自全盘扫描时遍历文件系统开销太大，
+ * 只清理索引中已不存在的本地文件，快照留给下次启动时的后台校对更新。
+ */
+public class LibraryIndexWorker extends Worker {
+
+    private static final String WORK_NAME = "local-library-index";
+    private static final long INTERVAL_HOURS = 12;
+
+    public LibraryIndexWorker(Context context, WorkerParameters params) {
+        super(context, params);
+    }
+
+    /** 登记周期任务，已登记时保持原计划 */
+    static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(LibraryIndexWorker.class,
+                INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        LocalTrackIndex index = LocalTrackIndex.get(context);
+        try {
+            if (LibrarySnapshot.SOURCE_QUICK.equals(LibrarySnapshot.source(context))) {
+                if (!hasAudioPermission(context)) return Result.success();
+                ColumnarScanWriter writer = new ColumnarScanWriter();
+                MediaStoreScanner.scan(context.getContentResolver(), row -> {
+                    if (isStopped()) return false;
+                    LocalTrackIndex.Entry entry = index.touch(row.localPath, row.modifiedTime, row.fileSize,
+                            row.id, row.title, row.artist, row.album, row.duration);
+                    boolean loudness = entry.hasLoudness();
+                    writer.add(row.id, row.title, row.artist, row.album, row.localPath,
+                            row.duration, row.fileSize, row.modifiedTime,
+                            loudness ? entry.loudnessLufs : Float.NaN, loudness ? entry.peak : Float.NaN,
+                            ColumnarScanWriter.tagFlags(entry.tags));
+                    return true;
+                });
+                if (isStopped()) return Result.retry();
+                LibrarySnapshot.write(context, writer, LibrarySnapshot.SOURCE_QUICK);
+            } else {
+                pruneMissingFiles(index);
+            }
+        } catch (IOException | RuntimeException e) {
+            android.util.Log.w("LibraryIndexWorker", "Library index maintenance failed", e);
+            return Result.retry();
+        } finally {
+            index.save();
+        }
+        return Result.success();
+    }
+
+    /** 移除索引中已被删除的本地文件；content URI 由 MediaStore 或 SAF 维护，不在此检查 */
+    private void pruneMissingFiles(LocalTrackIndex index) {
+        for (LocalTrackIndex.Entry entry : index.entries()) {
+            if (isStopped()) return;
+            if (entry.path.startsWith("content://")) continue;
+            if (!new File(entry.path).exists()) index.remove(entry.path);
+        }
+    }
+
+    private static boolean hasAudioPermission(Context context) {
+        String permission = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? Manifest.permission.READ_MEDIA_AUDIO : Manifest.permission.READ_EXTERNAL_STORAGE;
+        return context.checkSelfPermission(permission) == PackageManager.PERMISSION_GRANTED;
+    }
+}
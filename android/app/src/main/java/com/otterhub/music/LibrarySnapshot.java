@@ -0,0 +1,109 @@
+package com.otterhub.music;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 上次扫描得到的曲库快照
+ * 与列式扫描结果同一格式（ColumnarScanWriter），放在 filesDir 下不会被系统清理；冷启动时直接发布该文件，
+ * 前端按列解码即可展示，无需等待重新扫描。source 记录快照来自快速扫描还是全盘扫描，后台校对时按同一方式重扫。
+ */
+final class LibrarySnapshot {
+
+    static final String SOURCE_QUICK = "quick";
+    static final String SOURCE_FULL = "full";
+
+    private static final String FILE_NAME = "library-snapshot.bin";
+    private static final String PREFS = "LocalMusicSnapshot";
+    private static final String SOURCE_KEY = "source";
+    private static final String UPDATED_AT_KEY = "updated_at";
+    private static final String COUNT_KEY = "count";
+
+    private LibrarySnapshot() {}
+
+    static File file(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    static boolean exists(Context context) {
+        return file(context).isFile() && source(context) != null;
+    }
+
+    static String source(Context context) {
+        return prefs(context).getString(SOURCE_KEY, null);
+    }
+
+    static long updatedAt(Context context) {
+        return prefs(context).getLong(UPDATED_AT_KEY, 0);
+    }
+
+    static int count(Context context) {
+        return prefs(context).getInt(COUNT_KEY, 0);
+    }
+
+    /**
+     * 快照中的曲目路径；没有快照或格式不符（如升级后）时返回 null
+     */
+    static synchronized List<String> paths(Context context) {
+        File file = file(context);
+        if (!exists(context)) return null;
+        try {
+            return ColumnarScanWriter.readLocalPaths(readAll(file, (int) file.length()));
+        } catch (IOException e) {
+            android.util.Log.w("LibrarySnapshot", "Cannot read library snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入快照；内容与现有快照完全相同时不改动文件
+     * @return 快照是否有变化
+     */
+    static synchronized boolean write(Context context, ColumnarScanWriter writer, String source) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(writer.byteLength());
+        writer.writeTo(buffer);
+        byte[] bytes = buffer.toByteArray();
+        File file = file(context);
+        boolean changed = !source.equals(source(context)) || !file.isFile()
+                || file.length() != bytes.length || !Arrays.equals(readAll(file, bytes.length), bytes);
+        if (changed) {
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(bytes);
+            }
+            // 替换而非覆写，正在被读取的旧快照不受影响
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+        prefs(context).edit()
+                .putString(SOURCE_KEY, source)
+                .putLong(UPDATED_AT_KEY, System.currentTimeMillis())
+                .putInt(COUNT_KEY, writer.size())
+                .apply();
+        return changed;
+    }
+
+    private static byte[] readAll(File file, int length) throws IOException {
+        byte[] data = new byte[length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(data);
+        }
+        return data;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,182 @@
+package com.otterhub.music;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地曲目文件通道池
+ * 播放器拖动进度时会连续发起多个 Range 请求，同一文件复用一个已打开的 FileChannel，避免每次重新打开文件描述符；
+ * 按位置读取的 transferTo 不改变通道位置，多个请求可同时共用。超出上限或空闲超时的通道在无人使用时关闭。
+ * 不依赖 Android，打开方式由调用方提供（普通文件或 content URI）。
+ */
+final class LocalChannelPool {
+
+    interface Opener {
+        FileChannel open(String localPath) throws IOException;
+    }
+
+    private static final class Slot {
+        final FileChannel channel;
+        int refs;
+        long lastUsed;
+        boolean evicted;
+
+        Slot(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /** 一次借用，用完必须关闭 */
+    final class Lease implements Closeable {
+        private final Slot slot;
+        private boolean released;
+
+        private Lease(Slot slot) {
+            this.slot = slot;
+        }
+
+        FileChannel channel() {
+            return slot.channel;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            release(slot);
+        }
+    }
+
+    private final Opener opener;
+    private final int maxOpen;
+    private final long idleMillis;
+    /** 按访问顺序排列，最久未用的在前 */
+    private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+
+    LocalChannelPool(Opener opener, int maxOpen, long idleMillis) {
+        this.opener = opener;
+        this.maxOpen = maxOpen;
+        this.idleMillis = idleMillis;
+    }
+
+    Lease acquire(String localPath) throws IOException {
+        synchronized (this) {
+            Lease lease = reuse(localPath);
+            if (lease != null) return lease;
+        }
+        // 打开 content URI 可能较慢，不持锁
+        FileChannel channel = opener.open(localPath);
+        List<Slot> closing;
+        Lease lease;
+        synchronized (this) {
+            lease = reuse(localPath);
+            if (lease != null) {
+                closeQuietly(channel);
+                return lease;
+            }
+            Slot slot = new Slot(channel);
+            slot.refs = 1;
+            slots.put(localPath, slot);
+            closing = trim();
+            lease = new Lease(slot);
+        }
+        closeAll(closing);
+        return lease;
+    }
+
+    /** 文件被改写或删除后调用，正在使用的通道在归还时关闭 */
+    void invalidate(String localPath) {
+        Slot slot;
+        synchronized (this) {
+            slot = slots.remove(localPath);
+            if (slot == null) return;
+            slot.evicted = true;
+            if (slot.refs > 0) return;
+        }
+        closeQuietly(slot.channel);
+    }
+
+    synchronized int openCount() {
+        return slots.size();
+    }
+
+    void close() {
+        List<Slot> closing = new ArrayList<>();
+        synchronized (this) {
+            for (Slot slot : slots.values()) {
+                slot.evicted = true;
+                if (slot.refs == 0) closing.add(slot);
+            }
+            slots.clear();
+        }
+        closeAll(closing);
+    }
+
+    private Lease reuse(String localPath) {
+        closeAll(expire());
+        Slot slot = slots.get(localPath);
+        if (slot == null) return null;
+        if (!slot.channel.isOpen()) {
+            slots.remove(localPath);
+            return null;
+        }
+        slot.refs++;
+        return new Lease(slot);
+    }
+
+    private void release(Slot slot) {
+        synchronized (this) {
+            slot.refs--;
+            slot.lastUsed = System.currentTimeMillis();
+            if (slot.refs > 0 || !slot.evicted) return;
+        }
+        closeQuietly(slot.channel);
+    }
+
+    /** 移出空闲超时的通道 */
+    private List<Slot> expire() {
+        List<Slot> closing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Iterator<Slot> it = slots.values().iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            if (slot.refs == 0 && now - slot.lastUsed >= idleMillis) {
+                it.remove();
+                slot.evicted = true;
+                closing.add(slot);
+            }
+        }
+        return closing;
+    }
+
+    /** 超出上限时从最久未用的开始移出，正在使用的保留 */
+    private List<Slot> trim() {
+        List<Slot> closing = new ArrayList<>();
+        int excess = slots.size() - maxOpen;
+        for (Iterator<Map.Entry<String, Slot>> it = slots.entrySet().iterator(); excess > 0 && it.hasNext(); ) {
+            Slot slot = it.next().getValue();
+            if (slot.refs > 0) continue;
+            it.remove();
+            slot.evicted = true;
+            closing.add(slot);
+            excess--;
+        }
+        return closing;
+    }
+
+    private static void closeAll(List<Slot> slots) {
+        for (Slot slot : slots) closeQuietly(slot.channel);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
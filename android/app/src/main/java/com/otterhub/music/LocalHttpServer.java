@@ -0,0 +1,637 @@
+package com.otterhub.music;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 NIO Selector + 有界工作线程池的本地 HTTP 引擎
+ * 空闲/读取请求头阶段的连接只占用 Selector，不占用线程；请求头完整后才交给工作线程以阻塞模式写响应，
+ * 客户端读得慢时写操作阻塞，上游读取随之暂停，形成天然背压。线程总数固定为 1 + maxWorkers。
+ * 写操作超过写超时仍无进展（客户端停止读取）时由 Selector 线程关闭连接，释放被占住的工作线程。
+ * 不依赖 Android API，可直接在 JVM 上运行。
+ */
+public abstract class LocalHttpServer {
+
+    /** 单个连接上请求头的最大长度 */
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    /** 工作线程复用的 IO 缓冲区大小 */
+    public static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_TIMEOUT_MS = 30_000;
+    /** 阻塞写无任何进展的最长时间 */
+    private static final long DEFAULT_WRITE_TIMEOUT_MS = 20_000;
+    private static final int DEFAULT_MAX_WORKERS = 8;
+    private static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+    private static final ThreadLocal<byte[]> IO_BUFFER = ThreadLocal.withInitial(() -> new byte[IO_BUFFER_SIZE]);
+
+    private final int port;
+    private final int maxWorkers;
+    private final int queueCapacity;
+    private final long writeTimeoutMs;
+    private final ConcurrentLinkedQueue<Connection> returning = new ConcurrentLinkedQueue<>();
+    /** 已交给工作线程的连接，供 Selector 线程检查写超时 */
+    private final Set<Connection> busy = ConcurrentHashMap.newKeySet();
+
+    private volatile Selector selector;
+    private volatile ServerSocketChannel serverChannel;
+    private volatile ThreadPoolExecutor workers;
+    private volatile Thread selectorThread;
+    private volatile boolean running;
+
+    protected LocalHttpServer(int port) {
+        this(port, DEFAULT_MAX_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    protected LocalHttpServer(int port, int maxWorkers, int queueCapacity) {
+        this(port, maxWorkers, queueCapacity, DEFAULT_WRITE_TIMEOUT_MS);
+    }
+
+    protected LocalHttpServer(int port, int maxWorkers, int queueCapacity, long writeTimeoutMs) {
+        this.port = port;
+        this.maxWorkers = maxWorkers;
+        this.queueCapacity = queueCapacity;
+        this.writeTimeoutMs = writeTimeoutMs;
+    }
+
+    /** 处理一个完整请求；方法返回后响应必须已写完（或已调用 {@link Response#finish()}） */
+    protected abstract void serve(Request request, Response response) throws IOException;
+
+    /** 当前工作线程复用的 IO 缓冲区，只能在 serve 调用栈内使用 */
+    protected static byte[] ioBuffer() {
+        return IO_BUFFER.get();
+    }
+
+    // --- 生命周期 ---
+
+    /** 同步绑定端口并启动 Selector 线程，返回时服务器已可接受连接 */
+    public synchronized void start() throws IOException {
+        if (running) return;
+
+        Selector sel = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.socket().setReuseAddress(true);
+            server.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port));
+            server.configureBlocking(false);
+            server.register(sel, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            closeQuietly(server);
+            closeQuietly(sel);
+            throw e;
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxWorkers, maxWorkers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "local-http-worker-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+
+        selector = sel;
+        serverChannel = server;
+        workers = pool;
+        running = true;
+
+        Thread thread = new Thread(this::selectLoop, "local-http-selector");
+        thread.setDaemon(true);
+        selectorThread = thread;
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Selector sel = selector;
+        if (sel != null) sel.wakeup();
+        Thread thread = selectorThread;
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ThreadPoolExecutor pool = workers;
+        if (pool != null) pool.shutdownNow();
+        selectorThread = null;
+        workers = null;
+    }
+
+    public boolean isAlive() {
+        return running && serverChannel != null && serverChannel.isOpen();
+    }
+
+    public int getListeningPort() {
+        ServerSocketChannel server = serverChannel;
+        return server != null && server.isOpen() ? server.socket().getLocalPort() : -1;
+    }
+
+    /** 正在处理请求的工作线程数 */
+    public int getActiveWorkerCount() {
+        ThreadPoolExecutor pool = workers;
+        return pool != null ? pool.getActiveCount() : 0;
+    }
+
+    /** 等待工作线程处理的请求数 */
+    public int getQueuedRequestCount() {
+        ThreadPoolExecutor pool = workers;
+        return pool != null ? pool.getQueue().size() : 0;
+    }
+
+    // --- Selector 循环 ---
+
+    private void selectLoop() {
+        Selector sel = selector;
+        long lastIdleCheck = System.currentTimeMillis();
+        try {
+            while (running) {
+                sel.select(1000);
+                if (!running) break;
+
+                List<Connection> ready = new ArrayList<>();
+                Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        acceptConnections(sel);
+                    } else if (key.isReadable()) {
+                        Connection conn = (Connection) key.attachment();
+                        if (readHeader(conn)) {
+                            key.cancel();
+                            ready.add(conn);
+                        }
+                    }
+                }
+
+                Connection back;
+                while ((back = returning.poll()) != null) {
+                    if (back.hasCompleteHeader()) ready.add(back);
+                    else register(sel, back);
+                }
+
+                if (!ready.isEmpty()) {
+                    // 刷新已取消的 key，之后才能把通道切回阻塞模式
+                    sel.selectNow();
+                    for (Connection conn : ready) dispatch(conn);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= 1000) {
+                    lastIdleCheck = now;
+                    closeIdleConnections(sel, now);
+                    closeStalledWrites(now);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            running = false;
+        } finally {
+            for (SelectionKey key : sel.keys()) closeQuietly(key.channel());
+            closeQuietly(sel);
+            closeQuietly(serverChannel);
+            Connection conn;
+            while ((conn = returning.poll()) != null) conn.close();
+        }
+    }
+
+    private void acceptConnections(Selector sel) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            try {
+                channel.socket().setTcpNoDelay(true);
+                register(sel, new Connection(channel));
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void register(Selector sel, Connection conn) {
+        try {
+            conn.channel.configureBlocking(false);
+            conn.lastActive = System.currentTimeMillis();
+            conn.channel.register(sel, SelectionKey.OP_READ, conn);
+        } catch (IOException e) {
+            conn.close();
+        }
+    }
+
+    /** 非阻塞读取请求头，读到完整请求头时返回 true */
+    private boolean readHeader(Connection conn) {
+        try {
+            int read = conn.channel.read(conn.headerBuffer);
+            if (read < 0) {
+                conn.close();
+                return false;
+            }
+            conn.lastActive = System.currentTimeMillis();
+            if (conn.hasCompleteHeader()) return true;
+            if (!conn.headerBuffer.hasRemaining()) conn.close();
+        } catch (IOException e) {
+            conn.close();
+        }
+        return false;
+    }
+
+    private void dispatch(Connection conn) {
+        try {
+            conn.channel.configureBlocking(true);
+            workers.execute(() -> handleConnection(conn));
+        } catch (RejectedExecutionException e) {
+            // 线程池与队列均已满：直接拒绝，避免线程无限增长；切回非阻塞再写，慢客户端不会卡住 Selector 线程
+            try {
+                conn.channel.configureBlocking(false);
+                Response.writeSimple(conn.channel, 503, "Server busy");
+            } catch (IOException ignored) {
+            }
+            conn.close();
+        } catch (IOException e) {
+            conn.close();
+        }
+    }
+
+    private void closeIdleConnections(Selector sel, long now) {
+        for (SelectionKey key : sel.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof Connection && now - ((Connection) attachment).lastActive > IDLE_TIMEOUT_MS) {
+                key.cancel();
+                ((Connection) attachment).close();
+            }
+        }
+    }
+
+    /** 关闭写操作超时无进展的连接，阻塞在写上的工作线程随即以异常返回 */
+    private void closeStalledWrites(long now) {
+        for (Connection conn : busy) {
+            long since = conn.writeProgressAt;
+            if (since != 0 && now - since > writeTimeoutMs) conn.close();
+        }
+    }
+
+    // --- 工作线程 ---
+
+    private void handleConnection(Connection conn) {
+        boolean keepAlive = false;
+        busy.add(conn);
+        try {
+            Request request = conn.takeRequest();
+            if (request == null) {
+                Response.writeSimple(conn.channel, 400, "Bad Request");
+                return;
+            }
+            Response response = new Response(conn, request);
+            if (!"GET".equals(request.method) && !"HEAD".equals(request.method)) {
+                response.setKeepAlive(false);
+                response.sendText(405, "Method Not Allowed");
+            } else {
+                try {
+                    serve(request, response);
+                } catch (IOException e) {
+                    if (!response.isCommitted()) {
+                        response.setKeepAlive(false);
+                        response.sendText(500, "Server error: " + e.getMessage());
+                    } else {
+                        throw e;
+                    }
+                }
+            }
+            response.finish();
+            keepAlive = response.isReusable();
+        } catch (IOException | RuntimeException e) {
+            keepAlive = false;
+        } finally {
+            busy.remove(conn);
+            conn.writeProgressAt = 0;
+            if (keepAlive && running) {
+                returning.add(conn);
+                Selector sel = selector;
+                if (sel != null) sel.wakeup();
+            } else {
+                conn.close();
+            }
+        }
+    }
+
+    static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // --- 连接 ---
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer headerBuffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+        volatile long lastActive = System.currentTimeMillis();
+        /** 当前阻塞写最近一次有进展的时间，不在写时为 0 */
+        volatile long writeProgressAt;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean hasCompleteHeader() {
+            return findHeaderEnd() >= 0;
+        }
+
+        /** 返回 \r\n\r\n 之后的位置，未找到返回 -1 */
+        int findHeaderEnd() {
+            byte[] data = headerBuffer.array();
+            int limit = headerBuffer.position();
+            for (int i = 3; i < limit; i++) {
+                if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        /** 解析并消费一个请求头，剩余字节（流水线请求）保留在缓冲区 */
+        Request takeRequest() {
+            int end = findHeaderEnd();
+            if (end < 0) return null;
+            String head = new String(headerBuffer.array(), 0, end, StandardCharsets.ISO_8859_1);
+            headerBuffer.flip();
+            headerBuffer.position(end);
+            headerBuffer.compact();
+            return Request.parse(head);
+        }
+
+        void close() {
+            closeQuietly(channel);
+        }
+    }
+
+    // --- 请求 ---
+
+    public static final class Request {
+        public final String method;
+        public final String uri;
+        public final Map<String, String> params;
+        /** 请求头，key 统一为小写 */
+        public final Map<String, String> headers;
+        final boolean keepAlive;
+
+        private Request(String method, String uri, Map<String, String> params, Map<String, String> headers, boolean keepAlive) {
+            this.method = method;
+            this.uri = uri;
+            this.params = params;
+            this.headers = headers;
+            this.keepAlive = keepAlive;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        public boolean isHead() {
+            return "HEAD".equals(method);
+        }
+
+        static Request parse(String head) {
+            String[] lines = head.split("\r\n");
+            if (lines.length == 0) return null;
+            String[] parts = lines[0].split(" ");
+            if (parts.length < 3) return null;
+
+            String method = parts[0].toUpperCase(Locale.ROOT);
+            String target = parts[1];
+            String version = parts[2];
+
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) continue;
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+
+            String path = target;
+            Map<String, String> params = new HashMap<>();
+            int q = target.indexOf('?');
+            if (q >= 0) {
+                path = target.substring(0, q);
+                parseQuery(target.substring(q + 1), params);
+            }
+
+            String connection = headers.get("connection");
+            boolean keepAlive = "HTTP/1.1".equals(version)
+                    ? connection == null || !"close".equalsIgnoreCase(connection)
+                    : "keep-alive".equalsIgnoreCase(connection);
+            return new Request(method, decode(path), Collections.unmodifiableMap(params), Collections.unmodifiableMap(headers), keepAlive);
+        }
+
+        private static void parseQuery(String query, Map<String, String> params) {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                String key = eq >= 0 ? pair.substring(0, eq) : pair;
+                String value = eq >= 0 ? pair.substring(eq + 1) : "";
+                params.put(decode(key), decode(value));
+            }
+        }
+
+        private static String decode(String value) {
+            try {
+                return URLDecoder.decode(value, "UTF-8");
+            } catch (Exception e) {
+                return value;
+            }
+        }
+    }
+
+    // --- 响应 ---
+
+    public static final class Response {
+        private static final byte[] CRLF = {'\r', '\n'};
+        private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+        private final Connection conn;
+        private final SocketChannel channel;
+        private final boolean headOnly;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private boolean keepAlive;
+        private boolean committed;
+        private boolean chunked;
+        private boolean finished;
+        private long remaining = -1;
+
+        Response(Connection conn, Request request) {
+            this.conn = conn;
+            this.channel = conn.channel;
+            this.headOnly = request.isHead();
+            this.keepAlive = request.keepAlive;
+        }
+
+        public void addHeader(String name, String value) {
+            headers.put(name, value);
+        }
+
+        public void setKeepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        /** 发送状态行与响应头；contentLength < 0 时使用 chunked 编码 */
+        public void sendHeaders(int status, String contentType, long contentLength) throws IOException {
+            if (committed) throw new IllegalStateException("Response already committed");
+            committed = true;
+            chunked = contentLength < 0 && !headOnly;
+            remaining = contentLength;
+
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("HTTP/1.1 ").append(status).append(' ').append(reasonPhrase(status)).append("\r\n");
+            if (contentType != null) sb.append("Content-Type: ").append(contentType).append("\r\n");
+            if (contentLength >= 0) sb.append("Content-Length: ").append(contentLength).append("\r\n");
+            else if (chunked) sb.append("Transfer-Encoding: chunked\r\n");
+            for (Map.Entry<String, String> h : headers.entrySet()) {
+                sb.append(h.getKey()).append(": ").append(h.getValue()).append("\r\n");
+            }
+            if (contentLength < 0 && !chunked) keepAlive = false;
+            sb.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+            writeFully(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1)));
+        }
+
+        public void sendText(int status, String text) throws IOException {
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            sendHeaders(status, "text/plain; charset=utf-8", body.length);
+            write(body, 0, body.length);
+        }
+
+        /** 写响应体；客户端读取变慢时阻塞，作为上游读取的背压 */
+        public void write(byte[] data, int offset, int length) throws IOException {
+            if (headOnly || length <= 0) return;
+            if (chunked) {
+                writeFully(ByteBuffer.wrap((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+                writeFully(ByteBuffer.wrap(data, offset, length));
+                writeFully(ByteBuffer.wrap(CRLF));
+            } else {
+                writeFully(ByteBuffer.wrap(data, offset, length));
+                if (remaining > 0) remaining -= length;
+            }
+        }
+
+        /** 通过 FileChannel.transferTo 零拷贝发送文件区间（需先以固定长度发送响应头） */
+        public void transferFrom(FileChannel file, long position, long count) throws IOException {
+            if (headOnly || count <= 0) return;
+            if (chunked) throw new IllegalStateException("transferFrom requires a fixed-length response");
+            long sent = 0;
+            conn.writeProgressAt = System.currentTimeMillis();
+            try {
+                while (sent < count) {
+                    long n = file.transferTo(position + sent, count - sent, channel);
+                    if (n <= 0) {
+                        if (position + sent >= file.size()) throw new IOException("Unexpected end of file");
+                        continue;
+                    }
+                    sent += n;
+                    conn.writeProgressAt = System.currentTimeMillis();
+                }
+            } finally {
+                conn.writeProgressAt = 0;
+            }
+            if (remaining > 0) remaining -= count;
+        }
+
+        /** 结束响应：chunked 时写入终止块 */
+        public void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            if (!committed) {
+                sendText(404, "Not Found");
+                return;
+            }
+            if (chunked) writeFully(ByteBuffer.wrap(LAST_CHUNK));
+        }
+
+        /** 响应完整写出且双方都允许保持连接时，连接可复用 */
+        boolean isReusable() {
+            return keepAlive && finished && (chunked || headOnly || remaining <= 0);
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            conn.writeProgressAt = System.currentTimeMillis();
+            try {
+                while (buffer.hasRemaining()) {
+                    int n = channel.write(buffer);
+                    if (n < 0) throw new ClosedChannelException();
+                    if (n > 0) conn.writeProgressAt = System.currentTimeMillis();
+                }
+            } finally {
+                conn.writeProgressAt = 0;
+            }
+        }
+
+        /** 在 Selector 线程上尽力写出一个简单响应（非阻塞，写不完即放弃） */
+        static void writeSimple(SocketChannel channel, int status, String text) {
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            String head = "HTTP/1.1 " + status + " " + reasonPhrase(status) + "\r\n"
+                    + "Content-Type: text/plain; charset=utf-8\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n\r\n";
+            ByteBuffer buffer = ByteBuffer.allocate(head.length() + body.length);
+            buffer.put(head.getBytes(StandardCharsets.ISO_8859_1)).put(body).flip();
+            try {
+                channel.write(buffer);
+            } catch (IOException ignored) {
+            }
+        }
+
+        static String reasonPhrase(int status) {
+            switch (status) {
+                case 200: return "OK";
+                case 204: return "No Content";
+                case 206: return "Partial Content";
+                case 301: return "Moved Permanently";
+                case 302: return "Found";
+                case 304: return "Not Modified";
+                case 400: return "Bad Request";
+                case 401: return "Unauthorized";
+                case 403: return "Forbidden";
+                case 404: return "Not Found";
+                case 405: return "Method Not Allowed";
+                case 416: return "Range Not Satisfiable";
+                case 500: return "Internal Server Error";
+                case 502: return "Bad Gateway";
+                case 503: return "Service Unavailable";
+                case 504: return "Gateway Timeout";
+                default: return "Status";
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.otterhub.music;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 本地曲库的歌手、专辑聚合索引（内存）
+ * 多歌手字符串按与前端 LOCAL_ARTIST_SPLIT_RE 相同的分隔符拆分，名称经 LocalSearchIndex.normalize 归一后作为分组键，
+ * 显示名取首次出现的写法。同一文件经 MediaStore 与文件路径两种方式扫描到时，按大小与歌名视为同一曲目，只计一次。
+ * 专辑按专辑名与第一位歌手分组。不依赖 Android，可在 JVM 上测试。
+ */
+final class LocalLibraryAggregates {
+
+    /** 多歌手分隔符，与 download.ts 中的 LOCAL_ARTIST_SPLIT_RE 对应 */
+    static final Pattern ARTIST_DELIMITER = Pattern.compile("[/、,，&＆;；|]");
+    /** 自家下载文件名中的歌手以连续空白分隔 */
+    private static final Pattern DOUBLE_SPACE = Pattern.compile("\\s{2,}");
+    private static final String KEY_SEPARATOR = "\u001F";
+
+    static final String SORT_NAME = "name";
+    static final String SORT_COUNT = "count";
+
+    /** 封面状态：没有、未知、有 */
+    static final int COVER_NONE = 0;
+    static final int COVER_UNKNOWN = 1;
+    static final int COVER_PRESENT = 2;
+
+    private static final class Track {
+        final String path;
+        final String identity;
+        final long duration;
+        final long modifiedTime;
+        final int cover;
+        final List<String> artistKeys;
+        final String albumKey;
+
+        Track(String path, String identity, long duration, long modifiedTime, int cover,
+              List<String> artistKeys, String albumKey) {
+            this.path = path;
+            this.identity = identity;
+            this.duration = duration;
+            this.modifiedTime = modifiedTime;
+            this.cover = cover;
+            this.artistKeys = artistKeys;
+            this.albumKey = albumKey;
+        }
+    }
+
+    private static final class Bucket {
+        final String name;
+        final String artist;
+        /** 曲目身份 → 该曲目的各个路径 */
+        final Map<String, Set<Track>> tracks = new HashMap<>();
+
+        Bucket(String name, String artist) {
+            this.name = name;
+            this.artist = artist;
+        }
+    }
+
+    /** 查询结果中的一个歌手或专辑 */
+    static final class Group {
+        String key;
+        String name;
+        /** 专辑的歌手，歌手分组为 null */
+        String artist;
+        int trackCount;
+        long duration;
+        /** 代表封面所在曲目的路径，没有时为 null */
+        String coverPath;
+    }
+
+    static final class Page {
+        final List<Group> items;
+        final int total;
+
+        Page(List<Group> items, int total) {
+            this.items = items;
+            this.total = total;
+        }
+    }
+
+    private final Map<String, Track> tracks = new HashMap<>();
+    private final Map<String, Bucket> artists = new LinkedHashMap<>();
+    private final Map<String, Bucket> albums = new LinkedHashMap<>();
+
+    static boolean containsArtistDelimiter(String text) {
+        return text != null && ARTIST_DELIMITER.matcher(text).find();
+    }
+
+    /**
+     * 拆分多歌手字符串，去掉空白项与重复项
+     * @param splitDoubleSpace 没有分隔符时是否按连续空白拆分（自家下载文件）
+     */
+    static List<String> splitArtists(String artist, boolean splitDoubleSpace) {
+        List<String> result = new ArrayList<>();
+        if (artist == null) return result;
+        String[] parts;
+        if (containsArtistDelimiter(artist)) {
+            parts = ARTIST_DELIMITER.split(artist);
+        } else if (splitDoubleSpace && DOUBLE_SPACE.matcher(artist).find()) {
+            parts = DOUBLE_SPACE.split(artist);
+        } else {
+            parts = new String[]{artist};
+        }
+        Set<String> seen = new HashSet<>();
+        for (String part : parts) {
+            String name = part.trim();
+            String key = LocalSearchIndex.normalize(name);
+            if (key != null && !key.isEmpty() && seen.add(key)) result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * 加入或更新一首曲目
+     * @param path  曲目键（localPath），同键再次写入视为更新
+     * @param cover COVER_NONE、COVER_UNKNOWN 或 COVER_PRESENT
+     */
+    synchronized void put(String path, String title, String artist, String album, long duration,
+                          long fileSize, long modifiedTime, int cover, boolean splitDoubleSpace) {
+        remove(path);
+        String normalizedTitle = LocalSearchIndex.normalize(title);
+        String identity = fileSize + KEY_SEPARATOR + (normalizedTitle != null ? normalizedTitle : path);
+
+        List<String> names = splitArtists(artist, splitDoubleSpace);
+        List<String> artistKeys = new ArrayList<>(names.size());
+        for (String name : names) {
+            String key = LocalSearchIndex.normalize(name);
+            artistKeys.add(key);
+            bucket(artists, key, name, null);
+        }
+        String albumKey = null;
+        String albumName = album != null ? album.trim() : null;
+        String normalizedAlbum = LocalSearchIndex.normalize(albumName);
+        if (normalizedAlbum != null && !normalizedAlbum.isEmpty()) {
+            String primary = names.isEmpty() ? null : names.get(0);
+            albumKey = normalizedAlbum + KEY_SEPARATOR + (artistKeys.isEmpty() ? "" : artistKeys.get(0));
+            bucket(albums, albumKey, albumName, primary);
+        }
+
+        Track track = new Track(path, identity, duration, modifiedTime, cover, artistKeys, albumKey);
+        tracks.put(path, track);
+        for (String key : artistKeys) add(artists.get(key), track);
+        if (albumKey != null) add(albums.get(albumKey), track);
+    }
+
+    synchronized void remove(String path) {
+        Track track = tracks.remove(path);
+        if (track == null) return;
+        for (String key : track.artistKeys) detach(artists, key, track);
+        if (track.albumKey != null) detach(albums, track.albumKey, track);
+    }
+
+    /** 只保留给定路径集合中的曲目 */
+    synchronized void retain(Collection<String> paths) {
+        Set<String> keep = new HashSet<>(paths);
+        for (String path : new ArrayList<>(tracks.keySet())) {
+            if (!keep.contains(path)) remove(path);
+        }
+    }
+
+    synchronized int size() {
+        return tracks.size();
+    }
+
+    synchronized void clear() {
+        tracks.clear();
+        artists.clear();
+        albums.clear();
+    }
+
+    /** 粗略估算的堆占用：曲目记录与各分组的身份表 */
+    synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Track track : tracks.values()) {
+            bytes += 160 + 2L * (track.path.length() + track.identity.length()) + 48L * track.artistKeys.size();
+        }
+        bytes += bucketBytes(artists) + bucketBytes(albums);
+        return bytes;
+    }
+
+    private static long bucketBytes(Map<String, Bucket> buckets) {
+        long bytes = 0;
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            bytes += 120 + 2L * entry.getKey().length() + 2L * bucket.name.length() + 96L * bucket.tracks.size();
+        }
+        return bytes;
+    }
+
+    synchronized Page artists(int offset, int limit, String sort) {
+        return page(artists, offset, limit, sort);
+    }
+
+    synchronized Page albums(int offset, int limit, String sort) {
+        return page(albums, offset, limit, sort);
+    }
+
+    /** 分组内全部曲目的路径，按修改时间从新到旧；同一曲目的多个路径都返回 */
+    synchronized List<String> artistTracks(String key) {
+        return paths(artists.get(key));
+    }
+
+    synchronized List<String> albumTracks(String key) {
+        return paths(albums.get(key));
+    }
+
+    private static void bucket(Map<String, Bucket> buckets, String key, String name, String artist) {
+        if (!buckets.containsKey(key)) buckets.put(key, new Bucket(name, artist));
+    }
+
+    private static void add(Bucket bucket, Track track) {
+        Set<Track> copies = bucket.tracks.get(track.identity);
+        if (copies == null) {
+            copies = new LinkedHashSet<>();
+            bucket.tracks.put(track.identity, copies);
+        }
+        copies.add(track);
+    }
+
+    private static void detach(Map<String, Bucket> buckets, String key, Track track) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) return;
+        Set<Track> copies = bucket.tracks.get(track.identity);
+        if (copies == null) return;
+        copies.remove(track);
+        if (copies.isEmpty()) bucket.tracks.remove(track.identity);
+        if (bucket.tracks.isEmpty()) buckets.remove(key);
+    }
+
+    private static Page page(Map<String, Bucket> buckets, int offset, int limit, String sort) {
+        List<Map.Entry<String, Bucket>> entries = new ArrayList<>(buckets.entrySet());
+        Comparator<Map.Entry<String, Bucket>> byName = Map.Entry.comparingByKey();
+        if (SORT_NAME.equals(sort)) {
+            entries.sort(byName);
+        } else {
+            entries.sort(Comparator.<Map.Entry<String, Bucket>>comparingInt(e -> -e.getValue().tracks.size())
+                    .thenComparing(byName));
+        }
+        int from = Math.max(0, Math.min(offset, entries.size()));
+        int to = Math.min(entries.size(), from + Math.max(0, limit));
+        List<Group> items = new ArrayList<>(to - from);
+        for (Map.Entry<String, Bucket> entry : entries.subList(from, to)) {
+            items.add(summarize(entry.getKey(), entry.getValue()));
+        }
+        return new Page(items, entries.size());
+    }
+
+    /** 汇总曲目数、总时长与代表封面：优先取确定有封面的最新曲目，其次封面未知的最新曲目 */
+    private static Group summarize(String key, Bucket bucket) {
+        Group group = new Group();
+        group.key = key;
+        group.name = bucket.name;
+        group.artist = bucket.artist;
+        group.trackCount = bucket.tracks.size();
+        Track present = null;
+        Track unknown = null;
+        for (Set<Track> copies : bucket.tracks.values()) {
+            Track first = copies.iterator().next();
+            group.duration += first.duration;
+            for (Track track : copies) {
+                if (track.cover == COVER_PRESENT && (present == null || track.modifiedTime > present.modifiedTime)) {
+                    present = track;
+                } else if (track.cover == COVER_UNKNOWN && (unknown == null || track.modifiedTime > unknown.modifiedTime)) {
+                    unknown = track;
+                }
+            }
+        }
+        Track cover = present != null ? present : unknown;
+        group.coverPath = cover != null ? cover.path : null;
+        return group;
+    }
+
+    private static List<String> paths(Bucket bucket) {
+        if (bucket == null) return Collections.emptyList();
+        List<Track> all = new ArrayList<>();
+        for (Set<Track> copies : bucket.tracks.values()) all.addAll(copies);
+        all.sort((a, b) -> Long.compare(b.modifiedTime, a.modifiedTime));
+        List<String> result = new ArrayList<>(all.size());
+        for (Track track : all) result.add(track.path);
+        return result;
+    }
+}
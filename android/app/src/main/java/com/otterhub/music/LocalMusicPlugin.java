@@ -9,9 +9,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentSender;
 import android.content.SharedPreferences;
+import android.content.UriPermission;
 import android.content.res.Configuration;
 import android.database.Cursor;
 import android.media.MediaMetadataRetriever;
+import android.media.MediaScannerConnection;
 import android.media.MediaExtractor;
 import android.media.MediaMuxer;
 import android.media.MediaFormat;
@@ -21,6 +23,7 @@ import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.provider.Settings;
@@ -41,19 +44,24 @@ import com.getcapacitor.annotation.PermissionCallback;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @CapacitorPlugin(name = "LocalMusicPlugin", permissions = {
         @Permission(alias = "storage", strings = { Manifest.permission.READ_EXTERNAL_STORAGE }),
@@ -67,16 +75,22 @@ public class LocalMusicPlugin extends Plugin {
     private static final int MAX_DEPTH = 20;
     private static final int MAX_FILES = 10000;
 
-    private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor();
-    private final ExecutorService ioExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final PluginTaskScheduler scheduler =
+            new PluginTaskScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()));
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private volatile boolean isScanning = false;
+    private volatile PluginTaskScheduler.Task scanTask;
     private PluginCall pendingDeleteCall;
     private String pendingDeletePath;
     private static final int DELETE_PERMISSION_REQUEST = 0x7A33;
+    private static final int DELETE_BATCH_REQUEST = 0x7A34;
+    private DeleteBatch pendingDeleteBatch;
     private static final String EXCLUDED_PREFS = "LocalMusicExcluded";
     private static final String EXCLUDED_FOLDERS_KEY = "excluded_folders";
     private static final String SEPARATOR = "\u001F";
+    private static final String TREE_PREFS = "LocalMusicTrees";
+    private static final String DOWNLOAD_TREE_KEY = "download_tree";
+    private static final int TREE_SCAN_PARALLELISM = 4;
     private static final String[] DEFAULT_EXCLUDED_PATH_PATTERNS = {
         // English
         "/recordings/call",
@@ -95,15 +109,121 @@ public class LocalMusicPlugin extends Plugin {
         "/录音/电话",
     };
     private Set<String> excludedFolderSet = null;
+    /** 全盘扫描期间按文件路径索引的 MediaStore 记录，扫描结束后释放 */
+    private Map<String, MediaStoreRow> mediaStoreRows = null;
 
     private static final String SCHEME_CONTENT = "content://";
-    private static final String[] PROJECTION_MUSIC = {
-            MediaStore.Audio.Media._ID, MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media.ARTIST,
+    private static final String[] PROJECTION_MEDIA_ROWS = {
+            MediaStore.Audio.Media.DATA, MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media.ARTIST,
             MediaStore.Audio.Media.ALBUM, MediaStore.Audio.Media.DURATION, MediaStore.Audio.Media.SIZE,
             MediaStore.Audio.Media.DATE_MODIFIED
     };
 
     private String cachedStorageRoot;
+    private LocalTrackIndex trackIndex;
+    private LoudnessAnalysisJob loudnessJob;
+    private WaveformCache waveformCache;
+    private final LocalSearchIndex searchIndex = new LocalSearchIndex();
+    private final LocalLibraryAggregates aggregates = new LocalLibraryAggregates();
+    /** 检索索引与聚合索引已从扫描索引重建 */
+    private volatile boolean libraryIndexesReady;
+    private final AtomicBoolean libraryIndexesRebuilding = new AtomicBoolean();
+    private static final int DEFAULT_SEARCH_LIMIT = 200;
+    private static final int DEFAULT_GROUP_PAGE_SIZE = 100;
+    private static final String COLUMNAR_SCAN_FILE = "scan-result.bin";
+    private static final int DEFAULT_WAVEFORM_BUCKETS = 200;
+    private static final int MAX_WAVEFORM_BUCKETS = 2000;
+    private static final int MAX_DIRECT_TAG_READ = 16 * 1024 * 1024;
+    private static final int LYRICS_CACHE_SIZE = 32;
+    private final Map<String, EmbeddedLyrics> lyricsCache =
+            new LinkedHashMap<String, EmbeddedLyrics>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, EmbeddedLyrics> eldest) {
+                    return size() > LYRICS_CACHE_SIZE;
+                }
+            };
+    private static final String MEMORY_LYRICS = "lyrics";
+    private static final String MEMORY_LIBRARY_INDEXES = "libraryIndexes";
+    private static final String MEMORY_TRACK_INDEX = "trackIndex";
+
+    /** 歌词缓存：从最久未用的开始丢弃 */
+    private final MemoryBudget.Cache lyricsMemory = new MemoryBudget.Cache() {
+        @Override
+        public long sizeBytes() {
+            synchronized (lyricsCache) {
+                long bytes = 0;
+                for (EmbeddedLyrics lyrics : lyricsCache.values()) bytes += lyrics.estimatedBytes();
+                return bytes;
+            }
+        }
+
+        @Override
+        public void trimTo(long maxBytes) {
+            synchronized (lyricsCache) {
+                long bytes = sizeBytes();
+                for (Iterator<EmbeddedLyrics> it = lyricsCache.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+                    bytes -= it.next().estimatedBytes();
+                    it.remove();
+                }
+            }
+        }
+    };
+
+    /** 检索索引与聚合索引只能整体丢弃，之后首次使用时从扫描索引后台重建 */
+    private final MemoryBudget.Cache libraryIndexMemory = new MemoryBudget.Cache() {
+        @Override
+        public long sizeBytes() {
+            return searchIndex.estimatedBytes() + aggregates.estimatedBytes();
+        }
+
+        @Override
+        public void trimTo(long maxBytes) {
+            if (libraryIndexesRebuilding.get() || sizeBytes() <= maxBytes) return;
+            libraryIndexesReady = false;
+            searchIndex.clear();
+            aggregates.clear();
+        }
+    };
+
+    /** 扫描索引已持久化，整体释放后下次访问时从磁盘读回；有未保存改动时保留 */
+    private final MemoryBudget.Cache trackIndexMemory = new MemoryBudget.Cache() {
+        @Override
+        public long sizeBytes() {
+            return trackIndex.estimatedBytes();
+        }
+
+        @Override
+        public void trimTo(long maxBytes) {
+            if (sizeBytes() > maxBytes) trackIndex.release();
+        }
+    };
+
+    @Override
+    public void load() {
+        trackIndex = LocalTrackIndex.get(getContext());
+        LibraryIndexWorker.schedule(getContext());
+        ensureLibraryIndexes();
+        MemoryBudget budget = MemoryBudget.get();
+        budget.register(MEMORY_LYRICS, MemoryBudget.Priority.DISPOSABLE, lyricsMemory);
+        budget.register(MEMORY_LIBRARY_INDEXES, MemoryBudget.Priority.IMPORTANT, libraryIndexMemory);
+        budget.register(MEMORY_TRACK_INDEX, MemoryBudget.Priority.IMPORTANT, trackIndexMemory);
+        waveformCache = new WaveformCache(getContext());
+        BilibiliProxyPlugin.setLocalOpener(path -> openLocalFileStream(path).getChannel());
+        loudnessJob = new LoudnessAnalysisJob(getContext(), trackIndex, new LoudnessAnalysisJob.Listener() {
+            @Override
+            public void onAnalyzed(LocalTrackIndex.Entry entry, int done, int total) {
+                if (!hasListeners("loudnessProgress")) return;
+                JSObject event = new JSObject().put("localPath", entry.path).put("done", done).put("total", total);
+                putLoudness(event, entry);
+                notifyListeners("loudnessProgress", event);
+            }
+
+            @Override
+            public void onIdle(int analyzed) {
+                notifyListeners("loudnessComplete", new JSObject().put("analyzed", analyzed));
+            }
+        });
+    }
 
     // --- 核心扫描方法 ---
 
@@ -130,6 +250,99 @@ public class LocalMusicPlugin extends Plugin {
         executeAllStorageScan(call);
     }
 
+    /**
+     * 经 SAF 扫描用户选定的目录，默认为 pickDownloadDirectory 选择的下载目录
+     * 不需要存储权限；修改时间与大小未变的文件直接复用扫描索引中的标签。
+     */
+    @PluginMethod
+    public void scanDocumentTree(PluginCall call) {
+        if (isScanning) {
+            resolveError(call, "扫描正在进行中");
+            return;
+        }
+        String uri = call.getString("uri");
+        if (!isValid(uri)) {
+            uri = getContext().getSharedPreferences(TREE_PREFS, Context.MODE_PRIVATE).getString(DOWNLOAD_TREE_KEY, null);
+        }
+        if (!isValid(uri)) {
+            call.resolve(new JSObject().put("success", false).put("error", "未选择目录")
+                    .put("files", new JSArray()).put("needDirectory", true));
+            return;
+        }
+        Uri treeUri = Uri.parse(uri);
+        if (!hasPersistedTreePermission(treeUri)) {
+            call.resolve(new JSObject().put("success", false).put("error", "目录授权已失效，请重新选择")
+                    .put("files", new JSArray()).put("needDirectory", true));
+            return;
+        }
+        isScanning = true;
+        boolean columnar = isColumnarRequested(call);
+        scheduleScan(call, () -> {
+            List<ScannedTrack> tracks = performTreeScan(treeUri);
+            onScanIndexed(tracks);
+            if (!isScanCancelled()) resolveScan(call, tracks, columnar);
+        });
+    }
+
+    /**
+     * 立即返回上次快速扫描或全盘扫描保存的曲库快照，格式同列式扫描结果，经本地 HTTP 服务发布
+     * reconcile 为 true 时随后在后台按快照来源重新扫描，快照有变化时以 libraryUpdated 事件推送新地址。
+     */
+    @PluginMethod
+    public void getLibrarySnapshot(PluginCall call) {
+        Context context = getContext();
+        if (!LibrarySnapshot.exists(context)) {
+            resolveError(call, "暂无曲库快照");
+            return;
+        }
+        String source = LibrarySnapshot.source(context);
+        int count = LibrarySnapshot.count(context);
+        long updatedAt = LibrarySnapshot.updatedAt(context);
+        boolean reconcile = Boolean.TRUE.equals(call.getBoolean("reconcile", false));
+        BilibiliProxyPlugin.ensureServer(context).whenComplete((server, error) -> {
+            if (error != null) {
+                mainHandler.post(() -> resolveError(call, "本地服务不可用"));
+                return;
+            }
+            String url = server.publishFile("snapshot", LibrarySnapshot.file(context), "application/octet-stream");
+            mainHandler.post(() -> {
+                call.resolve(new JSObject()
+                        .put("success", true)
+                        .put("columnarUrl", url)
+                        .put("count", count)
+                        .put("source", source)
+                        .put("updatedAt", updatedAt));
+                if (reconcile) reconcileSnapshot(source);
+            });
+        });
+    }
+
+    /** 按快照来源在后台重新扫描；已有扫描进行中或权限已失效时跳过 */
+    private void reconcileSnapshot(String source) {
+        boolean full = LibrarySnapshot.SOURCE_FULL.equals(source);
+        if (isScanning || !(full ? hasAllStorageAccess() : hasRequiredPermission())) return;
+        isScanning = true;
+        PluginTaskScheduler.Task task = scheduler.submit(PluginTaskScheduler.Priority.BACKGROUND, null, current -> {
+            scanTask = current;
+            try {
+                List<ScannedTrack> tracks = full ? performAllStorageScan() : performMediaStoreScan();
+                if (!current.isCancelled() && saveSnapshot(tracks, source)) notifyLibraryUpdated(tracks.size());
+            } catch (Exception e) {
+                android.util.Log.w("LocalMusicPlugin", "Library snapshot reconcile failed", e);
+            } finally {
+                endScan();
+            }
+        }, () -> isScanning = false);
+        if (task == null) isScanning = false;
+    }
+
+    private void notifyLibraryUpdated(int count) {
+        BilibiliProxyPlugin.ensureServer(getContext()).thenAccept(server -> {
+            String url = server.publishFile("snapshot", LibrarySnapshot.file(getContext()), "application/octet-stream");
+            notifyListeners("libraryUpdated", new JSObject().put("columnarUrl", url).put("count", count));
+        });
+    }
+
     // --- 权限与设置 ---
 
     @PluginMethod
@@ -147,8 +360,11 @@ public class LocalMusicPlugin extends Plugin {
 
     @PluginMethod
     public void hasAllStoragePermission(PluginCall call) {
-        boolean hasPerm = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Environment.isExternalStorageManager() : hasRequiredPermission();
-        call.resolve(new JSObject().put("hasPermission", hasPerm));
+        call.resolve(new JSObject().put("hasPermission", hasAllStorageAccess()));
+    }
+
+    private boolean hasAllStorageAccess() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Environment.isExternalStorageManager() : hasRequiredPermission();
     }
 
     @PluginMethod
@@ -173,12 +389,32 @@ public class LocalMusicPlugin extends Plugin {
         }
 
         String relativePath = extractPathFromTreeUri(treeUri);
+        persistTreePermission(treeUri);
+        getContext().getSharedPreferences(TREE_PREFS, Context.MODE_PRIVATE).edit()
+                .putString(DOWNLOAD_TREE_KEY, treeUri.toString()).apply();
         call.resolve(new JSObject()
             .put("success", true)
             .put("path", relativePath != null ? relativePath : "")
             .put("uri", treeUri.toString()));
     }
 
+    /** 保留目录授权，应用重启后仍可扫描该目录；提供方不支持持久授权时忽略 */
+    private void persistTreePermission(Uri treeUri) {
+        try {
+            getContext().getContentResolver().takePersistableUriPermission(treeUri,
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        } catch (SecurityException e) {
+            android.util.Log.w("LocalMusicPlugin", "Cannot persist tree permission: " + treeUri, e);
+        }
+    }
+
+    private boolean hasPersistedTreePermission(Uri treeUri) {
+        for (UriPermission permission : getContext().getContentResolver().getPersistedUriPermissions()) {
+            if (permission.getUri().equals(treeUri) && permission.isReadPermission()) return true;
+        }
+        return false;
+    }
+
     @PermissionCallback
     private void handlePermissionResult(PluginCall call) {
         if (hasRequiredPermission()) scanMusicFiles(call); else resolveError(call, "Permission denied");
@@ -212,89 +448,169 @@ public class LocalMusicPlugin extends Plugin {
             return;
         }
         isScanning = true;
-        scanExecutor.execute(() -> {
+        boolean columnar = isColumnarRequested(call);
+        scheduleScan(call, () -> {
+            List<ScannedTrack> tracks = performMediaStoreScan();
+            if (isScanCancelled()) return;
+            saveSnapshot(tracks, LibrarySnapshot.SOURCE_QUICK);
+            resolveScan(call, tracks, columnar);
+        });
+    }
+
+    /**
+     * 扫描在后台优先级执行，不占用封面、歌词等交互请求的线程
+     * 可通过 requestId 取消，已扫描到的结果不再回传。
+     */
+    private void scheduleScan(PluginCall call, ScanBody body) {
+        schedule(call, PluginTaskScheduler.Priority.BACKGROUND, current -> {
+            scanTask = current;
             try {
-                JSObject result = performMediaStoreScan();
-                mainHandler.post(() -> call.resolve(result));
+                body.run();
+                if (current.isCancelled()) mainHandler.post(() -> resolveError(call, "cancelled"));
             } catch (Exception e) {
                 mainHandler.post(() -> resolveError(call, "Scan failed: " + e.getMessage()));
             } finally {
-                isScanning = false;
+                endScan();
             }
-        });
+        }, () -> isScanning = false);
     }
 
-    private JSObject performMediaStoreScan() {
-        JSArray filesArray = new JSArray();
-        ContentResolver resolver = getContext().getContentResolver();
-        Uri musicUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
-
-        try (Cursor cursor = resolver.query(musicUri, PROJECTION_MUSIC, buildMediaStoreMusicSelection(), null, MediaStore.Audio.Media.DATE_MODIFIED + " DESC")) {
-            if (cursor != null && cursor.moveToFirst()) {
-                int idCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media._ID);
-                int titleCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.TITLE);
-                int artistCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST);
-                int albumCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM);
-                int durationCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DURATION);
-                int sizeCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.SIZE);
-                int modifiedCol = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_MODIFIED);
-
-                do {
-                    long id = cursor.getLong(idCol);
-                    filesArray.put(new JSObject()
-                            .put("id", String.valueOf(id))
-                            .put("name", formatUnknown(cursor.getString(titleCol)))
-                            .put("artist", formatUnknown(cursor.getString(artistCol)))
-                            .put("album", formatUnknown(cursor.getString(albumCol)))
-                            .put("duration", cursor.getLong(durationCol))
-                            .put("localPath", ContentUris.withAppendedId(musicUri, id).toString())
-                            .put("fileSize", cursor.getLong(sizeCol))
-                            .put("modifiedTime", cursor.getLong(modifiedCol) * 1000));
-                } while (cursor.moveToNext());
-            }
-        } catch (Exception e) {
-            return new JSObject().put("success", false).put("error", "Failed: " + e.getMessage()).put("files", new JSArray());
-        }
-        return new JSObject().put("success", true).put("files", filesArray);
+    private void endScan() {
+        scanTask = null;
+        excludedFolderSet = null;
+        mediaStoreRows = null;
+        isScanning = false;
     }
 
-    /** 构建保守的 MediaStore 音乐过滤条件，优先用系统用途元数据避免关键词误伤。 */
-    private String buildMediaStoreMusicSelection() {
-        String selection = MediaStore.Audio.Media.IS_MUSIC + " != 0";
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            selection += " AND " + MediaStore.Audio.Media.IS_RECORDING + " = 0"
-                    + " AND " + MediaStore.Audio.Media.IS_PODCAST + " = 0"
-                    + " AND " + MediaStore.Audio.Media.IS_RINGTONE + " = 0"
-                    + " AND " + MediaStore.Audio.Media.IS_ALARM + " = 0"
-                    + " AND " + MediaStore.Audio.Media.IS_NOTIFICATION + " = 0";
-        }
-        return selection;
+    private interface ScanBody {
+        void run() throws Exception;
+    }
+
+    private boolean isScanCancelled() {
+        PluginTaskScheduler.Task task = scanTask;
+        return task != null && task.isCancelled();
+    }
+
+    private List<ScannedTrack> performMediaStoreScan() {
+        List<ScannedTrack> tracks = new ArrayList<>();
+        MediaStoreScanner.scan(getContext().getContentResolver(), row -> {
+            if (isScanCancelled()) return false;
+            ScannedTrack track = new ScannedTrack();
+            track.id = row.id;
+            track.name = row.title;
+            track.artist = row.artist;
+            track.album = row.album;
+            track.duration = row.duration;
+            track.localPath = row.localPath;
+            track.fileSize = row.fileSize;
+            track.modifiedTime = row.modifiedTime;
+            indexTrack(track);
+            tracks.add(track);
+            return true;
+        });
+        onScanIndexed(tracks);
+        return tracks;
     }
 
     private void executeAllStorageScan(PluginCall call) {
         isScanning = true;
-        scanExecutor.execute(() -> {
-            try {
-                excludedFolderSet = loadExcludedFolders();
-                List<JSObject> filesList = new ArrayList<>();
-                File extStorage = Environment.getExternalStorageDirectory();
-                if (extStorage != null && extStorage.canRead()) scanDirectory(extStorage, filesList, 0);
+        boolean columnar = isColumnarRequested(call);
+        scheduleScan(call, () -> {
+            List<ScannedTrack> tracks = performAllStorageScan();
+            if (isScanCancelled()) return;
+            saveSnapshot(tracks, LibrarySnapshot.SOURCE_FULL);
+            resolveScan(call, tracks, columnar);
+        });
+    }
 
-                JSArray filesArray = new JSArray();
-                for (JSObject file : filesList) filesArray.put(file);
+    private List<ScannedTrack> performAllStorageScan() {
+        excludedFolderSet = loadExcludedFolders();
+        mediaStoreRows = loadMediaStoreRows();
+        List<ScannedTrack> tracks = new ArrayList<>();
+        File extStorage = Environment.getExternalStorageDirectory();
+        if (extStorage != null && extStorage.canRead()) scanDirectory(extStorage, tracks, 0);
+        onScanIndexed(tracks);
+        return tracks;
+    }
 
-                mainHandler.post(() -> resolveSuccess(call, "files", filesArray));
-            } catch (Exception e) {
-                mainHandler.post(() -> resolveError(call, "Scan failed: " + e.getMessage()));
-            } finally {
-                excludedFolderSet = null;
-                isScanning = false;
+    /**
+     * 一次查询载入 MediaStore 的全部音频记录，以 DATA 路径为键
+     * 全盘扫描遍历文件系统时，记录与文件大小、修改时间一致的直接复用其标签，只有 MediaStore 未收录或已过期的文件
+     * 才用 MediaMetadataRetriever 解析。这里不按 IS_MUSIC 过滤，文件去留仍由目录规则和时长决定，与逐个解析时一致。
+     */
+    @SuppressWarnings("deprecation")
+    private Map<String, MediaStoreRow> loadMediaStoreRows() {
+        Map<String, MediaStoreRow> rows = new HashMap<>();
+        try (Cursor cursor = getContext().getContentResolver().query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                PROJECTION_MEDIA_ROWS, null, null, null)) {
+            if (cursor == null) return rows;
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(0);
+                if (path == null) continue;
+                MediaStoreRow row = new MediaStoreRow();
+                row.title = cursor.getString(1);
+                row.artist = cursor.getString(2);
+                row.album = cursor.getString(3);
+                row.duration = cursor.getLong(4);
+                row.fileSize = cursor.getLong(5);
+                row.modifiedSeconds = cursor.getLong(6);
+                rows.put(path, row);
             }
-        });
+        } catch (Exception e) {
+            android.util.Log.w("LocalMusicPlugin", "MediaStore unavailable, extracting all tags", e);
+        }
+        return rows;
+    }
+
+    private List<ScannedTrack> performTreeScan(Uri treeUri) throws InterruptedException {
+        String treePath = extractPathFromTreeUri(treeUri);
+        boolean ownDownload = treePath != null && treePath.contains("Download/OtterMusic");
+        List<ScannedTrack> tracks = Collections.synchronizedList(new ArrayList<>());
+        new SafTreeScanner(getContext().getContentResolver(), TREE_SCAN_PARALLELISM, MAX_DEPTH).scan(treeUri,
+                (name, mimeType) -> isAudioFile(name),
+                () -> isScanCancelled() || tracks.size() >= MAX_FILES,
+                document -> {
+                    ScannedTrack track = trackFromDocument(document, ownDownload);
+                    if (track != null) tracks.add(track);
+                });
+        return new ArrayList<>(tracks);
+    }
+
+    /** 目录树中的文件转为曲目；索引中修改时间与大小一致且时长已知的记录直接复用，否则解析标签 */
+    private ScannedTrack trackFromDocument(SafTreeScanner.Document document, boolean ownDownload) {
+        String localPath = document.uri.toString();
+        ScannedTrack track = new ScannedTrack();
+        track.id = String.valueOf(localPath.hashCode());
+        track.localPath = localPath;
+        track.fileSize = document.size;
+        track.modifiedTime = document.lastModified;
+
+        if (!applyIndexedTags(track)) {
+            String[] parsed = parseFileName(document.name);
+            track.name = parsed[0];
+            track.artist = parsed[1];
+            try (MediaMetadataRetriever retriever = new MediaMetadataRetriever()) {
+                setRetrieverDataSource(retriever, localPath);
+                applyTags(track, ownDownload, parsed,
+                        retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE),
+                        retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST),
+                        retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM));
+                String mDuration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+                if (isValid(mDuration)) {
+                    long duration = Long.parseLong(mDuration);
+                    if (duration < 60000) return null;
+                    track.duration = duration;
+                }
+            } catch (Exception ignored) {}
+        }
+
+        indexTrackWithTags(track);
+        return track;
     }
 
-    private void scanDirectory(File directory, List<JSObject> filesList, int depth) {
+    private void scanDirectory(File directory, List<ScannedTrack> filesList, int depth) {
         if (depth > MAX_DEPTH || directory == null || !directory.canRead() || filesList.size() >= MAX_FILES) return;
+        if (isScanCancelled()) return;
         if (directory.getName().startsWith(".") || isSystemDirectory(directory)) return;
 
         File[] children = directory.listFiles();
@@ -308,50 +624,420 @@ public class LocalMusicPlugin extends Plugin {
             if (file.isDirectory()) {
                 scanDirectory(file, filesList, depth + 1);
             } else if (isAudioFile(file.getName())) {
-                JSObject audioFile = extractAudioMetadata(file);
-                if (audioFile != null) filesList.add(audioFile);
+                ScannedTrack track = extractAudioMetadata(file);
+                if (track != null) filesList.add(track);
             }
         }
     }
 
-    private JSObject extractAudioMetadata(File file) {
+    private ScannedTrack extractAudioMetadata(File file) {
         if (!file.exists() || !file.canRead()) return null;
 
         String[] parsed = parseFileName(file.getName());
-        JSObject audioFile = new JSObject()
-                .put("id", String.valueOf(file.hashCode()))
-                .put("localPath", file.getAbsolutePath())
-                .put("fileSize", file.length())
-                .put("modifiedTime", file.lastModified())
-                .put("name", parsed[0])
-                .put("artist", parsed[1])
-                .put("album", (String) null)
-                .put("duration", 0);
-
-        try (MediaMetadataRetriever retriever = new MediaMetadataRetriever()) {
-            setRetrieverDataSource(retriever, file.getAbsolutePath());
-            String mTitle = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
-            String mArtist = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
-            String mAlbum = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
-            String mDuration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-
-            if (isValid(mTitle)) audioFile.put("name", mTitle);
-            if (isValid(mAlbum)) audioFile.put("album", mAlbum);
-            if (isValid(mArtist) && !(isOtterMusicDownloadPath(file) && containsArtistDelimiter(parsed[1]) && !containsArtistDelimiter(mArtist))) {
-                audioFile.put("artist", mArtist);
-            }
-            if (isValid(mDuration)) {
-                long duration = Long.parseLong(mDuration);
-                if (duration < 60000) return null;
-                audioFile.put("duration", duration);
+        ScannedTrack track = new ScannedTrack();
+        track.id = String.valueOf(file.hashCode());
+        track.localPath = file.getAbsolutePath();
+        track.fileSize = file.length();
+        track.modifiedTime = file.lastModified();
+        track.name = parsed[0];
+        track.artist = parsed[1];
+
+        MediaStoreRow row = mediaStoreRows != null ? mediaStoreRows.get(track.localPath) : null;
+        if (row != null && row.matches(track)) {
+            // 无标题标签时 MediaStore 以去掉扩展名的文件名作标题，此时按文件名解析的结果为准
+            String baseName = file.getName();
+            int dot = baseName.lastIndexOf('.');
+            if (dot > 0) baseName = baseName.substring(0, dot);
+            applyTags(track, isOtterMusicDownloadPath(file), parsed,
+                    baseName.equals(row.title) ? null : row.title, row.artist, row.album);
+            if (row.duration < 60000) return null;
+            track.duration = row.duration;
+        } else if (!applyIndexedTags(track)) {
+            try (MediaMetadataRetriever retriever = new MediaMetadataRetriever()) {
+                setRetrieverDataSource(retriever, file.getAbsolutePath());
+                String mTitle = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
+                String mArtist = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
+                String mAlbum = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
+                String mDuration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+
+                applyTags(track, isOtterMusicDownloadPath(file), parsed, mTitle, mArtist, mAlbum);
+                if (isValid(mDuration)) {
+                    long duration = Long.parseLong(mDuration);
+                    if (duration < 60000) return null;
+                    track.duration = duration;
+                }
+            } catch (Exception ignored) {}
+        }
+
+        indexTrackWithTags(track);
+        return track;
+    }
+
+    /** 索引中修改时间与大小一致且时长已知时直接沿用上次解析的标签，返回是否命中 */
+    private boolean applyIndexedTags(ScannedTrack track) {
+        LocalTrackIndex.Entry cached = trackIndex.lookup(track.localPath, track.modifiedTime);
+        if (cached == null || cached.fileSize != track.fileSize || cached.duration <= 0) return false;
+        track.name = cached.title;
+        track.artist = cached.artist;
+        track.album = cached.album;
+        track.duration = cached.duration;
+        return true;
+    }
+
+    /** 用标签覆盖按文件名解析出的歌名与歌手，缺失的标签保留文件名结果 */
+    private void applyTags(ScannedTrack track, boolean ownDownload, String[] parsed,
+                           String title, String artist, String album) {
+        if (isValid(title)) track.name = title;
+        if (isValid(album)) track.album = album;
+        if (isValid(artist) && !(ownDownload && containsArtistDelimiter(parsed[1]) && !containsArtistDelimiter(artist))) {
+            track.artist = artist;
+        }
+    }
+
+    /** 把扫描到的曲目登记到扫描索引与检索索引 */
+    private void indexTrack(ScannedTrack track) {
+        track.entry = trackIndex.touch(track.localPath, track.modifiedTime, track.fileSize,
+                track.id, track.name, track.artist, track.album, track.duration);
+        searchIndex.put(track.localPath, track.id, track.name, track.artist, track.album);
+        aggregate(track.entry);
+    }
+
+    /** 登记曲目并在同一次扫描中探测内嵌封面与歌词位置，文件未变时沿用索引中的结果 */
+    private void indexTrackWithTags(ScannedTrack track) {
+        indexTrack(track);
+        if (track.entry.tags != null) return;
+        TagProbe.Result tags = probeTags(track.localPath);
+        if (tags == null) return;
+        LocalTrackIndex.Entry updated = trackIndex.setTags(track.localPath, track.modifiedTime, tags);
+        if (updated == null) return;
+        track.entry = updated;
+        aggregate(updated);
+    }
+
+    /** 只读标签头定位封面与歌词，无法打开文件时返回 null */
+    private TagProbe.Result probeTags(String localPath) {
+        try (FileInputStream input = openLocalFileStream(localPath)) {
+            return TagProbe.probe(input.getChannel());
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 索引中该文件的封面与歌词位置；尚未探测时现在探测并记入索引
+     * 文件不在索引中或已修改时返回 null，由调用方按原方式完整解析。
+     */
+    private TagProbe.Result tagsFor(String localPath) {
+        LocalTrackIndex.Entry entry = trackIndex.lookup(localPath, resolveModifiedTime(localPath));
+        if (entry == null) return null;
+        if (entry.tags != null) return entry.tags;
+        TagProbe.Result tags = probeTags(localPath);
+        if (tags != null) trackIndex.setTags(localPath, entry.modifiedTime, tags);
+        return tags;
+    }
+
+    /** 可定位读取的文件流；content URI 经文件描述符打开 */
+    private FileInputStream openLocalFileStream(String localPath) throws IOException {
+        if (localPath.startsWith(SCHEME_CONTENT)) {
+            ParcelFileDescriptor pfd = getContext().getContentResolver().openFileDescriptor(Uri.parse(localPath), "r");
+            if (pfd == null) throw new IOException("Cannot open " + localPath);
+            return new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+        }
+        return new FileInputStream(resolvePlainPath(localPath));
+    }
+
+    private byte[] readRange(String localPath, long offset, int length) throws IOException {
+        try (FileInputStream input = openLocalFileStream(localPath)) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (input.getChannel().read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
             }
-        } catch (Exception ignored) {}
+            return buffer.array();
+        }
+    }
+
+    /**
+     * 返回扫描结果：默认为 files 数组；请求 format: "columnar" 时写成列式二进制文件，
+     * 经本地 HTTP 服务发布后只回传地址，避免上万条记录走 JSON 桥。服务不可用时退回数组。
+     */
+    private void resolveScan(PluginCall call, List<ScannedTrack> tracks, boolean columnar) {
+        if (columnar) {
+            try {
+                File file = writeColumnarScan(tracks);
+                BilibiliProxyPlugin.ensureServer(getContext()).whenComplete((server, error) -> {
+                    if (error != null) {
+                        resolveScan(call, tracks, false);
+                        return;
+                    }
+                    String url = server.publishFile("scan", file, "application/octet-stream");
+                    mainHandler.post(() -> call.resolve(new JSObject()
+                            .put("success", true)
+                            .put("files", new JSArray())
+                            .put("count", tracks.size())
+                            .put("columnarUrl", url)));
+                });
+                return;
+            } catch (IOException e) {
+                android.util.Log.w("LocalMusicPlugin", "Columnar scan result unavailable", e);
+            }
+        }
+        JSArray filesArray = new JSArray();
+        for (ScannedTrack track : tracks) filesArray.put(track.toJs());
+        mainHandler.post(() -> resolveSuccess(call, "files", filesArray));
+    }
+
+    private static ColumnarScanWriter columnarWriter(List<ScannedTrack> tracks) {
+        ColumnarScanWriter writer = new ColumnarScanWriter();
+        for (ScannedTrack track : tracks) {
+            boolean loudness = track.entry != null && track.entry.hasLoudness();
+            writer.add(track.id, track.name, track.artist, track.album, track.localPath,
+                    track.duration, track.fileSize, track.modifiedTime,
+                    loudness ? track.entry.loudnessLufs : Float.NaN, loudness ? track.entry.peak : Float.NaN,
+                    ColumnarScanWriter.tagFlags(track.entry != null ? track.entry.tags : null));
+        }
+        return writer;
+    }
+
+    private File writeColumnarScan(List<ScannedTrack> tracks) throws IOException {
+        ColumnarScanWriter writer = columnarWriter(tracks);
+        File file = new File(getContext().getCacheDir(), COLUMNAR_SCAN_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            writer.writeTo(out);
+        }
+        // 替换而非覆写，正在被读取的旧文件不受影响
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        return file;
+    }
+
+    /**
+     * 快速扫描与全盘扫描的结果即为当前曲库：聚合索引只保留这些曲目，并保存为曲库快照
+     * 返回快照内容是否有变化；写入失败只记日志，不影响本次扫描结果
+     */
+    private boolean saveSnapshot(List<ScannedTrack> tracks, String source) {
+        List<String> paths = new ArrayList<>(tracks.size());
+        for (ScannedTrack track : tracks) paths.add(track.localPath);
+        searchIndex.retain(paths);
+        aggregates.retain(paths);
+        try {
+            return LibrarySnapshot.write(getContext(), columnarWriter(tracks), source);
+        } catch (IOException e) {
+            android.util.Log.w("LocalMusicPlugin", "Cannot save library snapshot", e);
+            return false;
+        }
+    }
+
+    private boolean isColumnarRequested(PluginCall call) {
+        return "columnar".equals(call.getString("format"));
+    }
+
+    /** 检索索引与聚合索引未就绪且没有在重建时，在后台重建 */
+    private void ensureLibraryIndexes() {
+        if (libraryIndexesReady || !libraryIndexesRebuilding.compareAndSet(false, true)) return;
+        scheduler.submit(PluginTaskScheduler.Priority.BACKGROUND, null, task -> rebuildLibraryIndexes(), null);
+    }
+
+    /**
+     * 按曲库快照中的曲目，从持久化的扫描索引重建检索索引与歌手、专辑聚合（启动时或内存回收后），之后随扫描与删除增量更新
+     * 扫描索引不随扫描清理，会留有已在应用外删除的曲目，因此只取快照中的路径；没有可用快照时留空，等待首次扫描。
+     */
+    private void rebuildLibraryIndexes() {
+        try {
+            List<String> paths = LibrarySnapshot.paths(getContext());
+            Set<String> library = paths == null ? new HashSet<>() : new HashSet<>(paths);
+            for (LocalTrackIndex.Entry entry : trackIndex.entries()) {
+                if (entry.id == null || !library.contains(entry.path)) continue;
+                searchIndex.put(entry.path, entry.id, entry.title, entry.artist, entry.album);
+                aggregate(entry);
+            }
+            libraryIndexesReady = true;
+        } finally {
+            libraryIndexesRebuilding.set(false);
+        }
+    }
+
+    private void aggregate(LocalTrackIndex.Entry entry) {
+        TagProbe.Result tags = entry.tags;
+        int cover = tags == null || tags.coverLength == TagProbe.UNKNOWN ? LocalLibraryAggregates.COVER_UNKNOWN
+                : tags.coverLength > 0 ? LocalLibraryAggregates.COVER_PRESENT : LocalLibraryAggregates.COVER_NONE;
+        aggregates.put(entry.path, entry.title, entry.artist, entry.album, entry.duration, entry.fileSize,
+                entry.modifiedTime, cover, entry.path.contains("Download/OtterMusic"));
+    }
+
+    /** 扫描结束后落盘索引，并把新出现或已变化的曲目交给后台响度分析。 */
+    private void onScanIndexed(List<ScannedTrack> tracks) {
+        List<String> scannedPaths = new ArrayList<>(tracks.size());
+        for (ScannedTrack track : tracks) scannedPaths.add(track.localPath);
+        trackIndex.save();
+        loudnessJob.enqueue(scannedPaths);
+    }
+
+    /** 附加索引中的响度分析结果：积分响度（LUFS）、ReplayGain 2.0 增益（dB）与采样峰值。 */
+    private void putLoudness(JSObject target, LocalTrackIndex.Entry entry) {
+        if (entry == null || !entry.hasLoudness()) return;
+        target.put("loudnessLufs", round2(entry.loudnessLufs))
+                .put("replayGain", round2(LoudnessMeter.replayGainOf(entry.loudnessLufs)));
+        if (!Float.isNaN(entry.peak)) target.put("peak", Math.round(entry.peak * 10000) / 10000.0);
+    }
+
+    private static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    // --- 检索 ---
+
+    /**
+     * 在本地曲库中检索歌名、歌手、专辑及拼音首字母，返回按相关度排序的曲目 ID
+     * 检索索引尚未建立（首次扫描前或启动重建中）时 indexed 为 false，由前端自行过滤。
+     */
+    @PluginMethod
+    public void searchLocal(PluginCall call) {
+        ensureLibraryIndexes();
+        String query = call.getString("query", "");
+        int limit = Math.max(1, call.getInt("limit", DEFAULT_SEARCH_LIMIT));
+        boolean indexed = libraryIndexesReady && searchIndex.size() > 0;
+        JSArray ids = new JSArray();
+        if (indexed) {
+            for (String id : searchIndex.search(query, limit)) ids.put(id);
+        }
+        call.resolve(new JSObject().put("success", true).put("indexed", indexed).put("ids", ids));
+    }
+
+    /**
+     * 分页列出歌手，多歌手曲目计入每位歌手；sort 为 count（曲目数降序，默认）或 name
+     * 聚合索引尚未建立时 indexed 为 false。
+     */
+    @PluginMethod
+    public void getArtists(PluginCall call) {
+        ensureLibraryIndexes();
+        resolveGroups(call, aggregates.artists(call.getInt("offset", 0),
+                call.getInt("limit", DEFAULT_GROUP_PAGE_SIZE), call.getString("sort")));
+    }
+
+    /** 分页列出专辑，按专辑名与第一位歌手分组 */
+    @PluginMethod
+    public void getAlbums(PluginCall call) {
+        ensureLibraryIndexes();
+        resolveGroups(call, aggregates.albums(call.getInt("offset", 0),
+                call.getInt("limit", DEFAULT_GROUP_PAGE_SIZE), call.getString("sort")));
+    }
+
+    /** 歌手或专辑下全部曲目的 localPath，按修改时间从新到旧 */
+    @PluginMethod
+    public void getGroupTracks(PluginCall call) {
+        ensureLibraryIndexes();
+        String key = call.getString("key");
+        if (key == null) {
+            resolveError(call, "key is required");
+            return;
+        }
+        List<String> paths = "album".equals(call.getString("type"))
+                ? aggregates.albumTracks(key) : aggregates.artistTracks(key);
+        JSArray array = new JSArray();
+        for (String path : paths) array.put(path);
+        call.resolve(new JSObject().put("success", true).put("paths", array));
+    }
+
+    private void resolveGroups(PluginCall call, LocalLibraryAggregates.Page page) {
+        JSArray items = new JSArray();
+        for (LocalLibraryAggregates.Group group : page.items) {
+            JSObject item = new JSObject()
+                    .put("key", group.key)
+                    .put("name", group.name)
+                    .put("trackCount", group.trackCount)
+                    .put("duration", group.duration);
+            if (group.artist != null) item.put("artist", group.artist);
+            if (group.coverPath != null) item.put("coverPath", group.coverPath);
+            items.put(item);
+        }
+        call.resolve(new JSObject()
+                .put("success", true)
+                .put("indexed", libraryIndexesReady)
+                .put("total", page.total)
+                .put("items", items));
+    }
+
+    // --- 响度分析 ---
+
+    /** 对尚未分析的曲目做后台响度分析；不传 paths 时处理索引中全部待分析曲目。 */
+    @PluginMethod
+    public void startLoudnessAnalysis(PluginCall call) {
+        List<String> paths = readStringArray(call, "paths");
+        int queued = loudnessJob.enqueue(paths.isEmpty() ? null : paths);
+        call.resolve(new JSObject()
+                .put("success", true)
+                .put("queued", queued)
+                .put("pending", loudnessJob.getPendingCount()));
+    }
+
+    @PluginMethod
+    public void cancelLoudnessAnalysis(PluginCall call) {
+        loudnessJob.cancel();
+        resolveSuccess(call, null, null);
+    }
+
+    // --- 任务调度 ---
+
+    /** 取消以 requestId 发起的请求；排队中的请求以 cancelled 结束，运行中的扫描、转封装会尽快停止。 */
+    @PluginMethod
+    public void cancelRequest(PluginCall call) {
+        String requestId = call.getString("requestId");
+        if (!isValid(requestId)) {
+            resolveError(call, "requestId is required");
+            return;
+        }
+        call.resolve(new JSObject().put("success", true).put("cancelled", scheduler.cancel(requestId)));
+    }
+
+    /** 各优先级的排队与运行中任务数。 */
+    @PluginMethod
+    public void getQueueStats(PluginCall call) {
+        JSObject result = new JSObject().put("success", true);
+        for (PluginTaskScheduler.Priority priority : PluginTaskScheduler.Priority.values()) {
+            result.put(priority.key(), new JSObject()
+                    .put("queued", scheduler.getQueued(priority))
+                    .put("running", scheduler.getRunning(priority)));
+        }
+        call.resolve(result);
+    }
 
-        return audioFile;
+    /** 原生缓存的内存预算：各缓存的估算占用、预算上限、Java 堆占用与最近一次系统内存回收。 */
+    @PluginMethod
+    public void getMemoryUsage(PluginCall call) {
+        MemoryBudget budget = MemoryBudget.get();
+        JSArray caches = new JSArray();
+        long total = 0;
+        for (MemoryBudget.Usage usage : budget.usage()) {
+            caches.put(new JSObject()
+                    .put("name", usage.name)
+                    .put("priority", usage.priority.name().toLowerCase())
+                    .put("bytes", usage.bytes));
+            total += usage.bytes;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        call.resolve(new JSObject()
+                .put("success", true)
+                .put("limitBytes", budget.getLimitBytes())
+                .put("totalBytes", total)
+                .put("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory())
+                .put("heapMaxBytes", runtime.maxMemory())
+                .put("trimCount", budget.getTrimCount())
+                .put("lastTrimLevel", budget.getLastTrimLevel())
+                .put("lastTrimAt", budget.getLastTrimAt())
+                .put("caches", caches));
     }
 
     // --- 文件操作 ---
 
+    /**
+     * 返回经本地 HTTP 服务按 Range 读取的播放地址，拖动进度时只读取所需区间
+     * 服务不可用时退回 content URI 或 file URI。
+     */
     @PluginMethod
     public void getLocalFileUrl(PluginCall call) {
         String localPath = call.getString("localPath");
@@ -359,13 +1045,19 @@ public class LocalMusicPlugin extends Plugin {
             resolveError(call, "localPath is required");
             return;
         }
-        if (localPath.startsWith(SCHEME_CONTENT)) {
-            resolveSuccess(call, "url", localPath);
+        boolean content = localPath.startsWith(SCHEME_CONTENT);
+        File file = content ? null : new File(resolvePlainPath(localPath));
+        if (file != null && !file.exists()) {
+            resolveError(call, "File not found");
             return;
         }
-        File file = new File(localPath);
-        if (!file.exists()) resolveError(call, "File not found");
-        else resolveSuccess(call, "url", Uri.fromFile(file).toString());
+        String fallback = content ? localPath : Uri.fromFile(file).toString();
+        BilibiliProxyPlugin.ensureServer(getContext()).whenComplete((server, error) -> {
+            String url = null;
+            if (error == null) url = server.publishLocal(localPath, audioContentType(localPath));
+            String resolved = url != null ? url : fallback;
+            mainHandler.post(() -> resolveSuccess(call, "url", resolved));
+        });
     }
 
     /** 读取音频文件内嵌封面，返回可直接用于 img.src 的 data URL。 */
@@ -377,10 +1069,19 @@ public class LocalMusicPlugin extends Plugin {
             return;
         }
 
-        ioExecutor.execute(() -> {
+        schedule(call, PluginTaskScheduler.Priority.VISIBLE, task -> {
             try (MediaMetadataRetriever retriever = new MediaMetadataRetriever()) {
-                setRetrieverDataSource(retriever, localPath);
-                byte[] picture = retriever.getEmbeddedPicture();
+                // 扫描时已定位的封面直接按偏移读取，确认没有封面的不再打开文件解析
+                TagProbe.Result tags = tagsFor(localPath);
+                byte[] picture;
+                if (tags != null && tags.coverLength == 0) {
+                    picture = null;
+                } else if (tags != null && tags.coverOffset >= 0 && tags.coverLength <= MAX_DIRECT_TAG_READ) {
+                    picture = readRange(localPath, tags.coverOffset, tags.coverLength);
+                } else {
+                    setRetrieverDataSource(retriever, localPath);
+                    picture = retriever.getEmbeddedPicture();
+                }
                 if (picture == null || picture.length == 0) {
                     mainHandler.post(() -> resolveError(call, "No embedded cover"));
                     return;
@@ -398,7 +1099,10 @@ public class LocalMusicPlugin extends Plugin {
         });
     }
 
-    /** 读取 MP3 ID3v2 USLT 非同步歌词帧。 */
+    /**
+     * 读取 MP3 ID3v2 USLT 非同步歌词帧。
+     * parse 为 true 时附带 LrcParser 解析出的时间轴；歌词与解析结果按路径和修改时间缓存在内存中。
+     */
     @PluginMethod
     public void getEmbeddedLyrics(PluginCall call) {
         String localPath = call.getString("localPath");
@@ -406,21 +1110,35 @@ public class LocalMusicPlugin extends Plugin {
             resolveError(call, "localPath is required");
             return;
         }
+        boolean parse = Boolean.TRUE.equals(call.getBoolean("parse", false));
 
-        ioExecutor.execute(() -> {
+        schedule(call, PluginTaskScheduler.Priority.INTERACTIVE, task -> {
             try {
-                String[] parts = extractUsltLyrics(localPath);
-                if (parts == null || !isValid(parts[0])) {
-                    mainHandler.post(() -> resolveError(call, "No embedded lyrics"));
-                    return;
+                String cacheKey = localPath + SEPARATOR + resolveModifiedTime(localPath);
+                EmbeddedLyrics lyrics;
+                synchronized (lyricsCache) {
+                    lyrics = lyricsCache.get(cacheKey);
+                }
+                if (lyrics == null) {
+                    String[] parts = readEmbeddedLyrics(localPath);
+                    if (parts == null || !isValid(parts[0])) {
+                        mainHandler.post(() -> resolveError(call, "No embedded lyrics"));
+                        return;
+                    }
+                    lyrics = new EmbeddedLyrics(parts[0], parts.length > 1 ? parts[1] : null);
+                    synchronized (lyricsCache) {
+                        lyricsCache.put(cacheKey, lyrics);
+                    }
+                    MemoryBudget.get().enforce();
                 }
 
                 JSObject result = new JSObject()
                         .put("success", true)
-                        .put("lyric", parts[0]);
-                if (parts.length > 1 && parts[1] != null) {
-                    result.put("tlyric", parts[1]);
+                        .put("lyric", lyrics.lyric);
+                if (lyrics.tlyric != null) {
+                    result.put("tlyric", lyrics.tlyric);
                 }
+                if (parse) result.put("timeline", timelineToJs(lyrics.timeline()));
                 mainHandler.post(() -> call.resolve(result));
             } catch (Exception e) {
                 mainHandler.post(() -> resolveError(call, "Failed: " + e.getMessage()));
@@ -428,6 +1146,183 @@ public class LocalMusicPlugin extends Plugin {
         });
     }
 
+    /** 读取内嵌歌词，返回原文与译文；索引已确认没有歌词时不打开文件 */
+    private String[] readEmbeddedLyrics(String localPath) throws IOException {
+        TagProbe.Result tags = tagsFor(localPath);
+        if (tags != null && tags.lyricsLength == 0) return null;
+        if (tags != null && tags.lyricsOffset >= 0 && tags.lyricsLength <= MAX_DIRECT_TAG_READ) {
+            return splitLyrics(decodeUsltFrame(readRange(localPath, tags.lyricsOffset, tags.lyricsLength)));
+        }
+        return extractUsltLyrics(localPath);
+    }
+
+    /** 按 localPath 与修改时间缓存的内嵌歌词，解析结果在首次请求时生成 */
+    private static final class EmbeddedLyrics {
+        final String lyric;
+        final String tlyric;
+        private LrcParser.Timeline timeline;
+
+        EmbeddedLyrics(String lyric, String tlyric) {
+            this.lyric = lyric;
+            this.tlyric = tlyric;
+        }
+
+        synchronized LrcParser.Timeline timeline() {
+            if (timeline == null) timeline = LrcParser.parse(lyric, tlyric);
+            return timeline;
+        }
+
+        synchronized long estimatedBytes() {
+            long bytes = 64 + 2L * ((lyric != null ? lyric.length() : 0) + (tlyric != null ? tlyric.length() : 0));
+            return timeline != null ? bytes + timeline.estimatedBytes() : bytes;
+        }
+    }
+
+    /** 时间轴的紧凑形式：各列为数字数组，文本只传一次去重后的字符串表 */
+    private static JSObject timelineToJs(LrcParser.Timeline timeline) {
+        return new JSObject()
+                .put("times", toJsArray(timeline.times))
+                .put("lines", toJsArray(timeline.lines))
+                .put("translations", toJsArray(timeline.translations))
+                .put("strings", timeline.strings)
+                .put("offsets", toJsArray(timeline.offsets))
+                .put("wordStarts", toJsArray(timeline.wordStarts))
+                .put("wordTimes", toJsArray(timeline.wordTimes))
+                .put("wordOffsets", toJsArray(timeline.wordOffsets));
+    }
+
+    private static JSArray toJsArray(long[] values) {
+        JSArray array = new JSArray();
+        for (long value : values) array.put(value);
+        return array;
+    }
+
+    private static JSArray toJsArray(int[] values) {
+        JSArray array = new JSArray();
+        for (int value : values) array.put(value);
+        return array;
+    }
+
+    /** 将 B站 .m4s（DASH 分片 MP4）批量无损转封装为标准 .m4a，逐文件推送 remuxProgress 事件。 */
+    @PluginMethod
+    public void remuxToM4a(PluginCall call) {
+        List<String> paths = readStringArray(call, "paths");
+        if (paths.isEmpty()) {
+            resolveError(call, "paths is required");
+            return;
+        }
+        boolean deleteSource = Boolean.TRUE.equals(call.getBoolean("deleteSource", false));
+
+        schedule(call, PluginTaskScheduler.Priority.BACKGROUND, task -> {
+            AudioRemuxer remuxer = new AudioRemuxer();
+            JSArray results = new JSArray();
+            List<String> changedPaths = new ArrayList<>();
+            int total = paths.size();
+            for (int i = 0; i < total && !task.isCancelled(); i++) {
+                String localPath = paths.get(i);
+                JSObject item = new JSObject().put("localPath", localPath);
+                try {
+                    if (localPath.startsWith(SCHEME_CONTENT)) throw new IOException("content:// URI is not supported");
+                    File input = new File(resolvePlainPath(localPath));
+                    if (!input.exists()) throw new IOException("File not found");
+
+                    File output = AudioRemuxer.outputFor(input);
+                    final int index = i;
+                    remuxer.remux(input, output, progress -> notifyListeners("remuxProgress", new JSObject()
+                            .put("index", index)
+                            .put("total", total)
+                            .put("localPath", localPath)
+                            .put("progress", progress)));
+                    changedPaths.add(output.getAbsolutePath());
+                    if (deleteSource && input.delete()) changedPaths.add(input.getAbsolutePath());
+                    item.put("success", true).put("outputPath", output.getAbsolutePath());
+                } catch (IOException e) {
+                    item.put("success", false).put("error", e.getMessage());
+                }
+                results.put(item);
+            }
+            // 通知 MediaStore 收录新文件、移除已删除的源文件
+            if (!changedPaths.isEmpty()) {
+                MediaScannerConnection.scanFile(getContext(), changedPaths.toArray(new String[0]), null, null);
+                for (String path : changedPaths) invalidateLocalStream(path);
+            }
+            mainHandler.post(() -> call.resolve(new JSObject().put("success", true).put("results", results)));
+        });
+    }
+
+    // --- 波形 ---
+
+    /** 读取波形峰值；peaks 为 base64 编码的 buckets 个 min 字节后接 buckets 个 max 字节（-127..127）。 */
+    @PluginMethod
+    public void getWaveform(PluginCall call) {
+        String localPath = call.getString("localPath");
+        if (!isValid(localPath)) {
+            resolveError(call, "localPath is required");
+            return;
+        }
+        int buckets = readBucketCount(call);
+
+        // 解码在调度器线程上进行，requestId 取消时随即停止
+        schedule(call, PluginTaskScheduler.Priority.VISIBLE, task -> {
+            WaveformBuilder.Peaks peaks;
+            try {
+                peaks = waveformCache.load(localPath, resolveModifiedTime(localPath), buckets, false, task::isCancelled);
+            } catch (IOException | InterruptedException e) {
+                mainHandler.post(() -> resolveError(call, "Failed: " + e.getMessage()));
+                return;
+            }
+            if (peaks == null) {
+                mainHandler.post(() -> resolveError(call, "cancelled"));
+                return;
+            }
+            byte[] packed = Arrays.copyOf(peaks.min, peaks.buckets * 2);
+            System.arraycopy(peaks.max, 0, packed, peaks.buckets, peaks.buckets);
+            JSObject result = new JSObject()
+                    .put("success", true)
+                    .put("buckets", peaks.buckets)
+                    .put("durationMs", peaks.durationMs)
+                    .put("peaks", Base64.encodeToString(packed, Base64.NO_WRAP));
+            mainHandler.post(() -> call.resolve(result));
+        });
+    }
+
+    /** 以后台优先级为即将播放的曲目预先计算波形，立即返回；可按 requestId 取消。 */
+    @PluginMethod
+    public void prefetchWaveforms(PluginCall call) {
+        List<String> paths = readStringArray(call, "paths");
+        int buckets = readBucketCount(call);
+        PluginTaskScheduler.Task task = scheduler.submit(PluginTaskScheduler.Priority.BACKGROUND,
+                call.getString("requestId"), current -> {
+            for (String localPath : paths) {
+                if (current.isCancelled()) return;
+                try {
+                    waveformCache.load(localPath, resolveModifiedTime(localPath), buckets, true, current::isCancelled);
+                } catch (IOException e) {
+                    // 单首失败不影响其余预取
+                }
+            }
+        }, null);
+        call.resolve(new JSObject().put("success", true).put("queued", task != null ? paths.size() : 0));
+    }
+
+    private int readBucketCount(PluginCall call) {
+        Integer buckets = call.getInt("buckets", DEFAULT_WAVEFORM_BUCKETS);
+        return Math.max(1, Math.min(MAX_WAVEFORM_BUCKETS, buckets != null ? buckets : DEFAULT_WAVEFORM_BUCKETS));
+    }
+
+    /** 文件修改时间（毫秒）；content URI 取 MediaStore 的 DATE_MODIFIED，查询失败时返回 0。 */
+    private long resolveModifiedTime(String localPath) {
+        if (!localPath.startsWith(SCHEME_CONTENT)) return new File(resolvePlainPath(localPath)).lastModified();
+        Uri uri = Uri.parse(localPath);
+        // SAF document URI 的修改时间本身就是毫秒
+        boolean document = DocumentsContract.isDocumentUri(getContext(), uri);
+        String[] projection = {document ? DocumentsContract.Document.COLUMN_LAST_MODIFIED : MediaStore.Audio.Media.DATE_MODIFIED};
+        try (Cursor cursor = getContext().getContentResolver().query(uri, projection, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) return cursor.getLong(0) * (document ? 1 : 1000);
+        } catch (Exception ignored) {}
+        return 0;
+    }
+
     @PluginMethod
     public void deleteLocalMusic(PluginCall call) {
         String localPath = call.getString("localPath");
@@ -450,6 +1345,143 @@ public class LocalMusicPlugin extends Plugin {
         }
     }
 
+    /**
+     * 批量删除，在后台线程执行并通过 deleteProgress 事件报告进度
+     * 无权直接删除的媒体文件在 Android 11+ 汇总为一次 createDeleteRequest 系统确认；
+     * Android 10 只能逐个确认，这些文件以 needsConsent 返回，由前端改用 deleteLocalMusic 处理。
+     */
+    @PluginMethod
+    public void deleteLocalMusicBatch(PluginCall call) {
+        List<String> paths = readStringArray(call, "paths");
+        if (paths.isEmpty()) {
+            resolveError(call, "paths is required");
+            return;
+        }
+        if (pendingDeleteBatch != null) {
+            resolveError(call, "删除正在进行中");
+            return;
+        }
+        DeleteBatch batch = new DeleteBatch(call, paths.size());
+        pendingDeleteBatch = batch;
+        schedule(call, PluginTaskScheduler.Priority.INTERACTIVE, current -> {
+            for (String localPath : paths) {
+                if (deleteDirectly(batch, localPath)) removeFromIndexes(localPath);
+            }
+            // 逐个尝试结束后再发起一次系统确认
+            if (batch.consentUris.isEmpty()) {
+                finishDeleteBatch(batch);
+            } else {
+                mainHandler.post(() -> requestBatchDeleteConsent(batch));
+            }
+        }, () -> pendingDeleteBatch = null);
+    }
+
+    /**
+     * 直接删除单个文件并记录结果
+     * @return 是否已删除；需要系统确认的记为待确认，不计入结果
+     */
+    private boolean deleteDirectly(DeleteBatch batch, String localPath) {
+        ContentResolver resolver = getContext().getContentResolver();
+        Uri mediaUri = null;
+        try {
+            if (localPath.startsWith(SCHEME_CONTENT)) {
+                Uri uri = Uri.parse(localPath);
+                // 经 SAF 目录扫描得到的 document URI 只能由 DocumentsProvider 删除
+                if (DocumentsContract.isDocumentUri(getContext(), uri)) {
+                    boolean deleted = DocumentsContract.deleteDocument(resolver, uri);
+                    batch.record(localPath, deleted, deleted ? null : "Failed to delete file");
+                    return deleted;
+                }
+                mediaUri = uri;
+                // 返回 0 说明记录已不存在，同样视为删除成功
+                resolver.delete(mediaUri, null, null);
+                batch.record(localPath, true, null);
+                return true;
+            }
+            mediaUri = findMediaStoreUri(localPath);
+            if (mediaUri != null) resolver.delete(mediaUri, null, null);
+            File file = new File(localPath);
+            boolean deleted = !file.exists() || file.delete();
+            batch.record(localPath, deleted, deleted ? null : "Failed to delete file");
+            return deleted;
+        } catch (SecurityException e) {
+            if (mediaUri != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                batch.consentUris.add(mediaUri);
+                batch.consentPaths.add(localPath);
+            } else {
+                boolean recoverable = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                        && e instanceof RecoverableSecurityException;
+                batch.record(localPath, false, recoverable ? "needsConsent" : "Error: " + e.getMessage());
+            }
+            return false;
+        } catch (Exception e) {
+            batch.record(localPath, false, "Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** 文件路径对应的 MediaStore 记录，不在媒体库中时返回 null */
+    private Uri findMediaStoreUri(String path) {
+        Uri collection = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+        try (Cursor cursor = getContext().getContentResolver().query(collection,
+                new String[]{MediaStore.Audio.Media._ID}, MediaStore.Audio.Media.DATA + "=?", new String[]{path}, null)) {
+            if (cursor != null && cursor.moveToFirst()) return ContentUris.withAppendedId(collection, cursor.getLong(0));
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    private void requestBatchDeleteConsent(DeleteBatch batch) {
+        try {
+            IntentSender sender = MediaStore.createDeleteRequest(getContext().getContentResolver(), batch.consentUris)
+                    .getIntentSender();
+            getActivity().startIntentSenderForResult(sender, DELETE_BATCH_REQUEST, null, 0, 0, 0);
+        } catch (IntentSender.SendIntentException | RuntimeException e) {
+            completeConsent(batch, false, "Failed to request delete: " + e.getMessage());
+        }
+    }
+
+    /** 系统确认对话框返回后补全待确认文件的结果；确认后文件已由系统删除 */
+    private void completeConsent(DeleteBatch batch, boolean granted, String error) {
+        Runnable complete = () -> {
+            for (String localPath : batch.consentPaths) {
+                if (granted) {
+                    // 普通文件路径在媒体记录删除后可能仍残留
+                    if (!localPath.startsWith(SCHEME_CONTENT)) new File(localPath).delete();
+                    removeFromIndexes(localPath);
+                }
+                batch.record(localPath, granted, error);
+            }
+            finishDeleteBatch(batch);
+        };
+        // 系统已完成删除，队列已满时也必须补全结果并释放 pendingDeleteBatch
+        if (scheduler.submit(PluginTaskScheduler.Priority.INTERACTIVE, null, task -> complete.run(), null) == null) {
+            complete.run();
+        }
+    }
+
+    private void finishDeleteBatch(DeleteBatch batch) {
+        if (pendingDeleteBatch == batch) pendingDeleteBatch = null;
+        trackIndex.save();
+        JSObject result = new JSObject()
+                .put("success", batch.deleted == batch.total)
+                .put("deleted", batch.deleted)
+                .put("results", batch.results);
+        mainHandler.post(() -> batch.call.resolve(result));
+    }
+
+    private void removeFromIndexes(String localPath) {
+        trackIndex.remove(localPath);
+        searchIndex.remove(localPath);
+        aggregates.remove(localPath);
+        invalidateLocalStream(localPath);
+    }
+
+    /** 文件被改写或删除后关闭本地播放地址复用的旧文件描述符 */
+    private static void invalidateLocalStream(String localPath) {
+        BilibiliProxyServer server = BilibiliProxyPlugin.runningServer();
+        if (server != null) server.invalidateLocal(localPath);
+    }
+
     private void handleRecoverableDelete(PluginCall call, String localPath, SecurityException e) {
         if (!(e instanceof RecoverableSecurityException)) {
             resolveError(call, "Delete failed: " + e.getMessage());
@@ -471,6 +1503,11 @@ public class LocalMusicPlugin extends Plugin {
     @Override
     protected void handleOnActivityResult(int requestCode, int resultCode, android.content.Intent data) {
         super.handleOnActivityResult(requestCode, resultCode, data);
+        if (requestCode == DELETE_BATCH_REQUEST && pendingDeleteBatch != null) {
+            boolean granted = resultCode == Activity.RESULT_OK;
+            completeConsent(pendingDeleteBatch, granted, granted ? null : "Delete cancelled by user");
+            return;
+        }
         if (requestCode != DELETE_PERMISSION_REQUEST || pendingDeleteCall == null) return;
 
         if (resultCode == Activity.RESULT_OK) {
@@ -484,8 +1521,13 @@ public class LocalMusicPlugin extends Plugin {
 
     @Override
     protected void handleOnDestroy() {
-        if (scanExecutor != null && !scanExecutor.isShutdown()) scanExecutor.shutdownNow();
-        if (ioExecutor != null && !ioExecutor.isShutdown()) ioExecutor.shutdownNow();
+        if (loudnessJob != null) loudnessJob.shutdown();
+        if (trackIndex != null) trackIndex.save();
+        scheduler.shutdown();
+        MemoryBudget budget = MemoryBudget.get();
+        budget.unregister(MEMORY_LYRICS, lyricsMemory);
+        budget.unregister(MEMORY_LIBRARY_INDEXES, libraryIndexMemory);
+        budget.unregister(MEMORY_TRACK_INDEX, trackIndexMemory);
         super.handleOnDestroy();
     }
 
@@ -509,7 +1551,10 @@ public class LocalMusicPlugin extends Plugin {
         boolean deleted = false;
 
         if (localPath.startsWith(SCHEME_CONTENT)) {
-            deleted = tryDelete(() -> resolver.delete(Uri.parse(localPath), null, null) > 0);
+            Uri uri = Uri.parse(localPath);
+            deleted = DocumentsContract.isDocumentUri(getContext(), uri)
+                    ? tryDelete(() -> DocumentsContract.deleteDocument(resolver, uri))
+                    : tryDelete(() -> resolver.delete(uri, null, null) > 0);
         }
         if (!deleted) {
             deleted = tryDelete(() -> resolver.delete(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, MediaStore.Audio.Media.DATA + "=?", new String[]{localPath}) > 0);
@@ -518,6 +1563,7 @@ public class LocalMusicPlugin extends Plugin {
             File file = new File(localPath);
             deleted = !file.exists() || file.delete();
         }
+        if (deleted) removeFromIndexes(localPath);
         return deleted;
     }
 
@@ -643,6 +1689,31 @@ public class LocalMusicPlugin extends Plugin {
         return false;
     }
 
+    /** 播放地址的 Content-Type：content URI 取提供方登记的类型，普通文件按扩展名判断 */
+    private String audioContentType(String localPath) {
+        if (localPath.startsWith(SCHEME_CONTENT)) {
+            String type = getContext().getContentResolver().getType(Uri.parse(localPath));
+            if (type != null) return type;
+        }
+        String lower = localPath.toLowerCase();
+        int dot = lower.lastIndexOf('.');
+        String ext = dot >= 0 ? lower.substring(dot + 1) : "";
+        switch (ext) {
+            case "mp3": return "audio/mpeg";
+            case "flac": return "audio/flac";
+            case "wav": return "audio/wav";
+            case "m4a":
+            case "m4b":
+            case "m4s": return "audio/mp4";
+            case "aac": return "audio/aac";
+            case "ogg": return "audio/ogg";
+            case "opus": return "audio/opus";
+            case "wma": return "audio/x-ms-wma";
+            case "ape": return "audio/x-ape";
+            default: return "application/octet-stream";
+        }
+    }
+
     /** 将 file:// URI 或普通文件路径解析为纯文件系统路径。 */
     private String resolvePlainPath(String localPath) {
         if (localPath.startsWith("file://")) {
@@ -726,16 +1797,7 @@ public class LocalMusicPlugin extends Plugin {
                 if (frameSize <= 0 || offset + 10 + frameSize > tag.length) break;
 
                 if ("USLT".equals(frameId)) {
-                    String lyric = decodeUsltFrame(Arrays.copyOfRange(tag, offset + 10, offset + 10 + frameSize));
-                    if (!isValid(lyric)) return null;
-
-                    int delimIdx = lyric.indexOf(TLYRIC_DELIMITER);
-                    if (delimIdx >= 0) {
-                        String original = lyric.substring(0, delimIdx).trim();
-                        String translation = lyric.substring(delimIdx + TLYRIC_DELIMITER.length()).trim();
-                        return new String[]{ original, isValid(translation) ? translation : null };
-                    }
-                    return new String[]{ lyric, null };
+                    return splitLyrics(decodeUsltFrame(Arrays.copyOfRange(tag, offset + 10, offset + 10 + frameSize)));
                 }
 
                 offset += 10 + frameSize;
@@ -744,6 +1806,19 @@ public class LocalMusicPlugin extends Plugin {
         return null;
     }
 
+    /** 拆分 USLT 正文中以分隔符相连的原文与翻译；无歌词时返回 null。 */
+    private String[] splitLyrics(String lyric) {
+        if (!isValid(lyric)) return null;
+
+        int delimIdx = lyric.indexOf(TLYRIC_DELIMITER);
+        if (delimIdx >= 0) {
+            String original = lyric.substring(0, delimIdx).trim();
+            String translation = lyric.substring(delimIdx + TLYRIC_DELIMITER.length()).trim();
+            return new String[]{ original, isValid(translation) ? translation : null };
+        }
+        return new String[]{ lyric, null };
+    }
+
     /** 打开普通文件路径、file URI 或 content URI 对应的输入流。 */
     private InputStream openLocalInputStream(String localPath) throws IOException {
         if (localPath.startsWith(SCHEME_CONTENT)) {
@@ -856,11 +1931,19 @@ public class LocalMusicPlugin extends Plugin {
     }
 
     private boolean containsArtistDelimiter(String s) {
-        return isValid(s) && s.matches(".*[/、,，&＆;；|].*");
+        return isValid(s) && LocalLibraryAggregates.containsArtistDelimiter(s);
     }
 
-    private String formatUnknown(String value) {
-        return (value == null || value.isEmpty() || "<unknown>".equals(value)) ? null : value;
+    /** 读取字符串数组参数，缺失或格式错误时返回空列表。 */
+    private List<String> readStringArray(PluginCall call, String key) {
+        List<String> list = new ArrayList<>();
+        JSArray array = call.getArray(key);
+        if (array == null) return list;
+        for (int i = 0; i < array.length(); i++) {
+            String value = array.optString(i);
+            if (isValid(value)) list.add(value);
+        }
+        return list;
     }
 
     private boolean isValid(String s) {
@@ -873,6 +1956,38 @@ public class LocalMusicPlugin extends Plugin {
         call.resolve(res);
     }
 
+    /**
+     * 把插件调用提交到统一调度器；前端可用 priority 覆盖默认优先级，用 requestId 配合 cancelRequest 取消
+     * 队列已满时回报 busy，开始前被取消时回报 cancelled，body 抛出未处理的异常时回报错误，前端不会一直等待。
+     * @param onCancel 任务未执行就结束时的清理，可为 null
+     * @return 已接受的任务，被拒绝时为 null
+     */
+    private PluginTaskScheduler.Task schedule(PluginCall call, PluginTaskScheduler.Priority fallback,
+                                              PluginTaskScheduler.Body body, Runnable onCancel) {
+        PluginTaskScheduler.Priority priority = PluginTaskScheduler.Priority.parse(call.getString("priority"), fallback);
+        PluginTaskScheduler.Body guarded = current -> {
+            try {
+                body.run(current);
+            } catch (Exception e) {
+                mainHandler.post(() -> resolveError(call, "Failed: " + e.getMessage()));
+            }
+        };
+        PluginTaskScheduler.Task task = scheduler.submit(priority, call.getString("requestId"), guarded, () -> {
+            if (onCancel != null) onCancel.run();
+            mainHandler.post(() -> resolveError(call, "cancelled"));
+        });
+        if (task == null) {
+            if (onCancel != null) onCancel.run();
+            call.resolve(new JSObject().put("success", false).put("error", "busy").put("retryable", true));
+        }
+        return task;
+    }
+
+    private PluginTaskScheduler.Task schedule(PluginCall call, PluginTaskScheduler.Priority fallback,
+                                              PluginTaskScheduler.Body body) {
+        return schedule(call, fallback, body, null);
+    }
+
     private void resolveError(PluginCall call, String msg) {
         call.resolve(new JSObject().put("success", false).put("error", msg).put("files", new JSArray()));
     }
@@ -882,4 +1997,82 @@ public class LocalMusicPlugin extends Plugin {
     }
 
     private interface DeleteAction { boolean execute() throws Exception; }
+
+    /** 一次批量删除的进度与逐个结果 */
+    private final class DeleteBatch {
+        final PluginCall call;
+        final int total;
+        final JSArray results = new JSArray();
+        final List<Uri> consentUris = new ArrayList<>();
+        final List<String> consentPaths = new ArrayList<>();
+        int done;
+        int deleted;
+
+        DeleteBatch(PluginCall call, int total) {
+            this.call = call;
+            this.total = total;
+        }
+
+        void record(String localPath, boolean success, String error) {
+            JSObject item = new JSObject().put("localPath", localPath).put("success", success);
+            if (error != null) item.put("error", error);
+            results.put(item);
+            done++;
+            if (success) deleted++;
+            if (hasListeners("deleteProgress")) {
+                notifyListeners("deleteProgress", new JSObject()
+                        .put("localPath", localPath)
+                        .put("success", success)
+                        .put("done", done)
+                        .put("total", total));
+            }
+        }
+    }
+
+    /** MediaStore 中的一条音频记录 */
+    private static final class MediaStoreRow {
+        String title;
+        String artist;
+        String album;
+        long duration;
+        long fileSize;
+        long modifiedSeconds;
+
+        /** 大小与修改时间（MediaStore 精确到秒）都与文件一致且时长已知时，标签才可信 */
+        boolean matches(ScannedTrack track) {
+            return duration > 0 && fileSize == track.fileSize && modifiedSeconds == track.modifiedTime / 1000;
+        }
+    }
+
+    /** 一条扫描结果，序列化为 files 数组元素或列式二进制的一行 */
+    private final class ScannedTrack {
+        String id;
+        String name;
+        String artist;
+        String album;
+        String localPath;
+        long duration;
+        long fileSize;
+        long modifiedTime;
+        LocalTrackIndex.Entry entry;
+
+        JSObject toJs() {
+            JSObject file = new JSObject()
+                    .put("id", id)
+                    .put("name", name)
+                    .put("artist", artist)
+                    .put("album", album)
+                    .put("duration", duration)
+                    .put("localPath", localPath)
+                    .put("fileSize", fileSize)
+                    .put("modifiedTime", modifiedTime);
+            putLoudness(file, entry);
+            TagProbe.Result tags = entry != null ? entry.tags : null;
+            if (tags != null) {
+                if (tags.coverLength != TagProbe.UNKNOWN) file.put("hasCover", tags.coverLength > 0);
+                file.put("hasLyrics", tags.lyricsLength > 0);
+            }
+            return file;
+        }
+    }
 }
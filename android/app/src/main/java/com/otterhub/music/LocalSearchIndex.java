@@ -0,0 +1,319 @@
+package com.otterhub.music;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 本地曲库全文检索索引（内存）
+ * 对歌名、歌手、专辑以及汉字拼音首字母建立单字与双字 n-gram 倒排表：查询词的各 n-gram 倒排表求交得到候选，
+ * 再逐条核对子串并按命中字段与位置（完全匹配、前缀、词首、包含）打分。
+ * 更新与删除只把旧文档标记为失效，失效比例过高时整体重建倒排表。不依赖 Android，可在 JVM 上测试。
+ */
+final class LocalSearchIndex {
+
+    /** 失效文档超过该比例时重建 */
+    private static final double COMPACT_RATIO = 0.25;
+    private static final int FIELD_NAME = 0;
+    private static final int FIELD_ARTIST = 1;
+    private static final int FIELD_ALBUM = 2;
+    private static final int FIELD_INITIALS = 3;
+
+    private static final class Doc {
+        final String key;
+        final String id;
+        /** 归一化后的 歌名 / 歌手 / 专辑 / 首字母串，缺失为 null */
+        final String[] fields;
+        final int order;
+
+        Doc(String key, String id, String[] fields, int order) {
+            this.key = key;
+            this.id = id;
+            this.fields = fields;
+            this.order = order;
+        }
+    }
+
+    /** 按文档号升序追加的倒排表 */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) return;
+            if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = doc;
+        }
+    }
+
+    private static final class Hit {
+        final Doc doc;
+        final int score;
+
+        Hit(Doc doc, int score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    private final Map<Integer, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docByKey = new HashMap<>();
+    private final List<Doc> docs = new ArrayList<>();
+    private int live;
+    private int nextOrder;
+
+    /**
+     * 加入或更新一条记录
+     * @param key 文档键（localPath），同键再次写入视为更新
+     * @param id  检索结果中返回的曲目 ID
+     */
+    synchronized void put(String key, String id, String name, String artist, String album) {
+        String[] fields = {
+                normalize(name), normalize(artist), normalize(album), PinyinInitials.of(joinHan(name, artist))
+        };
+        Integer existing = docByKey.get(key);
+        int order;
+        if (existing != null) {
+            Doc old = docs.get(existing);
+            if (old.id.equals(id) && Arrays.equals(old.fields, fields)) return;
+            order = old.order;
+            docs.set(existing, null);
+            live--;
+        } else {
+            order = nextOrder++;
+        }
+        addDoc(new Doc(key, id, fields, order));
+        maybeCompact();
+    }
+
+    synchronized void remove(String key) {
+        Integer existing = docByKey.remove(key);
+        if (existing == null) return;
+        docs.set(existing, null);
+        live--;
+        maybeCompact();
+    }
+
+    /** 只保留给定键集合中的文档 */
+    synchronized void retain(Collection<String> keys) {
+        Set<String> keep = new HashSet<>(keys);
+        for (String key : new ArrayList<>(docByKey.keySet())) {
+            if (!keep.contains(key)) {
+                docs.set(docByKey.remove(key), null);
+                live--;
+            }
+        }
+        maybeCompact();
+    }
+
+    synchronized int size() {
+        return live;
+    }
+
+    synchronized void clear() {
+        docs.clear();
+        docByKey.clear();
+        postings.clear();
+        live = 0;
+    }
+
+    /** 粗略估算的堆占用：文档与字段字符串、键表以及倒排表数组 */
+    synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Doc doc : docs) {
+            bytes += 8;
+            if (doc == null) continue;
+            bytes += 96 + 2L * (doc.key.length() + doc.id.length());
+            for (String field : doc.fields) if (field != null) bytes += 40 + 2L * field.length();
+        }
+        bytes += 48L * docByKey.size();
+        for (Postings list : postings.values()) bytes += 80 + 4L * list.docs.length;
+        return bytes;
+    }
+
+    /**
+     * 检索；空白分隔的每个词都必须命中某个字段
+     * @return 按相关度降序的曲目 ID，最多 limit 个
+     */
+    synchronized List<String> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized == null || limit <= 0) return new ArrayList<>();
+        String[] terms = normalized.split(" ");
+
+        int[] candidates = null;
+        for (String term : terms) {
+            int[] matches = candidatesFor(term);
+            candidates = candidates == null ? matches : intersect(candidates, matches, matches.length);
+            if (candidates.length == 0) return new ArrayList<>();
+        }
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, LocalSearchIndex::compareHits);
+        for (int docId : candidates) {
+            Doc doc = docs.get(docId);
+            if (doc == null) continue;
+            int score = 0;
+            for (String term : terms) {
+                int termScore = score(doc, term);
+                if (termScore == 0) {
+                    score = 0;
+                    break;
+                }
+                score += termScore;
+            }
+            if (score == 0) continue;
+            top.add(new Hit(doc, score));
+            if (top.size() > limit) top.poll();
+        }
+
+        String[] ids = new String[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) ids[i] = top.poll().doc.id;
+        return new ArrayList<>(Arrays.asList(ids));
+    }
+
+    /** 升序排列时较差的在前，便于小顶堆淘汰 */
+    private static int compareHits(Hit a, Hit b) {
+        if (a.score != b.score) return Integer.compare(a.score, b.score);
+        int aLength = a.doc.fields[FIELD_NAME] != null ? a.doc.fields[FIELD_NAME].length() : Integer.MAX_VALUE;
+        int bLength = b.doc.fields[FIELD_NAME] != null ? b.doc.fields[FIELD_NAME].length() : Integer.MAX_VALUE;
+        if (aLength != bLength) return Integer.compare(bLength, aLength);
+        return Integer.compare(b.doc.order, a.doc.order);
+    }
+
+    private int[] candidatesFor(String term) {
+        if (term.length() == 1) return copyOf(postings.get(gram(term.charAt(0))));
+        // 双字 gram 全部命中的文档才可能包含该词；从最短的倒排表开始求交
+        Postings[] lists = new Postings[term.length() - 1];
+        for (int i = 0; i < lists.length; i++) {
+            Postings list = postings.get(gram(term.charAt(i), term.charAt(i + 1)));
+            if (list == null) return new int[0];
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = copyOf(lists[0]);
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, lists[i].docs, lists[i].size);
+        }
+        return result;
+    }
+
+    private static int score(Doc doc, String term) {
+        int best = 0;
+        best = Math.max(best, fieldScore(doc.fields[FIELD_NAME], term, 100, 80, 60, 50));
+        best = Math.max(best, fieldScore(doc.fields[FIELD_ARTIST], term, 45, 40, 35, 30));
+        best = Math.max(best, fieldScore(doc.fields[FIELD_ALBUM], term, 25, 22, 20, 15));
+        best = Math.max(best, fieldScore(doc.fields[FIELD_INITIALS], term, 40, 35, 12, 10));
+        return best;
+    }
+
+    private static int fieldScore(String field, String term, int exact, int prefix, int wordPrefix, int contains) {
+        if (field == null) return 0;
+        int at = field.indexOf(term);
+        if (at < 0) return 0;
+        if (at == 0) return field.length() == term.length() ? exact : prefix;
+        do {
+            if (field.charAt(at - 1) == ' ') return wordPrefix;
+            at = field.indexOf(term, at + 1);
+        } while (at > 0);
+        return contains;
+    }
+
+    private void addDoc(Doc doc) {
+        int docId = docs.size();
+        docs.add(doc);
+        docByKey.put(doc.key, docId);
+        live++;
+        for (String field : doc.fields) {
+            if (field == null) continue;
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                if (c == ' ') continue;
+                postingsFor(gram(c)).add(docId);
+                if (i + 1 < field.length() && field.charAt(i + 1) != ' ') {
+                    postingsFor(gram(c, field.charAt(i + 1))).add(docId);
+                }
+            }
+        }
+    }
+
+    private void maybeCompact() {
+        int dead = docs.size() - live;
+        if (dead < 64 || dead < docs.size() * COMPACT_RATIO) return;
+        List<Doc> current = new ArrayList<>(live);
+        for (Doc doc : docs) if (doc != null) current.add(doc);
+        docs.clear();
+        docByKey.clear();
+        postings.clear();
+        live = 0;
+        for (Doc doc : current) addDoc(doc);
+    }
+
+    private Postings postingsFor(int gram) {
+        Postings list = postings.get(gram);
+        if (list == null) {
+            list = new Postings();
+            postings.put(gram, list);
+        }
+        return list;
+    }
+
+    private static int gram(char c) {
+        return c;
+    }
+
+    private static int gram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    private static int[] copyOf(Postings list) {
+        return list == null ? new int[0] : Arrays.copyOf(list.docs, list.size);
+    }
+
+    private static int[] intersect(int[] a, int[] b, int bSize) {
+        int[] out = new int[Math.min(a.length, bSize)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < bSize; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** 歌名与歌手合并计算首字母，"qt"（晴天）与 "zjl"（周杰伦）都能命中同一首 */
+    private static String joinHan(String name, String artist) {
+        if (name == null) return artist;
+        if (artist == null) return name;
+        return name + " " + artist;
+    }
+
+    /** 全角转半角、小写、折叠空白；空串返回 null */
+    static String normalize(String text) {
+        if (text == null) return null;
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(folded.length());
+        boolean space = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+}
@@ -0,0 +1,296 @@
+package com.otterhub.music;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 本地曲目扫描索引
+ * 以 localPath（文件路径或 content URI）为键，保存修改时间、大小、扫描得到的标签以及需要解码才能得到的分析结果。
+ * 修改时间变化即视为新文件，旧的分析结果作废。持久化为 filesDir 下的二进制文件，格式版本不符时丢弃重建。
+ * 内存中的记录在系统内存紧张时可以释放（见 {@link #release}），下次访问时从磁盘重新读取。
+ */
+final class LocalTrackIndex {
+
+    private static final String FILE_NAME = "local-track-index.bin";
+    private static final int MAGIC = 0x4F544958; // "OTIX"
+    private static final int VERSION = 4;
+
+    private static final int FLAG_LOUDNESS = 1;
+    private static final int FLAG_TAGS = 2;
+
+    private static LocalTrackIndex instance;
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded;
+    private boolean dirty;
+
+    /** 单条索引记录的快照，修改只能通过索引方法进行 */
+    static final class Entry {
+        final String path;
+        final long modifiedTime;
+        final long fileSize;
+        /** 扫描结果中的曲目 ID 与标签，缺失为 null */
+        final String id;
+        final String title;
+        final String artist;
+        final String album;
+        /** 时长（毫秒），未知为 0 */
+        final long duration;
+        final boolean loudnessAnalyzed;
+        /** 积分响度（LUFS），分析失败时为 NaN */
+        final float loudnessLufs;
+        /** 采样峰值（线性），分析失败时为 NaN */
+        final float peak;
+        /** 内嵌封面与歌词的位置，尚未探测为 null */
+        final TagProbe.Result tags;
+
+        private Entry(String path, long modifiedTime, long fileSize, String id, String title, String artist,
+                      String album, long duration, int flags, float loudnessLufs, float peak, TagProbe.Result tags) {
+            this.path = path;
+            this.modifiedTime = modifiedTime;
+            this.fileSize = fileSize;
+            this.id = id;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.duration = duration;
+            this.loudnessAnalyzed = (flags & FLAG_LOUDNESS) != 0;
+            this.loudnessLufs = loudnessLufs;
+            this.peak = peak;
+            this.tags = tags;
+        }
+
+        private int flags() {
+            return (loudnessAnalyzed ? FLAG_LOUDNESS : 0) | (tags != null ? FLAG_TAGS : 0);
+        }
+
+        boolean hasLoudness() {
+            return loudnessAnalyzed && !Float.isNaN(loudnessLufs);
+        }
+
+        private boolean sameTags(String id, String title, String artist, String album, long duration) {
+            return Objects.equals(this.id, id) && Objects.equals(this.title, title)
+                    && Objects.equals(this.artist, artist) && Objects.equals(this.album, album)
+                    && this.duration == duration;
+        }
+    }
+
+    static synchronized LocalTrackIndex get(Context context) {
+        if (instance == null) instance = new LocalTrackIndex(new File(context.getFilesDir(), FILE_NAME));
+        return instance;
+    }
+
+    private LocalTrackIndex(File file) {
+        this.file = file;
+        ensureLoaded();
+    }
+
+    /** 返回与修改时间匹配的记录，不存在或已过期时返回 null */
+    synchronized Entry lookup(String path, long modifiedTime) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        return entry != null && entry.modifiedTime == modifiedTime ? entry : null;
+    }
+
+    /**
+     * 登记扫描到的文件；修改时间变化时替换为不含分析结果的新记录
+     * 修改时间未变但标签不同（例如 MediaStore 重新解析）时只更新标签，保留分析结果
+     */
+    synchronized Entry touch(String path, long modifiedTime, long fileSize,
+                             String id, String title, String artist, String album, long duration) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        if (entry != null && entry.modifiedTime == modifiedTime) {
+            if (entry.sameTags(id, title, artist, album, duration)) return entry;
+            entry = new Entry(path, modifiedTime, entry.fileSize, id, title, artist, album, duration,
+                    entry.flags(), entry.loudnessLufs, entry.peak, entry.tags);
+        } else {
+            entry = new Entry(path, modifiedTime, fileSize, id, title, artist, album, duration,
+                    0, Float.NaN, Float.NaN, null);
+        }
+        entries.put(path, entry);
+        dirty = true;
+        return entry;
+    }
+
+    /** 写入响度分析结果；期间文件被修改（修改时间不符）时忽略 */
+    synchronized Entry setLoudness(String path, long modifiedTime, float loudnessLufs, float peak) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.modifiedTime != modifiedTime) return null;
+        entry = new Entry(path, modifiedTime, entry.fileSize, entry.id, entry.title, entry.artist, entry.album,
+                entry.duration, entry.flags() | FLAG_LOUDNESS, loudnessLufs, peak, entry.tags);
+        entries.put(path, entry);
+        dirty = true;
+        return entry;
+    }
+
+    /** 写入内嵌封面与歌词的探测结果；期间文件被修改（修改时间不符）时忽略 */
+    synchronized Entry setTags(String path, long modifiedTime, TagProbe.Result tags) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.modifiedTime != modifiedTime) return null;
+        entry = new Entry(path, modifiedTime, entry.fileSize, entry.id, entry.title, entry.artist, entry.album,
+                entry.duration, entry.flags() | FLAG_TAGS, entry.loudnessLufs, entry.peak, tags);
+        entries.put(path, entry);
+        dirty = true;
+        return entry;
+    }
+
+    /** 尚未做响度分析的记录；paths 为 null 时返回全部 */
+    synchronized List<Entry> pendingLoudness(Collection<String> paths) {
+        ensureLoaded();
+        List<Entry> pending = new ArrayList<>();
+        if (paths == null) {
+            for (Entry entry : entries.values()) if (!entry.loudnessAnalyzed) pending.add(entry);
+            return pending;
+        }
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+            if (entry != null && !entry.loudnessAnalyzed) pending.add(entry);
+        }
+        return pending;
+    }
+
+    /** 全部记录的快照 */
+    synchronized List<Entry> entries() {
+        ensureLoaded();
+        return new ArrayList<>(entries.values());
+    }
+
+    synchronized void remove(String path) {
+        ensureLoaded();
+        if (entries.remove(path) != null) dirty = true;
+    }
+
+    synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    /** 估算内存占用（字节），未载入时为 0 */
+    synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            bytes += 160 + 2L * entry.path.length();
+            if (entry.id != null) bytes += 40 + 2L * entry.id.length();
+            if (entry.title != null) bytes += 40 + 2L * entry.title.length();
+            if (entry.artist != null) bytes += 40 + 2L * entry.artist.length();
+            if (entry.album != null) bytes += 40 + 2L * entry.album.length();
+            if (entry.tags != null) bytes += 40;
+        }
+        return bytes;
+    }
+
+    /**
+     * 释放内存中的记录，下次访问时重新读取
+     * 有未保存的改动时保留，避免在内存回调（主线程）上写盘
+     * @return 是否已释放
+     */
+    synchronized boolean release() {
+        if (dirty || !loaded) return false;
+        entries.clear();
+        loaded = false;
+        return true;
+    }
+
+    /** 有改动时写回磁盘，先写临时文件再替换 */
+    synchronized void save() {
+        if (!dirty) return;
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.modifiedTime);
+                out.writeLong(entry.fileSize);
+                writeNullableUTF(out, entry.id);
+                writeNullableUTF(out, entry.title);
+                writeNullableUTF(out, entry.artist);
+                writeNullableUTF(out, entry.album);
+                out.writeLong(entry.duration);
+                out.writeInt(entry.flags());
+                out.writeFloat(entry.loudnessLufs);
+                out.writeFloat(entry.peak);
+                if (entry.tags != null) {
+                    out.writeLong(entry.tags.coverOffset);
+                    out.writeInt(entry.tags.coverLength);
+                    out.writeLong(entry.tags.lyricsOffset);
+                    out.writeInt(entry.tags.lyricsLength);
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            android.util.Log.w("LocalTrackIndex", "Failed to save index", e);
+            return;
+        }
+        if (temp.renameTo(file)) dirty = false;
+        else temp.delete();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        load();
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long modifiedTime = in.readLong();
+                long fileSize = in.readLong();
+                String id = readNullableUTF(in);
+                String title = readNullableUTF(in);
+                String artist = readNullableUTF(in);
+                String album = readNullableUTF(in);
+                long duration = in.readLong();
+                int flags = in.readInt();
+                float loudnessLufs = in.readFloat();
+                float peak = in.readFloat();
+                TagProbe.Result tags = null;
+                if ((flags & FLAG_TAGS) != 0) {
+                    tags = new TagProbe.Result();
+                    tags.coverOffset = in.readLong();
+                    tags.coverLength = in.readInt();
+                    tags.lyricsOffset = in.readLong();
+                    tags.lyricsLength = in.readInt();
+                }
+                entries.put(path, new Entry(path, modifiedTime, fileSize, id, title, artist, album, duration,
+                        flags, loudnessLufs, peak, tags));
+            }
+        } catch (IOException e) {
+            entries.clear();
+            android.util.Log.w("LocalTrackIndex", "Discarding unreadable index", e);
+        }
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.otterhub.music;
+
+import android.content.Context;
+import android.os.Process;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地曲库响度分析后台任务
+ * 从扫描索引中取出尚未分析的曲目，在低优先级小线程池中逐首解码并计算 EBU R128 积分响度与峰值，
+ * 结果写回索引。播放中或低电量时暂停；可随时追加曲目，重复入队的曲目只分析一次。
+ */
+final class LoudnessAnalysisJob {
+
+    interface Listener {
+        void onAnalyzed(LocalTrackIndex.Entry entry, int done, int total);
+
+        void onIdle(int analyzed);
+    }
+
+    /** 每分析多少首写回一次索引 */
+    private static final int SAVE_INTERVAL = 20;
+
+    private final Context context;
+    private final LocalTrackIndex index;
+    private final Listener listener;
+    private final BackgroundWorkGate gate;
+    private final int parallelism = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+    private final ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+        Thread t = new Thread(r, "loudness-analysis");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ConcurrentLinkedQueue<LocalTrackIndex.Entry> queue = new ConcurrentLinkedQueue<>();
+    private final Set<String> queued = new HashSet<>();
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    LoudnessAnalysisJob(Context context, LocalTrackIndex index, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.index = index;
+        this.listener = listener;
+        this.gate = new BackgroundWorkGate(context);
+    }
+
+    /**
+     * 把尚未分析的曲目加入队列并确保工作线程在运行
+     * @param paths 为 null 时加入索引中全部未分析曲目
+     * @return 新加入的曲目数
+     */
+    int enqueue(Collection<String> paths) {
+        List<LocalTrackIndex.Entry> pending = index.pendingLoudness(paths);
+        int added = 0;
+        synchronized (queued) {
+            cancelled = false;
+            for (LocalTrackIndex.Entry entry : pending) {
+                if (queued.add(entry.path)) {
+                    queue.add(entry);
+                    added++;
+                }
+            }
+        }
+        total.addAndGet(added);
+        ensureWorkers();
+        return added;
+    }
+
+    private void ensureWorkers() {
+        while (!queue.isEmpty()) {
+            int running = runningWorkers.get();
+            if (running >= parallelism) break;
+            if (runningWorkers.compareAndSet(running, running + 1)) pool.execute(this::work);
+        }
+    }
+
+    /** 清空队列；正在分析的曲目在下一个解码块处中止 */
+    void cancel() {
+        synchronized (queued) {
+            cancelled = true;
+            queue.clear();
+            queued.clear();
+        }
+    }
+
+    void shutdown() {
+        cancel();
+        pool.shutdownNow();
+    }
+
+    int getPendingCount() {
+        return queue.size();
+    }
+
+    boolean isRunning() {
+        return runningWorkers.get() > 0;
+    }
+
+    private void work() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        PcmDecoder decoder = new PcmDecoder(context);
+        try {
+            LocalTrackIndex.Entry entry;
+            while (!cancelled && (entry = queue.poll()) != null) {
+                LocalTrackIndex.Entry result = analyze(decoder, entry);
+                synchronized (queued) {
+                    queued.remove(entry.path);
+                }
+                if (result == null) continue;
+                int finished = done.incrementAndGet();
+                if (finished % SAVE_INTERVAL == 0) index.save();
+                listener.onAnalyzed(result, finished, total.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            index.save();
+            if (runningWorkers.decrementAndGet() == 0) {
+                int analyzed = done.getAndSet(0);
+                total.set(0);
+                listener.onIdle(analyzed);
+                // 退出与入队之间的竞争：队列里还有曲目时重新拉起
+                if (!cancelled && !queue.isEmpty()) ensureWorkers();
+            }
+        }
+    }
+
+    /** @return 写回后的索引记录；被取消或文件已变化时返回 null */
+    private LocalTrackIndex.Entry analyze(PcmDecoder decoder, LocalTrackIndex.Entry entry) throws InterruptedException {
+        if (!gate.awaitAllowed(() -> cancelled)) return null;
+        LoudnessMeter[] meter = new LoudnessMeter[1];
+        try {
+            boolean complete = decoder.decode(entry.path, new PcmDecoder.Sink() {
+                @Override
+                public void onFormat(int sampleRate, int channels) {
+                    // 格式中途变化时重新计量，只在首块之前发生
+                    meter[0] = new LoudnessMeter(sampleRate, channels);
+                }
+
+                @Override
+                public void onSamples(float[] samples, int count) {
+                    meter[0].process(samples, count);
+                }
+            }, () -> !cancelled && gate.awaitAllowed(() -> cancelled));
+            if (!complete) return null;
+        } catch (IOException | RuntimeException e) {
+            // 无法解码的文件同样记为已分析，避免每次扫描都重试
+            android.util.Log.w("LoudnessAnalysisJob", "Cannot analyze " + entry.path + ": " + e.getMessage());
+            return index.setLoudness(entry.path, entry.modifiedTime, Float.NaN, Float.NaN);
+        }
+        if (meter[0] == null || meter[0].getBlockCount() == 0) {
+            return index.setLoudness(entry.path, entry.modifiedTime, Float.NaN, Float.NaN);
+        }
+        return index.setLoudness(entry.path, entry.modifiedTime,
+                (float) meter[0].getIntegratedLoudness(), meter[0].getPeak());
+    }
+}
@@ -0,0 +1,187 @@
+package com.otterhub.music;
+
+import java.util.Arrays;
+
+/**
+ * EBU R128 / ITU-R BS.1770 积分响度计
+ * K 计权（高架 + 高通两级双二阶滤波）后按 100ms 子块累计能量，
+ * 每 4 个子块组成一个 400ms 门控块（75% 重叠），最后做 -70 LUFS 绝对门限与 -10 LU 相对门限。
+ * 同时记录采样峰值。不依赖 Android，可在 JVM 上测试。
+ */
+final class LoudnessMeter {
+
+    /** 绝对门限 */
+    static final double ABSOLUTE_GATE_LUFS = -70;
+    private static final double RELATIVE_GATE_LU = -10;
+    /** ReplayGain 2.0 参考响度 */
+    static final double REPLAY_GAIN_REFERENCE_LUFS = -18;
+    private static final int SUB_BLOCKS_PER_BLOCK = 4;
+
+    private final int channels;
+    private final double[] weights;
+    private final int subBlockFrames;
+
+    // 每声道两级双二阶滤波器的状态
+    private final double[] shelfZ1;
+    private final double[] shelfZ2;
+    private final double[] highPassZ1;
+    private final double[] highPassZ2;
+    private final double sb0, sb1, sb2, sa1, sa2;
+    private final double hb0, hb1, hb2, ha1, ha2;
+
+    /** 当前子块内每声道的平方和 */
+    private final double[] subBlockSums;
+    private int subBlockFill;
+    /** 最近 4 个子块的加权能量（已按声道权重合并） */
+    private final double[] recentSubBlocks = new double[SUB_BLOCKS_PER_BLOCK];
+    private long subBlockCount;
+
+    /** 各门控块的均方能量 */
+    private double[] blockEnergies = new double[1024];
+    private int blockCount;
+    private float peak;
+
+    LoudnessMeter(int sampleRate, int channels) {
+        if (sampleRate <= 0 || channels <= 0) throw new IllegalArgumentException("Invalid PCM format");
+        this.channels = channels;
+        this.weights = channelWeights(channels);
+        this.subBlockFrames = Math.max(1, sampleRate / 10);
+        shelfZ1 = new double[channels];
+        shelfZ2 = new double[channels];
+        highPassZ1 = new double[channels];
+        highPassZ2 = new double[channels];
+        subBlockSums = new double[channels];
+
+        // 按采样率推导 BS.1770 滤波器系数（48kHz 时与标准表一致）
+        double f0 = 1681.974450955533;
+        double gain = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10, gain / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        sb0 = (vh + vb * k / q + k * k) / a0;
+        sb1 = 2 * (k * k - vh) / a0;
+        sb2 = (vh - vb * k / q + k * k) / a0;
+        sa1 = 2 * (k * k - 1) / a0;
+        sa2 = (1 - k / q + k * k) / a0;
+
+        f0 = 38.13547087602444;
+        q = 0.5003270373238773;
+        k = Math.tan(Math.PI * f0 / sampleRate);
+        a0 = 1 + k / q + k * k;
+        hb0 = 1;
+        hb1 = -2;
+        hb2 = 1;
+        ha1 = 2 * (k * k - 1) / a0;
+        ha2 = (1 - k / q + k * k) / a0;
+    }
+
+    /** 5.1 布局下 LFE 不计入，环绕声道权重 1.41 */
+    private static double[] channelWeights(int channels) {
+        double[] w = new double[channels];
+        Arrays.fill(w, 1.0);
+        if (channels == 6) {
+            w[3] = 0;
+            w[4] = 1.41;
+            w[5] = 1.41;
+        }
+        return w;
+    }
+
+    /**
+     * 输入交错排列的采样
+     * @param samples [-1, 1] 区间的浮点采样
+     * @param count 有效采样数（帧数 × 声道数）
+     */
+    void process(float[] samples, int count) {
+        int frames = count / channels;
+        int index = 0;
+        for (int f = 0; f < frames; f++) {
+            for (int c = 0; c < channels; c++) {
+                float x = samples[index++];
+                float abs = Math.abs(x);
+                if (abs > peak) peak = abs;
+
+                // 转置直接 II 型：高架 → 高通
+                double y = sb0 * x + shelfZ1[c];
+                shelfZ1[c] = sb1 * x - sa1 * y + shelfZ2[c];
+                shelfZ2[c] = sb2 * x - sa2 * y;
+                double z = hb0 * y + highPassZ1[c];
+                highPassZ1[c] = hb1 * y - ha1 * z + highPassZ2[c];
+                highPassZ2[c] = hb2 * y - ha2 * z;
+                subBlockSums[c] += z * z;
+            }
+            if (++subBlockFill == subBlockFrames) finishSubBlock();
+        }
+    }
+
+    private void finishSubBlock() {
+        double energy = 0;
+        for (int c = 0; c < channels; c++) {
+            energy += weights[c] * subBlockSums[c];
+            subBlockSums[c] = 0;
+        }
+        subBlockFill = 0;
+        recentSubBlocks[(int) (subBlockCount % SUB_BLOCKS_PER_BLOCK)] = energy;
+        subBlockCount++;
+        if (subBlockCount < SUB_BLOCKS_PER_BLOCK) return;
+
+        double sum = 0;
+        for (double e : recentSubBlocks) sum += e;
+        if (blockCount == blockEnergies.length) blockEnergies = Arrays.copyOf(blockEnergies, blockCount * 2);
+        blockEnergies[blockCount++] = sum / (SUB_BLOCKS_PER_BLOCK * subBlockFrames);
+    }
+
+    /**
+     * 门控后的积分响度（LUFS）
+     * 不足一个 400ms 块或全部低于绝对门限时返回 {@link #ABSOLUTE_GATE_LUFS}
+     */
+    double getIntegratedLoudness() {
+        double absoluteEnergy = energyOf(ABSOLUTE_GATE_LUFS);
+        double sum = 0;
+        int n = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (blockEnergies[i] > absoluteEnergy) {
+                sum += blockEnergies[i];
+                n++;
+            }
+        }
+        if (n == 0) return ABSOLUTE_GATE_LUFS;
+
+        double relativeEnergy = energyOf(loudnessOf(sum / n) + RELATIVE_GATE_LU);
+        double gate = Math.max(absoluteEnergy, relativeEnergy);
+        sum = 0;
+        n = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (blockEnergies[i] > gate) {
+                sum += blockEnergies[i];
+                n++;
+            }
+        }
+        return n > 0 ? Math.max(ABSOLUTE_GATE_LUFS, loudnessOf(sum / n)) : ABSOLUTE_GATE_LUFS;
+    }
+
+    /** 采样峰值（线性幅度，1.0 = 0 dBFS） */
+    float getPeak() {
+        return peak;
+    }
+
+    /** 已完成的 400ms 门控块数 */
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    /** 把响度换算为 ReplayGain 2.0 曲目增益（dB） */
+    static double replayGainOf(double loudnessLufs) {
+        return REPLAY_GAIN_REFERENCE_LUFS - loudnessLufs;
+    }
+
+    private static double loudnessOf(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    private static double energyOf(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+}
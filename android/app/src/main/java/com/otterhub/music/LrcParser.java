@@ -0,0 +1,264 @@
+package com.otterhub.music;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRC 歌词解析为按时间排序的原始类型数组
+ * 一行可带多个时间标签，每个标签生成一行；行内 &lt;mm:ss.xx&gt; 逐字时间从文本中去掉，记为相对该行文本的字符偏移。
+ * 识别 [offset:±ms]，忽略其他元数据标签与空行。译文按与前端相同的规则对齐：时间差不超过 0.5 秒的最近一行。
+ * 行文本存入去重的字符串表，只返回表内序号。不依赖 Android，可在 JVM 上测试。
+ */
+final class LrcParser {
+
+    /** 译文与原文的最大时间差（毫秒），与 LyricsPanel 的 MATCH_TOLERANCE 对应 */
+    private static final long MATCH_TOLERANCE_MS = 500;
+
+    static final class Timeline {
+        /** 每行的开始时间（毫秒），升序 */
+        long[] times;
+        /** 每行原文在字符串表中的序号 */
+        int[] lines;
+        /** 每行译文在字符串表中的序号，没有为 -1 */
+        int[] translations;
+        /** 字符串表：全部文本依次拼接，第 i 项为 [offsets[i], offsets[i + 1]) */
+        String strings;
+        int[] offsets;
+        /** 第 i 行的逐字时间为 [wordStarts[i], wordStarts[i + 1]) */
+        int[] wordStarts;
+        long[] wordTimes;
+        /** 逐字开始处在该行文本中的字符偏移 */
+        int[] wordOffsets;
+
+        int size() {
+            return times.length;
+        }
+
+        String text(int line) {
+            return string(lines[line]);
+        }
+
+        String translation(int line) {
+            return translations[line] < 0 ? null : string(translations[line]);
+        }
+
+        String string(int index) {
+            return strings.substring(offsets[index], offsets[index + 1]);
+        }
+
+        /** 各数组与字符串表的堆占用估算 */
+        long estimatedBytes() {
+            return 8L * (times.length + wordTimes.length)
+                    + 4L * (lines.length + translations.length + offsets.length + wordStarts.length + wordOffsets.length)
+                    + 2L * strings.length() + 160;
+        }
+    }
+
+    private static final class Line {
+        final long time;
+        final String text;
+        final long[] wordTimes;
+        final int[] wordOffsets;
+        final int order;
+
+        Line(long time, String text, long[] wordTimes, int[] wordOffsets, int order) {
+            this.time = time;
+            this.text = text;
+            this.wordTimes = wordTimes;
+            this.wordOffsets = wordOffsets;
+            this.order = order;
+        }
+    }
+
+    /** 逐步追加、去重的字符串表 */
+    private static final class StringTable {
+        final StringBuilder text = new StringBuilder();
+        final List<Integer> offsets = new ArrayList<>();
+        final Map<String, Integer> ids = new HashMap<>();
+
+        int intern(String value) {
+            Integer existing = ids.get(value);
+            if (existing != null) return existing;
+            int id = offsets.size();
+            offsets.add(text.length());
+            text.append(value);
+            ids.put(value, id);
+            return id;
+        }
+    }
+
+    private LrcParser() {}
+
+    static Timeline parse(String lyric, String translation) {
+        List<Line> original = parseLines(lyric);
+        List<Line> translated = translation != null ? parseLines(translation) : new ArrayList<>();
+        int count = original.size();
+
+        Timeline timeline = new Timeline();
+        timeline.times = new long[count];
+        timeline.lines = new int[count];
+        timeline.translations = new int[count];
+        timeline.wordStarts = new int[count + 1];
+        StringTable table = new StringTable();
+        int words = 0;
+        for (Line line : original) words += line.wordTimes.length;
+        timeline.wordTimes = new long[words];
+        timeline.wordOffsets = new int[words];
+
+        int word = 0;
+        int cursor = 0;
+        for (int i = 0; i < count; i++) {
+            Line line = original.get(i);
+            timeline.times[i] = line.time;
+            timeline.lines[i] = table.intern(line.text);
+            timeline.wordStarts[i] = word;
+            System.arraycopy(line.wordTimes, 0, timeline.wordTimes, word, line.wordTimes.length);
+            System.arraycopy(line.wordOffsets, 0, timeline.wordOffsets, word, line.wordOffsets.length);
+            word += line.wordTimes.length;
+
+            // 跳过过早的译文，再在容差内找时间最接近的一行
+            while (cursor < translated.size() && translated.get(cursor).time < line.time - MATCH_TOLERANCE_MS) cursor++;
+            int best = -1;
+            long bestDiff = MATCH_TOLERANCE_MS;
+            for (int j = cursor; j < translated.size(); j++) {
+                long time = translated.get(j).time;
+                if (time > line.time + MATCH_TOLERANCE_MS) break;
+                long diff = Math.abs(time - line.time);
+                if (diff < bestDiff) {
+                    bestDiff = diff;
+                    best = j;
+                }
+            }
+            timeline.translations[i] = best < 0 ? -1 : table.intern(translated.get(best).text);
+        }
+        timeline.wordStarts[count] = word;
+
+        timeline.strings = table.text.toString();
+        timeline.offsets = new int[table.offsets.size() + 1];
+        for (int i = 0; i < table.offsets.size(); i++) timeline.offsets[i] = table.offsets.get(i);
+        timeline.offsets[table.offsets.size()] = table.text.length();
+        return timeline;
+    }
+
+    private static List<Line> parseLines(String lrc) {
+        List<Line> lines = new ArrayList<>();
+        if (lrc == null) return lines;
+        long offset = 0;
+        long[] stamps = new long[4];
+        for (String raw : lrc.split("\n")) {
+            String line = raw.trim();
+            int position = 0;
+            int stampCount = 0;
+            // 行首连续的时间标签与元数据标签
+            while (position < line.length() && line.charAt(position) == '[') {
+                int close = line.indexOf(']', position);
+                if (close < 0) break;
+                long time = parseTime(line, position + 1, close);
+                if (time >= 0) {
+                    if (stampCount == stamps.length) stamps = Arrays.copyOf(stamps, stampCount * 2);
+                    stamps[stampCount++] = time;
+                } else if (line.regionMatches(true, position + 1, "offset:", 0, 7)) {
+                    offset = parseOffset(line.substring(position + 8, close).trim(), offset);
+                }
+                position = close + 1;
+            }
+            if (stampCount == 0) continue;
+
+            StringBuilder text = new StringBuilder(line.length() - position);
+            long[] wordTimes = new long[0];
+            int[] wordOffsets = new int[0];
+            int words = 0;
+            while (position < line.length()) {
+                char c = line.charAt(position);
+                int close = c == '<' ? line.indexOf('>', position) : -1;
+                long time = close > 0 ? parseTime(line, position + 1, close) : -1;
+                if (time < 0) {
+                    text.append(c);
+                    position++;
+                    continue;
+                }
+                if (words == wordTimes.length) {
+                    wordTimes = Arrays.copyOf(wordTimes, Math.max(4, words * 2));
+                    wordOffsets = Arrays.copyOf(wordOffsets, wordTimes.length);
+                }
+                wordTimes[words] = time;
+                wordOffsets[words] = text.length();
+                words++;
+                position = close + 1;
+            }
+            String content = text.toString();
+            String trimmed = content.trim();
+            if (trimmed.isEmpty()) continue;
+            int lead = content.indexOf(trimmed);
+            wordTimes = Arrays.copyOf(wordTimes, words);
+            wordOffsets = Arrays.copyOf(wordOffsets, words);
+            for (int i = 0; i < words; i++) {
+                wordOffsets[i] = Math.max(0, Math.min(trimmed.length(), wordOffsets[i] - lead));
+            }
+
+            for (int i = 0; i < stampCount; i++) {
+                // 同一行重复出现时逐字时间随行整体平移
+                long delta = stamps[i] - stamps[0] - offset;
+                long[] shifted = wordTimes;
+                if (delta != 0 && words > 0) {
+                    shifted = new long[words];
+                    for (int w = 0; w < words; w++) shifted[w] = Math.max(0, wordTimes[w] + delta);
+                }
+                lines.add(new Line(Math.max(0, stamps[i] - offset), trimmed, shifted, wordOffsets, lines.size()));
+            }
+        }
+        lines.sort((a, b) -> a.time != b.time ? Long.compare(a.time, b.time) : Integer.compare(a.order, b.order));
+        return lines;
+    }
+
+    /**
+     * 解析 mm:ss、mm:ss.x、mm:ss.xx、mm:ss.xxx 或 mm:ss:xx，返回毫秒；不是时间标签时返回 -1
+     */
+    static long parseTime(String text, int start, int end) {
+        int colon = text.indexOf(':', start);
+        if (colon <= start || colon >= end) return -1;
+        long minutes = digits(text, start, colon);
+        if (minutes < 0) return -1;
+        int fraction = end;
+        for (int i = colon + 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == ':') {
+                fraction = i;
+                break;
+            }
+        }
+        long seconds = digits(text, colon + 1, fraction);
+        if (seconds < 0 || fraction - colon - 1 > 2) return -1;
+        long millis = 0;
+        if (fraction < end) {
+            int length = end - fraction - 1;
+            long value = digits(text, fraction + 1, end);
+            if (value < 0 || length > 3) return -1;
+            for (int i = length; i < 3; i++) value *= 10;
+            millis = value;
+        }
+        return minutes * 60_000 + seconds * 1000 + millis;
+    }
+
+    private static long digits(String text, int start, int end) {
+        if (start >= end) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static long parseOffset(String value, long fallback) {
+        try {
+            return Long.parseLong(value.startsWith("+") ? value.substring(1) : value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.otterhub.music;
 
 import static androidx.core.view.WindowCompat.enableEdgeToEdge;
 
+import android.content.ComponentCallbacks2;
 import android.content.res.Configuration;
 import android.os.Bundle;
 import com.getcapacitor.BridgeActivity;
@@ -26,4 +27,30 @@ public class MainActivity extends BridgeActivity {
             ((LocalMusicPlugin) handle.getInstance()).notifyDarkModeChange(isDarkMode);
         }
     }
+
+    /**
+     * 按系统内存压力收缩原生缓存，降低长时间后台播放时进程被回收的可能
+     * 界面隐藏或进入后台时收缩到预算的一半，内存紧张时收缩到四分之一，即将被回收时全部清空
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MemoryBudget budget = MemoryBudget.get();
+        long limit = budget.getLimitBytes();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            budget.trim(level, 0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            budget.trim(level, limit / 4);
+        } else {
+            budget.trim(level, limit / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        MemoryBudget.get().trim(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, 0);
+    }
 }
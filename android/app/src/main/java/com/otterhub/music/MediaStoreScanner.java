@@ -0,0 +1,80 @@
+package com.otterhub.music;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+
+/**
+ * 按音乐用途查询 MediaStore 音频库
+ * 插件的快速扫描与后台的 LibraryIndexWorker 共用，两边得到的曲目 ID、localPath 与标签一致，写出的快照可以互相替换。
+ */
+final class MediaStoreScanner {
+
+    private static final String[] PROJECTION = {
+            MediaStore.Audio.Media._ID, MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.ALBUM, MediaStore.Audio.Media.DURATION, MediaStore.Audio.Media.SIZE,
+            MediaStore.Audio.Media.DATE_MODIFIED
+    };
+
+    /** MediaStore 中的一首曲目，未知的标签为 null */
+    static final class Row {
+        String id;
+        String title;
+        String artist;
+        String album;
+        String localPath;
+        long duration;
+        long fileSize;
+        /** 毫秒 */
+        long modifiedTime;
+    }
+
+    interface Visitor {
+        /** 返回 false 停止查询 */
+        boolean onRow(Row row);
+    }
+
+    private MediaStoreScanner() {}
+
+    /** 按修改时间从新到旧逐条回调 */
+    static void scan(ContentResolver resolver, Visitor visitor) {
+        Uri musicUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+        try (Cursor cursor = resolver.query(musicUri, PROJECTION, buildMusicSelection(), null,
+                MediaStore.Audio.Media.DATE_MODIFIED + " DESC")) {
+            if (cursor == null) return;
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                Row row = new Row();
+                row.id = String.valueOf(id);
+                row.title = formatUnknown(cursor.getString(1));
+                row.artist = formatUnknown(cursor.getString(2));
+                row.album = formatUnknown(cursor.getString(3));
+                row.duration = cursor.getLong(4);
+                row.localPath = ContentUris.withAppendedId(musicUri, id).toString();
+                row.fileSize = cursor.getLong(5);
+                row.modifiedTime = cursor.getLong(6) * 1000;
+                if (!visitor.onRow(row)) return;
+            }
+        }
+    }
+
+    /** 构建保守的 MediaStore 音乐过滤条件，优先用系统用途元数据避免关键词误伤。 */
+    private static String buildMusicSelection() {
+        String selection = MediaStore.Audio.Media.IS_MUSIC + " != 0";
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            selection += " AND " + MediaStore.Audio.Media.IS_RECORDING + " = 0"
+                    + " AND " + MediaStore.Audio.Media.IS_PODCAST + " = 0"
+                    + " AND " + MediaStore.Audio.Media.IS_RINGTONE + " = 0"
+                    + " AND " + MediaStore.Audio.Media.IS_ALARM + " = 0"
+                    + " AND " + MediaStore.Audio.Media.IS_NOTIFICATION + " = 0";
+        }
+        return selection;
+    }
+
+    private static String formatUnknown(String value) {
+        return (value == null || value.isEmpty() || "<unknown>".equals(value)) ? null : value;
+    }
+}
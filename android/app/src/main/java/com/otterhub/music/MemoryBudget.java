@@ -0,0 +1,167 @@
+package com.otterhub.music;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 原生内存缓存的统一预算
+ * 各缓存按名称登记并报告估算占用；总占用超出预算，或系统通过 onTrimMemory 报告内存压力时，
+ * 按优先级从低到高依次收缩，直到总占用降到目标以内。同名再次登记替换旧缓存（插件重新加载时）。
+ * 不依赖 Android，压力级别到目标字节数的换算在 MainActivity。
+ * 大小固定有上限的小结构不登记：代理统计只保留进行中与最近 20 条流，按名称发布的文件每个名称一条，
+ * 本地曲目地址的令牌自带路径、不在内存中保存；流缓存与波形缓存在磁盘上，内存中只有索引。
+ */
+final class MemoryBudget {
+
+    /** 收缩顺序：DISPOSABLE 最先，IMPORTANT 最后 */
+    enum Priority {
+        /** 随时可丢，下次使用时重新读取 */
+        DISPOSABLE,
+        /** 丢弃后需要较长时间重建 */
+        NORMAL,
+        /** 丢弃会影响正在使用的功能 */
+        IMPORTANT
+    }
+
+    interface Cache {
+        /** 当前估算占用（字节） */
+        long sizeBytes();
+
+        /** 收缩到不超过 maxBytes，为 0 时清空 */
+        void trimTo(long maxBytes);
+    }
+
+    static final class Usage {
+        final String name;
+        final Priority priority;
+        final long bytes;
+
+        Usage(String name, Priority priority, long bytes) {
+            this.name = name;
+            this.priority = priority;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Registration {
+        final String name;
+        final Priority priority;
+        final Cache cache;
+
+        Registration(String name, Priority priority, Cache cache) {
+            this.name = name;
+            this.priority = priority;
+            this.cache = cache;
+        }
+    }
+
+    /** 默认预算占 Java 堆上限的比例 */
+    private static final int HEAP_FRACTION = 8;
+
+    private static MemoryBudget instance;
+
+    private final long limitBytes;
+    private final Map<String, Registration> caches = new LinkedHashMap<>();
+    private int lastTrimLevel = -1;
+    private long lastTrimAt;
+    private int trimCount;
+
+    MemoryBudget(long limitBytes) {
+        this.limitBytes = limitBytes;
+    }
+
+    static synchronized MemoryBudget get() {
+        if (instance == null) instance = new MemoryBudget(Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+        return instance;
+    }
+
+    long getLimitBytes() {
+        return limitBytes;
+    }
+
+    synchronized void register(String name, Priority priority, Cache cache) {
+        caches.put(name, new Registration(name, priority, cache));
+    }
+
+    synchronized void unregister(String name, Cache cache) {
+        Registration current = caches.get(name);
+        if (current != null && current.cache == cache) caches.remove(name);
+    }
+
+    /** 各缓存当前占用，按登记顺序 */
+    List<Usage> usage() {
+        List<Usage> result = new ArrayList<>();
+        for (Registration registration : registrations()) {
+            result.add(new Usage(registration.name, registration.priority, registration.cache.sizeBytes()));
+        }
+        return result;
+    }
+
+    long totalBytes() {
+        long total = 0;
+        for (Registration registration : registrations()) total += registration.cache.sizeBytes();
+        return total;
+    }
+
+    /** 缓存增长后调用：总占用超出预算时收缩；IMPORTANT 缓存只在系统内存压力下收缩 */
+    void enforce() {
+        trimTo(limitBytes, Priority.NORMAL);
+    }
+
+    /**
+     * 响应系统内存压力
+     * @param level       onTrimMemory 的级别，仅用于记录
+     * @param targetBytes 收缩后的总占用上限
+     */
+    long trim(int level, long targetBytes) {
+        synchronized (this) {
+            lastTrimLevel = level;
+            lastTrimAt = System.currentTimeMillis();
+            trimCount++;
+        }
+        return trimTo(targetBytes, Priority.IMPORTANT);
+    }
+
+    synchronized int getLastTrimLevel() {
+        return lastTrimLevel;
+    }
+
+    synchronized long getLastTrimAt() {
+        return lastTrimAt;
+    }
+
+    synchronized int getTrimCount() {
+        return trimCount;
+    }
+
+    /**
+     * 按优先级从低到高收缩，同一优先级按登记顺序；每个缓存只收缩超出目标的部分
+     * @param highest 允许收缩的最高优先级
+     * @return 收缩后的总占用
+     */
+    long trimTo(long targetBytes, Priority highest) {
+        List<Registration> ordered = registrations();
+        ordered.sort((a, b) -> a.priority.compareTo(b.priority));
+        long[] sizes = new long[ordered.size()];
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = ordered.get(i).cache.sizeBytes();
+            total += sizes[i];
+        }
+        // 缓存方法不持有预算的锁调用，避免与缓存自身的锁交叉
+        for (int i = 0; i < sizes.length && total > targetBytes; i++) {
+            if (ordered.get(i).priority.compareTo(highest) > 0) break;
+            if (sizes[i] == 0) continue;
+            Cache cache = ordered.get(i).cache;
+            cache.trimTo(Math.max(0, sizes[i] - (total - targetBytes)));
+            total -= sizes[i] - cache.sizeBytes();
+        }
+        return total;
+    }
+
+    private synchronized List<Registration> registrations() {
+        return new ArrayList<>(caches.values());
+    }
+}
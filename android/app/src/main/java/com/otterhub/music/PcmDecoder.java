@@ -0,0 +1,162 @@
+package com.otterhub.music;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 用 MediaExtractor + MediaCodec 把本地音频解码为交错浮点 PCM
+ * 输出缓冲按块回调给 Sink，转换用的 float 数组在同一实例内复用，不可并发调用。
+ */
+final class PcmDecoder {
+
+    interface Sink {
+        /** 首个采样块之前回调一次；解码器中途改变格式时会再次回调 */
+        void onFormat(int sampleRate, int channels);
+
+        /** @param samples [-1, 1] 区间的交错采样，仅在回调期间有效 */
+        void onSamples(float[] samples, int count);
+    }
+
+    interface Control {
+        /** 每个输出块之前调用，可在此阻塞（暂停）；返回 false 时中止解码 */
+        boolean proceed() throws InterruptedException;
+    }
+
+    private static final long TIMEOUT_US = 10_000;
+
+    private final Context context;
+    private float[] scratch = new float[8192];
+    private long durationUs = -1;
+
+    PcmDecoder(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 解码整条音轨
+     * @return 是否完整解码到结尾；被 Control 中止时返回 false
+     */
+    boolean decode(String localPath, Sink sink, Control control) throws IOException, InterruptedException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            if (localPath.startsWith("content://")) {
+                extractor.setDataSource(context, Uri.parse(localPath), null);
+            } else {
+                extractor.setDataSource(localPath.startsWith("file://") ? Uri.parse(localPath).getPath() : localPath);
+            }
+            int track = findAudioTrack(extractor);
+            if (track < 0) throw new IOException("No audio track");
+            MediaFormat inputFormat = extractor.getTrackFormat(track);
+            extractor.selectTrack(track);
+            durationUs = inputFormat.containsKey(MediaFormat.KEY_DURATION) ? inputFormat.getLong(MediaFormat.KEY_DURATION) : -1;
+
+            codec = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            codec.configure(inputFormat, null, null, 0);
+            codec.start();
+
+            int sampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            int encoding = AudioFormat.ENCODING_PCM_16BIT;
+            boolean formatSent = false;
+            boolean inputDone = false;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+            while (true) {
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (in >= 0) {
+                        ByteBuffer buffer = codec.getInputBuffer(in);
+                        int size = buffer != null ? extractor.readSampleData(buffer, 0) : -1;
+                        if (size < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int out = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (out == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    if (outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+                        encoding = outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING);
+                    }
+                    sink.onFormat(sampleRate, channels);
+                    formatSent = true;
+                } else if (out >= 0) {
+                    if (!control.proceed()) return false;
+                    ByteBuffer buffer = codec.getOutputBuffer(out);
+                    if (buffer != null && info.size > 0) {
+                        if (!formatSent) {
+                            sink.onFormat(sampleRate, channels);
+                            formatSent = true;
+                        }
+                        buffer.position(info.offset).limit(info.offset + info.size);
+                        int count = toFloats(buffer.slice().order(ByteOrder.nativeOrder()), encoding);
+                        sink.onSamples(scratch, count);
+                    }
+                    codec.releaseOutputBuffer(out, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return true;
+                }
+            }
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Decode failed: " + e.getMessage(), e);
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException ignored) {
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    /** 当前音轨的容器时长（微秒），在 onFormat 回调时已可用；未知时返回 -1 */
+    long getDurationUs() {
+        return durationUs;
+    }
+
+    private int toFloats(ByteBuffer pcm, int encoding) {
+        if (encoding == AudioFormat.ENCODING_PCM_FLOAT) {
+            FloatBuffer floats = pcm.asFloatBuffer();
+            int count = floats.remaining();
+            ensureScratch(count);
+            floats.get(scratch, 0, count);
+            return count;
+        }
+        ShortBuffer shorts = pcm.asShortBuffer();
+        int count = shorts.remaining();
+        ensureScratch(count);
+        for (int i = 0; i < count; i++) scratch[i] = shorts.get(i) / 32768f;
+        return count;
+    }
+
+    private void ensureScratch(int count) {
+        if (scratch.length < count) scratch = new float[count];
+    }
+
+    private static int findAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) return i;
+        }
+        return -1;
+    }
+}
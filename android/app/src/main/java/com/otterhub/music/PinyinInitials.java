@@ -0,0 +1,97 @@
+package com.otterhub.music;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+
+/**
+ * 汉字拼音首字母
+ * GB2312 一级汉字按拼音排序，按编码区间即可得到首字母，无需携带拼音字典。
+ * 二级汉字、繁体字等不在一级区间内的字符没有首字母，检索时退化为只按原文匹配。
+ */
+final class PinyinInitials {
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+    private static final char NONE = '\0';
+    private static final char UNKNOWN = '\uFFFF';
+    private static final char HAN_FIRST = '\u4E00';
+    private static final char HAN_LAST = '\u9FA5';
+
+    /** 各首字母在 GB2312 一级汉字中的起始编码，最后一项为一级汉字结束编码 */
+    private static final int[] BOUNDARIES = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7, 0xBFA6, 0xC0AC, 0xC2E8,
+            0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6, 0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1, 0xD7FA
+    };
+    private static final char[] LETTERS = "abcdefghjklmnopqrstwxyz".toCharArray();
+
+    /** 按码位缓存的查表结果，并发写入同一值无害 */
+    private static final char[] CACHE = new char[HAN_LAST - HAN_FIRST + 1];
+
+    static {
+        Arrays.fill(CACHE, UNKNOWN);
+    }
+
+    private PinyinInitials() {}
+
+    static boolean isHan(char c) {
+        return c >= HAN_FIRST && c <= HAN_LAST;
+    }
+
+    /** 单个汉字的首字母，非汉字或不在一级汉字内时返回 '\0' */
+    static char of(char c) {
+        if (!isHan(c)) return NONE;
+        int slot = c - HAN_FIRST;
+        char cached = CACHE[slot];
+        if (cached != UNKNOWN) return cached;
+        char initial = lookup(c);
+        CACHE[slot] = initial;
+        return initial;
+    }
+
+    /**
+     * 文本的首字母串：汉字取拼音首字母，拉丁字母与数字取每个单词的首字符
+     * 例如 "周杰伦 Jay" 得到 "zjlj"；不含汉字时返回 null
+     */
+    static String of(String text) {
+        if (text == null) return null;
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean hasHan = false;
+        boolean wordStart = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isHan(c)) {
+                hasHan = true;
+                char initial = of(c);
+                if (initial != NONE) sb.append(initial);
+                wordStart = true;
+            } else if (Character.isLetterOrDigit(c)) {
+                if (wordStart) sb.append(Character.toLowerCase(c));
+                wordStart = false;
+            } else {
+                wordStart = true;
+            }
+        }
+        // 没有汉字时首字母串对检索没有帮助
+        return hasHan ? sb.toString() : null;
+    }
+
+    private static char lookup(char c) {
+        CharsetEncoder encoder = GB2312.newEncoder();
+        ByteBuffer bytes;
+        try {
+            bytes = encoder.encode(CharBuffer.wrap(new char[]{c}));
+        } catch (CharacterCodingException e) {
+            return NONE;
+        }
+        if (bytes.remaining() != 2) return NONE;
+        int code = ((bytes.get(0) & 0xff) << 8) | (bytes.get(1) & 0xff);
+        if (code < BOUNDARIES[0] || code >= BOUNDARIES[BOUNDARIES.length - 1]) return NONE;
+        for (int i = LETTERS.length - 1; i >= 0; i--) {
+            if (code >= BOUNDARIES[i]) return LETTERS[i];
+        }
+        return NONE;
+    }
+}
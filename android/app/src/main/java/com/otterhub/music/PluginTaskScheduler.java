@@ -0,0 +1,215 @@
+package com.otterhub.music;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * 插件 I/O 统一调度器
+ * 任务分为交互、可见、后台三个优先级，工作线程总是先取高优先级队列；后台与可见任务各自限制同时占用的线程数，
+ * 总给交互任务留出空闲线程，点击不会排在全盘扫描之后。各队列有长度上限，满时拒绝新任务由调用方提示重试。
+ * 提交时可带 requestId，之后按 requestId 取消：排队中的任务直接移除并回调 onCancel，运行中的任务只置取消标记，
+ * 由任务自行检查。不依赖 Android，可在 JVM 上测试。
+ */
+final class PluginTaskScheduler {
+
+    enum Priority {
+        INTERACTIVE(64), VISIBLE(128), BACKGROUND(32);
+
+        final int queueCapacity;
+
+        Priority(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        /** 解析前端传入的优先级，未知或为空时返回 fallback */
+        static Priority parse(String value, Priority fallback) {
+            if (value == null) return fallback;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    interface Body {
+        void run(Task task) throws Exception;
+    }
+
+    static final class Task {
+        final Priority priority;
+        final String requestId;
+        private final Body body;
+        private final Runnable onCancel;
+        private volatile boolean cancelled;
+
+        private Task(Priority priority, String requestId, Body body, Runnable onCancel) {
+            this.priority = priority;
+            this.requestId = requestId;
+            this.body = body;
+            this.onCancel = onCancel;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final Object lock = new Object();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Task>[] queues = new ArrayDeque[Priority.values().length];
+    private final int[] running = new int[Priority.values().length];
+    private final int[] limits = new int[Priority.values().length];
+    private final Thread[] workers;
+    /** 各工作线程当前执行的任务，下标与 workers 对应 */
+    private final Task[] runningTasks;
+    private boolean shutdown;
+
+    PluginTaskScheduler(int threads) {
+        if (threads < 2) throw new IllegalArgumentException("At least two worker threads are required");
+        for (Priority p : Priority.values()) queues[p.ordinal()] = new ArrayDeque<>();
+        limits[Priority.INTERACTIVE.ordinal()] = threads;
+        limits[Priority.VISIBLE.ordinal()] = threads - 1;
+        limits[Priority.BACKGROUND.ordinal()] = Math.max(1, threads / 2);
+        workers = new Thread[threads];
+        runningTasks = new Task[threads];
+        for (int i = 0; i < threads; i++) {
+            final int slot = i;
+            workers[i] = new Thread(() -> workLoop(slot), "plugin-io-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * 提交任务
+     * @param requestId 供 cancel 使用的标识，可为 null
+     * @param onCancel  任务在开始前被取消或调度器关闭时调用，可为 null
+     * @return 队列已满或已关闭时返回 null
+     */
+    Task submit(Priority priority, String requestId, Body body, Runnable onCancel) {
+        Task task = new Task(priority, requestId, body, onCancel);
+        synchronized (lock) {
+            ArrayDeque<Task> queue = queues[priority.ordinal()];
+            if (shutdown || queue.size() >= priority.queueCapacity) return null;
+            queue.addLast(task);
+            lock.notify();
+        }
+        return task;
+    }
+
+    /** 取消 requestId 对应的全部任务；返回排队中被移除或运行中被标记的任务数 */
+    int cancel(String requestId) {
+        if (requestId == null) return 0;
+        int count = 0;
+        ArrayDeque<Task> removed = new ArrayDeque<>();
+        synchronized (lock) {
+            for (ArrayDeque<Task> queue : queues) {
+                for (Iterator<Task> it = queue.iterator(); it.hasNext(); ) {
+                    Task task = it.next();
+                    if (!requestId.equals(task.requestId)) continue;
+                    it.remove();
+                    removed.add(task);
+                }
+            }
+        }
+        for (Task task : removed) {
+            task.cancelled = true;
+            if (task.onCancel != null) task.onCancel.run();
+            count++;
+        }
+        synchronized (lock) {
+            for (Task task : runningTasks) {
+                if (task != null && requestId.equals(task.requestId) && !task.cancelled) {
+                    task.cancelled = true;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    int getQueued(Priority priority) {
+        synchronized (lock) {
+            return queues[priority.ordinal()].size();
+        }
+    }
+
+    int getRunning(Priority priority) {
+        synchronized (lock) {
+            return running[priority.ordinal()];
+        }
+    }
+
+    /** 停止接收任务，排队中的任务按取消处理，运行中的任务标记取消并中断 */
+    void shutdown() {
+        ArrayDeque<Task> pending = new ArrayDeque<>();
+        synchronized (lock) {
+            shutdown = true;
+            for (ArrayDeque<Task> queue : queues) {
+                pending.addAll(queue);
+                queue.clear();
+            }
+            for (Task task : runningTasks) if (task != null) task.cancelled = true;
+            lock.notifyAll();
+        }
+        for (Task task : pending) {
+            task.cancelled = true;
+            if (task.onCancel != null) task.onCancel.run();
+        }
+        for (Thread worker : workers) worker.interrupt();
+    }
+
+    private void workLoop(int slot) {
+        while (true) {
+            Task task;
+            synchronized (lock) {
+                while ((task = pollRunnable()) == null) {
+                    if (shutdown) return;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        if (shutdown) return;
+                    }
+                }
+                running[task.priority.ordinal()]++;
+                runningTasks[slot] = task;
+            }
+            Thread current = Thread.currentThread();
+            // Android 上 Java 线程优先级 4 对应 THREAD_PRIORITY_BACKGROUND
+            current.setPriority(task.priority == Priority.BACKGROUND ? 4 : Thread.NORM_PRIORITY);
+            try {
+                // 出队后、开始前被取消的任务与排队中取消的一样回调 onCancel，调用方不会一直等待
+                if (task.cancelled) {
+                    if (task.onCancel != null) task.onCancel.run();
+                } else {
+                    task.body.run(task);
+                }
+            } catch (Exception e) {
+                // 调用方需在 body 内自行回传错误（见 LocalMusicPlugin.schedule），这里只防止异常终止工作线程
+            } finally {
+                Thread.interrupted();
+                synchronized (lock) {
+                    running[task.priority.ordinal()]--;
+                    runningTasks[slot] = null;
+                    // 释放了受限的名额，可能有等待中的低优先级任务可以开始
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /** 按优先级取第一个未超出并发上限的任务；需持有 lock */
+    private Task pollRunnable() {
+        for (Priority p : Priority.values()) {
+            int i = p.ordinal();
+            if (!queues[i].isEmpty() && running[i] < limits[i]) return queues[i].pollFirst();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,173 @@
+package com.otterhub.music;
+
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 代理带宽调度
+ * 代理转发的流都是当前播放（playing），分段下载的连接为 download。正在播放的流缓冲不足时，
+ * 对下载限速或暂停读取，由 TCP 背压把链路带宽让给当前播放。
+ * 缓冲水位由前端通过 {@link #reportPlayback} 在播放进度更新与暂停时上报。
+ */
+public class ProxyBandwidthScheduler {
+
+    public enum Priority {
+        PLAYING, DOWNLOAD;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Level {
+        /** 不限制 */
+        NORMAL,
+        /** 播放缓冲偏低或未知：下载限速 */
+        GUARDED,
+        /** 播放即将卡顿：下载暂停 */
+        CRITICAL
+    }
+
+    /** 缓冲低于该秒数时暂停下载 */
+    static final double CRITICAL_BUFFER_SECONDS = 5;
+    /** 缓冲低于该秒数时限速下载 */
+    static final double GUARDED_BUFFER_SECONDS = 30;
+    /** 播放中的上报超过该时长未更新视为未知 */
+    private static final long REPORT_TTL_MS = 5000;
+    private static final long DOWNLOAD_BYTES_PER_SEC = 64 * 1024;
+    /** 单次连续暂停上限，避免上游因读超时断开；到时放行一个缓冲块 */
+    private static final long MAX_PAUSE_MS = 10_000;
+
+    private final Object lock = new Object();
+    private final int[] activeCounts = new int[Priority.values().length];
+    private final AtomicLong throttledMs = new AtomicLong();
+    private boolean playbackActive;
+    private double bufferedSeconds = -1;
+    private long reportedAt;
+
+    /** 登记一条流，结束时必须 close */
+    public Ticket open(Priority priority) {
+        synchronized (lock) {
+            activeCounts[priority.ordinal()]++;
+        }
+        return new Ticket(priority);
+    }
+
+    /**
+     * 前端上报播放状态
+     * @param playing 是否正在播放
+     * @param bufferedSeconds 当前位置之后已缓冲的秒数
+     */
+    public void reportPlayback(boolean playing, double bufferedSeconds) {
+        reportPlayback(playing, bufferedSeconds, System.currentTimeMillis());
+    }
+
+    void reportPlayback(boolean playing, double bufferedSeconds, long reportedAtMillis) {
+        synchronized (lock) {
+            this.playbackActive = playing;
+            this.bufferedSeconds = bufferedSeconds;
+            this.reportedAt = reportedAtMillis;
+            lock.notifyAll();
+        }
+    }
+
+    public Level getLevel() {
+        synchronized (lock) {
+            return levelLocked();
+        }
+    }
+
+    private Level levelLocked() {
+        if (activeCounts[Priority.PLAYING.ordinal()] == 0) return Level.NORMAL;
+        if (reportedAt == 0) return Level.GUARDED;
+        // 暂停后前端不再上报（timeupdate 停止），暂停状态不会过期
+        if (!playbackActive) return Level.NORMAL;
+        if (System.currentTimeMillis() - reportedAt > REPORT_TTL_MS) return Level.GUARDED;
+        if (bufferedSeconds < CRITICAL_BUFFER_SECONDS) return Level.CRITICAL;
+        return bufferedSeconds < GUARDED_BUFFER_SECONDS ? Level.GUARDED : Level.NORMAL;
+    }
+
+    public int getActiveCount(Priority priority) {
+        synchronized (lock) {
+            return activeCounts[priority.ordinal()];
+        }
+    }
+
+    /** 最近一次上报的缓冲秒数，未上报时返回 -1 */
+    public double getBufferedSeconds() {
+        synchronized (lock) {
+            return bufferedSeconds;
+        }
+    }
+
+    /** 下载因调度累计等待的毫秒数 */
+    public long getThrottledMs() {
+        return throttledMs.get();
+    }
+
+    /** 单条流的调度凭据；只由处理该流的线程使用 */
+    public final class Ticket implements AutoCloseable {
+        public final Priority priority;
+        private long windowStartNanos = System.nanoTime();
+        private long windowBytes;
+        private boolean closed;
+
+        private Ticket(Priority priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * 写出 bytes 字节前调用；播放流立即返回，下载按当前等级限速或暂停
+         */
+        public void acquire(int bytes) throws InterruptedIOException {
+            if (priority == Priority.PLAYING) return;
+            long waitStart = System.nanoTime();
+            try {
+                synchronized (lock) {
+                    Level level = levelLocked();
+                    long pauseDeadline = waitStart + TimeUnit.MILLISECONDS.toNanos(MAX_PAUSE_MS);
+                    while (level == Level.CRITICAL && System.nanoTime() < pauseDeadline) {
+                        lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(pauseDeadline - System.nanoTime())));
+                        level = levelLocked();
+                    }
+                    if (level == Level.NORMAL) {
+                        resetWindow();
+                        return;
+                    }
+
+                    // 令牌桶：窗口内累计字节按限速折算应耗时间，超前则等待
+                    long now = System.nanoTime();
+                    if (now - windowStartNanos > TimeUnit.SECONDS.toNanos(1)) resetWindow();
+                    windowBytes += bytes;
+                    long dueNanos = windowStartNanos + windowBytes * 1_000_000_000L / DOWNLOAD_BYTES_PER_SEC;
+                    while (levelLocked() == Level.GUARDED && (now = System.nanoTime()) < dueNanos) {
+                        lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(dueNanos - now)));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Stream interrupted while throttled");
+            } finally {
+                long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart);
+                if (waited > 0) throttledMs.addAndGet(waited);
+            }
+        }
+
+        private void resetWindow() {
+            windowStartNanos = System.nanoTime();
+            windowBytes = 0;
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (closed) return;
+                closed = true;
+                activeCounts[priority.ordinal()]--;
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.otterhub.music;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 代理流量统计
+ * 记录每条流的上游连接耗时、首字节时间、吞吐、响应码、缓存命中与中断情况，并维护聚合计数。
+ * 用于区分播放卡顿来自 CDN、代理还是 WebView。
+ */
+public class ProxyStats {
+
+    /** 保留最近结束的流记录条数 */
+    private static final int RECENT_LIMIT = 20;
+
+    public enum Source { UPSTREAM, CACHE }
+
+    public interface Listener {
+        void onStreamFinished(Stream stream);
+    }
+
+    private final AtomicLong streamIds = new AtomicLong();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong totalStreams = new AtomicLong();
+    private final AtomicLong abortedStreams = new AtomicLong();
+    private final AtomicLong bytesFromUpstream = new AtomicLong();
+    private final AtomicLong bytesFromCache = new AtomicLong();
+    private final AtomicLong connectMsTotal = new AtomicLong();
+    private final AtomicLong connectSamples = new AtomicLong();
+    private final AtomicLong ttfbMsTotal = new AtomicLong();
+    private final AtomicLong ttfbSamples = new AtomicLong();
+    private final Map<Integer, Long> responseCodes = new TreeMap<>();
+    private final ArrayDeque<Stream> recent = new ArrayDeque<>();
+    private final List<Stream> active = new ArrayList<>();
+    private volatile Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** 开始记录一条流 */
+    public Stream begin(String bvid, String range, Source source) {
+        Stream stream = new Stream(streamIds.incrementAndGet(), bvid, range, source);
+        activeStreams.incrementAndGet();
+        totalStreams.incrementAndGet();
+        synchronized (active) {
+            active.add(stream);
+        }
+        return stream;
+    }
+
+    private void finish(Stream stream) {
+        activeStreams.decrementAndGet();
+        if (stream.aborted) abortedStreams.incrementAndGet();
+        (stream.source == Source.CACHE ? bytesFromCache : bytesFromUpstream).addAndGet(stream.bytes);
+        if (stream.connectMs >= 0) {
+            connectMsTotal.addAndGet(stream.connectMs);
+            connectSamples.incrementAndGet();
+        }
+        if (stream.ttfbMs >= 0) {
+            ttfbMsTotal.addAndGet(stream.ttfbMs);
+            ttfbSamples.incrementAndGet();
+        }
+        synchronized (active) {
+            active.remove(stream);
+        }
+        synchronized (recent) {
+            if (stream.responseCode > 0) responseCodes.merge(stream.responseCode, 1L, Long::sum);
+            recent.addFirst(stream);
+            while (recent.size() > RECENT_LIMIT) recent.removeLast();
+        }
+        Listener l = listener;
+        if (l != null) {
+            try {
+                l.onStreamFinished(stream);
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    public long getTotalStreams() {
+        return totalStreams.get();
+    }
+
+    public long getAbortedStreams() {
+        return abortedStreams.get();
+    }
+
+    public long getBytesFromUpstream() {
+        return bytesFromUpstream.get();
+    }
+
+    public long getBytesFromCache() {
+        return bytesFromCache.get();
+    }
+
+    /** 平均上游连接耗时（毫秒），无样本时返回 -1 */
+    public long getAvgConnectMs() {
+        long n = connectSamples.get();
+        return n > 0 ? connectMsTotal.get() / n : -1;
+    }
+
+    /** 平均首字节时间（毫秒），无样本时返回 -1 */
+    public long getAvgTtfbMs() {
+        long n = ttfbSamples.get();
+        return n > 0 ? ttfbMsTotal.get() / n : -1;
+    }
+
+    public Map<Integer, Long> getResponseCodes() {
+        synchronized (recent) {
+            return new TreeMap<>(responseCodes);
+        }
+    }
+
+    /** 最近结束的流，最新的在前 */
+    public List<Stream> getRecentStreams() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    public List<Stream> getActiveStreamList() {
+        synchronized (active) {
+            return new ArrayList<>(active);
+        }
+    }
+
+    public void reset() {
+        totalStreams.set(activeStreams.get());
+        abortedStreams.set(0);
+        bytesFromUpstream.set(0);
+        bytesFromCache.set(0);
+        connectMsTotal.set(0);
+        connectSamples.set(0);
+        ttfbMsTotal.set(0);
+        ttfbSamples.set(0);
+        synchronized (recent) {
+            responseCodes.clear();
+            recent.clear();
+        }
+    }
+
+    /** 单条流的记录；字段只由处理该流的工作线程写入 */
+    public final class Stream {
+        public final long id;
+        public final String bvid;
+        public final String range;
+        public final long startedAt = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final Source source;
+        private volatile long connectMs = -1;
+        private volatile long ttfbMs = -1;
+        private volatile long bytes;
+        private volatile long durationMs = -1;
+        private volatile int responseCode;
+        private volatile boolean aborted;
+        private volatile boolean finished;
+
+        private Stream(long id, String bvid, String range, Source source) {
+            this.id = id;
+            this.bvid = bvid;
+            this.range = range;
+            this.source = source;
+        }
+
+        /** 标记上游 TCP/TLS 连接建立完成 */
+        public void markConnected() {
+            connectMs = elapsedMs();
+        }
+
+        public void setResponseCode(int code) {
+            responseCode = code;
+        }
+
+        /** 记录首字节时间，只有第一次调用生效 */
+        public void markFirstByte() {
+            if (ttfbMs < 0) ttfbMs = elapsedMs();
+        }
+
+        /** 累加已写给客户端的字节 */
+        public void addBytes(long count) {
+            markFirstByte();
+            bytes += count;
+        }
+
+        /** 结束记录；completed=false 表示传输被中断（客户端断开或上游出错） */
+        public void end(boolean completed) {
+            if (finished) return;
+            finished = true;
+            aborted = !completed;
+            durationMs = elapsedMs();
+            finish(this);
+        }
+
+        public Source getSource() { return source; }
+        public long getConnectMs() { return connectMs; }
+        public long getTtfbMs() { return ttfbMs; }
+        public long getBytes() { return bytes; }
+        public int getResponseCode() { return responseCode; }
+        public boolean isAborted() { return aborted; }
+        public boolean isFinished() { return finished; }
+
+        public long getDurationMs() {
+            return finished ? durationMs : elapsedMs();
+        }
+
+        /** 平均吞吐（字节/秒） */
+        public long getBytesPerSecond() {
+            long ms = getDurationMs();
+            return ms > 0 ? bytes * 1000 / ms : 0;
+        }
+
+        private long elapsedMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.otterhub.music;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 代理音频流缓存
+ * 完整传输过的音频流落盘保存，之后的 Range/seek 请求直接由文件零拷贝返回，不再回源；上游不可达时按 bvid 回退到已缓存的流。
+ * 索引与缓存文件一起持久化，重启后仍然有效。按最近使用顺序淘汰，未固定的条目总大小不超过 maxBytes；
+ * 固定的 bvid 不会被淘汰，也不占用该额度。
+ */
+public class ProxyStreamCache {
+
+    private static final String DATA_SUFFIX = ".cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String INDEX_FILE = "index.bin";
+    private static final int MAGIC = 0x4F545343; // "OTSC"
+    private static final int VERSION = 1;
+
+    private final File dir;
+    private final File indexFile;
+    private final long maxBytes;
+    /** accessOrder=true，迭代顺序即 LRU 顺序 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> writing = new HashSet<>();
+    /** 固定的 bvid；尚未缓存的也记录，缓存完成后即受保护 */
+    private final Set<String> pinned = new HashSet<>();
+    private long totalBytes;
+    private boolean dirty;
+
+    public ProxyStreamCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.indexFile = new File(dir, INDEX_FILE);
+        this.maxBytes = maxBytes;
+        if (!dir.exists()) dir.mkdirs();
+        load();
+    }
+
+    /** 缓存 key 只取 bvid + URL 路径，B站 CDN 的签名参数每次都会变化 */
+    public static String keyFor(String audioUrl, String bvid) {
+        String path;
+        try {
+            path = new URL(audioUrl).getPath();
+        } catch (Exception e) {
+            path = audioUrl;
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest((bvid + "|" + path).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b & 0xFF));
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString((bvid + "|" + path).hashCode());
+        }
+    }
+
+    /** 返回已完整缓存的条目，不存在时返回 null */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (!entry.file.exists()) {
+            entries.remove(key);
+            totalBytes -= entry.length;
+            dirty = true;
+            return null;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        dirty = true;
+        return entry;
+    }
+
+    /** 该 bvid 最近使用的缓存条目（任意音质），供上游不可达时回退；没有时返回 null */
+    public synchronized Entry latest(String bvid) {
+        String latestKey = null;
+        long latestAccess = Long.MIN_VALUE;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (bvid.equals(entry.bvid) && entry.lastAccess >= latestAccess) {
+                latestKey = e.getKey();
+                latestAccess = entry.lastAccess;
+            }
+        }
+        return latestKey != null ? get(latestKey) : null;
+    }
+
+    /** 为 key 打开写入器；同一 key 已在写入或已缓存时返回 null */
+    public synchronized Writer openWriter(String key, String bvid, String contentType, long length) {
+        if (length <= 0 || writing.contains(key) || entries.containsKey(key)) return null;
+        if (length > maxBytes && !pinned.contains(bvid)) return null;
+        try {
+            File temp = new File(dir, key + TEMP_SUFFIX);
+            Writer writer = new Writer(key, bvid, contentType, length, temp);
+            writing.add(key);
+            return writer;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 固定 bvid，其缓存不再被淘汰
+     * @return 该 bvid 当前是否已有完整缓存
+     */
+    public synchronized boolean pin(String bvid) {
+        if (pinned.add(bvid)) {
+            dirty = true;
+            saveIndex();
+        }
+        return isCached(bvid);
+    }
+
+    /** 取消固定，超出额度时随即按 LRU 淘汰 */
+    public synchronized void unpin(String bvid) {
+        if (!pinned.remove(bvid)) return;
+        dirty = true;
+        evictIfNeeded();
+        saveIndex();
+    }
+
+    public synchronized boolean isPinned(String bvid) {
+        return pinned.contains(bvid);
+    }
+
+    public synchronized boolean isCached(String bvid) {
+        for (Entry entry : entries.values()) {
+            if (bvid.equals(entry.bvid)) return true;
+        }
+        return false;
+    }
+
+    public synchronized List<String> getPinned() {
+        return new ArrayList<>(pinned);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /** 已固定条目的字节数，不计入淘汰额度 */
+    public synchronized long getPinnedBytes() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            if (pinned.contains(entry.bvid)) bytes += entry.length;
+        }
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** 清除未固定的缓存 */
+    public synchronized void clear() {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (pinned.contains(entry.bvid)) continue;
+            entry.file.delete();
+            totalBytes -= entry.length;
+            it.remove();
+        }
+        dirty = true;
+        saveIndex();
+    }
+
+    /** 把访问时间等未落盘的改动写回索引 */
+    public synchronized void flush() {
+        saveIndex();
+    }
+
+    private synchronized void commit(Writer writer) {
+        writing.remove(writer.key);
+        File target = new File(dir, writer.key + DATA_SUFFIX);
+        if (!writer.temp.renameTo(target)) {
+            writer.temp.delete();
+            return;
+        }
+        Entry entry = new Entry(target, writer.bvid, writer.contentType, writer.length);
+        entry.lastAccess = System.currentTimeMillis();
+        entries.put(writer.key, entry);
+        totalBytes += writer.length;
+        dirty = true;
+        evictIfNeeded();
+        saveIndex();
+    }
+
+    private synchronized void abort(Writer writer) {
+        writing.remove(writer.key);
+        writer.temp.delete();
+    }
+
+    /** 从最久未用的开始淘汰未固定条目，直到未固定部分不超过 maxBytes */
+    private void evictIfNeeded() {
+        long unpinnedBytes = totalBytes - getPinnedBytes();
+        if (unpinnedBytes <= maxBytes) return;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (unpinnedBytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (pinned.contains(entry.bvid)) continue;
+            entry.file.delete();
+            totalBytes -= entry.length;
+            unpinnedBytes -= entry.length;
+            it.remove();
+            dirty = true;
+        }
+    }
+
+    /** 索引按 LRU 顺序写出，先写临时文件再替换 */
+    private void saveIndex() {
+        if (!dirty) return;
+        File temp = new File(dir, INDEX_FILE + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeUTF(entry.bvid);
+                out.writeBoolean(entry.contentType != null);
+                if (entry.contentType != null) out.writeUTF(entry.contentType);
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastAccess);
+            }
+            out.writeInt(pinned.size());
+            for (String bvid : pinned) out.writeUTF(bvid);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (temp.renameTo(indexFile)) dirty = false;
+        else temp.delete();
+    }
+
+    /** 读取索引，丢弃缺失或长度不符的条目，并删除索引之外的遗留文件 */
+    private void load() {
+        if (indexFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String key = in.readUTF();
+                        String bvid = in.readUTF();
+                        String contentType = in.readBoolean() ? in.readUTF() : null;
+                        long length = in.readLong();
+                        long lastAccess = in.readLong();
+                        File file = new File(dir, key + DATA_SUFFIX);
+                        if (!file.isFile() || file.length() != length) {
+                            dirty = true;
+                            continue;
+                        }
+                        Entry entry = new Entry(file, bvid, contentType, length);
+                        entry.lastAccess = lastAccess;
+                        entries.put(key, entry);
+                        totalBytes += length;
+                    }
+                    int pinnedCount = in.readInt();
+                    for (int i = 0; i < pinnedCount; i++) pinned.add(in.readUTF());
+                }
+            } catch (IOException e) {
+                entries.clear();
+                pinned.clear();
+                totalBytes = 0;
+                dirty = true;
+            }
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.equals(INDEX_FILE)) continue;
+                if (name.endsWith(DATA_SUFFIX)
+                        && entries.containsKey(name.substring(0, name.length() - DATA_SUFFIX.length()))) {
+                    continue;
+                }
+                f.delete();
+            }
+        }
+        evictIfNeeded();
+        saveIndex();
+    }
+
+    public static final class Entry {
+        public final File file;
+        public final String bvid;
+        public final String contentType;
+        public final long length;
+        long lastAccess;
+
+        Entry(File file, String bvid, String contentType, long length) {
+            this.file = file;
+            this.bvid = bvid;
+            this.contentType = contentType;
+            this.length = length;
+        }
+    }
+
+    /** 旁路写入器：代理转发时同步写入临时文件，写满 length 字节后才提交 */
+    public final class Writer {
+        private final String key;
+        private final String bvid;
+        private final String contentType;
+        private final long length;
+        private final File temp;
+        private final FileOutputStream out;
+        private long written;
+        private boolean closed;
+
+        private Writer(String key, String bvid, String contentType, long length, File temp) throws IOException {
+            this.key = key;
+            this.bvid = bvid;
+            this.contentType = contentType;
+            this.length = length;
+            this.temp = temp;
+            this.out = new FileOutputStream(temp);
+        }
+
+        public void write(byte[] data, int offset, int count) {
+            if (closed) return;
+            try {
+                out.write(data, offset, count);
+                written += count;
+            } catch (IOException e) {
+                // 缓存写入失败不影响播放
+                close(false);
+            }
+        }
+
+        /** 结束写入：字节数完整时提交，否则丢弃 */
+        public void close(boolean completed) {
+            if (closed) return;
+            closed = true;
+            LocalHttpServer.closeQuietly(out);
+            if (completed && written == length) commit(this);
+            else abort(this);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.otterhub.music;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 遍历 SAF 目录树（ACTION_OPEN_DOCUMENT_TREE 授权的 tree URI）
+ * 每个目录只发一次 buildChildDocumentsUriUsingTree 查询，一次取回全部子项的 ID、名称、类型、大小与修改时间，
+ * 不像 DocumentFile.listFiles 那样再逐项查询属性；子目录分发到多个线程并行查询。
+ * 无需"管理所有文件"权限，Android 11+ 也能扫描用户选定的音乐目录。
+ */
+final class SafTreeScanner {
+
+    private static final String[] PROJECTION = {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+
+    /** 目录树中的一个文件 */
+    static final class Document {
+        Uri uri;
+        String name;
+        String mimeType;
+        long size;
+        long lastModified;
+    }
+
+    interface Visitor {
+        /** 在扫描线程上调用，可能并发 */
+        void onDocument(Document document);
+    }
+
+    interface DocumentFilter {
+        boolean accept(String name, String mimeType);
+    }
+
+    private final ContentResolver resolver;
+    private final int parallelism;
+    private final int maxDepth;
+
+    SafTreeScanner(ContentResolver resolver, int parallelism, int maxDepth) {
+        this.resolver = resolver;
+        this.parallelism = parallelism;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * 扫描整棵树，全部目录查询完成、cancelled 返回 true 或线程被中断后返回
+     * 以 "." 开头的目录不进入；无法查询的目录跳过。
+     */
+    void scan(Uri treeUri, DocumentFilter filter, BooleanSupplier cancelled, Visitor visitor)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        Walk walk = new Walk(treeUri, filter, cancelled, visitor, pool);
+        try {
+            walk.submit(DocumentsContract.getTreeDocumentId(treeUri), 0);
+            walk.await();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private final class Walk {
+        private final Uri treeUri;
+        private final DocumentFilter filter;
+        private final BooleanSupplier cancelled;
+        private final Visitor visitor;
+        private final ExecutorService pool;
+        /** 已提交但未查询完的目录数，归零即扫描结束 */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Walk(Uri treeUri, DocumentFilter filter, BooleanSupplier cancelled, Visitor visitor, ExecutorService pool) {
+            this.treeUri = treeUri;
+            this.filter = filter;
+            this.cancelled = cancelled;
+            this.visitor = visitor;
+            this.pool = pool;
+        }
+
+        void submit(String documentId, int depth) {
+            pending.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    if (!cancelled.getAsBoolean()) list(documentId, depth);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        synchronized (this) {
+                            notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (pending.get() > 0) wait();
+        }
+
+        private void list(String parentId, int depth) {
+            Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentId);
+            try (Cursor cursor = resolver.query(children, PROJECTION, null, null, null)) {
+                if (cursor == null) return;
+                while (cursor.moveToNext()) {
+                    if (cancelled.getAsBoolean()) return;
+                    String documentId = cursor.getString(0);
+                    String name = cursor.getString(1);
+                    String mimeType = cursor.getString(2);
+                    if (DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType)) {
+                        if (depth < maxDepth && name != null && !name.startsWith(".")) submit(documentId, depth + 1);
+                        continue;
+                    }
+                    if (!filter.accept(name, mimeType)) continue;
+                    Document document = new Document();
+                    document.uri = DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId);
+                    document.name = name;
+                    document.mimeType = mimeType;
+                    document.size = cursor.isNull(3) ? 0 : cursor.getLong(3);
+                    document.lastModified = cursor.isNull(4) ? 0 : cursor.getLong(4);
+                    visitor.onDocument(document);
+                }
+            } catch (RuntimeException e) {
+                android.util.Log.w("SafTreeScanner", "Cannot list " + children, e);
+            }
+        }
+    }
+}
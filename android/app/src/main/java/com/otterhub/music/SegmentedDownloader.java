@@ -0,0 +1,323 @@
+package com.otterhub.music;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * B站音频分段并行下载
+ * 先探测文件总长度并预分配目标文件，再按 Range 切分为多个分段，每段独立连接并用定位写入直接落盘。
+ * 进度保存在 .dlstate 文件中，中断后再次下载同一目标会从已完成位置续传。
+ * CDN 不支持 Range 时退化为单连接顺序下载。
+ * 设置了带宽调度器时，每个连接都以 download 优先级登记，播放缓冲不足时让出带宽。
+ */
+public class SegmentedDownloader {
+
+    public interface ProgressListener {
+        void onProgress(long downloaded, long total);
+    }
+
+    /** 小于该长度的分段不再继续切分 */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int MAX_CONNECTIONS = 8;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".dlstate";
+
+    private final String audioUrl;
+    private final String bvid;
+    private final File target;
+    private final File partFile;
+    private final File stateFile;
+    private final int connections;
+    private volatile boolean cancelled;
+    private boolean resumed;
+    private ProxyBandwidthScheduler scheduler;
+
+    public SegmentedDownloader(String audioUrl, String bvid, File target, int connections) {
+        this.audioUrl = audioUrl;
+        this.bvid = bvid;
+        this.target = target;
+        this.partFile = new File(target.getPath() + PART_SUFFIX);
+        this.stateFile = new File(target.getPath() + STATE_SUFFIX);
+        this.connections = Math.max(1, Math.min(connections, MAX_CONNECTIONS));
+    }
+
+    /** 在 run 之前设置；为 null 时不受调度 */
+    public void setScheduler(ProxyBandwidthScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** 本次下载是否复用了之前中断留下的进度 */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * 阻塞执行下载，完成后目标文件就位
+     * @return 文件总字节数
+     */
+    public long run(ProgressListener listener) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory: " + parent);
+        }
+
+        long total = probeLength();
+        if (total <= 0) return downloadSequential(listener);
+
+        List<Segment> segments = loadState(total);
+        resumed = segments != null;
+        if (segments == null || !partFile.exists() || partFile.length() != total) {
+            resumed = false;
+            segments = planSegments(total);
+            try (RandomAccessFile raf = new RandomAccessFile(partFile, "rw")) {
+                raf.setLength(total);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(segments.size(), r -> {
+            Thread t = new Thread(r, "bili-download-segment");
+            t.setDaemon(true);
+            return t;
+        });
+        try (RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (!segment.isComplete()) futures.add(pool.submit(() -> {
+                    downloadSegment(segment, channel);
+                    return null;
+                }));
+            }
+            waitForSegments(futures, segments, total, listener);
+            channel.force(false);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (target.exists() && !target.delete()) throw new IOException("Cannot replace " + target);
+        if (!partFile.renameTo(target)) throw new IOException("Cannot move downloaded file to " + target);
+        stateFile.delete();
+        if (listener != null) listener.onProgress(total, total);
+        return total;
+    }
+
+    private void waitForSegments(List<Future<?>> futures, List<Segment> segments, long total,
+                                 ProgressListener listener) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        saveState(segments, total);
+                        if (listener != null) listener.onProgress(downloaded(segments), total);
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            cancelled = true;
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted");
+        } finally {
+            saveState(segments, total);
+        }
+        if (cancelled) throw new IOException("Download cancelled");
+    }
+
+    private void downloadSegment(Segment segment, FileChannel channel) throws IOException {
+        long start = segment.start + segment.done;
+        HttpURLConnection connection = openConnection("bytes=" + start + "-" + segment.end);
+        ProxyBandwidthScheduler.Ticket ticket = openTicket();
+        try {
+            int code = connection.getResponseCode();
+            if (code != 206) throw new IOException("Range not honored for segment, HTTP " + code);
+
+            byte[] buffer = new byte[LocalHttpServer.IO_BUFFER_SIZE];
+            ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+            long position = start;
+            try (InputStream in = connection.getInputStream()) {
+                int read;
+                while (!cancelled && position <= segment.end && (read = in.read(buffer)) >= 0) {
+                    if (ticket != null) ticket.acquire(read);
+                    int count = (int) Math.min(read, segment.end - position + 1);
+                    wrapper.clear().limit(count);
+                    while (wrapper.hasRemaining()) {
+                        position += channel.write(wrapper, position);
+                    }
+                    segment.done = position - segment.start;
+                }
+            }
+            if (!cancelled && !segment.isComplete()) throw new IOException("Segment ended early at " + position);
+        } finally {
+            if (ticket != null) ticket.close();
+            connection.disconnect();
+        }
+    }
+
+    /** 用 bytes=0-0 探测总长度，不支持 Range 时返回 -1 */
+    private long probeLength() throws IOException {
+        HttpURLConnection connection = openConnection("bytes=0-0");
+        try {
+            int code = connection.getResponseCode();
+            if (code != 206) {
+                if (code < 200 || code >= 300) throw new IOException("HTTP " + code);
+                return -1;
+            }
+            String contentRange = connection.getHeaderField("Content-Range");
+            int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+            if (slash < 0) return -1;
+            try {
+                return Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long downloadSequential(ProgressListener listener) throws IOException {
+        HttpURLConnection connection = openConnection(null);
+        ProxyBandwidthScheduler.Ticket ticket = openTicket();
+        try {
+            int code = connection.getResponseCode();
+            if (code < 200 || code >= 300) throw new IOException("HTTP " + code);
+            long total = connection.getContentLengthLong();
+            long written = 0;
+            long lastReport = 0;
+            byte[] buffer = new byte[LocalHttpServer.IO_BUFFER_SIZE];
+            try (InputStream in = connection.getInputStream();
+                 RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                raf.setLength(0);
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    if (cancelled) throw new IOException("Download cancelled");
+                    if (ticket != null) ticket.acquire(read);
+                    ByteBuffer wrapper = ByteBuffer.wrap(buffer, 0, read);
+                    while (wrapper.hasRemaining()) written += channel.write(wrapper, written);
+                    long now = System.currentTimeMillis();
+                    if (listener != null && now - lastReport >= PROGRESS_INTERVAL_MS) {
+                        lastReport = now;
+                        listener.onProgress(written, total);
+                    }
+                }
+                channel.force(false);
+            }
+            if (target.exists() && !target.delete()) throw new IOException("Cannot replace " + target);
+            if (!partFile.renameTo(target)) throw new IOException("Cannot move downloaded file to " + target);
+            if (listener != null) listener.onProgress(written, written);
+            return written;
+        } finally {
+            if (ticket != null) ticket.close();
+            connection.disconnect();
+        }
+    }
+
+    private ProxyBandwidthScheduler.Ticket openTicket() {
+        return scheduler != null ? scheduler.open(ProxyBandwidthScheduler.Priority.DOWNLOAD) : null;
+    }
+
+    private HttpURLConnection openConnection(String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(audioUrl).openConnection();
+        BilibiliProxyServer.applyBilibiliHeaders(connection, bvid);
+        if (range != null) connection.setRequestProperty("Range", range);
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(30000);
+        return connection;
+    }
+
+    private List<Segment> planSegments(long total) {
+        int count = (int) Math.max(1, Math.min(connections, total / MIN_SEGMENT_SIZE));
+        long size = total / count;
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            long end = i == count - 1 ? total - 1 : start + size - 1;
+            segments.add(new Segment(start, end, 0));
+        }
+        return segments;
+    }
+
+    private long downloaded(List<Segment> segments) {
+        long sum = 0;
+        for (Segment s : segments) sum += s.done;
+        return sum;
+    }
+
+    // --- 续传状态：首行总长度，其后每行 "start end done" ---
+
+    private List<Segment> loadState(long total) {
+        if (!stateFile.exists()) return null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(stateFile))) {
+            String first = reader.readLine();
+            if (first == null || Long.parseLong(first.trim()) != total) return null;
+            List<Segment> segments = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String[] parts = line.trim().split(" ");
+                segments.add(new Segment(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            }
+            return segments.isEmpty() ? null : segments;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void saveState(List<Segment> segments, long total) {
+        File temp = new File(stateFile.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(temp)) {
+            writer.write(total + "\n");
+            for (Segment s : segments) writer.write(s.start + " " + s.end + " " + s.done + "\n");
+        } catch (IOException e) {
+            return;
+        }
+        if (!temp.renameTo(stateFile)) temp.delete();
+    }
+
+    private static final class Segment {
+        final long start;
+        final long end;
+        /** 已写入字节数，只由负责该分段的线程更新 */
+        volatile long done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = Math.max(0, Math.min(done, end - start + 1));
+        }
+
+        boolean isComplete() {
+            return done >= end - start + 1;
+        }
+    }
+}
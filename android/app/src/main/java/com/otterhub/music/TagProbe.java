@@ -0,0 +1,171 @@
+package com.otterhub.music;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 只读标签头，定位内嵌封面与歌词
+ * ID3v2.3/2.4 逐个读取帧头并跳过帧体，记录首个 USLT 帧体以及 APIC 图片数据（有封面图时取封面图）的位置与长度；
+ * FLAC 读取元数据块头，记录 PICTURE 块中图片数据的位置。帧经过非同步化、压缩或加密时只记录存在，位置记为 -1。
+ * 内嵌歌词只支持 ID3 USLT，其他格式一律视为无歌词；无法识别的格式封面记为未知。不依赖 Android，可在 JVM 上测试。
+ */
+final class TagProbe {
+
+    /** 长度取值：未知 */
+    static final int UNKNOWN = -1;
+
+    private static final int MAX_ID3_TAG = 16 * 1024 * 1024;
+    private static final int APIC_HEADER_PROBE = 1024;
+    private static final int PICTURE_TYPE_FRONT_COVER = 3;
+
+    static final class Result {
+        /** 封面图片数据的文件偏移，无法直接读取时为 -1 */
+        long coverOffset = -1;
+        /** 封面字节数；0 为没有，UNKNOWN 为未知 */
+        int coverLength = UNKNOWN;
+        /** USLT 帧体（含编码、语言、描述字段）的文件偏移，无法直接读取时为 -1 */
+        long lyricsOffset = -1;
+        /** USLT 帧体字节数；0 为没有 */
+        int lyricsLength;
+    }
+
+    private TagProbe() {}
+
+    static Result probe(FileChannel channel) throws IOException {
+        Result result = new Result();
+        ByteBuffer magic = read(channel, 0, 10);
+        if (magic.remaining() >= 10 && magic.get(0) == 'I' && magic.get(1) == 'D' && magic.get(2) == '3') {
+            probeId3(channel, magic, result);
+        } else if (magic.remaining() >= 4 && magic.get(0) == 'f' && magic.get(1) == 'L'
+                && magic.get(2) == 'a' && magic.get(3) == 'C') {
+            probeFlac(channel, result);
+        }
+        return result;
+    }
+
+    private static void probeId3(FileChannel channel, ByteBuffer header, Result result) throws IOException {
+        int major = header.get(3) & 0xFF;
+        int flags = header.get(5) & 0xFF;
+        int tagSize = synchsafe(header, 6);
+        if (major < 3 || major > 4 || tagSize <= 0 || tagSize > MAX_ID3_TAG) return;
+        result.coverLength = 0;
+        // v2.3 整个标签非同步化时帧内数据与文件字节不一致
+        boolean tagUnsync = (flags & 0x80) != 0;
+
+        long position = 10;
+        long end = 10L + tagSize;
+        if ((flags & 0x40) != 0) {
+            ByteBuffer ext = read(channel, position, 4);
+            if (ext.remaining() < 4) return;
+            int size = major == 4 ? synchsafe(ext, 0) : ext.getInt(0) + 4;
+            position += size;
+        }
+        boolean frontCover = false;
+        while (position + 10 <= end) {
+            ByteBuffer frame = read(channel, position, 10);
+            if (frame.remaining() < 10 || frame.get(0) == 0) break;
+            String id = new String(new byte[]{frame.get(0), frame.get(1), frame.get(2), frame.get(3)},
+                    StandardCharsets.ISO_8859_1);
+            int size = major == 4 ? synchsafe(frame, 4) : frame.getInt(4);
+            if (size <= 0 || position + 10 + size > end) break;
+            int formatFlags = frame.get(9) & 0xFF;
+            boolean direct = !tagUnsync && (major == 4 ? (formatFlags & 0x0F) == 0 : (formatFlags & 0xE0) == 0);
+            long body = position + 10;
+
+            if ("USLT".equals(id) && result.lyricsLength == 0) {
+                result.lyricsLength = size;
+                result.lyricsOffset = direct ? body : -1;
+            } else if ("APIC".equals(id) && !frontCover) {
+                int pictureType = direct ? locateApicData(channel, body, size, result) : -1;
+                if (!direct) {
+                    result.coverLength = size;
+                    result.coverOffset = -1;
+                }
+                frontCover = pictureType == PICTURE_TYPE_FRONT_COVER;
+            }
+            position = body + size;
+        }
+    }
+
+    /** 解析 APIC 帧头（编码、MIME、图片类型、描述），记录图片数据位置；返回图片类型 */
+    private static int locateApicData(FileChannel channel, long body, int size, Result result) throws IOException {
+        ByteBuffer head = read(channel, body, Math.min(size, APIC_HEADER_PROBE));
+        int limit = head.remaining();
+        int encoding = limit > 0 ? head.get(0) & 0xFF : 0;
+        int i = 1;
+        while (i < limit && head.get(i) != 0) i++;
+        int pictureType = i + 1 < limit ? head.get(i + 1) & 0xFF : -1;
+        i += 2;
+        boolean wide = encoding == 1 || encoding == 2;
+        while (i < limit) {
+            if (!wide && head.get(i) == 0) {
+                i += 1;
+                break;
+            }
+            if (wide && i + 1 < limit && head.get(i) == 0 && head.get(i + 1) == 0) {
+                i += 2;
+                break;
+            }
+            i += wide ? 2 : 1;
+        }
+        if (i >= limit || i >= size) {
+            // 描述过长或帧头残缺，只记录存在
+            result.coverLength = size;
+            result.coverOffset = -1;
+        } else {
+            result.coverLength = size - i;
+            result.coverOffset = body + i;
+        }
+        return pictureType;
+    }
+
+    private static void probeFlac(FileChannel channel, Result result) throws IOException {
+        result.coverLength = 0;
+        long position = 4;
+        boolean last = false;
+        boolean frontCover = false;
+        while (!last) {
+            ByteBuffer header = read(channel, position, 4);
+            if (header.remaining() < 4) return;
+            last = (header.get(0) & 0x80) != 0;
+            int type = header.get(0) & 0x7F;
+            int length = header.getInt(0) & 0xFFFFFF;
+            long body = position + 4;
+            if (type == 6 && !frontCover) {
+                ByteBuffer head = read(channel, body, 8);
+                if (head.remaining() < 8) return;
+                int pictureType = head.getInt(0);
+                int mimeLength = head.getInt(4);
+                ByteBuffer desc = read(channel, body + 8 + mimeLength, 4);
+                if (desc.remaining() < 4) return;
+                long dataLengthAt = body + 8 + mimeLength + 4 + desc.getInt(0) + 16;
+                ByteBuffer data = read(channel, dataLengthAt, 4);
+                if (data.remaining() < 4) return;
+                result.coverLength = data.getInt(0);
+                result.coverOffset = dataLengthAt + 4;
+                frontCover = pictureType == PICTURE_TYPE_FRONT_COVER;
+            }
+            position = body + length;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int synchsafe(ByteBuffer data, int offset) {
+        return ((data.get(offset) & 0x7F) << 21)
+                | ((data.get(offset + 1) & 0x7F) << 14)
+                | ((data.get(offset + 2) & 0x7F) << 7)
+                | (data.get(offset + 3) & 0x7F);
+    }
+}
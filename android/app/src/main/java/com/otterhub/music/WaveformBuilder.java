@@ -0,0 +1,108 @@
+package com.otterhub.music;
+
+import java.util.Arrays;
+
+/**
+ * 把解码后的 PCM 降采样为固定数量的 min/max 峰值桶
+ * 先按预估总帧数切成细粒度小块累计各块最小/最大值，结束时再按实际块数折叠为目标桶数，
+ * 因此容器时长不准或未知时结果依然覆盖整条音轨。不依赖 Android，可在 JVM 上测试。
+ */
+final class WaveformBuilder {
+
+    /** 每个目标桶预留的细粒度小块数 */
+    private static final int BLOCKS_PER_BUCKET = 4;
+
+    /** 量化后的峰值；min / max 取值 -127..127，对应 -1..1 */
+    static final class Peaks {
+        final int buckets;
+        final long durationMs;
+        final byte[] min;
+        final byte[] max;
+
+        Peaks(long durationMs, byte[] min, byte[] max) {
+            this.buckets = min.length;
+            this.durationMs = durationMs;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private final int buckets;
+    private final int channels;
+    private final int sampleRate;
+    private final int blockFrames;
+
+    private float[] blockMin = new float[256];
+    private float[] blockMax = new float[256];
+    private int blockCount;
+    private int blockFill;
+    private float currentMin = Float.MAX_VALUE;
+    private float currentMax = -Float.MAX_VALUE;
+    private long frames;
+
+    /**
+     * @param estimatedFrames 预估总帧数，未知时传 -1（按 20ms 一块累计）
+     */
+    WaveformBuilder(int buckets, int sampleRate, int channels, long estimatedFrames) {
+        if (buckets <= 0 || sampleRate <= 0 || channels <= 0) throw new IllegalArgumentException("Invalid waveform format");
+        this.buckets = buckets;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.blockFrames = estimatedFrames > 0
+                ? (int) Math.max(1, estimatedFrames / ((long) buckets * BLOCKS_PER_BUCKET))
+                : Math.max(1, sampleRate / 50);
+    }
+
+    /** 输入交错采样，多声道合并为单条包络 */
+    void process(float[] samples, int count) {
+        int index = 0;
+        int frameCount = count / channels;
+        for (int f = 0; f < frameCount; f++) {
+            for (int c = 0; c < channels; c++) {
+                float v = samples[index++];
+                if (v < currentMin) currentMin = v;
+                if (v > currentMax) currentMax = v;
+            }
+            if (++blockFill == blockFrames) finishBlock();
+        }
+        frames += frameCount;
+    }
+
+    private void finishBlock() {
+        if (blockCount == blockMin.length) {
+            blockMin = Arrays.copyOf(blockMin, blockCount * 2);
+            blockMax = Arrays.copyOf(blockMax, blockCount * 2);
+        }
+        blockMin[blockCount] = currentMin;
+        blockMax[blockCount] = currentMax;
+        blockCount++;
+        blockFill = 0;
+        currentMin = Float.MAX_VALUE;
+        currentMax = -Float.MAX_VALUE;
+    }
+
+    Peaks build() {
+        if (blockFill > 0) finishBlock();
+        byte[] min = new byte[buckets];
+        byte[] max = new byte[buckets];
+        if (blockCount > 0) {
+            for (int b = 0; b < buckets; b++) {
+                int from = (int) ((long) b * blockCount / buckets);
+                int to = Math.max(from + 1, (int) ((long) (b + 1) * blockCount / buckets));
+                float lo = Float.MAX_VALUE;
+                float hi = -Float.MAX_VALUE;
+                for (int i = from; i < to && i < blockCount; i++) {
+                    if (blockMin[i] < lo) lo = blockMin[i];
+                    if (blockMax[i] > hi) hi = blockMax[i];
+                }
+                min[b] = quantize(lo);
+                max[b] = quantize(hi);
+            }
+        }
+        return new Peaks(frames * 1000 / sampleRate, min, max);
+    }
+
+    private static byte quantize(float v) {
+        return (byte) Math.max(-127, Math.min(127, Math.round(v * 127)));
+    }
+}
@@ -0,0 +1,214 @@
+package com.otterhub.music;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 本地曲目波形峰值缓存
+ * 结果以紧凑二进制（每桶 min/max 各 1 字节）保存在 cacheDir/waveforms，文件名由路径、修改时间与桶数决定，
+ * 文件被修改后自然失效。解码在调用线程（插件调度器的工作线程）上进行，受调度器的优先级、队列上限与取消控制；
+ * 同一曲目的并发请求共享一次解码，但交互请求不等待后台预取：正在进行的预取让出，由交互请求重新解码。
+ */
+final class WaveformCache {
+
+    /** 调用方任务是否已取消 */
+    interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private static final String DIR_NAME = "waveforms";
+    private static final int MAGIC = 0x4F545746; // "OTWF"
+    private static final int VERSION = 1;
+    /** 超过该文件数时按最后修改时间淘汰 */
+    private static final int MAX_FILES = 2000;
+    /** 等待其他线程解码时检查取消的间隔 */
+    private static final long WAIT_POLL_MS = 200;
+
+    /** 一次进行中的解码；结果为 null 表示解码被放弃 */
+    private static final class Job {
+        final CompletableFuture<WaveformBuilder.Peaks> future = new CompletableFuture<>();
+        final boolean prefetch;
+        volatile boolean superseded;
+
+        Job(boolean prefetch) {
+            this.prefetch = prefetch;
+        }
+    }
+
+    private final Context context;
+    private final File dir;
+    private final Map<String, Job> inFlight = new ConcurrentHashMap<>();
+
+    WaveformCache(Context context) {
+        this.context = context.getApplicationContext();
+        this.dir = new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    /**
+     * 读取或计算波形，阻塞调用线程直到完成
+     * @param prefetch true 时为后台预取，同一曲目的交互请求到来时放弃解码
+     * @return 调用方被取消、或预取让给交互请求时返回 null
+     */
+    WaveformBuilder.Peaks load(String localPath, long modifiedTime, int buckets, boolean prefetch,
+                               Cancellation cancellation) throws IOException, InterruptedException {
+        File file = fileFor(localPath, modifiedTime, buckets);
+        String key = file.getName();
+        while (!cancellation.isCancelled()) {
+            Job job = new Job(prefetch);
+            Job pending = inFlight.putIfAbsent(key, job);
+            if (pending != null) {
+                if (!prefetch && pending.prefetch) {
+                    // 预取在低优先级线程上，交互请求不排在它后面：令其让出，结果转交给等待预取的调用方
+                    if (!inFlight.replace(key, pending, job)) continue;
+                    pending.superseded = true;
+                    job.future.whenComplete((peaks, error) -> {
+                        if (error != null) pending.future.completeExceptionally(error);
+                        else pending.future.complete(peaks);
+                    });
+                } else {
+                    WaveformBuilder.Peaks peaks = await(pending, cancellation);
+                    // 对方被取消时自己重新解码
+                    if (peaks != null || pending.superseded && prefetch) return peaks;
+                    continue;
+                }
+            }
+            return run(job, key, file, localPath, buckets, cancellation);
+        }
+        return null;
+    }
+
+    private WaveformBuilder.Peaks run(Job job, String key, File file, String localPath, int buckets,
+                                      Cancellation cancellation) throws IOException, InterruptedException {
+        WaveformBuilder.Peaks peaks = null;
+        try {
+            peaks = read(file);
+            if (peaks == null) {
+                peaks = compute(localPath, buckets,
+                        () -> !job.superseded && !cancellation.isCancelled() && !Thread.currentThread().isInterrupted());
+                if (peaks != null) write(file, peaks);
+            }
+            return peaks;
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            if (!job.superseded) job.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, job);
+            // 让出的预取由接手的交互请求完成其 future
+            if (!job.superseded) job.future.complete(peaks);
+        }
+    }
+
+    private static WaveformBuilder.Peaks await(Job job, Cancellation cancellation)
+            throws IOException, InterruptedException {
+        while (true) {
+            try {
+                return job.future.get(WAIT_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (cancellation.isCancelled()) return null;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause != null ? cause.getMessage() : "Decode failed", cause);
+            }
+        }
+    }
+
+    /** @return 被取消或让出时返回 null */
+    private WaveformBuilder.Peaks compute(String localPath, int buckets, PcmDecoder.Control control)
+            throws IOException, InterruptedException {
+        PcmDecoder decoder = new PcmDecoder(context);
+        WaveformBuilder[] builder = new WaveformBuilder[1];
+        boolean complete = decoder.decode(localPath, new PcmDecoder.Sink() {
+            @Override
+            public void onFormat(int sampleRate, int channels) {
+                long durationUs = decoder.getDurationUs();
+                long frames = durationUs > 0 ? durationUs * sampleRate / 1_000_000 : -1;
+                builder[0] = new WaveformBuilder(buckets, sampleRate, channels, frames);
+            }
+
+            @Override
+            public void onSamples(float[] samples, int count) {
+                builder[0].process(samples, count);
+            }
+        }, control);
+        if (!complete) return null;
+        if (builder[0] == null) throw new IOException("No audio track");
+        return builder[0].build();
+    }
+
+    private File fileFor(String localPath, long modifiedTime, int buckets) {
+        return new File(dir, md5(localPath) + "-" + modifiedTime + "-" + buckets + ".wf");
+    }
+
+    private WaveformBuilder.Peaks read(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            long durationMs = in.readLong();
+            int buckets = in.readInt();
+            byte[] min = new byte[buckets];
+            byte[] max = new byte[buckets];
+            in.readFully(min);
+            in.readFully(max);
+            return new WaveformBuilder.Peaks(durationMs, min, max);
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void write(File file, WaveformBuilder.Peaks peaks) {
+        if (!dir.exists() && !dir.mkdirs()) return;
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(peaks.durationMs);
+            out.writeInt(peaks.buckets);
+            out.write(peaks.min);
+            out.write(peaks.max);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) temp.delete();
+        prune();
+    }
+
+    private void prune() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".wf"));
+        if (files == null || files.length <= MAX_FILES) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - MAX_FILES; i++) files[i].delete();
+    }
+
+    private static String md5(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
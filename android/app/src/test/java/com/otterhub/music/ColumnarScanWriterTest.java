@@ -0,0 +1,83 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ColumnarScanWriterTest {
+
+    @Test
+    public void writesAlignedColumnsAndSharedStrings() throws Exception {
+        ColumnarScanWriter writer = new ColumnarScanWriter();
+        writer.add("1", "晴天", "周杰伦", null, "/music/a.mp3", 269000, 4_300_000, 1_700_000_000_000L, -9.5f, 0.5f,
+                ColumnarScanWriter.TAG_COVER_KNOWN | ColumnarScanWriter.TAG_HAS_COVER);
+        writer.add("2", "七里香", "周杰伦", "七里香", "/music/b.mp3", 299000, 4_800_000, 1_700_000_001_000L,
+                Float.NaN, Float.NaN, 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        assertEquals(writer.byteLength(), bytes.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(ColumnarScanWriter.MAGIC, buffer.getInt(0));
+        assertEquals(ColumnarScanWriter.VERSION, buffer.getInt(4));
+        assertEquals(2, buffer.getInt(8));
+        // "周杰伦" 与 "七里香" 各只存一次
+        int strings = buffer.getInt(12);
+        assertEquals(7, strings);
+
+        int rows = 2;
+        int offset = ColumnarScanWriter.HEADER_BYTES;
+        assertEquals(269000.0, buffer.getDouble(offset), 0);
+        assertEquals(1_700_000_001_000.0, buffer.getDouble(offset + rows * 8 * 2 + 8), 0);
+        offset += rows * 8 * 3;
+        assertEquals(-9.5f, buffer.getFloat(offset), 0);
+        assertTrue(Float.isNaN(buffer.getFloat(offset + 4)));
+        offset += rows * 4 * 2;
+
+        int artistColumn = offset + 2 * rows * 4;
+        int albumColumn = offset + 3 * rows * 4;
+        assertEquals(buffer.getInt(artistColumn), buffer.getInt(artistColumn + 4));
+        assertEquals(-1, buffer.getInt(albumColumn));
+        offset += 5 * rows * 4;
+        assertEquals(3, buffer.getInt(offset));
+        assertEquals(0, buffer.getInt(offset + 4));
+        offset += rows * 4;
+
+        int nameRef = buffer.getInt(ColumnarScanWriter.HEADER_BYTES + rows * 8 * 3 + rows * 4 * 2 + rows * 4);
+        int start = buffer.getInt(offset + nameRef * 4);
+        int end = buffer.getInt(offset + nameRef * 4 + 4);
+        int data = offset + (strings + 1) * 4;
+        assertEquals("晴天", new String(bytes, data + start, end - start, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readsBackLocalPaths() throws Exception {
+        ColumnarScanWriter writer = new ColumnarScanWriter();
+        writer.add("1", "晴天", "周杰伦", null, "/music/a.mp3", 269000, 4_300_000, 0, Float.NaN, Float.NaN, 0);
+        writer.add("2", "夜曲", "周杰伦", null, "content://media/external/audio/media/2", 226000, 3_600_000, 0,
+                Float.NaN, Float.NaN, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        byte[] bytes = out.toByteArray();
+
+        assertEquals(Arrays.asList("/music/a.mp3", "content://media/external/audio/media/2"),
+                ColumnarScanWriter.readLocalPaths(bytes));
+        try {
+            ColumnarScanWriter.readLocalPaths(Arrays.copyOf(bytes, bytes.length - 1));
+            fail("truncated data accepted");
+        } catch (IOException expected) {
+            // 数据不完整时不返回部分结果
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.otterhub.music;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * 功能测试用的简单 HTTP 读取，返回状态码与完整响应体
+ */
+final class HttpFetch {
+
+    final int status;
+    final byte[] body;
+
+    private HttpFetch(int status, byte[] body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    static HttpFetch get(String url, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null) connection.setRequestProperty("Range", range);
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(30_000);
+        try {
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in == null) return new HttpFetch(status, new byte[0]);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream stream = in) {
+                int read;
+                while ((read = stream.read(buffer)) >= 0) body.write(buffer, 0, read);
+            }
+            return new HttpFetch(status, body.toByteArray());
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+public class LocalHttpServerTest {
+
+    private static final int LARGE_BODY = 64 * 1024 * 1024;
+
+    private LocalHttpServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void closesStalledReadersAndFreesTheWorker() throws Exception {
+        // 单个工作线程、500ms 写超时
+        server = new LocalHttpServer(0, 1, 1, 500) {
+            @Override
+            protected void serve(Request request, Response response) throws IOException {
+                if (!"/large".equals(request.uri)) {
+                    response.sendText(200, "ok");
+                    return;
+                }
+                response.sendHeaders(200, "application/octet-stream", LARGE_BODY);
+                byte[] chunk = ioBuffer();
+                for (long sent = 0; sent < LARGE_BODY; sent += chunk.length) response.write(chunk, 0, chunk.length);
+            }
+        };
+        server.start();
+
+        // 发出请求后不再读取，工作线程阻塞在写上
+        try (Socket stalled = new Socket("127.0.0.1", server.getListeningPort())) {
+            stalled.setReceiveBufferSize(4096);
+            OutputStream out = stalled.getOutputStream();
+            out.write("GET /large HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            Thread.sleep(200);
+            assertEquals(1, server.getActiveWorkerCount());
+
+            HttpURLConnection next = (HttpURLConnection) new URL(
+                    "http://127.0.0.1:" + server.getListeningPort() + "/small").openConnection();
+            next.setReadTimeout(10_000);
+            try {
+                assertEquals(200, next.getResponseCode());
+            } finally {
+                next.disconnect();
+            }
+        }
+    }
+}
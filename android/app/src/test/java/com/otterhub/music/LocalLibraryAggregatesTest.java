@@ -0,0 +1,81 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class LocalLibraryAggregatesTest {
+
+    private static final int NONE = LocalLibraryAggregates.COVER_NONE;
+    private static final int UNKNOWN = LocalLibraryAggregates.COVER_UNKNOWN;
+    private static final int PRESENT = LocalLibraryAggregates.COVER_PRESENT;
+
+    @Test
+    public void splitsMultiArtistStrings() {
+        assertEquals(Arrays.asList("周杰伦", "费玉清"), LocalLibraryAggregates.splitArtists("周杰伦 / 费玉清", false));
+        assertEquals(Arrays.asList("A", "B", "C"), LocalLibraryAggregates.splitArtists("A、B＆C;; a", false));
+        assertEquals(Collections.singletonList("A  B"), LocalLibraryAggregates.splitArtists("A  B", false));
+        assertEquals(Arrays.asList("A", "B"), LocalLibraryAggregates.splitArtists("A  B", true));
+        assertTrue(LocalLibraryAggregates.splitArtists(null, false).isEmpty());
+    }
+
+    @Test
+    public void groupsByNormalizedArtistAndAlbum() {
+        LocalLibraryAggregates index = new LocalLibraryAggregates();
+        index.put("/m/1.mp3", "晴天", "周杰伦", "叶惠美", 269000, 100, 1, UNKNOWN, false);
+        index.put("/m/2.mp3", "千里之外", "周杰伦/费玉清", "依然范特西", 255000, 200, 2, PRESENT, false);
+        index.put("/m/3.mp3", "七里香", "周杰伦", "七里香", 299000, 300, 3, NONE, false);
+        index.put("/m/4.mp3", "Love", "ＳＨＥ", "Encore", 200000, 400, 4, NONE, false);
+        index.put("/m/5.mp3", "Super Star", "she | S.H.E", "Encore", 210000, 500, 5, NONE, false);
+
+        LocalLibraryAggregates.Page artists = index.artists(0, 10, LocalLibraryAggregates.SORT_COUNT);
+        assertEquals(4, artists.total);
+        LocalLibraryAggregates.Group jay = artists.items.get(0);
+        assertEquals("周杰伦", jay.name);
+        assertEquals(3, jay.trackCount);
+        assertEquals(269000 + 255000 + 299000, jay.duration);
+        // 确定有封面的曲目优先于封面未知的
+        assertEquals("/m/2.mp3", jay.coverPath);
+        LocalLibraryAggregates.Group she = artists.items.get(1);
+        assertEquals("ＳＨＥ", she.name);
+        assertEquals(2, she.trackCount);
+        assertNull(she.coverPath);
+
+        LocalLibraryAggregates.Page albums = index.albums(0, 1, LocalLibraryAggregates.SORT_COUNT);
+        assertEquals(4, albums.total);
+        assertEquals("Encore", albums.items.get(0).name);
+        assertEquals("ＳＨＥ", albums.items.get(0).artist);
+
+        LocalLibraryAggregates.Page second = index.artists(1, 2, LocalLibraryAggregates.SORT_NAME);
+        assertEquals(Arrays.asList("ＳＨＥ", "周杰伦"), Arrays.asList(second.items.get(0).name, second.items.get(1).name));
+        assertEquals(Arrays.asList("/m/3.mp3", "/m/2.mp3", "/m/1.mp3"), index.artistTracks(jay.key));
+    }
+
+    @Test
+    public void countsTheSameFileOnceAndFollowsUpdates() {
+        LocalLibraryAggregates index = new LocalLibraryAggregates();
+        index.put("content://media/1", "晴天", "周杰伦", "叶惠美", 269000, 100, 1000, UNKNOWN, false);
+        index.put("/storage/晴天.mp3", "晴天", "周杰伦", "叶惠美", 269000, 100, 1000, PRESENT, false);
+
+        LocalLibraryAggregates.Group jay = index.artists(0, 10, null).items.get(0);
+        assertEquals(1, jay.trackCount);
+        assertEquals(269000, jay.duration);
+        assertEquals("/storage/晴天.mp3", jay.coverPath);
+        assertEquals(2, index.albumTracks(index.albums(0, 1, null).items.get(0).key).size());
+
+        index.put("/storage/晴天.mp3", "晴天", "蔡依林", null, 269000, 100, 2000, PRESENT, false);
+        assertEquals(2, index.artists(0, 10, null).total);
+        index.retain(Collections.singletonList("/storage/晴天.mp3"));
+        LocalLibraryAggregates.Page artists = index.artists(0, 10, null);
+        assertEquals(1, artists.total);
+        assertEquals("蔡依林", artists.items.get(0).name);
+        assertEquals(0, index.albums(0, 10, null).total);
+        index.remove("/storage/晴天.mp3");
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class LocalSearchIndexTest {
+
+    private static LocalSearchIndex sample() {
+        LocalSearchIndex index = new LocalSearchIndex();
+        index.put("/m/1.mp3", "1", "晴天", "周杰伦", "叶惠美");
+        index.put("/m/2.mp3", "2", "七里香", "周杰伦", "七里香");
+        index.put("/m/3.mp3", "3", "Yesterday Once More", "Carpenters", "Now & Then");
+        index.put("/m/4.mp3", "4", "Yesterday", "The Beatles", "Help!");
+        index.put("/m/5.mp3", "5", "晴天娃娃", "ＳＨＥ", null);
+        return index;
+    }
+
+    @Test
+    public void ranksExactAndPrefixMatchesFirst() {
+        LocalSearchIndex index = sample();
+        assertEquals(Arrays.asList("4", "3"), index.search("yesterday", 10));
+        assertEquals(Arrays.asList("1", "5"), index.search("晴天", 10));
+        // 歌名命中优先于专辑命中
+        assertEquals(Arrays.asList("2"), index.search("七里", 10));
+        assertEquals(Arrays.asList("3"), index.search("once carp", 10));
+    }
+
+    @Test
+    public void matchesPinyinInitialsAndFullWidthText() {
+        LocalSearchIndex index = sample();
+        assertEquals(Arrays.asList("1", "5"), index.search("qt", 10));
+        // 同分时歌名较短的在前
+        assertEquals(Arrays.asList("1", "2"), index.search("zjl", 10));
+        assertEquals(Collections.singletonList("5"), index.search("she", 10));
+        assertEquals("zjlj", PinyinInitials.of("周杰伦 Jay"));
+    }
+
+    @Test
+    public void updatesIncrementally() {
+        LocalSearchIndex index = sample();
+        index.put("/m/1.mp3", "1", "晴天 (Live)", "周杰伦", null);
+        index.remove("/m/5.mp3");
+        assertEquals(Collections.singletonList("1"), index.search("live", 10));
+        assertEquals(Collections.singletonList("1"), index.search("晴天", 10));
+        assertEquals(4, index.size());
+
+        // 大量更新触发重建后结果保持一致
+        for (int i = 0; i < 500; i++) index.put("/m/x.mp3", "x", "song " + i, "artist", null);
+        assertEquals(Collections.singletonList("x"), index.search("song 499", 10));
+        assertTrue(index.search("song 498", 10).isEmpty());
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void searchesLargeLibrary() {
+        LocalSearchIndex index = new LocalSearchIndex();
+        String hanzi = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处府史";
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int j = 0; j < 4; j++) name.append(hanzi.charAt((i * 7 + j * 13) % hanzi.length()));
+            index.put("/m/" + i, String.valueOf(i), name + " " + i, "artist " + (i % 300), "album " + (i % 1000));
+        }
+        assertEquals(50, index.search("artist 12", 50).size());
+        assertEquals(20000, index.search("artist", 20000).size());
+        assertEquals(Collections.singletonList("12345"), index.search("12345", 50));
+    }
+}
@@ -0,0 +1,109 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocalTrackStreamTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private BilibiliProxyServer proxy;
+
+    @After
+    public void tearDown() {
+        if (proxy != null) proxy.stop();
+    }
+
+    @Test
+    public void servesLocalTracksThroughReusedChannels() throws IOException {
+        proxy = new BilibiliProxyServer(0);
+        proxy.start();
+        byte[] payload = payload();
+        File track = tempFolder.newFile("track.flac");
+        Files.write(track.toPath(), payload);
+        AtomicInteger opens = new AtomicInteger();
+        proxy.setLocalOpener(path -> {
+            opens.incrementAndGet();
+            return new RandomAccessFile(path, "r").getChannel();
+        });
+        String url = proxy.publishLocal(track.getPath(), "audio/flac");
+        assertEquals(url, proxy.publishLocal(track.getPath(), "audio/flac"));
+
+        assertArrayEquals(payload, HttpFetch.get(url, null).body);
+        HttpFetch seek = HttpFetch.get(url, "bytes=1000-1999");
+        assertEquals(206, seek.status);
+        assertArrayEquals(Arrays.copyOfRange(payload, 1000, 2000), seek.body);
+        HttpFetch tail = HttpFetch.get(url, "bytes=-10");
+        assertArrayEquals(Arrays.copyOfRange(payload, payload.length - 10, payload.length), tail.body);
+        assertEquals(416, HttpFetch.get(url, "bytes=" + payload.length + "-").status);
+
+        HttpURLConnection head = (HttpURLConnection) new URL(url).openConnection();
+        head.setRequestMethod("HEAD");
+        try {
+            assertEquals(200, head.getResponseCode());
+            assertEquals(payload.length, head.getContentLengthLong());
+            assertEquals("bytes", head.getHeaderField("Accept-Ranges"));
+            assertEquals("audio/flac", head.getContentType());
+        } finally {
+            head.disconnect();
+        }
+        assertEquals(1, opens.get());
+
+        // 文件改写后重新打开
+        proxy.invalidateLocal(track.getPath());
+        assertEquals(200, HttpFetch.get(url, null).status);
+        assertEquals(2, opens.get());
+
+        String base = "http://127.0.0.1:" + proxy.getListeningPort();
+        assertEquals(404, HttpFetch.get(base + "/local?token=unknown", null).status);
+        // 篡改路径后签名不再匹配
+        String forged = url.substring(0, url.indexOf("token=") + 6) + "00" + url.substring(url.indexOf("token=") + 6);
+        assertEquals(404, HttpFetch.get(forged, null).status);
+    }
+
+    @Test
+    public void publishedUrlSurvivesServerRestart() throws IOException {
+        byte[] payload = payload();
+        File track = tempFolder.newFile("track.mp3");
+        Files.write(track.toPath(), payload);
+
+        proxy = new BilibiliProxyServer(0);
+        proxy.start();
+        proxy.setLocalOpener(path -> new RandomAccessFile(path, "r").getChannel());
+        String url = proxy.publishLocal(track.getPath(), "audio/mpeg");
+        int port = proxy.getListeningPort();
+        assertEquals(200, HttpFetch.get(url, null).status);
+        proxy.stop();
+
+        // 与插件重启服务器时一样沿用端口与打开方式，旧地址无需重新发布
+        proxy = new BilibiliProxyServer(port);
+        proxy.start();
+        proxy.setLocalOpener(path -> new RandomAccessFile(path, "r").getChannel());
+        HttpFetch seek = HttpFetch.get(url, "bytes=100-199");
+        assertEquals(206, seek.status);
+        assertArrayEquals(Arrays.copyOfRange(payload, 100, 200), seek.body);
+        assertEquals(url, proxy.publishLocal(track.getPath(), "audio/mpeg"));
+    }
+
+    private static byte[] payload() {
+        byte[] payload = new byte[256 * 1024];
+        new Random(7).nextBytes(payload);
+        return payload;
+    }
+}
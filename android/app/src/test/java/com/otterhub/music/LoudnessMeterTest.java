@@ -0,0 +1,58 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LoudnessMeterTest {
+
+    /** EBU Tech 3341 用例 1：1kHz 正弦 -23 dBFS 双声道应测得 -23 LUFS */
+    @Test
+    public void measuresReferenceSine() {
+        for (int sampleRate : new int[]{44100, 48000}) {
+            LoudnessMeter meter = new LoudnessMeter(sampleRate, 2);
+            feedSine(meter, sampleRate, 2, 1000, dbfs(-23), 20);
+            assertEquals(-23.0, meter.getIntegratedLoudness(), 0.1);
+            assertEquals(dbfs(-23), meter.getPeak(), 1e-3);
+        }
+    }
+
+    /** EBU Tech 3341 用例 3：-36 / -23 / -36 dBFS 分段，相对门限排除两端安静段 */
+    @Test
+    public void relativeGateIgnoresQuietPassages() {
+        int sampleRate = 48000;
+        LoudnessMeter meter = new LoudnessMeter(sampleRate, 2);
+        feedSine(meter, sampleRate, 2, 1000, dbfs(-36), 10);
+        feedSine(meter, sampleRate, 2, 1000, dbfs(-23), 60);
+        feedSine(meter, sampleRate, 2, 1000, dbfs(-36), 10);
+        assertEquals(-23.0, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void silenceFallsBackToAbsoluteGate() {
+        LoudnessMeter meter = new LoudnessMeter(44100, 2);
+        meter.process(new float[44100 * 2], 44100 * 2);
+        assertEquals(LoudnessMeter.ABSOLUTE_GATE_LUFS, meter.getIntegratedLoudness(), 0);
+        assertTrue(meter.getBlockCount() > 0);
+        assertEquals(5.0, LoudnessMeter.replayGainOf(-23), 1e-9);
+    }
+
+    private static void feedSine(LoudnessMeter meter, int sampleRate, int channels, double hz,
+                                 double amplitude, int seconds) {
+        int frames = sampleRate / 10;
+        float[] buffer = new float[frames * channels];
+        long t = 0;
+        for (int chunk = 0; chunk < seconds * 10; chunk++) {
+            for (int f = 0; f < frames; f++, t++) {
+                float v = (float) (amplitude * Math.sin(2 * Math.PI * hz * t / sampleRate));
+                for (int c = 0; c < channels; c++) buffer[f * channels + c] = v;
+            }
+            meter.process(buffer, buffer.length);
+        }
+    }
+
+    private static double dbfs(double db) {
+        return Math.pow(10, db / 20);
+    }
+}
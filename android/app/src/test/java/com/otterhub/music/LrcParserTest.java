@@ -0,0 +1,47 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LrcParserTest {
+
+    @Test
+    public void expandsRepeatedTimestampsInTimeOrder() {
+        LrcParser.Timeline timeline = LrcParser.parse(
+                "[ti:晴天]\n[ar:周杰伦]\n[00:01.00]故事的小黄花\r\n[00:05.5][01:10.120]刮风这天\n[00:03]\n[00:04.00]从出生那年就飘着", null);
+        assertArrayEquals(new long[]{1000, 4000, 5500, 70120}, timeline.times);
+        assertEquals("故事的小黄花", timeline.text(0));
+        assertEquals("从出生那年就飘着", timeline.text(1));
+        assertEquals("刮风这天", timeline.text(2));
+        // 重复的行共用字符串表中的同一项
+        assertEquals(timeline.lines[2], timeline.lines[3]);
+        assertEquals(3, timeline.offsets.length - 1);
+        assertNull(timeline.translation(0));
+    }
+
+    @Test
+    public void stripsWordTimingsAndAppliesOffset() {
+        LrcParser.Timeline timeline = LrcParser.parse(
+                "[offset:+500]\n[00:10.00]<00:10.00>刮<00:10.40>风 <00:10.80>这天\n[00:20.00][00:30.00]<00:20.00>我<00:20.50>试", null);
+        assertArrayEquals(new long[]{9500, 19500, 29500}, timeline.times);
+        assertEquals("刮风 这天", timeline.text(0));
+        assertArrayEquals(new int[]{0, 3, 5, 7}, timeline.wordStarts);
+        assertArrayEquals(new long[]{9500, 9900, 10300, 19500, 20000, 29500, 30000}, timeline.wordTimes);
+        assertArrayEquals(new int[]{0, 1, 3, 0, 1, 0, 1}, timeline.wordOffsets);
+    }
+
+    @Test
+    public void alignsTranslationWithinTolerance() {
+        LrcParser.Timeline timeline = LrcParser.parse(
+                "[00:01.00]Hello\n[00:05.00]World\n[00:09.00]Again",
+                "[00:01.30]你好\n[00:04.40]太早\n[00:04.80]世界\n[00:09.50]太晚");
+        assertEquals("你好", timeline.translation(0));
+        assertEquals("世界", timeline.translation(1));
+        assertNull(timeline.translation(2));
+        assertEquals(-1, LrcParser.parseTime("[ar:x]", 1, 5));
+        assertEquals(83_450, LrcParser.parseTime("01:23:45", 0, 8));
+    }
+}
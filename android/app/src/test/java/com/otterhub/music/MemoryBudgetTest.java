@@ -0,0 +1,84 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class MemoryBudgetTest {
+
+    /** 按块计量的测试缓存，只能按整块收缩 */
+    private static final class Blocks implements MemoryBudget.Cache {
+        final long blockBytes;
+        int blocks;
+
+        Blocks(long blockBytes, int blocks) {
+            this.blockBytes = blockBytes;
+            this.blocks = blocks;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return blockBytes * blocks;
+        }
+
+        @Override
+        public void trimTo(long maxBytes) {
+            while (blocks > 0 && sizeBytes() > maxBytes) blocks--;
+        }
+    }
+
+    @Test
+    public void trimsLowerPrioritiesFirstAndOnlyTheExcess() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        Blocks lyrics = new Blocks(100, 4);
+        Blocks covers = new Blocks(100, 4);
+        Blocks indexes = new Blocks(100, 4);
+        budget.register("indexes", MemoryBudget.Priority.IMPORTANT, indexes);
+        budget.register("lyrics", MemoryBudget.Priority.DISPOSABLE, lyrics);
+        budget.register("covers", MemoryBudget.Priority.NORMAL, covers);
+
+        assertEquals(1200, budget.totalBytes());
+        assertEquals(600, budget.trim(20, 600));
+        assertEquals(0, lyrics.blocks);
+        assertEquals(2, covers.blocks);
+        assertEquals(4, indexes.blocks);
+
+        assertEquals(0, budget.trim(80, 0));
+        assertEquals(0, indexes.blocks);
+        assertEquals(2, budget.getTrimCount());
+        assertEquals(80, budget.getLastTrimLevel());
+    }
+
+    @Test
+    public void enforceLeavesImportantCachesAlone() {
+        MemoryBudget budget = new MemoryBudget(300);
+        Blocks lyrics = new Blocks(100, 2);
+        Blocks indexes = new Blocks(100, 3);
+        budget.register("lyrics", MemoryBudget.Priority.DISPOSABLE, lyrics);
+        budget.register("indexes", MemoryBudget.Priority.IMPORTANT, indexes);
+
+        budget.enforce();
+        assertEquals(0, lyrics.blocks);
+        assertEquals(3, indexes.blocks);
+        assertEquals(0, budget.getTrimCount());
+    }
+
+    @Test
+    public void reRegisteringReplacesAndStaleUnregisterIsIgnored() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        Blocks first = new Blocks(10, 1);
+        Blocks second = new Blocks(10, 3);
+        budget.register("lyrics", MemoryBudget.Priority.DISPOSABLE, first);
+        budget.register("lyrics", MemoryBudget.Priority.DISPOSABLE, second);
+        budget.unregister("lyrics", first);
+
+        List<MemoryBudget.Usage> usage = budget.usage();
+        assertEquals(1, usage.size());
+        assertEquals("lyrics", usage.get(0).name);
+        assertEquals(30, usage.get(0).bytes);
+        budget.unregister("lyrics", second);
+        assertEquals(0, budget.usage().size());
+    }
+}
@@ -0,0 +1,73 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 流缓存跨重启保留，以及上游不可达时回退到缓存
+ */
+public class OfflineStreamTest {
+
+    private static final String BVID = "BV1xx411c7mD";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private StandInCdn cdn;
+    private BilibiliProxyServer proxy;
+
+    @BeforeClass
+    public static void allowOriginHeader() {
+        // JDK 默认会丢弃 Origin 请求头，Android 不会
+        System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        cdn = new StandInCdn(256 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        if (proxy != null) proxy.stop();
+        cdn.close();
+    }
+
+    @Test
+    public void servesPersistedStreamsWhenUpstreamIsUnreachable() throws IOException {
+        File dir = tempFolder.newFolder("proxy-cache");
+        proxy = new BilibiliProxyServer(0, dir);
+        proxy.start();
+        byte[] payload = cdn.payload();
+        assertArrayEquals(payload, HttpFetch.get(proxy.getProxyUrl(cdn.audioUrl(), BVID), null).body);
+        assertTrue(proxy.getCache().pin(BVID));
+        proxy.stop();
+
+        // 重启后缓存仍在；离线地址与上游不可达的代理地址都回退到缓存
+        proxy = new BilibiliProxyServer(0, dir);
+        proxy.start();
+        assertTrue(proxy.getCache().isPinned(BVID));
+        HttpFetch offline = HttpFetch.get(proxy.getCachedUrl(BVID), "bytes=10-19");
+        assertEquals(206, offline.status);
+        assertArrayEquals(Arrays.copyOfRange(payload, 10, 20), offline.body);
+
+        HttpFetch fallback = HttpFetch.get(proxy.getProxyUrl("http://127.0.0.1:1/other-quality.m4s", BVID), null);
+        assertEquals(200, fallback.status);
+        assertArrayEquals(payload, fallback.body);
+        assertEquals(500, HttpFetch.get(proxy.getProxyUrl("http://127.0.0.1:1/x.m4s", "BV1other"), null).status);
+        assertNull(proxy.getCachedUrl("BV1other"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.otterhub.music.PluginTaskScheduler.Priority;
+
+public class PluginTaskSchedulerTest {
+
+    private final PluginTaskScheduler scheduler = new PluginTaskScheduler(2);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private PluginTaskScheduler.Body blockUntil(CountDownLatch started, CountDownLatch release) {
+        return task -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        };
+    }
+
+    @Test
+    public void interactiveTasksBypassBusyBackgroundWork() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(Priority.BACKGROUND, null, blockUntil(started, release), null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 后台任务最多占一半线程，第二个扫描只能排队
+        CountDownLatch secondScan = new CountDownLatch(1);
+        scheduler.submit(Priority.BACKGROUND, null, task -> secondScan.countDown(), null);
+        CountDownLatch cover = new CountDownLatch(1);
+        scheduler.submit(Priority.INTERACTIVE, null, task -> cover.countDown(), null);
+        assertTrue(cover.await(5, TimeUnit.SECONDS));
+        assertFalse(secondScan.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.getQueued(Priority.BACKGROUND));
+
+        release.countDown();
+        assertTrue(secondScan.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runsHigherPriorityFirst() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch releaseSecond = new CountDownLatch(1);
+        scheduler.submit(Priority.INTERACTIVE, null, blockUntil(started, releaseFirst), null);
+        scheduler.submit(Priority.INTERACTIVE, null, blockUntil(started, releaseSecond), null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        scheduler.submit(Priority.BACKGROUND, null, task -> { order.add("b"); done.countDown(); }, null);
+        scheduler.submit(Priority.VISIBLE, null, task -> { order.add("v1"); done.countDown(); }, null);
+        scheduler.submit(Priority.VISIBLE, null, task -> { order.add("v2"); done.countDown(); }, null);
+        scheduler.submit(Priority.INTERACTIVE, null, task -> { order.add("i"); done.countDown(); }, null);
+
+        // 只放开一个线程，排队任务依次在其上执行
+        releaseFirst.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("i", "v1", "v2", "b"), order);
+        releaseSecond.countDown();
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(Priority.INTERACTIVE, null, blockUntil(started, release), null);
+        scheduler.submit(Priority.INTERACTIVE, null, blockUntil(started, release), null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < Priority.BACKGROUND.queueCapacity; i++) {
+            assertNotNull(scheduler.submit(Priority.BACKGROUND, null, task -> { }, null));
+        }
+        assertNull(scheduler.submit(Priority.BACKGROUND, null, task -> { }, null));
+        // 其他优先级的队列不受影响
+        assertNotNull(scheduler.submit(Priority.INTERACTIVE, null, task -> { }, null));
+        assertEquals(2, scheduler.getRunning(Priority.INTERACTIVE));
+        release.countDown();
+    }
+
+    @Test
+    public void cancelsQueuedAndRunningTasksByRequestId() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean sawCancel = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        scheduler.submit(Priority.INTERACTIVE, "scan", task -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            sawCancel.set(task.isCancelled());
+            finished.countDown();
+        }, null);
+        scheduler.submit(Priority.INTERACTIVE, null, blockUntil(started, release), null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean ran = new AtomicBoolean();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        scheduler.submit(Priority.VISIBLE, "scan", task -> ran.set(true), cancelled::countDown);
+        scheduler.submit(Priority.VISIBLE, "cover", task -> { }, null);
+
+        assertEquals(2, scheduler.cancel("scan"));
+        assertEquals(0, cancelled.getCount());
+        assertEquals(1, scheduler.getQueued(Priority.VISIBLE));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(sawCancel.get());
+        assertFalse(ran.get());
+        assertEquals(0, scheduler.cancel("missing"));
+    }
+}
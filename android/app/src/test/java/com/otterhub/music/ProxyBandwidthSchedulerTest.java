@@ -0,0 +1,108 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.otterhub.music.ProxyBandwidthScheduler.Level;
+import com.otterhub.music.ProxyBandwidthScheduler.Priority;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ProxyBandwidthSchedulerTest {
+
+    @Test
+    public void levelFollowsReportedBuffer() {
+        ProxyBandwidthScheduler scheduler = new ProxyBandwidthScheduler();
+        assertEquals(Level.NORMAL, scheduler.getLevel());
+
+        ProxyBandwidthScheduler.Ticket playing = scheduler.open(Priority.PLAYING);
+        try {
+            // 播放流已建立但还没有上报：按缓冲未知处理
+            assertEquals(Level.GUARDED, scheduler.getLevel());
+            scheduler.reportPlayback(true, 2);
+            assertEquals(Level.CRITICAL, scheduler.getLevel());
+            scheduler.reportPlayback(true, 12);
+            assertEquals(Level.GUARDED, scheduler.getLevel());
+            scheduler.reportPlayback(true, 60);
+            assertEquals(Level.NORMAL, scheduler.getLevel());
+            scheduler.reportPlayback(false, 0);
+            assertEquals(Level.NORMAL, scheduler.getLevel());
+        } finally {
+            playing.close();
+        }
+        scheduler.reportPlayback(true, 0);
+        assertEquals(Level.NORMAL, scheduler.getLevel());
+    }
+
+    @Test
+    public void throttlesLowPriorityWhileBufferIsLow() throws InterruptedIOException {
+        ProxyBandwidthScheduler scheduler = new ProxyBandwidthScheduler();
+        try (ProxyBandwidthScheduler.Ticket playing = scheduler.open(Priority.PLAYING);
+             ProxyBandwidthScheduler.Ticket download = scheduler.open(Priority.DOWNLOAD)) {
+            scheduler.reportPlayback(true, 12);
+
+            long start = System.nanoTime();
+            playing.acquire(1024 * 1024);
+            assertTrue(elapsedMs(start) < 50);
+
+            // 64KB/s 限速下 32KB 约需 0.5s
+            start = System.nanoTime();
+            download.acquire(32 * 1024);
+            assertTrue(elapsedMs(start) >= 400);
+            assertTrue(scheduler.getThrottledMs() >= 400);
+        }
+    }
+
+    @Test
+    public void pausesLowPriorityUntilBufferRecovers() throws Exception {
+        ProxyBandwidthScheduler scheduler = new ProxyBandwidthScheduler();
+        ProxyBandwidthScheduler.Ticket playing = scheduler.open(Priority.PLAYING);
+        ProxyBandwidthScheduler.Ticket download = scheduler.open(Priority.DOWNLOAD);
+        scheduler.reportPlayback(true, 1);
+
+        CountDownLatch released = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try {
+                download.acquire(1024);
+                released.countDown();
+            } catch (InterruptedIOException ignored) {
+            }
+        });
+        reader.start();
+
+        assertTrue(!released.await(300, TimeUnit.MILLISECONDS));
+        scheduler.reportPlayback(true, 60);
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+
+        download.close();
+        playing.close();
+        assertEquals(0, scheduler.getActiveCount(Priority.PLAYING));
+    }
+
+    @Test
+    public void stalePausedReportDoesNotThrottle() throws InterruptedIOException {
+        ProxyBandwidthScheduler scheduler = new ProxyBandwidthScheduler();
+        try (ProxyBandwidthScheduler.Ticket download = scheduler.open(Priority.DOWNLOAD)) {
+            ProxyBandwidthScheduler.Ticket playing = scheduler.open(Priority.PLAYING);
+            scheduler.reportPlayback(false, 0, System.currentTimeMillis() - 60_000);
+            // 暂停后不再上报，播放连接仍然打开：下载不受限
+            assertEquals(Level.NORMAL, scheduler.getLevel());
+            long start = System.nanoTime();
+            download.acquire(256 * 1024);
+            assertTrue(elapsedMs(start) < 50);
+
+            // 播放中的上报过期则按缓冲未知处理
+            scheduler.reportPlayback(true, 60, System.currentTimeMillis() - 60_000);
+            assertEquals(Level.GUARDED, scheduler.getLevel());
+            playing.close();
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
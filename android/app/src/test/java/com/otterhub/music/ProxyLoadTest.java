@@ -0,0 +1,334 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BilibiliProxyServer 正确性与负载测试，纯 JVM 运行，上游为本地替身 CDN
+ *
+ * 运行：./gradlew :app:testDebugUnitTest --tests com.otterhub.music.ProxyLoadTest
+ * 负载参数可通过 -DproxyLoad.clients / proxyLoad.requests / proxyLoad.payloadKb /
+ * proxyLoad.latencyMs / proxyLoad.throttleKbps / proxyLoad.errorRate 调整，报告输出到标准输出。
+ */
+public class ProxyLoadTest {
+
+    /** 默认工作线程数 + Selector 线程 */
+    private static final int MAX_PROXY_THREADS = 8 + 1;
+    private static final int SEEK_LENGTH = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private StandInCdn cdn;
+    private BilibiliProxyServer proxy;
+
+    @BeforeClass
+    public static void allowOriginHeader() {
+        // JDK 默认会丢弃 Origin 请求头，Android 不会
+        System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        cdn = new StandInCdn(intProp("proxyLoad.payloadKb", 4096) * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        if (proxy != null) proxy.stop();
+        cdn.close();
+    }
+
+    // --- 正确性 ---
+
+    @Test
+    public void forwardsBilibiliHeadersAndRanges() throws IOException {
+        proxy = startProxy(false);
+        String url = proxy.getProxyUrl(cdn.audioUrl(), "BV1xx411c7mD");
+        byte[] payload = cdn.payload();
+
+        Fetch full = fetch(url, null);
+        assertEquals(200, full.status);
+        assertArrayEquals(payload, full.body);
+
+        Fetch middle = fetch(url, "bytes=1000-1999");
+        assertEquals(206, middle.status);
+        assertArrayEquals(Arrays.copyOfRange(payload, 1000, 2000), middle.body);
+
+        Fetch open = fetch(url, "bytes=" + (payload.length - 10) + "-");
+        assertArrayEquals(Arrays.copyOfRange(payload, payload.length - 10, payload.length), open.body);
+
+        Fetch suffix = fetch(url, "bytes=-5");
+        assertArrayEquals(Arrays.copyOfRange(payload, payload.length - 5, payload.length), suffix.body);
+
+        assertEquals("CDN must never see a request without Referer/Origin", 0, cdn.rejected.get());
+        assertEquals(403, fetch(cdn.audioUrl(), null).status);
+    }
+
+    @Test
+    public void servesRepeatedReadsFromCache() throws IOException {
+        proxy = startProxy(true);
+        String url = proxy.getProxyUrl(cdn.audioUrl(), "BV1xx411c7mD");
+        byte[] payload = cdn.payload();
+
+        assertArrayEquals(payload, fetch(url, null).body);
+        long upstreamRequests = cdn.requests.get();
+
+        // 签名参数变化后仍命中同一缓存
+        String resigned = proxy.getProxyUrl(cdn.audioUrl(), "BV1xx411c7mD");
+        Fetch seek = fetch(resigned, "bytes=4096-8191");
+        assertEquals(206, seek.status);
+        assertArrayEquals(Arrays.copyOfRange(payload, 4096, 8192), seek.body);
+        assertEquals(416, fetch(resigned, "bytes=" + payload.length + "-").status);
+
+        assertEquals(upstreamRequests, cdn.requests.get());
+        assertTrue(proxy.getStats().getBytesFromCache() >= 4096);
+    }
+
+    @Test
+    public void rejectsUnknownPathsAndMissingParameters() throws IOException {
+        proxy = startProxy(false);
+        String base = "http://127.0.0.1:" + proxy.getListeningPort();
+        assertEquals(404, fetch(base + "/other", null).status);
+        assertEquals(400, fetch(base + "/proxy?bvid=BV1", null).status);
+    }
+
+    // --- 负载 ---
+
+    @Test
+    public void sequentialReadsUnderConcurrentLoad() throws Exception {
+        proxy = startProxy(false);
+        LoadReport report = runLoad("sequential", false);
+        report.print();
+        assertEquals(0, report.failures.get());
+        assertTrue("proxy threads " + report.maxProxyThreads, report.maxProxyThreads <= MAX_PROXY_THREADS);
+    }
+
+    @Test
+    public void randomSeeksUnderConcurrentLoad() throws Exception {
+        proxy = startProxy(true);
+        LoadReport report = runLoad("seek+cache", true);
+        report.print();
+        assertEquals(0, report.failures.get());
+        assertTrue("proxy threads " + report.maxProxyThreads, report.maxProxyThreads <= MAX_PROXY_THREADS);
+    }
+
+    @Test
+    public void survivesSlowAndFailingUpstream() throws Exception {
+        cdn.latency(longProp("proxyLoad.latencyMs", 50))
+                .throttle(longProp("proxyLoad.throttleKbps", 2048) * 1024)
+                .errorRate(doubleProp("proxyLoad.errorRate", 0.1));
+        proxy = startProxy(false);
+        LoadReport report = runLoad("degraded-upstream", true);
+        report.print();
+        // 注入的 503 原样透传给客户端，其余请求必须完整正确
+        assertEquals(cdn.injectedErrors.get(), report.upstreamErrors.get());
+        assertEquals(0, report.failures.get());
+        assertTrue(proxy.isAlive());
+    }
+
+    // --- 负载驱动 ---
+
+    private LoadReport runLoad(String name, boolean seek) throws Exception {
+        int clients = intProp("proxyLoad.clients", 16);
+        int requests = intProp("proxyLoad.requests", 8);
+        byte[] payload = cdn.payload();
+        LoadReport report = new LoadReport(name, clients, requests);
+
+        Sampler sampler = new Sampler(report);
+        sampler.start();
+        CountDownLatch done = new CountDownLatch(clients);
+        long startNanos = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            String bvid = "BV" + (seek ? c % 4 : c);
+            Thread client = new Thread(() -> {
+                try {
+                    for (int r = 0; r < requests; r++) {
+                        String url = proxy.getProxyUrl(cdn.audioUrl(), bvid);
+                        if (seek) {
+                            int offset = ThreadLocalRandom.current().nextInt(payload.length - SEEK_LENGTH);
+                            report.record(fetch(url, "bytes=" + offset + "-" + (offset + SEEK_LENGTH - 1)),
+                                    Arrays.copyOfRange(payload, offset, offset + SEEK_LENGTH));
+                        } else {
+                            report.record(fetch(url, null), payload);
+                        }
+                    }
+                } catch (IOException e) {
+                    report.failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + c);
+            client.setDaemon(true);
+            client.start();
+        }
+        assertTrue("load run timed out", done.await(5, TimeUnit.MINUTES));
+        report.elapsedNanos = System.nanoTime() - startNanos;
+        sampler.interrupt();
+        sampler.join();
+        return report;
+    }
+
+    private BilibiliProxyServer startProxy(boolean withCache) throws IOException {
+        BilibiliProxyServer server = new BilibiliProxyServer(0, withCache ? tempFolder.newFolder("proxy-cache") : null);
+        server.start();
+        return server;
+    }
+
+    private static Fetch fetch(String url, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null) connection.setRequestProperty("Range", range);
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(60_000);
+        long start = System.nanoTime();
+        try {
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in == null) return new Fetch(status, new byte[0], System.nanoTime() - start);
+
+            byte[] buffer = new byte[64 * 1024];
+            java.io.ByteArrayOutputStream body = new java.io.ByteArrayOutputStream();
+            long ttfb = -1;
+            try (InputStream stream = in) {
+                int read;
+                while ((read = stream.read(buffer)) >= 0) {
+                    if (ttfb < 0) ttfb = System.nanoTime() - start;
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new Fetch(status, body.toByteArray(), ttfb >= 0 ? ttfb : System.nanoTime() - start);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static int intProp(String key, int def) {
+        return Integer.parseInt(System.getProperty(key, String.valueOf(def)));
+    }
+
+    private static long longProp(String key, long def) {
+        return Long.parseLong(System.getProperty(key, String.valueOf(def)));
+    }
+
+    private static double doubleProp(String key, double def) {
+        return Double.parseDouble(System.getProperty(key, String.valueOf(def)));
+    }
+
+    private static final class Fetch {
+        final int status;
+        final byte[] body;
+        final long ttfbNanos;
+
+        Fetch(int status, byte[] body, long ttfbNanos) {
+            this.status = status;
+            this.body = body;
+            this.ttfbNanos = ttfbNanos;
+        }
+    }
+
+    /** 负载运行期间采样代理线程数与堆占用 */
+    private static final class Sampler extends Thread {
+        private final LoadReport report;
+
+        Sampler(LoadReport report) {
+            super("load-sampler");
+            this.report = report;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (!isInterrupted()) {
+                int proxyThreads = 0;
+                for (Thread t : Thread.getAllStackTraces().keySet()) {
+                    if (t.getName().startsWith("local-http-")) proxyThreads++;
+                }
+                report.maxProxyThreads = Math.max(report.maxProxyThreads, proxyThreads);
+                report.maxHeapBytes = Math.max(report.maxHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class LoadReport {
+        final String name;
+        final int clients;
+        final int requestsPerClient;
+        final ConcurrentLinkedQueue<Long> ttfbNanos = new ConcurrentLinkedQueue<>();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicInteger ok = new AtomicInteger();
+        final AtomicInteger upstreamErrors = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        volatile int maxProxyThreads;
+        volatile long maxHeapBytes;
+        long elapsedNanos;
+
+        LoadReport(String name, int clients, int requestsPerClient) {
+            this.name = name;
+            this.clients = clients;
+            this.requestsPerClient = requestsPerClient;
+        }
+
+        void record(Fetch fetch, byte[] expected) {
+            if (fetch.status == 503) {
+                upstreamErrors.incrementAndGet();
+                return;
+            }
+            if ((fetch.status != 200 && fetch.status != 206) || !Arrays.equals(expected, fetch.body)) {
+                failures.incrementAndGet();
+                return;
+            }
+            ok.incrementAndGet();
+            bytes.addAndGet(fetch.body.length);
+            ttfbNanos.add(fetch.ttfbNanos);
+        }
+
+        void print() {
+            List<Long> sorted = new ArrayList<>(ttfbNanos);
+            Collections.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.println(String.format(Locale.ROOT,
+                    "[proxy-load] %s clients=%d requests=%d ok=%d upstreamErrors=%d failures=%d "
+                            + "ttfb p50=%.1fms p99=%.1fms throughput=%.1fMB/s proxyThreads(max)=%d heapUsed(max)=%.1fMB",
+                    name, clients, clients * requestsPerClient, ok.get(), upstreamErrors.get(), failures.get(),
+                    percentileMs(sorted, 0.50), percentileMs(sorted, 0.99),
+                    seconds > 0 ? bytes.get() / seconds / (1024 * 1024) : 0,
+                    maxProxyThreads, maxHeapBytes / (1024.0 * 1024)));
+        }
+
+        private static double percentileMs(List<Long> sorted, double p) {
+            if (sorted.isEmpty()) return 0;
+            int index = (int) Math.ceil(p * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+public class ProxyStreamCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void keepsPinnedEntriesOutOfTheEvictionBudget() throws IOException {
+        ProxyStreamCache cache = new ProxyStreamCache(tempFolder.newFolder("cache"), 100);
+        assertFalse(cache.pin("BV1"));
+        put(cache, "a", "BV1", 80);
+        put(cache, "b", "BV2", 60);
+        put(cache, "c", "BV3", 50);
+
+        // BV1 已固定，未固定部分超额时淘汰最久未用的 BV2
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(130, cache.getTotalBytes());
+        assertEquals(80, cache.getPinnedBytes());
+
+        // 固定的 bvid 可超过单条上限
+        put(cache, "d", "BV1", 150);
+        assertNotNull(cache.get("d"));
+
+        cache.unpin("BV1");
+        assertEquals(0, cache.getPinnedBytes());
+        assertTrue(cache.getTotalBytes() <= 100);
+    }
+
+    @Test
+    public void reloadsIndexAndDropsStaleFiles() throws IOException {
+        File dir = tempFolder.newFolder("cache");
+        ProxyStreamCache cache = new ProxyStreamCache(dir, 1000);
+        put(cache, "a", "BV1", 10);
+        put(cache, "b", "BV1", 20);
+        put(cache, "c", "BV2", 30);
+        cache.pin("BV2");
+        assertNotNull(cache.get("a"));
+        cache.flush();
+        assertTrue(new File(dir, "c.cache").delete());
+        assertTrue(new File(dir, "orphan.tmp").createNewFile());
+
+        ProxyStreamCache reloaded = new ProxyStreamCache(dir, 1000);
+        assertEquals(2, reloaded.size());
+        assertEquals(30, reloaded.getTotalBytes());
+        assertTrue(reloaded.isPinned("BV2"));
+        assertFalse(reloaded.isCached("BV2"));
+        assertEquals(10, reloaded.latest("BV1").length);
+        assertFalse(new File(dir, "orphan.tmp").exists());
+    }
+
+    private static void put(ProxyStreamCache cache, String key, String bvid, int length) {
+        ProxyStreamCache.Writer writer = cache.openWriter(key, bvid, "audio/mp4", length);
+        assertNotNull(writer);
+        writer.write(new byte[length], 0, length);
+        writer.close(true);
+    }
+}
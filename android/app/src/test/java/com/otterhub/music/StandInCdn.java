@@ -0,0 +1,157 @@
+package com.otterhub.music;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地替身 CDN，模拟B站音频 CDN 的行为
+ * 校验 Referer/Origin、支持单区间 Range，可注入首字节延迟、单连接限速与随机错误。
+ */
+class StandInCdn implements AutoCloseable {
+
+    static final String PATH = "/upgcxcode/00/00/1/1-1-30280.m4s";
+
+    private final byte[] payload;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "stand-in-cdn");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long latencyMs;
+    private volatile long throttleBytesPerSec;
+    private volatile double errorRate;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong injectedErrors = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+
+    StandInCdn(int payloadSize) throws IOException {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    byte[] payload() {
+        return payload;
+    }
+
+    /** 带签名参数的音频地址，模拟 CDN 每次下发的 URL 都不同 */
+    String audioUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH + "?deadline=" + System.nanoTime();
+    }
+
+    StandInCdn latency(long ms) {
+        latencyMs = ms;
+        return this;
+    }
+
+    StandInCdn throttle(long bytesPerSec) {
+        throttleBytesPerSec = bytesPerSec;
+        return this;
+    }
+
+    StandInCdn errorRate(double rate) {
+        errorRate = rate;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String referer = exchange.getRequestHeaders().getFirst("Referer");
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            if (referer == null || !referer.startsWith("https://www.bilibili.com/video/")
+                    || !"https://www.bilibili.com".equals(origin)) {
+                rejected.incrementAndGet();
+                exchange.sendResponseHeaders(403, -1);
+                return;
+            }
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            if (latencyMs > 0) sleep(latencyMs);
+
+            long start = 0;
+            long end = payload.length - 1;
+            int status = 200;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null) {
+                long[] parsed = BilibiliProxyServer.parseRange(range, payload.length);
+                if (parsed == null) {
+                    exchange.getResponseHeaders().add("Content-Range", "bytes */" + payload.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                start = parsed[0];
+                end = parsed[1];
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + payload.length);
+            }
+
+            long length = end - start + 1;
+            exchange.getResponseHeaders().add("Content-Type", "audio/mp4");
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(status, head ? -1 : length);
+            if (head) return;
+
+            writeBody(exchange.getResponseBody(), (int) start, length);
+        } catch (IOException e) {
+            // 客户端中途断开属于正常情况（seek）
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeBody(OutputStream out, int offset, long length) throws IOException {
+        int chunk = 16 * 1024;
+        long limit = throttleBytesPerSec;
+        long startNanos = System.nanoTime();
+        long written = 0;
+        while (written < length) {
+            int n = (int) Math.min(chunk, length - written);
+            out.write(payload, offset + (int) written, n);
+            written += n;
+            bytesSent.addAndGet(n);
+            if (limit > 0) {
+                long expectedNanos = written * 1_000_000_000L / limit;
+                long ahead = expectedNanos - (System.nanoTime() - startNanos);
+                if (ahead > 0) sleep(ahead / 1_000_000);
+            }
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
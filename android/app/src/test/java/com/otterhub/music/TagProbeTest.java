@@ -0,0 +1,139 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TagProbeTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4, 5};
+
+    private static void id3Frame(ByteArrayOutputStream out, String id, byte[] body, int formatFlags) {
+        out.write(id.getBytes(StandardCharsets.ISO_8859_1), 0, 4);
+        out.write(ByteBuffer.allocate(4).putInt(body.length).array(), 0, 4);
+        out.write(0);
+        out.write(formatFlags);
+        out.write(body, 0, body.length);
+    }
+
+    private static byte[] id3(int major, byte[] frames, int padding) {
+        int size = frames.length + padding;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{'I', 'D', '3', (byte) major, 0, 0}, 0, 6);
+        out.write(new byte[]{(byte) (size >> 21 & 0x7F), (byte) (size >> 14 & 0x7F),
+                (byte) (size >> 7 & 0x7F), (byte) (size & 0x7F)}, 0, 4);
+        out.write(frames, 0, frames.length);
+        out.write(new byte[padding + 64], 0, padding + 64);
+        return out.toByteArray();
+    }
+
+    private static byte[] apic(int pictureType, String description) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(0);
+        body.write("image/jpeg".getBytes(StandardCharsets.ISO_8859_1), 0, 10);
+        body.write(0);
+        body.write(pictureType);
+        byte[] desc = description.getBytes(StandardCharsets.ISO_8859_1);
+        body.write(desc, 0, desc.length);
+        body.write(0);
+        body.write(JPEG, 0, JPEG.length);
+        return body.toByteArray();
+    }
+
+    private static TagProbe.Result probe(byte[] content) throws IOException {
+        File file = File.createTempFile("probe", ".bin");
+        try {
+            Files.write(file.toPath(), content);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                return TagProbe.probe(channel);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void locatesId3CoverAndLyrics() throws Exception {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3Frame(frames, "TIT2", "\u0003Song".getBytes(StandardCharsets.UTF_8), 0);
+        id3Frame(frames, "APIC", apic(0, "back"), 0);
+        id3Frame(frames, "APIC", apic(3, "front"), 0);
+        byte[] uslt = "\u0003eng\u0000lyrics".getBytes(StandardCharsets.UTF_8);
+        id3Frame(frames, "USLT", uslt, 0);
+        byte[] file = id3(3, frames.toByteArray(), 32);
+
+        TagProbe.Result result = probe(file);
+        assertEquals(JPEG.length, result.coverLength);
+        // 有封面图时取封面图
+        int front = indexOf(file, "front".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(front + 6, result.coverOffset);
+        assertArrayEquals(JPEG, Arrays.copyOfRange(file, (int) result.coverOffset,
+                (int) result.coverOffset + result.coverLength));
+        assertEquals(uslt.length, result.lyricsLength);
+        assertArrayEquals(uslt, Arrays.copyOfRange(file, (int) result.lyricsOffset,
+                (int) result.lyricsOffset + result.lyricsLength));
+    }
+
+    @Test
+    public void reportsAbsentTagsAndUnreadableFrames() throws Exception {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3Frame(frames, "TIT2", "\u0003Song".getBytes(StandardCharsets.UTF_8), 0);
+        TagProbe.Result none = probe(id3(4, frames.toByteArray(), 0));
+        assertEquals(0, none.coverLength);
+        assertEquals(0, none.lyricsLength);
+
+        // v2.4 帧级非同步化：只能确认存在
+        id3Frame(frames, "APIC", apic(3, ""), 0x02);
+        TagProbe.Result unsync = probe(id3(4, frames.toByteArray(), 0));
+        assertEquals(-1, unsync.coverOffset);
+        assertTrue(unsync.coverLength > 0);
+
+        // 不认识的格式：封面未知，歌词只支持 ID3 因此确定没有
+        TagProbe.Result m4a = probe(new byte[]{0, 0, 0, 0x20, 'f', 't', 'y', 'p', 'M', '4', 'A', ' '});
+        assertEquals(TagProbe.UNKNOWN, m4a.coverLength);
+        assertEquals(0, m4a.lyricsLength);
+    }
+
+    @Test
+    public void locatesFlacPicture() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{'f', 'L', 'a', 'C'}, 0, 4);
+        // STREAMINFO
+        out.write(new byte[]{0, 0, 0, 34}, 0, 4);
+        out.write(new byte[34], 0, 34);
+        byte[] mime = "image/jpeg".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer picture = ByteBuffer.allocate(8 + mime.length + 4 + 3 + 16 + 4 + JPEG.length);
+        picture.putInt(3).putInt(mime.length).put(mime).putInt(3).put(new byte[]{'a', 'b', 'c'})
+                .put(new byte[16]).putInt(JPEG.length).put(JPEG);
+        byte[] block = picture.array();
+        out.write(new byte[]{(byte) 0x86, 0, 0, (byte) block.length}, 0, 4);
+        out.write(block, 0, block.length);
+        byte[] file = out.toByteArray();
+
+        TagProbe.Result result = probe(file);
+        assertEquals(JPEG.length, result.coverLength);
+        assertEquals(file.length - JPEG.length, result.coverOffset);
+        assertEquals(0, result.lyricsLength);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            for (int j = 0; j < pattern.length; j++) if (data[i + j] != pattern[j]) continue outer;
+            return i;
+        }
+        return -1;
+    }
+}
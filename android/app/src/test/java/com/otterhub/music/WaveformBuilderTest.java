@@ -0,0 +1,59 @@
+package com.otterhub.music;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WaveformBuilderTest {
+
+    @Test
+    public void foldsEnvelopeIntoRequestedBuckets() {
+        int sampleRate = 8000;
+        // 前半段 0.5 振幅，后半段满幅
+        float[] pcm = new float[sampleRate * 2 * 2];
+        for (int f = 0; f < sampleRate * 2; f++) {
+            float amplitude = f < sampleRate ? 0.5f : 1f;
+            float v = (float) (amplitude * Math.sin(2 * Math.PI * 440 * f / sampleRate));
+            pcm[f * 2] = v;
+            pcm[f * 2 + 1] = v;
+        }
+
+        WaveformBuilder builder = new WaveformBuilder(10, sampleRate, 2, sampleRate * 2L);
+        builder.process(pcm, pcm.length);
+        WaveformBuilder.Peaks peaks = builder.build();
+
+        assertEquals(10, peaks.buckets);
+        assertEquals(2000, peaks.durationMs);
+        assertEquals(64, peaks.max[0], 1);
+        assertEquals(-64, peaks.min[0], 1);
+        assertEquals(127, peaks.max[9], 1);
+        assertEquals(-127, peaks.min[9], 1);
+    }
+
+    @Test
+    public void coversWholeTrackWhenDurationIsWrong() {
+        int sampleRate = 8000;
+        float[] pcm = new float[sampleRate * 3];
+        for (int i = 0; i < pcm.length; i++) pcm[i] = i < sampleRate * 2 ? 0f : 1f;
+
+        // 预估只有 1 秒，实际 3 秒：末尾的满幅段仍应落在最后的桶里
+        WaveformBuilder builder = new WaveformBuilder(3, sampleRate, 1, sampleRate);
+        builder.process(pcm, pcm.length);
+        WaveformBuilder.Peaks peaks = builder.build();
+
+        assertEquals(3000, peaks.durationMs);
+        assertEquals(0, peaks.max[0]);
+        assertEquals(0, peaks.max[1]);
+        assertEquals(127, peaks.max[2]);
+    }
+
+    @Test
+    public void shortInputRepeatsBlocks() {
+        WaveformBuilder builder = new WaveformBuilder(100, 8000, 1, -1);
+        builder.process(new float[]{0.25f, -0.25f}, 2);
+        WaveformBuilder.Peaks peaks = builder.build();
+        assertEquals(100, peaks.min.length);
+        assertTrue(peaks.max[99] > 0 && peaks.min[0] < 0);
+    }
+}
@@ -19,6 +19,17 @@ export interface SongPic {
 export interface SongLyric {
   lyric: string;
   tlyric?: string;
+  /** 已解析并与译文对齐的歌词行，提供时无需再解析 lyric */
+  lines?: SongLyricLine[];
+}
+
+export interface SongLyricLine {
+  /** 秒 */
+  time: number;
+  text: string;
+  ttext?: string;
+  /** 逐字时间（秒）及其在 text 中的字符偏移 */
+  words?: { time: number; offset: number }[];
 }
 
 export type MergedMusicTrack = MusicTrack & {
@@ -42,6 +42,7 @@ import {
 import { useShallow } from "zustand/react/shallow";
 import toast from "react-hot-toast";
 import { useCoverColors } from "@/hooks/useCoverColors";
+import { useWaveformPeaks } from "@/hooks/useWaveformPeaks";
 import { pickBestColor, createBackgroundColor } from "@/lib/utils/color";
 
 interface ModeIconProps {
@@ -209,6 +210,11 @@ export function FullScreenPlayer({
   );
 
   const currentTrack = queue[currentIndex] || null;
+  const upcomingTracks = useMemo(
+    () => queue.slice(currentIndex + 1, currentIndex + 4),
+    [queue, currentIndex]
+  );
+  const waveform = useWaveformPeaks(currentTrack, upcomingTracks, isFullScreen);
 
   const {
     handleShare,
@@ -427,6 +433,7 @@ export function FullScreenPlayer({
           onLeftTimeClick={() => setSpeedDrawerOpen(true)}
           onRightTimeClick={() => setSleepDrawerOpen(true)}
           onCenterClick={() => setSleepDrawerOpen(true)}
+          waveform={waveform}
         />
       </div>
 
@@ -34,7 +34,9 @@ vi.mock("@/plugins/local-music", () => ({
   LocalMusicPlugin: {
     scanLocalMusic: vi.fn(),
     scanAllStorage: vi.fn(),
+    scanDocumentTree: vi.fn(),
     deleteLocalMusic: vi.fn(),
+    deleteLocalMusicBatch: vi.fn(),
     getExcludedFolders: vi.fn(),
     removeExcludedFolder: vi.fn(),
     pickExcludedDirectory: vi.fn(),
@@ -109,6 +111,7 @@ describe("LocalMusicPage", () => {
         tracks,
         onPlay,
         onRemove,
+        onBatchRemove,
       }: {
         tracks: MusicTrack[];
         onPlay: (track: MusicTrack | null, index?: number) => void;
@@ -116,6 +119,7 @@ describe("LocalMusicPage", () => {
           track: MusicTrack,
           silent?: boolean
         ) => void | Promise<void>;
+        onBatchRemove?: (tracks: MusicTrack[]) => void;
       }) => (
         <div>
           {tracks.map((track) => (
@@ -131,6 +135,13 @@ describe("LocalMusicPage", () => {
           <button type="button" onClick={() => onPlay(null)}>
             play all
           </button>
+          <button
+            type="button"
+            data-testid="batch-remove"
+            onClick={() => onBatchRemove?.(tracks)}
+          >
+            delete all
+          </button>
         </div>
       )
     );
@@ -302,6 +313,47 @@ describe("LocalMusicPage", () => {
     expect(LocalMusicPlugin.scanAllStorage).toHaveBeenCalledTimes(1);
   });
 
+  it("scans the picked folder when all-files access is missing", async () => {
+    vi.mocked(LocalMusicPlugin.scanAllStorage).mockResolvedValue({
+      success: false,
+      files: [],
+      needManageStorage: true,
+    });
+    vi.mocked(LocalMusicPlugin.scanDocumentTree).mockResolvedValue({
+      success: true,
+      files: [
+        {
+          id: "tree",
+          name: "Tree Song",
+          artist: "Artist",
+          album: "Album",
+          duration: 180000,
+          localPath: "content://tree/song.mp3",
+          fileSize: 1,
+          modifiedTime: 4000,
+        },
+      ],
+    });
+    renderPage();
+
+    await act(async () => {
+      openScanDrawer();
+    });
+    await flushReact();
+
+    await act(async () => {
+      container
+        ?.querySelector<HTMLButtonElement>("[data-testid='confirm-full-scan']")
+        ?.dispatchEvent(new MouseEvent("click", { bubbles: true }));
+    });
+    await flushReact();
+
+    expect(LocalMusicPlugin.scanDocumentTree).toHaveBeenCalledTimes(1);
+    expect(
+      useLocalMusicStore.getState().files.map((file) => file.localPath)
+    ).toContain("content://tree/song.mp3");
+  });
+
   it("removes local track from the current list without deleting the file by default", async () => {
     renderPage();
 
@@ -351,6 +403,49 @@ describe("LocalMusicPage", () => {
     });
   });
 
+  it("deletes several files with one batch call", async () => {
+    vi.mocked(LocalMusicPlugin.deleteLocalMusicBatch).mockResolvedValue({
+      success: false,
+      deleted: 2,
+      results: [
+        { localPath: "/music/new.mp3", success: true },
+        { localPath: "/music/missing.mp3", success: true },
+        { localPath: "/music/old.mp3", success: false, error: "needsConsent" },
+      ],
+    });
+    renderPage();
+
+    await act(async () => {
+      container
+        ?.querySelector<HTMLButtonElement>("[data-testid='batch-remove']")
+        ?.dispatchEvent(new MouseEvent("click", { bubbles: true }));
+    });
+    await act(async () => {
+      document
+        .querySelector<HTMLButtonElement>("[data-testid='delete-local-file']")!
+        .dispatchEvent(new MouseEvent("click", { bubbles: true }));
+    });
+    await act(async () => {
+      document
+        .querySelector<HTMLButtonElement>(
+          "[data-testid='confirm-local-delete']"
+        )!
+        .dispatchEvent(new MouseEvent("click", { bubbles: true }));
+      await new Promise((resolve) => setTimeout(resolve, 0));
+    });
+
+    expect(LocalMusicPlugin.deleteLocalMusicBatch).toHaveBeenCalledTimes(1);
+    expect(
+      vi.mocked(LocalMusicPlugin.deleteLocalMusicBatch).mock.calls[0][0].paths
+    ).toHaveLength(3);
+    // 需要逐个确认的文件退回单文件删除
+    expect(LocalMusicPlugin.deleteLocalMusic).toHaveBeenCalledTimes(1);
+    expect(LocalMusicPlugin.deleteLocalMusic).toHaveBeenCalledWith({
+      localPath: "/music/old.mp3",
+    });
+    expect(useLocalMusicStore.getState().files).toHaveLength(0);
+  });
+
   /* =========================
      排除目录
   ========================= */
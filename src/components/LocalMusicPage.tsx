@@ -19,6 +19,11 @@ import {
   DrawerTitle,
 } from "@/components/ui/drawer";
 import { LocalMusicPlugin, LocalMusicFile } from "@/plugins/local-music";
+import {
+  fetchColumnarFiles,
+  loadLibrarySnapshot,
+  scanLocalMusicFiles,
+} from "@/plugins/local-music/columnar";
 import { MusicTrack } from "@/types/music";
 import { MusicPlaylistView } from "./MusicPlaylistView";
 import { cn } from "@/lib/utils";
@@ -42,6 +47,7 @@ import { useLocalMusicStore } from "@/store/local-music-store";
 import { LocalMusicPermissionDialog } from "./LocalMusicPermissionDialog";
 import { logger } from "@/lib/logger";
 import { useNavigate } from "react-router-dom";
+import { Capacitor } from "@capacitor/core";
 
 function mergeLocalMusicFiles(
   oldFiles: LocalMusicFile[],
@@ -64,6 +70,26 @@ function mergeLocalMusicFiles(
   });
 }
 
+/**
+ * 把 SAF 目录扫描结果并入现有列表；目录内文件的路径是 document URI，
+ * 与已有曲目大小和歌名都相同的视为 MediaStore 中的同一文件
+ */
+function appendFolderFiles(
+  oldFiles: LocalMusicFile[],
+  folderFiles: LocalMusicFile[]
+): LocalMusicFile[] {
+  const key = (f: LocalMusicFile) => `${f.fileSize}:${f.name}`;
+  const folderPaths = new Set(folderFiles.map((f) => f.localPath));
+  const kept = oldFiles.filter((f) => !folderPaths.has(f.localPath));
+  const known = new Set(kept.map(key));
+  return [
+    ...kept,
+    ...mergeLocalMusicFiles(oldFiles, folderFiles).filter(
+      (f) => !known.has(key(f))
+    ),
+  ];
+}
+
 interface LocalMusicPageProps {
   onBack?: () => void;
   onPlay: (track: MusicTrack, list: MusicTrack[], contextId?: string) => void;
@@ -115,10 +141,7 @@ export function LocalMusicPage({
       setScanning(true, type);
 
       try {
-        const result =
-          type === "quick"
-            ? await LocalMusicPlugin.scanLocalMusic()
-            : await LocalMusicPlugin.scanAllStorage();
+        const result = await scanLocalMusicFiles(type);
 
         if (result.success) {
           const merged =
@@ -131,6 +154,13 @@ export function LocalMusicPage({
 
         if (result.needManageStorage) {
           setShowPermissionDialog(true);
+          // 未授予“管理所有文件”时，先经 SAF 扫描已选定的下载目录
+          const folder = await scanLocalMusicFiles("folder");
+          if (folder.success) {
+            const merged = appendFolderFiles(files, folder.files);
+            setFiles(merged);
+            return merged.length;
+          }
           throw new Error(result.error || "需要授予存储权限");
         }
         throw new Error(result.error || "扫描失败");
@@ -148,13 +178,47 @@ export function LocalMusicPage({
 
   const initRef = useRef(false);
   useEffect(() => {
-    if (initRef.current || files.length > 0) return;
+    if (initRef.current) return;
     initRef.current = true;
 
-    performScan("quick").catch((err) => {
-      logger.error("LocalMusicPage", "Initial local music scan failed", err);
+    const scanIfEmpty = () => {
+      if (useLocalMusicStore.getState().files.length > 0) return;
+      performScan("quick").catch((err) => {
+        logger.error("LocalMusicPage", "Initial local music scan failed", err);
+      });
+    };
+    if (!Capacitor.isNativePlatform()) {
+      scanIfEmpty();
+      return;
+    }
+    // 先展示原生端保存的曲库快照，原生端随后在后台校对
+    loadLibrarySnapshot().then((snapshot) => {
+      if (snapshot && useLocalMusicStore.getState().files.length === 0) {
+        setFiles(snapshot);
+      }
+      if (!snapshot) scanIfEmpty();
     });
-  }, [files.length, performScan]);
+  }, [performScan, setFiles]);
+
+  useEffect(() => {
+    if (!Capacitor.isNativePlatform()) return;
+    const listener = LocalMusicPlugin.addListener("libraryUpdated", (event) => {
+      fetchColumnarFiles(event.columnarUrl)
+        .then((updated) => {
+          const current = useLocalMusicStore.getState().files;
+          setFiles(mergeLocalMusicFiles(current, updated));
+        })
+        .catch((err) => {
+          logger.warn("LocalMusicPage", "Library snapshot update failed", {
+            err,
+          });
+        });
+    });
+
+    return () => {
+      listener.then((l) => l.remove());
+    };
+  }, [setFiles]);
 
   const handleScan = (type: "quick" | "full") => {
     if (isLoading) return;
@@ -190,6 +254,41 @@ export function LocalMusicPage({
     [currentIndex, queue, skipToNext, updateFiles]
   );
 
+  // 批量删除文件：原生端一次完成，Android 11+ 只弹一次系统确认
+  const removeLocalTracksBatch = useCallback(
+    async (tracks: MusicTrack[]) => {
+      const paths = tracks.map((t) => t.url_id).filter(Boolean);
+      const result = await LocalMusicPlugin.deleteLocalMusicBatch({ paths });
+      const removed = new Set(
+        (result.results ?? []).filter((r) => r.success).map((r) => r.localPath)
+      );
+      // Android 10 无法合并确认，需要确认的文件逐个删除
+      for (const item of result.results ?? []) {
+        if (item.error !== "needsConsent") continue;
+        const single = await LocalMusicPlugin.deleteLocalMusic({
+          localPath: item.localPath,
+        });
+        if (single.success) removed.add(item.localPath);
+      }
+
+      updateFiles((prev) => prev.filter((f) => !removed.has(f.localPath)));
+      const current = queue[currentIndex];
+      if (current && tracks.some((t) => t.id === current.id)) {
+        if (removed.has(current.url_id)) skipToNext();
+      }
+      const failed = paths.length - removed.size;
+      if (failed > 0) {
+        logger.warn("LocalMusicPage", "Batch delete incomplete", {
+          failed,
+          total: paths.length,
+          error: result.error,
+        });
+        throw new Error(result.error || `${failed} 个文件删除失败`);
+      }
+    },
+    [currentIndex, queue, skipToNext, updateFiles]
+  );
+
   const resetDeleteState = () => {
     setDeleteTargets([]);
     setDeleteLocalFile(false);
@@ -197,8 +296,12 @@ export function LocalMusicPage({
 
   const confirmDeleteTracks = async () => {
     if (!deleteTargets.length) return;
-    const promise = Promise.all(
-      deleteTargets.map((t) => removeLocalTrack(t, deleteLocalFile))
+    const promise = (
+      deleteLocalFile && deleteTargets.length > 1
+        ? removeLocalTracksBatch(deleteTargets)
+        : Promise.all(
+            deleteTargets.map((t) => removeLocalTrack(t, deleteLocalFile))
+          )
     ).then(resetDeleteState);
 
     toast.promise(promise, {
@@ -261,6 +364,21 @@ export function LocalMusicPage({
     [files]
   );
 
+  // 原生检索索引，曲库较大时避免每次按键都在前端遍历全部曲目
+  // limit 取曲目总数，与前端过滤一样返回全部匹配，"播放全部" 不会被截断
+  const searchLocalIndex = useCallback(
+    async (query: string) => {
+      if (!Capacitor.isNativePlatform()) return null;
+      const result = await LocalMusicPlugin.searchLocal({
+        query,
+        limit: Math.max(1, tracks.length),
+      });
+      if (!result.success || !result.indexed) return null;
+      return result.ids.map((id) => `local-${id}`);
+    },
+    [tracks.length]
+  );
+
   const handlePlay = (track: MusicTrack | null, index?: number) => {
     const targetTrack =
       track ||
@@ -322,6 +440,7 @@ export function LocalMusicPage({
           onBatchRemove={setDeleteTargets}
           removeLabel="删除"
           confirmRemove={false}
+          searchIndex={searchLocalIndex}
           action={
             <button
               onClick={() => navigate("/playlist/__offline__")}
@@ -251,7 +251,8 @@ export function LyricsPanel({ track, active = true }: LyricsPanelProps) {
           setError("暂无歌词");
           return;
         }
-        setLyrics(parseLrc(res.lyric, res.tlyric));
+        // 本地歌词已由原生端解析
+        setLyrics(res.lines ?? parseLrc(res.lyric, res.tlyric));
       })
       .catch(() => {
         if (cancelled) return;
@@ -1,9 +1,9 @@
 import { Button } from "@/components/ui/button";
 import { Play, Search } from "lucide-react";
-import { filterTracks } from "@/lib/utils/filter-tracks";
+import { filterTracks, pickTracksById } from "@/lib/utils/filter-tracks";
 import { MusicTrackList } from "./MusicTrackList";
 import { Input } from "@/components/ui/input";
-import { useState, useMemo, useRef } from "react";
+import { useState, useMemo, useRef, useEffect } from "react";
 import { MusicCover } from "./MusicCover";
 import { PlaylistCover } from "./PlaylistCover";
 import { PlaylistOperations } from "./PlaylistOperations";
@@ -54,6 +54,11 @@ interface MusicPlaylistViewProps {
   removeLabel?: string;
   confirmRemove?: boolean;
   icon?: React.ReactNode;
+  /**
+   * 外部检索（如原生索引），返回按相关度排序的曲目 ID；
+   * 返回 null 表示不可用，退回逐条过滤
+   */
+  searchIndex?: (query: string) => Promise<string[] | null>;
 }
 
 export function MusicPlaylistView({
@@ -74,8 +79,12 @@ export function MusicPlaylistView({
   removeLabel,
   confirmRemove,
   icon,
+  searchIndex,
 }: MusicPlaylistViewProps) {
   const [searchQuery, setSearchQuery] = useState("");
+  const [indexedIds, setIndexedIds] = useState<string[] | null>(null);
+  // 最近一次检索时索引是否可用；不可用时才逐条过滤
+  const [indexReady, setIndexReady] = useState(true);
   const [isCoverDialogOpen, setIsCoverDialogOpen] = useState(false);
   const [isAddByUrlOpen, setIsAddByUrlOpen] = useState(false);
   const [coverUrlInput, setCoverUrlInput] = useState("");
@@ -104,10 +113,36 @@ export function MusicPlaylistView({
     useMusicStore.getState().reorderPlaylistTracks(playlistId, sorted);
   };
 
-  const filteredTracks = useMemo(
-    () => filterTracks(tracks, searchQuery),
-    [tracks, searchQuery]
-  );
+  useEffect(() => {
+    // 新查询的结果返回前继续显示上一次的命中，不在每次按键时逐条过滤
+    if (!searchIndex || !searchQuery.trim()) {
+      setIndexedIds(null);
+      return;
+    }
+    let cancelled = false;
+    searchIndex(searchQuery)
+      .then((ids) => {
+        if (cancelled) return;
+        setIndexedIds(ids);
+        setIndexReady(ids !== null);
+      })
+      .catch((e) => {
+        logger.warn("MusicPlaylistView", "searchIndex failed", { e });
+        if (cancelled) return;
+        setIndexedIds(null);
+        setIndexReady(false);
+      });
+    return () => {
+      cancelled = true;
+    };
+  }, [searchIndex, searchQuery]);
+
+  const filteredTracks = useMemo(() => {
+    if (!searchQuery.trim()) return tracks;
+    if (!searchIndex || !indexReady) return filterTracks(tracks, searchQuery);
+    // 首次检索的结果返回前显示完整列表
+    return indexedIds ? pickTracksById(tracks, indexedIds) : tracks;
+  }, [tracks, searchQuery, searchIndex, indexReady, indexedIds]);
 
   const handleDeduplicate = () => {
     if (!playlistId) return;
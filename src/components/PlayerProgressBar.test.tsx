@@ -93,4 +93,24 @@ describe("PlayerProgressBar", () => {
     });
     expect(onRightTimeClick).toHaveBeenCalledTimes(1);
   });
+
+  it("draws the waveform with the played part clipped to progress", () => {
+    const el = render({
+      waveform: {
+        min: new Int8Array([-64, -127]),
+        max: new Int8Array([64, 127]),
+        durationMs: 300000,
+      },
+    });
+    const svgs = el.querySelectorAll("svg");
+    expect(svgs).toHaveLength(2);
+    expect(svgs[0].getAttribute("viewBox")).toBe("0 0 2 2");
+    // 125 / 300 ≈ 41.67% 已播放
+    expect((svgs[1] as SVGElement).style.clipPath).toContain("58.3");
+  });
+
+  it("renders no waveform by default", () => {
+    const el = render();
+    expect(el.querySelector("svg")).toBeNull();
+  });
 });
@@ -5,6 +5,7 @@ import { cn } from "@/lib/utils";
 import { formatMediaTime } from "@/lib/utils/music";
 import { useMusicStore } from "@/store/music-store";
 import { useShallow } from "zustand/react/shallow";
+import { buildWaveformPath, type WaveformPeaks } from "@/lib/utils/waveform";
 
 interface PlayerProgressBarProps {
   className?: string;
@@ -13,6 +14,8 @@ interface PlayerProgressBarProps {
   onLeftTimeClick?: () => void;
   onRightTimeClick?: () => void;
   onCenterClick?: () => void;
+  /** 提供时在进度条上方绘制波形，已播放部分高亮 */
+  waveform?: WaveformPeaks | null;
 }
 
 export function PlayerProgressBar({
@@ -22,6 +25,7 @@ export function PlayerProgressBar({
   onLeftTimeClick,
   onRightTimeClick,
   onCenterClick,
+  waveform,
 }: PlayerProgressBarProps) {
   const { currentTime, duration, seek } = useMusicStore(
     useShallow((state) => ({
@@ -39,6 +43,10 @@ export function PlayerProgressBar({
   const currentProgress = duration ? (currentTime / duration) * 100 : 0;
   const dragProgress = duration ? (dragTime / duration) * 100 : 0;
   const displayProgress = isDragging ? dragProgress : currentProgress;
+  const waveformPath = React.useMemo(
+    () => (waveform ? buildWaveformPath(waveform) : null),
+    [waveform]
+  );
 
   const getPercent = (clientX: number) => {
     if (!barRef.current) return 0;
@@ -101,6 +109,38 @@ export function PlayerProgressBar({
         onMouseDown={(e) => handleStart(e.clientX)}
         onTouchStart={(e) => handleStart(e.touches[0].clientX)}
       >
+        {waveform && waveformPath && (
+          <div
+            className="pointer-events-none absolute inset-x-0 bottom-full h-8"
+            aria-hidden="true"
+          >
+            <svg
+              className="absolute inset-0 h-full w-full text-white/25"
+              viewBox={`0 0 ${waveform.max.length} 2`}
+              preserveAspectRatio="none"
+            >
+              <path
+                d={waveformPath}
+                stroke="currentColor"
+                strokeWidth={0.6}
+                fill="none"
+              />
+            </svg>
+            <svg
+              className="absolute inset-0 h-full w-full text-white/80"
+              viewBox={`0 0 ${waveform.max.length} 2`}
+              preserveAspectRatio="none"
+              style={{ clipPath: `inset(0 ${100 - displayProgress}% 0 0)` }}
+            >
+              <path
+                d={waveformPath}
+                stroke="currentColor"
+                strokeWidth={0.6}
+                fill="none"
+              />
+            </svg>
+          </div>
+        )}
         <div className="relative w-full h-1.5 group-hover:h-2 transition-all rounded-full bg-white/20">
           <div
             className={cn(
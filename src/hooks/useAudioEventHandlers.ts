@@ -8,6 +8,7 @@ import { MediaSession } from "@jofr/capacitor-media-session";
 import toast from "react-hot-toast";
 import { handleAutoMatch } from "@/lib/audio-match";
 import { logger } from "@/lib/logger";
+import { reportNativeProxyBuffer } from "@/lib/bilibili/bilibili-native-player";
 
 const PAUSE_CONFIRM_DELAY_MS = 200;
 const MAX_AUTO_MATCH_PER_TRACK = 3;
@@ -57,6 +58,7 @@ export function useAudioEventHandlers(
         if (!audio.paused && !state.isPlaying) state.setIsPlaying(true);
 
         syncPositionState(audio.paused ? 0 : audio.playbackRate);
+        reportNativeProxyBuffer(audio);
       }, 1000),
 
       durationchange: () => {
@@ -100,6 +102,7 @@ export function useAudioEventHandlers(
 
       pause: () => {
         syncPositionState(0);
+        reportNativeProxyBuffer(audio);
         if (isSwitchingTrackRef.current || audio.ended || audio.error) return;
 
         clearPauseTimer();
@@ -169,7 +172,10 @@ export function useAudioEventHandlers(
       },
 
       loadstart: () => toggleLoading(true),
-      waiting: () => toggleLoading(true),
+      waiting: () => {
+        toggleLoading(true);
+        reportNativeProxyBuffer(audio);
+      },
       canplay: () => toggleLoading(false),
       playing: () => {
         clearPauseTimer();
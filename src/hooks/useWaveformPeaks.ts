@@ -0,0 +1,76 @@
+import { useEffect, useState } from "react";
+import { Capacitor } from "@capacitor/core";
+import { LocalMusicPlugin } from "@/plugins/local-music";
+import { decodeWaveformPeaks, type WaveformPeaks } from "@/lib/utils/waveform";
+import { logger } from "@/lib/logger";
+import type { MusicTrack } from "@/types/music";
+
+export const WAVEFORM_BUCKETS = 160;
+/** 预先计算波形的后续本地曲目数 */
+const PREFETCH_COUNT = 2;
+
+/**
+ * 获取当前本地曲目的波形峰值（仅原生端），并让原生侧预先计算队列中接下来几首
+ */
+export function useWaveformPeaks(
+  track: MusicTrack | null | undefined,
+  upcoming: MusicTrack[] = [],
+  enabled = true
+): WaveformPeaks | null {
+  const [state, setState] = useState<{
+    path: string | undefined;
+    peaks: WaveformPeaks | null;
+  }>({ path: undefined, peaks: null });
+
+  const localPath =
+    enabled && track?.source === "local" && Capacitor.isNativePlatform()
+      ? track.url_id
+      : undefined;
+
+  useEffect(() => {
+    if (!localPath) return;
+    let active = true;
+
+    LocalMusicPlugin.getWaveform({ localPath, buckets: WAVEFORM_BUCKETS })
+      .then((result) => {
+        if (!active) return;
+        const peaks =
+          result.success && result.peaks && result.buckets
+            ? decodeWaveformPeaks(
+                result.peaks,
+                result.buckets,
+                result.durationMs
+              )
+            : null;
+        setState({ path: localPath, peaks });
+      })
+      .catch((e) => {
+        logger.warn("useWaveformPeaks", "getWaveform failed", e);
+        if (active) setState({ path: localPath, peaks: null });
+      });
+
+    return () => {
+      active = false;
+    };
+  }, [localPath]);
+
+  const prefetchKey = localPath
+    ? upcoming
+        .filter((t) => t.source === "local" && t.url_id !== localPath)
+        .slice(0, PREFETCH_COUNT)
+        .map((t) => t.url_id)
+        .join("\u001f")
+    : "";
+
+  useEffect(() => {
+    if (!prefetchKey) return;
+    LocalMusicPlugin.prefetchWaveforms({
+      paths: prefetchKey.split("\u001f"),
+      buckets: WAVEFORM_BUCKETS,
+    }).catch((e) => {
+      logger.warn("useWaveformPeaks", "prefetchWaveforms failed", e);
+    });
+  }, [prefetchKey]);
+
+  return localPath && state.path === localPath ? state.peaks : null;
+}
@@ -16,6 +16,7 @@ beforeEach(() => {
     CapacitorHttp: { request: vi.fn() },
   };
   mockBilibiliProxy = {
+    getCachedStreamUrl: vi.fn(),
     getProxyUrl: vi.fn(),
     isRunning: vi.fn(),
     startServer: vi.fn(),
@@ -216,6 +217,32 @@ describe("getBilibiliSongUrl", () => {
     ).resolves.toBeNull();
   });
 
+  it("falls back to the cached proxy stream when bilibili is unreachable", async () => {
+    mockBilibiliProxy.getCachedStreamUrl.mockResolvedValue({
+      success: true,
+      url: "http://127.0.0.1:8765/proxy?bvid=BV1xx411c7mD",
+      contentType: "audio/mp4",
+    });
+    mockCapacitor.CapacitorHttp.request.mockRejectedValue(
+      new Error("Unable to resolve host")
+    );
+    mockConfig.IS_NATIVE = true;
+    mockConfig.IS_WEB_PROD = false;
+    mockCapacitor.Capacitor.isNativePlatform.mockReturnValue(true);
+    mockConfig.fetchWithTimeout.mockReset();
+
+    const { getBilibiliSongUrl } = await import("./bilibili-api");
+
+    await expect(getBilibiliSongUrl("bilibili_BV1xx411c7mD")).resolves.toEqual({
+      url: "http://127.0.0.1:8765/proxy?bvid=BV1xx411c7mD",
+      format: "m4s",
+    });
+    expect(mockBilibiliProxy.getCachedStreamUrl).toHaveBeenCalledWith({
+      bvid: "BV1xx411c7mD",
+    });
+    expect(mockBilibiliProxy.getProxyUrl).not.toHaveBeenCalled();
+  });
+
   it("resolves dev song urls through view and playurl", async () => {
     mockConfig.IS_WEB_PROD = false;
     mockConfig.IS_NATIVE = false;
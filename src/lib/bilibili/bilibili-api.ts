@@ -273,7 +273,7 @@ async function getBilibiliSongUrlWeb(
 
 /**
  * Android端获取B站音频URL
- * 使用本地代理实现真正的流式播放
+ * 使用本地代理实现真正的流式播放；取不到上游地址（如离线）时回退到代理缓存
  */
 async function getBilibiliSongUrlNative(
   bvid: string,
@@ -282,9 +282,10 @@ async function getBilibiliSongUrlNative(
   url: string;
   format: import("@otter-music/shared").AudioFormat;
 } | null> {
+  const { getNativeBilibiliStreamUrl, getCachedBilibiliStream } =
+    await import("./bilibili-native-player");
+  let result: Awaited<ReturnType<typeof resolveBilibiliAudioUrl>> = null;
   try {
-    const { getNativeBilibiliStreamUrl } =
-      await import("./bilibili-native-player");
     const referer = `https://www.bilibili.com/video/${bvid}`;
 
     let cid = cidOverride;
@@ -294,14 +295,15 @@ async function getBilibiliSongUrlNative(
         buildBilibiliViewPath(bvid),
         referer
       );
-      if (!view) return null;
-      cid = selectBilibiliCid(view) ?? undefined;
+      cid = view ? (selectBilibiliCid(view) ?? undefined) : undefined;
     }
-    if (!cid) return null;
-
-    const result = await resolveBilibiliAudioUrl(bvid, cid, referer);
-    if (!result) return null;
+    if (cid) result = await resolveBilibiliAudioUrl(bvid, cid, referer);
+  } catch (e) {
+    logger.warn("[bilibili] Failed to resolve audio url:", e);
+  }
+  if (!result) return getCachedBilibiliStream(bvid);
 
+  try {
     const streamUrl = await getNativeBilibiliStreamUrl(result.url, bvid);
     if (!streamUrl) return null;
 
@@ -1,55 +1,15 @@
 import { BilibiliProxy } from "@/plugins/bilibili-proxy";
 import { Capacitor } from "@capacitor/core";
+import {
+  inferAudioFormatFromMime,
+  type AudioFormat,
+} from "@otter-music/shared";
 import { logger } from "@/lib/logger";
 
-let serverStarted = false;
-let serverStartPromise: Promise<void> | null = null;
-
-const SERVER_START_TIMEOUT = 8000;
-
-/**
- * 确保本地代理服务器已启动
- */
-async function ensureServerRunning(): Promise<void> {
-  if (serverStarted) return;
-
-  if (serverStartPromise) {
-    return serverStartPromise;
-  }
-
-  serverStartPromise = (async () => {
-    try {
-      const status = await BilibiliProxy.isRunning();
-      if (status.running) {
-        serverStarted = true;
-        logger.info("[bilibili-native] Proxy server already running on port", status.port);
-        return;
-      }
-
-      const result = await Promise.race([
-        BilibiliProxy.startServer(),
-        new Promise<never>((_, reject) =>
-          setTimeout(() => reject(new Error("Server start timeout")), SERVER_START_TIMEOUT)
-        ),
-      ]);
-
-      if (result.success) {
-        serverStarted = true;
-        logger.info("[bilibili-native] Proxy server started on port", result.port);
-      } else {
-        throw new Error("Failed to start proxy server");
-      }
-    } finally {
-      serverStartPromise = null;
-    }
-  })();
-
-  return serverStartPromise;
-}
-
 /**
  * 获取B站音频的本地代理播放URL
  * 实现真正的流式播放，无需等待完整下载
+ * 代理服务器由原生侧在首次调用时后台启动，无需预先 startServer
  */
 export async function getNativeBilibiliStreamUrl(
   audioUrl: string,
@@ -60,9 +20,6 @@ export async function getNativeBilibiliStreamUrl(
   }
 
   try {
-    // 确保代理服务器运行
-    await ensureServerRunning();
-
     // 获取代理URL
     const result = await BilibiliProxy.getProxyUrl({ audioUrl, bvid });
     if (result.success) {
@@ -79,14 +36,84 @@ export async function getNativeBilibiliStreamUrl(
 }
 
 /**
- * 停止代理服务器（应用退出时调用）
+ * 代理流缓存中该 bvid 的离线播放地址，取不到上游音频地址时回退使用
+ * 没有完整缓存时返回 null
+ */
+export async function getCachedBilibiliStream(
+  bvid: string
+): Promise<{ url: string; format: AudioFormat } | null> {
+  try {
+    const result = await BilibiliProxy.getCachedStreamUrl({ bvid });
+    if (!result.success || !result.url) return null;
+    return {
+      url: result.url,
+      format: inferAudioFormatFromMime(result.contentType),
+    };
+  } catch (e) {
+    logger.warn("[bilibili-native] Failed to get cached stream:", e);
+    return null;
+  }
+}
+
+/**
+ * 从本地代理URL中取回原始音频地址与 bvid，非代理URL返回 null
+ */
+export function parseNativeProxyUrl(
+  url: string
+): { audioUrl: string; bvid: string } | null {
+  try {
+    const parsed = new URL(url);
+    if (parsed.pathname !== "/proxy") return null;
+    if (parsed.hostname !== "127.0.0.1" && parsed.hostname !== "localhost") {
+      return null;
+    }
+    const audioUrl = parsed.searchParams.get("url");
+    const bvid = parsed.searchParams.get("bvid");
+    return audioUrl && bvid ? { audioUrl, bvid } : null;
+  } catch {
+    return null;
+  }
+}
+
+/**
+ * 当前播放位置之后已缓冲的秒数
+ */
+export function getBufferedAhead(audio: HTMLAudioElement): number {
+  const time = audio.currentTime;
+  const { buffered } = audio;
+  for (let i = 0; i < buffered.length; i++) {
+    if (buffered.start(i) <= time && time <= buffered.end(i)) {
+      return buffered.end(i) - time;
+    }
+  }
+  return 0;
+}
+
+/**
+ * 向原生代理上报播放缓冲水位，供带宽调度在缓冲不足时压低下载
+ * 仅当前音源为本地代理URL时上报
+ */
+export function reportNativeProxyBuffer(audio: HTMLAudioElement): void {
+  if (!Capacitor.isNativePlatform() || !parseNativeProxyUrl(audio.src)) return;
+
+  BilibiliProxy.reportPlaybackBuffer({
+    playing: !audio.paused,
+    bufferedSeconds: getBufferedAhead(audio),
+  }).catch((e) => {
+    logger.warn("[bilibili-native] Failed to report playback buffer:", e);
+  });
+}
+
+/**
+ * 停止代理服务器
+ * 本地曲目与B站音频的播放都经由该服务器读取，后台播放期间仍需运行，
+ * 不要在应用暂停或进入后台时调用
  */
 export async function stopBilibiliProxyServer(): Promise<void> {
   if (!Capacitor.isNativePlatform()) return;
 
   try {
     await BilibiliProxy.stopServer();
-    serverStarted = false;
     logger.info("[bilibili-native] Proxy server stopped");
   } catch (e) {
     logger.error("[bilibili-native] Error stopping proxy server:", e);
@@ -64,9 +64,30 @@ describe("LocalProvider", () => {
     });
     expect(LocalMusicPlugin.getEmbeddedLyrics).toHaveBeenCalledWith({
       localPath: localTrack.lyric_id,
+      parse: true,
     });
   });
 
+  it("passes natively parsed lyric lines through", async () => {
+    vi.mocked(LocalMusicPlugin.getEmbeddedLyrics).mockResolvedValue({
+      success: true,
+      lyric: "[00:01.00]歌词",
+      timeline: {
+        times: [1000],
+        lines: [0],
+        translations: [-1],
+        strings: "歌词",
+        offsets: [0, 2],
+        wordStarts: [0, 0],
+        wordTimes: [],
+        wordOffsets: [],
+      },
+    });
+
+    const lyric = await new LocalProvider().getLyric(localTrack);
+    expect(lyric?.lines).toEqual([{ time: 1, text: "歌词" }]);
+  });
+
   it("returns null when embedded local metadata is unavailable", async () => {
     vi.mocked(LocalMusicPlugin.getEmbeddedCover).mockResolvedValue({
       success: false,
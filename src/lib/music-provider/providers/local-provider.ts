@@ -7,6 +7,7 @@ import {
 } from "@/types/music";
 import { Capacitor } from "@capacitor/core";
 import { LocalMusicPlugin } from "@/plugins/local-music";
+import { decodeLyricTimeline } from "@/plugins/local-music/lyrics";
 import { logger } from "@/lib/logger";
 
 export class LocalProvider implements IMusicProvider {
@@ -71,9 +72,16 @@ export class LocalProvider implements IMusicProvider {
       try {
         const result = await LocalMusicPlugin.getEmbeddedLyrics({
           localPath: track.lyric_id,
+          parse: true,
         });
         if (result.success && result.lyric) {
-          return { lyric: result.lyric, tlyric: result.tlyric ?? "" };
+          return {
+            lyric: result.lyric,
+            tlyric: result.tlyric ?? "",
+            lines: result.timeline
+              ? decodeLyricTimeline(result.timeline)
+              : undefined,
+          };
         }
         return null;
       } catch (e) {
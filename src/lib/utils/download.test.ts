@@ -5,6 +5,7 @@ import type { MusicTrack } from "@/types/music";
 import { convertToMusicTrack } from "./download";
 import { AUDIO_MIME, buildFileName } from "@/lib/storage-manager";
 import { getCachedBilibiliAudioFormat } from "@/lib/bilibili/bilibili-cache";
+import { parseNativeProxyUrl } from "@/lib/bilibili/bilibili-native-player";
 
 describe("convertToMusicTrack", () => {
   it("uses local path as embedded cover and lyric ids for local tracks", () => {
@@ -24,6 +25,25 @@ describe("convertToMusicTrack", () => {
     expect(track.pic_id).toBe(file.localPath);
     expect(track.lyric_id).toBe(file.localPath);
   });
+
+  it("skips embedded lookups the scan found nothing for", () => {
+    const file: LocalMusicFile = {
+      id: "2",
+      name: "Song",
+      artist: "Artist",
+      album: "Album",
+      duration: 180000,
+      localPath: "/storage/emulated/0/Music/plain.mp3",
+      fileSize: 1024,
+      hasCover: false,
+      hasLyrics: true,
+    };
+
+    const track = convertToMusicTrack(file);
+
+    expect(track.pic_id).toBe("");
+    expect(track.lyric_id).toBe(file.localPath);
+  });
 });
 
 describe("bilibili download format propagation", () => {
@@ -69,3 +89,25 @@ describe("getCachedBilibiliAudioFormat", () => {
     expect(result).toBeUndefined();
   });
 });
+
+describe("parseNativeProxyUrl", () => {
+  it("extracts the upstream url and bvid from a local proxy url", () => {
+    const audioUrl =
+      "https://upos-sz.bilivideo.com/a/1-30280.m4s?e=1&deadline=2";
+    const proxyUrl = `http://127.0.0.1:8765/proxy?url=${encodeURIComponent(
+      audioUrl
+    )}&bvid=BV1xx411c7mD`;
+
+    expect(parseNativeProxyUrl(proxyUrl)).toEqual({
+      audioUrl,
+      bvid: "BV1xx411c7mD",
+    });
+  });
+
+  it("returns null for non-proxy urls", () => {
+    expect(
+      parseNativeProxyUrl("https://example.com/proxy?url=a&bvid=b")
+    ).toBeNull();
+    expect(parseNativeProxyUrl("not a url")).toBeNull();
+  });
+});
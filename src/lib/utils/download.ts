@@ -23,6 +23,8 @@ import { logger } from "@/lib/logger";
 import { processBatchIO } from "@/lib/utils";
 import { embedMetadata } from "./id3-embed";
 import { getCachedBilibiliAudioFormat } from "@/lib/bilibili/bilibili-cache";
+import { parseNativeProxyUrl } from "@/lib/bilibili/bilibili-native-player";
+import { BilibiliProxy } from "@/plugins/bilibili-proxy";
 
 /**
  * 获取当前正在播放的曲目 URL（如果匹配）
@@ -255,20 +257,38 @@ async function downloadNative(
     fileUri: fileUri.uri,
   });
 
-  const listener = await FileTransfer.addListener(
-    "progress",
-    ({ bytes, contentLength }) => {
-      if (!contentLength || !toastId) return;
-      const percent = Math.round((bytes / contentLength) * 100);
-      toast.loading(`下载 ${percent}%`, { id: toastId });
-    }
-  );
+  const showProgress = (bytes: number, contentLength: number) => {
+    if (!contentLength || !toastId) return;
+    const percent = Math.round((bytes / contentLength) * 100);
+    toast.loading(`下载 ${percent}%`, { id: toastId });
+  };
+
+  // B 站音频走原生分段并行下载，规避 CDN 单连接限速
+  const bilibiliSource =
+    track.source === "bilibili" ? parseNativeProxyUrl(url) : null;
+  const listener = bilibiliSource
+    ? await BilibiliProxy.addListener("downloadProgress", (event) => {
+        if (event.downloadId !== fileUri.uri) return;
+        showProgress(event.bytes, event.contentLength);
+      })
+    : await FileTransfer.addListener(
+        "progress",
+        ({ bytes, contentLength }) => showProgress(bytes, contentLength)
+      );
 
   try {
-    await FileTransfer.downloadFile({
-      url,
-      path: fileUri.uri,
-    });
+    if (bilibiliSource) {
+      await BilibiliProxy.downloadFile({
+        ...bilibiliSource,
+        path: fileUri.uri,
+        downloadId: fileUri.uri,
+      });
+    } else {
+      await FileTransfer.downloadFile({
+        url,
+        path: fileUri.uri,
+      });
+    }
 
     // 元数据嵌入
     if (!opts?.skipMetadata && (store.embedCover || store.embedLyric)) {
@@ -607,9 +627,10 @@ export const convertToMusicTrack = (file: LocalMusicFile): MusicTrack => {
     name: file.name || "未知歌曲",
     artist: artistList,
     album: album || "",
-    pic_id: file.localPath,
+    // 扫描时已确认没有内嵌封面或歌词的，不再向原生端查询
+    pic_id: file.hasCover === false ? "" : file.localPath,
     url_id: file.localPath,
-    lyric_id: file.localPath,
+    lyric_id: file.hasLyrics === false ? "" : file.localPath,
     source: "local" as MusicSource,
   };
 };
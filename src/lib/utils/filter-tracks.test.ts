@@ -1,5 +1,5 @@
 import { describe, expect, it } from "vitest";
-import { filterTracks } from "./filter-tracks";
+import { filterTracks, pickTracksById } from "./filter-tracks";
 import type { MusicTrack } from "@/types/music";
 
 const t = (overrides: Partial<MusicTrack> = {}): MusicTrack => ({
@@ -66,3 +66,18 @@ describe("filterTracks", () => {
     expect(filterTracks(partialTracks, "no")).toEqual([partialTracks[0]]);
   });
 });
+
+describe("pickTracksById", () => {
+  const tracks = [t({ id: "a" }), t({ id: "b" }), t({ id: "c" })];
+
+  it("keeps the ranked order of ids", () => {
+    expect(pickTracksById(tracks, ["c", "a"]).map((x) => x.id)).toEqual([
+      "c",
+      "a",
+    ]);
+  });
+
+  it("skips ids that are no longer in the list", () => {
+    expect(pickTracksById(tracks, ["x", "b"]).map((x) => x.id)).toEqual(["b"]);
+  });
+});
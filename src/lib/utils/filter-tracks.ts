@@ -13,3 +13,19 @@ export function filterTracks(
       t.album?.toLowerCase().includes(lower)
   );
 }
+
+/**
+ * 按检索索引返回的 ID 顺序挑出曲目，忽略列表中已不存在的 ID
+ */
+export function pickTracksById(
+  tracks: MusicTrack[],
+  ids: string[]
+): MusicTrack[] {
+  const byId = new Map(tracks.map((t) => [t.id, t]));
+  const picked: MusicTrack[] = [];
+  for (const id of ids) {
+    const track = byId.get(id);
+    if (track) picked.push(track);
+  }
+  return picked;
+}
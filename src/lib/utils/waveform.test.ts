@@ -0,0 +1,28 @@
+import { describe, expect, it } from "vitest";
+import { buildWaveformPath, decodeWaveformPeaks } from "./waveform";
+
+const encode = (bytes: number[]) =>
+  btoa(String.fromCharCode(...bytes.map((b) => b & 0xff)));
+
+describe("decodeWaveformPeaks", () => {
+  it("splits packed bytes into signed min and max arrays", () => {
+    const peaks = decodeWaveformPeaks(encode([-127, -64, 127, 64]), 2, 1000);
+    expect(peaks).not.toBeNull();
+    expect(Array.from(peaks!.min)).toEqual([-127, -64]);
+    expect(Array.from(peaks!.max)).toEqual([127, 64]);
+    expect(peaks!.durationMs).toBe(1000);
+  });
+
+  it("rejects payloads that do not match the bucket count", () => {
+    expect(decodeWaveformPeaks(encode([1, 2, 3]), 2)).toBeNull();
+    expect(decodeWaveformPeaks("", 2)).toBeNull();
+    expect(decodeWaveformPeaks("%%%", 2)).toBeNull();
+  });
+});
+
+describe("buildWaveformPath", () => {
+  it("draws one vertical stroke per bucket around the centre line", () => {
+    const peaks = decodeWaveformPeaks(encode([-127, 0, 127, 0]), 2)!;
+    expect(buildWaveformPath(peaks)).toBe("M0.5 0.000V2.000M1.5 0.984V1.016");
+  });
+});
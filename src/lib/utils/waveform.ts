@@ -0,0 +1,50 @@
+/**
+ * 原生波形峰值：每个桶的最小/最大采样，取值 -127..127（对应 -1..1）
+ */
+export interface WaveformPeaks {
+  min: Int8Array;
+  max: Int8Array;
+  durationMs: number;
+}
+
+/**
+ * 解码 LocalMusicPlugin.getWaveform 返回的 base64：前 buckets 字节为 min，后 buckets 字节为 max
+ */
+export function decodeWaveformPeaks(
+  base64: string,
+  buckets: number,
+  durationMs = 0
+): WaveformPeaks | null {
+  if (!base64 || buckets <= 0) return null;
+  let binary: string;
+  try {
+    binary = atob(base64.replace(/\s+/g, ""));
+  } catch {
+    return null;
+  }
+  if (binary.length !== buckets * 2) return null;
+
+  const bytes = new Int8Array(binary.length);
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i);
+  }
+  return {
+    min: bytes.subarray(0, buckets),
+    max: bytes.subarray(buckets),
+    durationMs,
+  };
+}
+
+/**
+ * 生成波形竖线的 SVG path，坐标系为 viewBox="0 0 {buckets} 2"，中线 y=1
+ */
+export function buildWaveformPath(peaks: WaveformPeaks): string {
+  const parts: string[] = [];
+  for (let i = 0; i < peaks.max.length; i++) {
+    // 静音段也保留一条细线，避免波形断开
+    const top = 1 - Math.max(peaks.max[i], 2) / 127;
+    const bottom = 1 - Math.min(peaks.min[i], -2) / 127;
+    parts.push(`M${i + 0.5} ${top.toFixed(3)}V${bottom.toFixed(3)}`);
+  }
+  return parts.join("");
+}
@@ -1,8 +1,71 @@
-import { registerPlugin } from "@capacitor/core";
+import { registerPlugin, type PluginListenerHandle } from "@capacitor/core";
+
+export interface ProxyStreamStats {
+  id: number;
+  bvid: string;
+  range?: string;
+  source: "upstream" | "cache";
+  startedAt: number;
+  /** 上游连接耗时，缓存命中时为 -1 */
+  connectMs: number;
+  ttfbMs: number;
+  bytes: number;
+  durationMs: number;
+  bytesPerSec: number;
+  responseCode: number;
+  aborted: boolean;
+  finished: boolean;
+}
+
+/** 代理转发的流均为 playing，分段下载为 download */
+export type ProxyPriority = "playing" | "download";
+
+export interface ProxySchedulerStats {
+  level: "normal" | "guarded" | "critical";
+  /** 最近一次上报的缓冲秒数，未上报时为 -1 */
+  bufferedSeconds: number;
+  /** 下载累计让出的等待时间 */
+  throttledMs: number;
+  active: Record<ProxyPriority, number>;
+}
+
+export interface ProxyStats {
+  running: boolean;
+  activeConnections?: number;
+  queuedRequests?: number;
+  activeStreams?: number;
+  totalStreams?: number;
+  abortedStreams?: number;
+  bytesFromUpstream?: number;
+  bytesFromCache?: number;
+  cacheBytes?: number;
+  avgConnectMs?: number;
+  avgTtfbMs?: number;
+  responseCodes?: Record<string, number>;
+  scheduler?: ProxySchedulerStats;
+  active?: ProxyStreamStats[];
+  recent?: ProxyStreamStats[];
+}
+
+export interface ProxyCacheSize {
+  totalBytes: number;
+  /** 已固定部分，不计入 maxBytes */
+  pinnedBytes: number;
+  /** 未固定部分的上限，超出时按最近使用淘汰 */
+  maxBytes: number;
+  entries: number;
+  pinned: string[];
+}
+
+export interface DownloadProgressEvent {
+  downloadId: string;
+  bytes: number;
+  contentLength: number;
+}
 
 export interface BilibiliProxyPlugin {
   /**
-   * 启动本地代理服务器
+   * 启动本地代理服务器（可选预热；默认端口被占用时使用临时端口）
    */
   startServer(): Promise<{ success: boolean; port: number }>;
 
@@ -12,17 +75,95 @@ export interface BilibiliProxyPlugin {
   stopServer(): Promise<{ success: boolean }>;
 
   /**
-   * 获取代理URL
+   * 获取代理URL，服务器未启动时会先在后台启动
    */
   getProxyUrl(options: {
     audioUrl: string;
     bvid: string;
   }): Promise<{ success: boolean; url: string }>;
 
+  /**
+   * 上游不可达时的离线播放地址，指向该 bvid 已完整缓存的流
+   */
+  getCachedStreamUrl(options: {
+    bvid: string;
+  }): Promise<{ success: boolean; url?: string; contentType?: string }>;
+
+  /**
+   * 固定 bvid 的流缓存，不再被淘汰；cached 为 false 时在下次完整播放后生效
+   */
+  pinStream(options: {
+    bvid: string;
+  }): Promise<{ success: boolean; cached: boolean }>;
+
+  unpinStream(options: { bvid: string }): Promise<{ success: boolean }>;
+
+  /**
+   * 流缓存占用
+   */
+  getCacheSize(): Promise<ProxyCacheSize>;
+
+  /**
+   * 上报播放状态与当前位置之后的已缓冲秒数
+   * 缓冲不足时代理会限速或暂停下载；暂停时上报一次即可，暂停状态不会过期
+   */
+  reportPlaybackBuffer(options: {
+    bufferedSeconds: number;
+    playing?: boolean;
+  }): Promise<{ level: ProxySchedulerStats["level"] }>;
+
   /**
    * 检查服务器是否运行中
    */
   isRunning(): Promise<{ running: boolean; port?: number }>;
+
+  /**
+   * 分段并行下载B站音频到本地文件，中断后对同一路径再次调用会续传
+   */
+  downloadFile(options: {
+    audioUrl: string;
+    bvid: string;
+    /** file:// URI 或绝对路径 */
+    path: string;
+    /** 默认为 path */
+    downloadId?: string;
+    /** 并行连接数，默认 4 */
+    connections?: number;
+  }): Promise<{
+    success: boolean;
+    downloadId: string;
+    path: string;
+    bytes: number;
+    resumed: boolean;
+  }>;
+
+  /**
+   * 取消下载，已下载的分段保留用于续传
+   */
+  cancelDownload(options: {
+    downloadId: string;
+  }): Promise<{ success: boolean }>;
+
+  /**
+   * 获取代理统计（TTFB、吞吐、缓存命中等），reset 为 true 时读取后清零
+   */
+  getStats(options?: { reset?: boolean }): Promise<ProxyStats>;
+
+  /**
+   * 每条代理流结束时触发
+   */
+  addListener(
+    eventName: "proxyStream",
+    listenerFunc: (event: ProxyStreamStats) => void
+  ): Promise<PluginListenerHandle>;
+
+  /**
+   * downloadFile 的下载进度
+   */
+  addListener(
+    eventName: "downloadProgress",
+    listenerFunc: (event: DownloadProgressEvent) => void
+  ): Promise<PluginListenerHandle>;
 }
 
 export const BilibiliProxy = registerPlugin<BilibiliProxyPlugin>("BilibiliProxy");
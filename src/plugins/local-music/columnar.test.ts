@@ -0,0 +1,211 @@
+import { afterEach, describe, expect, it, vi } from "vitest";
+import { decodeColumnarScan, loadLibrarySnapshot } from "./columnar";
+
+const mocks = vi.hoisted(() => ({
+  native: false,
+  getLibrarySnapshot: vi.fn(),
+}));
+
+vi.mock("@capacitor/core", () => ({
+  Capacitor: { isNativePlatform: () => mocks.native },
+}));
+
+vi.mock("./index", () => ({
+  LocalMusicPlugin: { getLibrarySnapshot: mocks.getLibrarySnapshot },
+}));
+
+interface Row {
+  id: string;
+  name: string | null;
+  artist: string | null;
+  album: string | null;
+  localPath: string;
+  duration: number;
+  fileSize: number;
+  modifiedTime: number;
+  lufs: number;
+  peak: number;
+  tags: number;
+}
+
+/** 按 ColumnarScanWriter 的布局编码，用于构造测试输入 */
+function encode(rows: Row[]): ArrayBuffer {
+  const strings: string[] = [];
+  const ids = new Map<string, number>();
+  const intern = (value: string | null) => {
+    if (value === null) return -1;
+    if (!ids.has(value)) {
+      ids.set(value, strings.length);
+      strings.push(value);
+    }
+    return ids.get(value)!;
+  };
+  const refs = rows.map((r) =>
+    [r.id, r.name, r.artist, r.album, r.localPath].map(intern)
+  );
+  const encoded = strings.map((s) => new TextEncoder().encode(s));
+  const stringBytes = encoded.reduce((n, b) => n + b.length, 0);
+  const n = rows.length;
+  const size =
+    24 + n * (24 + 8 + 20 + 4) + (strings.length + 1) * 4 + stringBytes;
+  const buffer = new ArrayBuffer(size);
+  const view = new DataView(buffer);
+  [0x4353544f, 2, n, strings.length, stringBytes, 0].forEach((v, i) =>
+    view.setUint32(i * 4, v, true)
+  );
+  let offset = 24;
+  for (const key of ["duration", "fileSize", "modifiedTime"] as const) {
+    for (const r of rows) {
+      view.setFloat64(offset, r[key], true);
+      offset += 8;
+    }
+  }
+  for (const key of ["lufs", "peak"] as const) {
+    for (const r of rows) {
+      view.setFloat32(offset, r[key], true);
+      offset += 4;
+    }
+  }
+  for (let column = 0; column < 5; column++) {
+    for (const ref of refs) {
+      view.setInt32(offset, ref[column], true);
+      offset += 4;
+    }
+  }
+  for (const r of rows) {
+    view.setInt32(offset, r.tags, true);
+    offset += 4;
+  }
+  let position = 0;
+  for (const bytes of encoded) {
+    view.setUint32(offset, position, true);
+    offset += 4;
+    position += bytes.length;
+  }
+  view.setUint32(offset, position, true);
+  offset += 4;
+  for (const bytes of encoded) {
+    new Uint8Array(buffer, offset, bytes.length).set(bytes);
+    offset += bytes.length;
+  }
+  return buffer;
+}
+
+describe("decodeColumnarScan", () => {
+  it("decodes rows, shared strings and loudness", () => {
+    const files = decodeColumnarScan(
+      encode([
+        {
+          id: "1",
+          name: "晴天",
+          artist: "周杰伦",
+          album: null,
+          localPath: "content://media/1",
+          duration: 269000,
+          fileSize: 4_300_000,
+          modifiedTime: 1_700_000_000_000,
+          lufs: -9.5,
+          peak: 0.5,
+          tags: 1 | 2 | 4,
+        },
+        {
+          id: "2",
+          name: "七里香",
+          artist: "周杰伦",
+          album: "七里香",
+          localPath: "content://media/2",
+          duration: 299000,
+          fileSize: 4_800_000,
+          modifiedTime: 1_700_000_001_000,
+          lufs: NaN,
+          peak: NaN,
+          tags: 0,
+        },
+      ])
+    );
+
+    expect(files).toHaveLength(2);
+    expect(files[0]).toEqual({
+      id: "1",
+      name: "晴天",
+      artist: "周杰伦",
+      album: null,
+      localPath: "content://media/1",
+      duration: 269000,
+      fileSize: 4_300_000,
+      modifiedTime: 1_700_000_000_000,
+      loudnessLufs: -9.5,
+      replayGain: -8.5,
+      peak: 0.5,
+      hasCover: true,
+      hasLyrics: false,
+    });
+    expect(files[1].album).toBe("七里香");
+    expect(files[1].hasCover).toBeUndefined();
+    expect(files[1].loudnessLufs).toBeUndefined();
+    expect(files[1].replayGain).toBeUndefined();
+  });
+
+  it("handles an empty library", () => {
+    expect(decodeColumnarScan(encode([]))).toEqual([]);
+  });
+
+  it("rejects other payloads", () => {
+    expect(() => decodeColumnarScan(new ArrayBuffer(24))).toThrow();
+  });
+});
+
+describe("loadLibrarySnapshot", () => {
+  afterEach(() => {
+    mocks.native = false;
+    mocks.getLibrarySnapshot.mockReset();
+    vi.unstubAllGlobals();
+  });
+
+  it("fetches the saved snapshot and asks native to reconcile", async () => {
+    mocks.native = true;
+    mocks.getLibrarySnapshot.mockResolvedValue({
+      success: true,
+      columnarUrl: "http://127.0.0.1:1/files?token=t",
+      count: 1,
+    });
+    const fetchMock = vi.fn().mockResolvedValue(
+      new Response(
+        encode([
+          {
+            id: "1",
+            name: "晴天",
+            artist: "周杰伦",
+            album: null,
+            localPath: "content://media/1",
+            duration: 269000,
+            fileSize: 4_300_000,
+            modifiedTime: 1_700_000_000_000,
+            lufs: NaN,
+            peak: NaN,
+            tags: 0,
+          },
+        ])
+      )
+    );
+    vi.stubGlobal("fetch", fetchMock);
+
+    const files = await loadLibrarySnapshot();
+
+    expect(mocks.getLibrarySnapshot).toHaveBeenCalledWith({ reconcile: true });
+    expect(fetchMock).toHaveBeenCalledWith("http://127.0.0.1:1/files?token=t");
+    expect(files?.map((file) => file.name)).toEqual(["晴天"]);
+  });
+
+  it("returns null without a snapshot or off native", async () => {
+    expect(await loadLibrarySnapshot()).toBeNull();
+    expect(mocks.getLibrarySnapshot).not.toHaveBeenCalled();
+
+    mocks.native = true;
+    mocks.getLibrarySnapshot.mockResolvedValue({
+      success: false,
+      error: "暂无曲库快照",
+    });
+    expect(await loadLibrarySnapshot()).toBeNull();
+  });
+});
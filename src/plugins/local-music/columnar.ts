@@ -0,0 +1,154 @@
+import { Capacitor } from "@capacitor/core";
+import {
+  LocalMusicPlugin,
+  type LocalMusicFile,
+  type ScanResult,
+} from "./index";
+import { logger } from "@/lib/logger";
+
+/**
+ * 列式扫描结果解码，格式定义见 android ColumnarScanWriter.java，两边需同步修改
+ */
+const MAGIC = 0x4353544f; // "OTSC"
+const VERSION = 2;
+const HEADER_BYTES = 24;
+const STRING_COLUMNS = 5;
+const TAG_COVER_KNOWN = 1;
+const TAG_HAS_COVER = 2;
+const TAG_LYRICS_KNOWN = 4;
+const TAG_HAS_LYRICS = 8;
+
+const round = (value: number, digits: number) => {
+  const scale = 10 ** digits;
+  return Math.round(value * scale) / scale;
+};
+
+export function decodeColumnarScan(buffer: ArrayBuffer): LocalMusicFile[] {
+  const view = new DataView(buffer);
+  if (buffer.byteLength < HEADER_BYTES) {
+    throw new Error("Columnar scan result truncated");
+  }
+  if (view.getUint32(0, true) !== MAGIC) {
+    throw new Error("Not a columnar scan result");
+  }
+  if (view.getUint32(4, true) !== VERSION) {
+    throw new Error("Unsupported columnar scan version");
+  }
+  const rows = view.getUint32(8, true);
+  const stringCount = view.getUint32(12, true);
+  const stringBytes = view.getUint32(16, true);
+
+  let offset = HEADER_BYTES;
+  const f64 = () => {
+    const column = new Float64Array(buffer, offset, rows);
+    offset += rows * 8;
+    return column;
+  };
+  const durations = f64();
+  const fileSizes = f64();
+  const modifiedTimes = f64();
+  const f32 = () => {
+    const column = new Float32Array(buffer, offset, rows);
+    offset += rows * 4;
+    return column;
+  };
+  const loudness = f32();
+  const peaks = f32();
+  const refs = new Int32Array(buffer, offset, rows * STRING_COLUMNS);
+  offset += rows * STRING_COLUMNS * 4;
+  const tagFlags = new Int32Array(buffer, offset, rows);
+  offset += rows * 4;
+  const stringOffsets = new Uint32Array(buffer, offset, stringCount + 1);
+  offset += (stringCount + 1) * 4;
+  const bytes = new Uint8Array(buffer, offset, stringBytes);
+
+  // 字符串表已去重，逐条解码一次即可
+  const decoder = new TextDecoder();
+  const strings = new Array<string>(stringCount);
+  for (let i = 0; i < stringCount; i++) {
+    strings[i] = decoder.decode(
+      bytes.subarray(stringOffsets[i], stringOffsets[i + 1])
+    );
+  }
+  const str = (column: number, row: number) => {
+    const ref = refs[column * rows + row];
+    return ref < 0 ? null : strings[ref];
+  };
+
+  const files = new Array<LocalMusicFile>(rows);
+  for (let row = 0; row < rows; row++) {
+    const file: LocalMusicFile = {
+      id: str(0, row) ?? "",
+      name: str(1, row),
+      artist: str(2, row),
+      album: str(3, row),
+      localPath: str(4, row) ?? "",
+      duration: durations[row],
+      fileSize: fileSizes[row],
+      modifiedTime: modifiedTimes[row],
+    };
+    const lufs = loudness[row];
+    if (!Number.isNaN(lufs)) {
+      file.loudnessLufs = round(lufs, 2);
+      file.replayGain = round(-18 - lufs, 2);
+      if (!Number.isNaN(peaks[row])) file.peak = round(peaks[row], 4);
+    }
+    const flags = tagFlags[row];
+    if (flags & TAG_COVER_KNOWN) file.hasCover = !!(flags & TAG_HAS_COVER);
+    if (flags & TAG_LYRICS_KNOWN) file.hasLyrics = !!(flags & TAG_HAS_LYRICS);
+    files[row] = file;
+  }
+  return files;
+}
+
+/**
+ * 扫描本地音乐；原生端优先以列式二进制经本地 HTTP 服务回传，
+ * 拉取或解码失败时重新以 JSON 数组扫描一次。folder 为经 SAF 扫描选定的下载目录
+ */
+export async function scanLocalMusicFiles(
+  type: "quick" | "full" | "folder"
+): Promise<ScanResult> {
+  const scan = (options?: { format: "columnar" }) => {
+    if (type === "quick") return LocalMusicPlugin.scanLocalMusic(options);
+    if (type === "folder") return LocalMusicPlugin.scanDocumentTree(options);
+    return LocalMusicPlugin.scanAllStorage(options);
+  };
+
+  if (!Capacitor.isNativePlatform()) return scan();
+  const result = await scan({ format: "columnar" });
+  if (!result.success || !result.columnarUrl) return result;
+  try {
+    const files = await fetchColumnarFiles(result.columnarUrl);
+    return { success: true, files };
+  } catch (e) {
+    logger.warn("local-music", "Columnar scan result unavailable", { e });
+    return scan();
+  }
+}
+
+/** 拉取并解码列式扫描结果或曲库快照 */
+export async function fetchColumnarFiles(
+  url: string
+): Promise<LocalMusicFile[]> {
+  const response = await fetch(url);
+  if (!response.ok) throw new Error(`HTTP ${response.status}`);
+  return decodeColumnarScan(await response.arrayBuffer());
+}
+
+/**
+ * 冷启动时读取原生端保存的上次曲库快照，不必等待重新扫描；
+ * 随后原生端在后台校对，有变化时以 libraryUpdated 事件推送。没有快照时返回 null
+ */
+export async function loadLibrarySnapshot(): Promise<LocalMusicFile[] | null> {
+  if (!Capacitor.isNativePlatform()) return null;
+  try {
+    const result = await LocalMusicPlugin.getLibrarySnapshot({
+      reconcile: true,
+    });
+    if (!result.success || !result.columnarUrl) return null;
+    return await fetchColumnarFiles(result.columnarUrl);
+  } catch (e) {
+    logger.warn("local-music", "Library snapshot unavailable", { e });
+    return null;
+  }
+}
@@ -9,13 +9,125 @@ export interface LocalMusicFile {
   localPath: string;
   fileSize: number;
   modifiedTime?: number;
+  /** EBU R128 积分响度（LUFS），后台分析完成后才有 */
+  loudnessLufs?: number;
+  /** ReplayGain 2.0 曲目增益（dB，参考 -18 LUFS） */
+  replayGain?: number;
+  /** 采样峰值，1 为 0 dBFS */
+  peak?: number;
+  /** 是否有内嵌封面；扫描时未能确定则缺省 */
+  hasCover?: boolean;
+  /** 是否有内嵌歌词（ID3 USLT）；扫描时未能确定则缺省 */
+  hasLyrics?: boolean;
 }
 
 export interface ScanResult {
   success: boolean;
   files: LocalMusicFile[];
+  /** 以 format: "columnar" 扫描时结果文件的地址，此时 files 为空 */
+  columnarUrl?: string;
+  count?: number;
   error?: string;
   needManageStorage?: boolean;
+  /** scanDocumentTree 未选择目录或授权已失效 */
+  needDirectory?: boolean;
+}
+
+export interface LibrarySnapshotResult {
+  success: boolean;
+  /** 快照文件地址，格式同列式扫描结果 */
+  columnarUrl?: string;
+  count?: number;
+  /** 快照来自快速扫描还是全盘扫描 */
+  source?: "quick" | "full";
+  updatedAt?: number;
+  error?: string;
+}
+
+export interface LibraryGroup {
+  /** 归一化后的分组键，传给 getGroupTracks */
+  key: string;
+  name: string;
+  /** 专辑的第一位歌手 */
+  artist?: string;
+  trackCount: number;
+  /** 总时长（毫秒） */
+  duration: number;
+  /** 代表封面所在曲目，传给 getEmbeddedCover */
+  coverPath?: string;
+}
+
+export interface LibraryGroupsResult {
+  success: boolean;
+  /** 原生聚合索引尚未建立时为 false */
+  indexed: boolean;
+  total: number;
+  items: LibraryGroup[];
+}
+
+export interface LibraryGroupQuery {
+  offset?: number;
+  /** 默认 100 */
+  limit?: number;
+  /** count：曲目数降序（默认）；name：按名称 */
+  sort?: "count" | "name";
+}
+
+export interface LibraryUpdatedEvent {
+  columnarUrl: string;
+  count: number;
+}
+
+/**
+ * 原生 I/O 统一调度的优先级：interactive 用于用户刚触发的操作，visible 用于
+ * 屏幕上正在展示的内容，background 用于扫描、转封装等长任务
+ */
+export type TaskPriority = "interactive" | "visible" | "background";
+
+export interface TaskOptions {
+  /** 覆盖该方法的默认优先级 */
+  priority?: TaskPriority;
+  /** 传给 cancelRequest 以取消本次调用 */
+  requestId?: string;
+}
+
+export interface QueueDepth {
+  queued: number;
+  running: number;
+}
+
+export interface QueueStatsResult {
+  success: boolean;
+  interactive: QueueDepth;
+  visible: QueueDepth;
+  background: QueueDepth;
+}
+
+export interface MemoryCacheUsage {
+  name: string;
+  /** 收缩顺序：disposable 最先，important 最后 */
+  priority: "disposable" | "normal" | "important";
+  bytes: number;
+}
+
+export interface MemoryUsageResult {
+  success: boolean;
+  /** 原生缓存的共享预算 */
+  limitBytes: number;
+  totalBytes: number;
+  heapUsedBytes: number;
+  heapMaxBytes: number;
+  /** 系统 onTrimMemory 触发的收缩次数 */
+  trimCount: number;
+  /** 最近一次的 onTrimMemory 级别，没有时为 -1 */
+  lastTrimLevel: number;
+  lastTrimAt: number;
+  caches: MemoryCacheUsage[];
+}
+
+export interface ScanOptions extends TaskOptions {
+  /** columnar：结果写成列式二进制文件经本地 HTTP 服务回传，避免大 JSON 过桥 */
+  format?: "json" | "columnar";
 }
 
 export interface LocalFileUrlResult {
@@ -24,17 +136,45 @@ export interface LocalFileUrlResult {
   error?: string;
 }
 
+/**
+ * 经调度器执行的方法在队列已满时以 error: "busy"、retryable: true 结束，
+ * 被 cancelRequest 取消时以 error: "cancelled" 结束
+ */
 export interface EmbeddedCoverResult {
   success: boolean;
   dataUrl?: string;
   error?: string;
+  retryable?: boolean;
 }
 
 export interface EmbeddedLyricsResult {
   success: boolean;
   lyric?: string;
   tlyric?: string;
+  /** 以 parse: true 请求时附带 */
+  timeline?: LyricTimeline;
   error?: string;
+  retryable?: boolean;
+}
+
+/**
+ * 原生解析的歌词时间轴，按列存放；文本为去重后的字符串表，
+ * 第 i 项为 strings.slice(offsets[i], offsets[i + 1])
+ */
+export interface LyricTimeline {
+  /** 每行开始时间（毫秒），升序 */
+  times: number[];
+  /** 每行原文在字符串表中的序号 */
+  lines: number[];
+  /** 每行译文在字符串表中的序号，没有为 -1 */
+  translations: number[];
+  strings: string;
+  offsets: number[];
+  /** 第 i 行的逐字时间为 [wordStarts[i], wordStarts[i + 1]) */
+  wordStarts: number[];
+  wordTimes: number[];
+  /** 逐字开始处在该行文本中的字符偏移 */
+  wordOffsets: number[];
 }
 
 export interface HasPermissionResult {
@@ -46,6 +186,28 @@ export interface DeleteResult {
   error?: string;
 }
 
+export interface DeleteBatchItem {
+  localPath: string;
+  success: boolean;
+  /** needsConsent：Android 10 上需要逐个确认，可改用 deleteLocalMusic */
+  error?: string;
+}
+
+export interface DeleteBatchResult {
+  /** 全部删除成功 */
+  success: boolean;
+  deleted?: number;
+  results?: DeleteBatchItem[];
+  error?: string;
+}
+
+export interface DeleteProgressEvent {
+  localPath: string;
+  success: boolean;
+  done: number;
+  total: number;
+}
+
 export interface PickDirectoryResult {
   success: boolean;
   path?: string;
@@ -72,19 +234,101 @@ export interface ExcludedFolderMutationResult {
   error?: string;
 }
 
+export interface RemuxItemResult {
+  localPath: string;
+  success: boolean;
+  outputPath?: string;
+  error?: string;
+}
+
+export interface RemuxResult {
+  success: boolean;
+  results?: RemuxItemResult[];
+  error?: string;
+}
+
+export interface RemuxProgressEvent {
+  index: number;
+  total: number;
+  localPath: string;
+  /** 当前文件进度 0..1 */
+  progress: number;
+}
+
+export interface WaveformResult {
+  success: boolean;
+  buckets?: number;
+  durationMs?: number;
+  /** base64：buckets 个 min 字节后接 buckets 个 max 字节（有符号，-127..127） */
+  peaks?: string;
+  error?: string;
+}
+
+export interface LocalSearchResult {
+  success: boolean;
+  /** 原生检索索引是否可用；为 false 时 ids 为空，需在前端自行过滤 */
+  indexed: boolean;
+  /** 按相关度排序的 LocalMusicFile.id */
+  ids: string[];
+}
+
+export interface LoudnessAnalysisStartResult {
+  success: boolean;
+  /** 本次新加入队列的曲目数 */
+  queued: number;
+  /** 队列中等待分析的曲目数 */
+  pending: number;
+}
+
+export interface LoudnessProgressEvent {
+  localPath: string;
+  done: number;
+  total: number;
+  loudnessLufs?: number;
+  replayGain?: number;
+  peak?: number;
+}
+
+export interface LoudnessCompleteEvent {
+  analyzed: number;
+}
+
 export interface LocalMusicPlugin {
-  scanLocalMusic(): Promise<ScanResult>;
-  scanAllStorage(): Promise<ScanResult>;
+  /** 建议经 scanLocalMusicFiles 调用，由其处理列式结果 */
+  scanLocalMusic(options?: ScanOptions): Promise<ScanResult>;
+  /** 遍历全部存储；MediaStore 已收录且未过期的文件直接复用其标签，其余逐个解析 */
+  scanAllStorage(options?: ScanOptions): Promise<ScanResult>;
+  /** 经 SAF 扫描选定目录，默认为下载目录；无需存储权限 */
+  scanDocumentTree(
+    options?: ScanOptions & { uri?: string }
+  ): Promise<ScanResult>;
+  /**
+   * 上次扫描保存的曲库快照，立即返回；reconcile 时随后在后台重新扫描，
+   * 有变化则触发 libraryUpdated
+   */
+  getLibrarySnapshot(options?: {
+    reconcile?: boolean;
+  }): Promise<LibrarySnapshotResult>;
+  /**
+   * 播放地址：经本地 HTTP 服务按 Range 读取（支持拖动与 HEAD），
+   * 服务不可用时为 content:// 或 file:// URI
+   */
   getLocalFileUrl(options: { localPath: string }): Promise<LocalFileUrlResult>;
-  getEmbeddedCover(options: {
-    localPath: string;
-  }): Promise<EmbeddedCoverResult>;
-  getEmbeddedLyrics(options: {
-    localPath: string;
-  }): Promise<EmbeddedLyricsResult>;
+  /** 默认 visible 优先级 */
+  getEmbeddedCover(
+    options: { localPath: string } & TaskOptions
+  ): Promise<EmbeddedCoverResult>;
+  /** 默认 interactive 优先级；parse 时附带解析好的时间轴 */
+  getEmbeddedLyrics(
+    options: { localPath: string; parse?: boolean } & TaskOptions
+  ): Promise<EmbeddedLyricsResult>;
   openManageStorageSettings(): Promise<void>;
   hasAllStoragePermission(): Promise<HasPermissionResult>;
   deleteLocalMusic(options: { localPath: string }): Promise<DeleteResult>;
+  /** 后台批量删除，Android 11+ 需要确认的文件合并为一次系统确认 */
+  deleteLocalMusicBatch(
+    options: { paths: string[] } & TaskOptions
+  ): Promise<DeleteBatchResult>;
   pickDownloadDirectory(): Promise<PickDirectoryResult>;
   getSystemDarkMode(): Promise<SystemDarkModeResult>;
   getExcludedFolders(): Promise<ExcludedFoldersResult>;
@@ -95,10 +339,76 @@ export interface LocalMusicPlugin {
     folder: string;
   }): Promise<ExcludedFolderMutationResult>;
   pickExcludedDirectory(): Promise<PickDirectoryResult>;
+  remuxToM4a(
+    options: { paths: string[]; deleteSource?: boolean } & TaskOptions
+  ): Promise<RemuxResult>;
+  /** 在原生索引中检索歌名、歌手、专辑及拼音首字母（如 "zjl"） */
+  searchLocal(options: {
+    query: string;
+    /** 默认 200 */
+    limit?: number;
+  }): Promise<LocalSearchResult>;
+  /** 后台分析尚未计算响度的曲目；扫描后会自动开始，播放中或低电量时暂停 */
+  startLoudnessAnalysis(options?: {
+    paths?: string[];
+  }): Promise<LoudnessAnalysisStartResult>;
+  cancelLoudnessAnalysis(): Promise<{ success: boolean }>;
+  /** 解码并降采样为峰值桶，结果按路径与修改时间缓存在磁盘 */
+  getWaveform(
+    options: {
+      localPath: string;
+      /** 默认 200 */
+      buckets?: number;
+    } & TaskOptions
+  ): Promise<WaveformResult>;
+  /** 取消以 requestId 发起的调用，返回被取消的任务数 */
+  cancelRequest(options: {
+    requestId: string;
+  }): Promise<{ success: boolean; cancelled: number }>;
+  /** 分页列出歌手，多歌手曲目计入每位歌手 */
+  getArtists(options?: LibraryGroupQuery): Promise<LibraryGroupsResult>;
+  /** 分页列出专辑，按专辑名与第一位歌手分组 */
+  getAlbums(options?: LibraryGroupQuery): Promise<LibraryGroupsResult>;
+  /** 歌手或专辑下全部曲目的 localPath，按修改时间从新到旧 */
+  getGroupTracks(options: {
+    type: "artist" | "album";
+    key: string;
+  }): Promise<{ success: boolean; paths: string[] }>;
+  /** 原生 I/O 调度器各优先级的队列深度 */
+  getQueueStats(): Promise<QueueStatsResult>;
+  /** 原生缓存的内存预算与各缓存的估算占用 */
+  getMemoryUsage(): Promise<MemoryUsageResult>;
+  /** 在后台为即将播放的曲目预先计算波形 */
+  prefetchWaveforms(options: {
+    paths: string[];
+    buckets?: number;
+    /** 传给 cancelRequest 以停止剩余的预取 */
+    requestId?: string;
+  }): Promise<{ success: boolean; queued: number }>;
   addListener(
     eventName: "darkModeChange",
     listenerFunc: (event: DarkModeChangeEvent) => void
   ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: "remuxProgress",
+    listenerFunc: (event: RemuxProgressEvent) => void
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: "deleteProgress",
+    listenerFunc: (event: DeleteProgressEvent) => void
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: "loudnessProgress",
+    listenerFunc: (event: LoudnessProgressEvent) => void
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: "loudnessComplete",
+    listenerFunc: (event: LoudnessCompleteEvent) => void
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: "libraryUpdated",
+    listenerFunc: (event: LibraryUpdatedEvent) => void
+  ): Promise<PluginListenerHandle>;
 }
 
 const LocalMusicPlugin = registerPlugin<LocalMusicPlugin>("LocalMusicPlugin");
@@ -0,0 +1,30 @@
+import { describe, expect, it } from "vitest";
+import { decodeLyricTimeline } from "./lyrics";
+
+describe("decodeLyricTimeline", () => {
+  it("slices shared strings, translations and word timings", () => {
+    const lines = decodeLyricTimeline({
+      times: [1000, 5500, 70120],
+      lines: [0, 2, 2],
+      translations: [1, -1, -1],
+      strings: "Hello你好刮风这天",
+      offsets: [0, 5, 7, 11],
+      wordStarts: [0, 0, 2, 2],
+      wordTimes: [5500, 5900],
+      wordOffsets: [0, 2],
+    });
+
+    expect(lines).toEqual([
+      { time: 1, text: "Hello", ttext: "你好" },
+      {
+        time: 5.5,
+        text: "刮风这天",
+        words: [
+          { time: 5.5, offset: 0 },
+          { time: 5.9, offset: 2 },
+        ],
+      },
+      { time: 70.12, text: "刮风这天" },
+    ]);
+  });
+});
@@ -0,0 +1,33 @@
+import type { SongLyricLine } from "@/types/music";
+import type { LyricTimeline } from "./index";
+
+/**
+ * 把原生 LrcParser 的列式时间轴还原为歌词行，只做切片，不解析 LRC；
+ * 格式定义见 android LrcParser.java，两边需同步修改
+ */
+export function decodeLyricTimeline(timeline: LyricTimeline): SongLyricLine[] {
+  const { strings, offsets } = timeline;
+  const text = (index: number) =>
+    strings.slice(offsets[index], offsets[index + 1]);
+
+  return timeline.times.map((time, i) => {
+    const line: SongLyricLine = {
+      time: time / 1000,
+      text: text(timeline.lines[i]),
+    };
+    const translation = timeline.translations[i];
+    if (translation >= 0) line.ttext = text(translation);
+    const start = timeline.wordStarts[i];
+    const end = timeline.wordStarts[i + 1];
+    if (end > start) {
+      line.words = [];
+      for (let w = start; w < end; w++) {
+        line.words.push({
+          time: timeline.wordTimes[w] / 1000,
+          offset: timeline.wordOffsets[w],
+        });
+      }
+    }
+    return line;
+  });
+}
@@ -16,6 +16,7 @@ export type {
   SearchResult,
   SearchSuggestionItem,
   SongLyric,
+  SongLyricLine,
   SongUrl,
   SourceConfig,
 } from "@otter-music/shared";